@@ -0,0 +1,138 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFSpool;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.dynamic.casters.StructCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+import ortus.boxlang.runtime.validation.Validator;
+
+@BoxBIF
+public class PDFEnqueue extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFEnqueue() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "string", ModuleKeys.destination, Set.of( Validator.NON_EMPTY ) ),
+		    new Argument( false, "string", Key.content ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Adds a PDF render job to a durable spool directory, to be rendered in the background at a controlled
+	 * concurrency and rate. The job is written to disk before this function returns, so it survives restarts. Failed
+	 * jobs are retried with an increasing delay and quarantined once they have used their attempts.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.destination The path of the PDF file the job writes. An existing file is replaced once the new PDF is complete
+	 *
+	 * @argument.content The assembled HTML of the document. Either the content or the template option is required
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>template - The path of a template which outputs the body of the document, which is run when the job is rendered</li>
+	 *                   <li>data - A struct of simple values, arrays and structs, which are placed in the variables scope of the template</li>
+	 *                   <li>attributes - A struct of attributes of the document component, such as pageType or renderWorkers</li>
+	 *                   <li>spoolDirectory - The spool directory. Defaults to bx-pdf/spool in the BoxLang home</li>
+	 *                   <li>process - If true, the spool is processed by this runtime, starting it with the settings below if it is not already processed. Default is true</li>
+	 *                   <li>concurrency - The number of jobs rendered at once. Default is 1</li>
+	 *                   <li>rate - The maximum number of jobs started per minute. Default is 0, for no limit</li>
+	 *                   <li>maxAttempts - The number of attempts after which a failing job is quarantined. Default is 3</li>
+	 *                   <li>retryDelay - The delay, in seconds, before a failed job is retried, which doubles with each attempt. Default is 30</li>
+	 *                   </ul>
+	 *
+	 * @return The id of the job
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		IStruct	options		= arguments.getAsStruct( ModuleKeys.options );
+		String	content		= arguments.getAsString( Key.content );
+		String	template	= options.get( ModuleKeys.template ) != null ? StringCaster.cast( options.get( ModuleKeys.template ) ) : null;
+		IStruct	attributes	= options.get( Key.attributes ) != null ? StructCaster.cast( options.get( Key.attributes ) ) : Struct.of();
+
+		if ( ( content == null ) == ( template == null ) ) {
+			throw new BoxRuntimeException( "Either the content argument or the template option is required, but not both" );
+		}
+		if ( attributes.containsKey( ModuleKeys.filename ) || attributes.containsKey( Key.variable ) || attributes.containsKey( Key._NAME ) ) {
+			throw new BoxRuntimeException( "The attributes of a spooled job may not set a filename or variable, as the PDF is written to the destination" );
+		}
+		if ( template != null ) {
+			template = FileSystemUtil.expandPath( context, template ).absolutePath().toString();
+			if ( !FileSystemUtil.exists( template ) ) {
+				throw new BoxRuntimeException( String.format( "The template [%s] does not exist", template ) );
+			}
+		}
+
+		IStruct job = Struct.linkedOf(
+		    ModuleKeys.destination, FileSystemUtil.expandPath( context, arguments.getAsString( ModuleKeys.destination ) ).absolutePath().toString(),
+		    Key.content, content,
+		    ModuleKeys.template, template,
+		    ModuleKeys.data, options.get( ModuleKeys.data ) != null ? StructCaster.cast( options.get( ModuleKeys.data ) ) : Struct.of(),
+		    Key.attributes, attributes
+		);
+
+		PDFSpool	spool	= PDFSpool.of( spoolDirectory( context, options ) );
+		String		id		= spool.enqueue( job );
+		if ( BooleanCaster.cast( options.getOrDefault( ModuleKeys.process, true ) ) ) {
+			spool.ensureStarted(
+			    IntegerCaster.cast( options.getOrDefault( ModuleKeys.concurrency, 1 ) ),
+			    IntegerCaster.cast( options.getOrDefault( ModuleKeys.rate, 0 ) ),
+			    IntegerCaster.cast( options.getOrDefault( ModuleKeys.maxAttempts, 3 ) ),
+			    IntegerCaster.cast( options.getOrDefault( ModuleKeys.retryDelay, 30 ) )
+			);
+		}
+		return id;
+	}
+
+	/**
+	 * Resolves the spool directory of the options
+	 *
+	 * @param context The context in which the BIF is being invoked
+	 * @param options The options, which may hold a spoolDirectory
+	 *
+	 * @return the absolute spool directory
+	 */
+	static Path spoolDirectory( IBoxContext context, IStruct options ) {
+		if ( options.get( ModuleKeys.spoolDirectory ) == null ) {
+			return PDFSpool.defaultDirectory();
+		}
+		return FileSystemUtil.expandPath( context, StringCaster.cast( options.get( ModuleKeys.spoolDirectory ) ) ).absolutePath();
+	}
+
+}
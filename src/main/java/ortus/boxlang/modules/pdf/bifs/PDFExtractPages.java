@@ -0,0 +1,106 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfReader;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.modules.pdf.util.PDFUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+
+@BoxBIF
+public class PDFExtractPages extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFExtractPages() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.source ),
+		    new Argument( true, "string", ModuleKeys.pages ),
+		    new Argument( false, "string", ModuleKeys.destination ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Extracts selected pages of a PDF document in to a new document. Only the requested page objects are read from file sources.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The PDF source. May be a binary, a file path or a PDF object produced by the `document` component
+	 *
+	 * @argument.pages The pages to extract, as a list of pages and ranges. For example: 1,3,10-20 or 5- for page five to the end of the document
+	 *
+	 * @argument.destination The file path to write the extracted pages to. If not provided the new PDF is returned as a binary
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>overwrite - If true, an existing destination file will be overwritten. Default is false</li>
+	 *                   </ul>
+	 *
+	 * @return The new PDF binary when no destination is provided
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		String	destination	= arguments.getAsString( ModuleKeys.destination );
+		IStruct	options		= arguments.getAsStruct( ModuleKeys.options );
+		boolean	overwrite	= BooleanCaster.cast( options.getOrDefault( Key.overwrite, false ) );
+
+		PdfReader reader = PDFReaderUtil.openReader( context, arguments.get( ModuleKeys.source ) );
+		try {
+			List<Integer>			pageNumbers		= PDFUtil.parsePageList( StringCaster.cast( arguments.get( ModuleKeys.pages ) ), reader.getNumberOfPages() );
+			ByteArrayOutputStream	binaryOutput	= destination == null ? new ByteArrayOutputStream() : null;
+			try ( OutputStream outputStream = destination == null ? binaryOutput : PDFReaderUtil.openOutput( context, destination, overwrite ) ) {
+				Document	extracted	= new Document();
+				PdfCopy		copy		= new PdfCopy( extracted, outputStream );
+				extracted.open();
+				for ( int pageNumber : pageNumbers ) {
+					copy.addPage( copy.getImportedPage( reader, pageNumber ) );
+				}
+				extracted.close();
+			} catch ( IOException e ) {
+				throw new BoxIOException( e );
+			}
+			return binaryOutput != null ? binaryOutput.toByteArray() : null;
+		} finally {
+			reader.close();
+		}
+	}
+
+}
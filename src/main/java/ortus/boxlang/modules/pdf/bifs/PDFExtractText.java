@@ -0,0 +1,196 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.modules.pdf.util.PDFUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.Function;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+@BoxBIF
+public class PDFExtractText extends BIF {
+
+	/**
+	 * The number of pages extracted ahead of the callback for each thread, which bounds the text held in memory
+	 */
+	private static final int PAGES_AHEAD = 2;
+
+	/**
+	 * Constructor
+	 */
+	public PDFExtractText() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.source ),
+		    new Argument( false, "string", ModuleKeys.pages ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Extracts the text of the pages of a PDF document. Pages are parsed in parallel on a fork-join pool, each thread with its own
+	 * partial reader of the document, and the text is passed to the callback in page order as it is extracted, so only a few pages of text
+	 * are held in memory at once.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The PDF source. May be a binary, a file path or a PDF object produced by the `document` component. Files are
+	 *                  memory-mapped and only the page objects which are extracted are read
+	 *
+	 * @argument.pages The pages to extract, as a list of pages and ranges. For example: 1,3,10-20 or 5- for page five to the end of the document. Default is all pages
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>callback - A function which receives the text and the number of each page, in page order. When it is provided, no text is
+	 *                   returned</li>
+	 *                   <li>concurrency - The number of pages parsed at the same time. Default is the number of processors</li>
+	 *                   </ul>
+	 *
+	 * @return An array of structs with the `page` number and its `text`, or the number of pages extracted when a callback is provided
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		IStruct	options		= arguments.getAsStruct( ModuleKeys.options );
+		Object	callback	= options.get( Key.callback );
+		int		concurrency	= IntegerCaster.cast( options.getOrDefault( ModuleKeys.concurrency, Runtime.getRuntime().availableProcessors() ) );
+		if ( callback != null && ! ( callback instanceof Function ) ) {
+			throw new BoxRuntimeException( "The callback option must be a function" );
+		}
+		if ( concurrency < 1 ) {
+			throw new BoxRuntimeException( "The concurrency option must be greater than zero" );
+		}
+
+		Supplier<PdfReader>	readers	= PDFReaderUtil.readerSupplier( context, arguments.get( ModuleKeys.source ) );
+		PdfReader			first	= readers.get();
+		List<Integer>		pageNumbers;
+		try {
+			pageNumbers = PDFUtil.parsePageList( arguments.getAsString( ModuleKeys.pages ), first.getNumberOfPages() );
+		} catch ( RuntimeException e ) {
+			first.close();
+			throw e;
+		}
+
+		// each thread borrows an idle reader, so no more readers are opened than there are threads
+		Queue<PdfReader>					idle		= new ConcurrentLinkedQueue<PdfReader>( List.of( first ) );
+		Queue<PdfReader>					opened		= new ConcurrentLinkedQueue<PdfReader>( List.of( first ) );
+		ForkJoinPool						pool		= new ForkJoinPool( Math.max( Math.min( concurrency, pageNumbers.size() ), 1 ), PDFExtractText::newThread, null, false );
+		ArrayDeque<ForkJoinTask<String>>	pending		= new ArrayDeque<ForkJoinTask<String>>();
+		Array								results		= callback == null ? new Array() : null;
+		int									window		= concurrency * PAGES_AHEAD;
+		int									submitted	= 0;
+		try {
+			for ( int i = 0; i < pageNumbers.size(); i++ ) {
+				while ( submitted < pageNumbers.size() && submitted - i < window ) {
+					int next = pageNumbers.get( submitted++ );
+					pending.add( pool.submit( () -> extract( next, readers, idle, opened ) ) );
+				}
+				int		pageNumber	= pageNumbers.get( i );
+				String	text;
+				try {
+					text = pending.poll().get();
+				} catch ( ExecutionException e ) {
+					throw new BoxRuntimeException( String.format( "The text of page %d could not be extracted: %s", pageNumber, e.getCause().getMessage() ), e.getCause() );
+				}
+				if ( callback != null ) {
+					context.invokeFunction( ( Function ) callback, new Object[] { text, pageNumber } );
+				} else {
+					results.add( Struct.of( ModuleKeys.page, pageNumber, ModuleKeys.text, text ) );
+				}
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new BoxRuntimeException( "The text extraction was interrupted", e );
+		} finally {
+			// pages still being parsed must finish before their readers, and any memory-mapped file, are closed
+			pool.shutdownNow();
+			pool.close();
+			for ( PdfReader reader : opened ) {
+				reader.close();
+			}
+		}
+		return results != null ? results : pageNumbers.size();
+	}
+
+	/**
+	 * Extracts the text of a page with an idle reader, opening a new reader when every reader is in use
+	 *
+	 * @param pageNumber The page number
+	 * @param readers    The supplier of new readers
+	 * @param idle       The readers which are not in use
+	 * @param opened     Every reader which has been opened, to be closed once the extraction is complete
+	 *
+	 * @return the text of the page
+	 */
+	private static String extract( int pageNumber, Supplier<PdfReader> readers, Queue<PdfReader> idle, Queue<PdfReader> opened ) {
+		PdfReader reader = idle.poll();
+		if ( reader == null ) {
+			reader = readers.get();
+			opened.add( reader );
+		}
+		try {
+			String text = new PdfTextExtractor( reader ).getTextFromPage( pageNumber );
+			// pages are only read once, so their parsed objects are released rather than kept in the reader
+			reader.releasePage( pageNumber );
+			return text;
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		} finally {
+			idle.add( reader );
+		}
+	}
+
+	/**
+	 * Creates a named worker thread for the text extraction pool
+	 *
+	 * @param pool The pool of the thread
+	 *
+	 * @return the thread
+	 */
+	private static ForkJoinWorkerThread newThread( ForkJoinPool pool ) {
+		ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( pool );
+		thread.setName( "bx-pdf-text-" + thread.getPoolIndex() );
+		return thread;
+	}
+
+}
@@ -0,0 +1,140 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+import ortus.boxlang.modules.pdf.util.FormTemplate;
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.modules.pdf.util.PDFUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.dynamic.casters.StructCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+@BoxBIF
+public class PDFFillForm extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFFillForm() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.template ),
+		    new Argument( true, "any", Key.data ),
+		    new Argument( false, "string", ModuleKeys.destination ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Fills the AcroForm fields of a PDF template. The template and its fields are parsed once and cached, so each fill
+	 * only stamps the values on to the cached template. An array of data structs fills a batch of forms in parallel.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.template The PDF template with the form fields. May be a binary, a file path or a PDF object produced by the `document` component
+	 *
+	 * @argument.data A struct of field values by field name, or an array of structs to fill a batch of forms. Checkboxes and radio buttons accept one of their states or a boolean
+	 *
+	 * @argument.destination The file path to write the filled form to, or the directory to write a batch to. If not provided the filled form is returned as a binary, or a batch as an array of binaries
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>flatten - If true, the field values are flattened in to the page content and the fields are removed, so they can no longer be edited. Default is false</li>
+	 *                   <li>strict - If true, a value for a field which the template does not have is an error. Otherwise it is ignored. Default is true</li>
+	 *                   <li>prefix - The file name prefix of the forms of a batch. Defaults to the template file name, or "form"</li>
+	 *                   <li>overwrite - If true, existing destination files will be overwritten. Default is false</li>
+	 *                   <li>concurrency - The number of forms of a batch filled at the same time. Default is the number of processors</li>
+	 *                   </ul>
+	 *
+	 * @return The filled form binary when no destination is provided. For a batch, an array of the filled binaries, or of the paths written when a destination is provided
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		Object			templateSource	= arguments.get( ModuleKeys.template );
+		Object			data			= arguments.get( Key.data );
+		String			destination		= arguments.getAsString( ModuleKeys.destination );
+		IStruct			options			= arguments.getAsStruct( ModuleKeys.options );
+		boolean			flatten			= BooleanCaster.cast( options.getOrDefault( ModuleKeys.flatten, false ) );
+		boolean			strict			= BooleanCaster.cast( options.getOrDefault( ModuleKeys.strict, true ) );
+		boolean			overwrite		= BooleanCaster.cast( options.getOrDefault( Key.overwrite, false ) );
+		FormTemplate	template		= FormTemplate.of( context, templateSource );
+
+		if ( ! ( data instanceof Array records ) ) {
+			return fill( context, template, StructCaster.cast( data ), destination, flatten, strict, overwrite );
+		}
+
+		// A batch is written to numbered files in the destination directory
+		String	prefix		= StringCaster.cast(
+		    options.getOrDefault( ModuleKeys.prefix, templateSource instanceof String ? PDFReaderUtil.describe( templateSource, 0 ) : "form" )
+		);
+		Path	directory	= destination != null ? FileSystemUtil.expandPath( context, destination ).absolutePath() : null;
+		int		concurrency	= IntegerCaster.cast( options.getOrDefault( ModuleKeys.concurrency, Runtime.getRuntime().availableProcessors() ) );
+		if ( directory != null && !FileSystemUtil.exists( directory.toString() ) ) {
+			FileSystemUtil.createDirectory( directory.toString(), true, null );
+		}
+		return PDFUtil.runBatch( records.size(), concurrency, "bx-pdf-fill", i -> {
+			String	formDestination	= directory != null ? directory.resolve( prefix + "_" + ( i + 1 ) + ".pdf" ).toString() : null;
+			byte[]	filled			= fill( context, template, StructCaster.cast( records.get( i ) ), formDestination, flatten, strict, overwrite );
+			return formDestination != null ? formDestination : filled;
+		} );
+	}
+
+	/**
+	 * Fills a single form
+	 *
+	 * @param context     The context used to expand relative paths
+	 * @param template    The parsed template
+	 * @param values      The field values
+	 * @param destination The file path to write the filled form to, or null to return it as a binary
+	 * @param flatten     Whether the fields are flattened in to the page content
+	 * @param strict      Whether a value for an unknown field is an error
+	 * @param overwrite   Whether an existing destination file may be overwritten
+	 *
+	 * @return the filled form binary when no destination is provided
+	 */
+	private static byte[] fill( IBoxContext context, FormTemplate template, IStruct values, String destination, boolean flatten, boolean strict,
+	    boolean overwrite ) {
+		ByteArrayOutputStream binaryOutput = destination == null ? new ByteArrayOutputStream() : null;
+		try ( OutputStream outputStream = destination == null ? binaryOutput : PDFReaderUtil.openOutput( context, destination, overwrite ) ) {
+			template.fill( values, outputStream, flatten, strict );
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+		return binaryOutput != null ? binaryOutput.toByteArray() : null;
+	}
+
+}
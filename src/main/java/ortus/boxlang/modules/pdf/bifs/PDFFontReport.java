@@ -0,0 +1,118 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+@BoxBIF
+public class PDFFontReport extends BIF {
+
+	/**
+	 * The font file entries of a font descriptor
+	 */
+	private static final PdfName[] FONT_FILES = new PdfName[] { PdfName.FONTFILE, PdfName.FONTFILE2, PdfName.FONTFILE3 };
+
+	/**
+	 * Constructor
+	 */
+	public PDFFontReport() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.source )
+		};
+	}
+
+	/**
+	 * Reports the fonts used by a PDF document and the number of bytes each embedded font adds to the document.
+	 * Only the font dictionaries are read, the font programs themselves are not loaded.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The PDF source. May be a binary, a file path or a PDF object produced by the `document` component
+	 *
+	 * @return An array of structs containing the keys name, embedded, subset and bytes, ordered by the bytes of each font, largest first
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		PdfReader			reader	= PDFReaderUtil.openReader( context, arguments.get( ModuleKeys.source ) );
+		Map<String, IStruct>	fonts	= new LinkedHashMap<String, IStruct>();
+		try {
+			for ( int i = 1; i < reader.getXrefSize(); i++ ) {
+				PdfObject object = reader.getPdfObjectRelease( i );
+				if ( ! ( object instanceof PdfDictionary font ) || !PdfName.FONT.equals( font.get( PdfName.TYPE ) )
+				    || PdfName.TYPE0.equals( font.get( PdfName.SUBTYPE ) ) || font.getAsName( PdfName.BASEFONT ) == null ) {
+					continue;
+				}
+
+				// Subset fonts are named with a six letter tag, such as ABCDEF+Font
+				String	baseFont	= PdfName.decodeName( font.getAsName( PdfName.BASEFONT ).toString() );
+				boolean	subset		= baseFont.length() > 7 && baseFont.charAt( 6 ) == '+' && baseFont.substring( 0, 6 ).matches( "[A-Z]{6}" );
+				String	name		= subset ? baseFont.substring( 7 ) : baseFont;
+				long	bytes		= 0;
+
+				PdfDictionary descriptor = font.getAsDict( PdfName.FONTDESCRIPTOR );
+				if ( descriptor != null ) {
+					for ( PdfName fontFile : FONT_FILES ) {
+						if ( PdfReader.getPdfObjectRelease( descriptor.get( fontFile ) ) instanceof PRStream stream ) {
+							bytes += stream.getLength();
+						}
+					}
+				}
+
+				IStruct entry = fonts.computeIfAbsent( name, fontName -> Struct.of(
+				    Key._NAME, fontName,
+				    ModuleKeys.embedded, false,
+				    ModuleKeys.subset, false,
+				    ModuleKeys.bytes, 0L
+				) );
+				entry.put( ModuleKeys.embedded, entry.getAsBoolean( ModuleKeys.embedded ) || bytes > 0 );
+				entry.put( ModuleKeys.subset, entry.getAsBoolean( ModuleKeys.subset ) || subset );
+				entry.put( ModuleKeys.bytes, ( Long ) entry.get( ModuleKeys.bytes ) + bytes );
+			}
+		} finally {
+			reader.close();
+		}
+
+		return Array.fromList(
+		    fonts.values().stream()
+		        .sorted( Comparator.comparingLong( ( IStruct entry ) -> ( Long ) entry.get( ModuleKeys.bytes ) ).reversed() )
+		        .toList()
+		);
+	}
+
+}
@@ -0,0 +1,89 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.util.Map;
+
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfReader;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+@BoxBIF
+public class PDFInfo extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFInfo() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.source )
+		};
+	}
+
+	/**
+	 * Returns the page count, version and metadata of a PDF document. File sources are memory-mapped and read partially,
+	 * so only the cross-reference table, the document information and the first page are read regardless of the size of the file.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The PDF source. May be a binary, a file path or a PDF object produced by the `document` component
+	 *
+	 * @return A struct containing the keys pageCount, version, encrypted, fileSize, pageSize and info
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		PdfReader reader = PDFReaderUtil.openReader( context, arguments.get( ModuleKeys.source ) );
+		try {
+			IStruct info = new Struct();
+			for ( Map.Entry<String, String> entry : reader.getInfo().entrySet() ) {
+				info.put( Key.of( entry.getKey() ), entry.getValue() );
+			}
+
+			IStruct pageSize = new Struct();
+			if ( reader.getNumberOfPages() > 0 ) {
+				Rectangle firstPage = reader.getPageSizeWithRotation( 1 );
+				pageSize.put( ModuleKeys.width, firstPage.getWidth() );
+				pageSize.put( ModuleKeys.height, firstPage.getHeight() );
+				reader.releasePage( 1 );
+			}
+
+			return Struct.of(
+			    ModuleKeys.pageCount, reader.getNumberOfPages(),
+			    ModuleKeys.version, "1." + reader.getPdfVersion(),
+			    ModuleKeys.encrypted, reader.isEncrypted(),
+			    ModuleKeys.fileSize, reader.getFileLength(),
+			    ModuleKeys.pageSize, pageSize,
+			    ModuleKeys.info, info
+			);
+		} finally {
+			reader.close();
+		}
+	}
+
+}
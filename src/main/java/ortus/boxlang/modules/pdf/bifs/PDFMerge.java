@@ -0,0 +1,150 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfSmartCopy;
+import com.lowagie.text.pdf.SimpleBookmark;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.validation.Validator;
+
+@BoxBIF
+public class PDFMerge extends BIF {
+
+	private static final Set<String> BOOKMARK_MODES = Set.of( "keep", "rebuild", "none" );
+
+	/**
+	 * Constructor
+	 */
+	public PDFMerge() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "array", ModuleKeys.sources, Set.of( Validator.NON_EMPTY ) ),
+		    new Argument( false, "string", ModuleKeys.destination ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Merges multiple PDF documents in to a single document. Pages are streamed from each source to the output one source at a time,
+	 * and fonts and images which are identical between the sources are written once.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.sources An array of PDF sources to merge, in order. Each source may be a binary, a file path or a PDF object produced by the `document` component
+	 *
+	 * @argument.destination The file path to write the merged PDF to. If not provided the merged PDF is returned as a binary
+	 *
+	 * @argument.options A struct of merge options:
+	 *                   <ul>
+	 *                   <li>smart - If true, identical fonts and images are shared between sources. Default is true</li>
+	 *                   <li>bookmarks - keep|rebuild|none. Keep the bookmarks of each source, create one bookmark per source, or omit bookmarks. Default is keep</li>
+	 *                   <li>overwrite - If true, an existing destination file will be overwritten. Default is false</li>
+	 *                   </ul>
+	 *
+	 * @return The merged PDF binary when no destination is provided
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		Array	sources			= arguments.getAsArray( ModuleKeys.sources );
+		String	destination		= arguments.getAsString( ModuleKeys.destination );
+		IStruct	options			= arguments.getAsStruct( ModuleKeys.options );
+		boolean	smart			= BooleanCaster.cast( options.getOrDefault( ModuleKeys.smart, true ) );
+		boolean	overwrite		= BooleanCaster.cast( options.getOrDefault( Key.overwrite, false ) );
+		String	bookmarkMode	= StringCaster.cast( options.getOrDefault( ModuleKeys.bookmarks, "keep" ) ).toLowerCase();
+
+		if ( !BOOKMARK_MODES.contains( bookmarkMode ) ) {
+			throw new BoxRuntimeException( String.format( "The bookmarks option [%s] is not valid. Valid options are keep, rebuild or none", bookmarkMode ) );
+		}
+
+		ByteArrayOutputStream binaryOutput = destination == null ? new ByteArrayOutputStream() : null;
+		try ( OutputStream outputStream = destination == null ? binaryOutput : PDFReaderUtil.openOutput( context, destination, overwrite ) ) {
+			Document					merged		= new Document();
+			PdfCopy						copy		= smart ? new PdfSmartCopy( merged, outputStream ) : new PdfCopy( merged, outputStream );
+			List<Map<String, Object>>	outlines	= new ArrayList<Map<String, Object>>();
+			int							pageOffset	= 0;
+
+			merged.open();
+			for ( int idx = 0; idx < sources.size(); idx++ ) {
+				Object		source	= sources.get( idx );
+				PdfReader	reader	= PDFReaderUtil.openReader( context, source );
+				try {
+					int pageCount = reader.getNumberOfPages();
+					if ( bookmarkMode.equals( "keep" ) ) {
+						List<Map<String, Object>> sourceOutlines = SimpleBookmark.getBookmarkList( reader );
+						if ( sourceOutlines != null ) {
+							SimpleBookmark.shiftPageNumbersInRange( sourceOutlines, pageOffset, null );
+							outlines.addAll( sourceOutlines );
+						}
+					} else if ( bookmarkMode.equals( "rebuild" ) ) {
+						Map<String, Object> outline = new HashMap<String, Object>();
+						outline.put( "Title", PDFReaderUtil.describe( source, idx ) );
+						outline.put( "Action", "GoTo" );
+						outline.put( "Page", ( pageOffset + 1 ) + " Fit" );
+						outlines.add( outline );
+					}
+					for ( int i = 1; i <= pageCount; i++ ) {
+						copy.addPage( copy.getImportedPage( reader, i ) );
+					}
+					pageOffset += pageCount;
+					// Release the objects of this source before moving on to the next
+					copy.freeReader( reader );
+				} finally {
+					reader.close();
+				}
+			}
+
+			if ( !outlines.isEmpty() ) {
+				copy.setOutlines( outlines );
+			}
+			merged.close();
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+
+		return binaryOutput != null ? binaryOutput.toByteArray() : null;
+	}
+
+}
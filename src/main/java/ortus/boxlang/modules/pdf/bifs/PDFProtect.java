@@ -0,0 +1,122 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfStamper;
+import com.lowagie.text.pdf.PdfWriter;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.modules.pdf.util.PDFUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+@BoxBIF
+public class PDFProtect extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFProtect() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.source ),
+		    new Argument( true, "struct", ModuleKeys.protection ),
+		    new Argument( false, "string", ModuleKeys.destination ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Encrypts an existing PDF with passwords and permissions. The pages are copied as they are, without being laid out again,
+	 * so a document may be rendered once and protected for each recipient.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The PDF source. May be a binary, a file path or a PDF object produced by the `document` component. Encrypted sources are not supported
+	 *
+	 * @argument.protection A struct describing the protection:
+	 *                      <ul>
+	 *                      <li>openPassword - The password required to open the document. Default is none, so the document opens without a password</li>
+	 *                      <li>ownerPassword - The password which grants every permission. Default is a random password</li>
+	 *                      <li>permissions - A comma-delimited list of the permissions granted without the ownerPassword. Possible values are AllowPrinting, AllowDegradedPrinting, AllowModifyContents, AllowCopy, AllowModifyAnnotations, AllowFillIn, AllowScreenReaders, AllowAssembly, all and none. Default is none</li>
+	 *                      <li>algorithm - The encryption algorithm. Possible values are aes-256, aes-128, 128-bit and 40-bit. Default is aes-128</li>
+	 *                      </ul>
+	 *
+	 * @argument.destination The file path to write the protected PDF to. If not provided the protected PDF is returned as a binary
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>overwrite - If true, an existing destination file will be overwritten. Default is false</li>
+	 *                   </ul>
+	 *
+	 * @return The protected PDF binary when no destination is provided
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		Object	source			= arguments.get( ModuleKeys.source );
+		IStruct	protection		= arguments.getAsStruct( ModuleKeys.protection );
+		String	destination		= arguments.getAsString( ModuleKeys.destination );
+		IStruct	options			= arguments.getAsStruct( ModuleKeys.options );
+		boolean	overwrite		= BooleanCaster.cast( options.getOrDefault( Key.overwrite, false ) );
+		int		encryptionType	= PDFUtil.parseEncryptionType( StringCaster.cast( protection.getOrDefault( ModuleKeys.algorithm, "aes-128" ) ) );
+		int		permissions		= PDFUtil.parsePermissions( StringCaster.cast( protection.getOrDefault( ModuleKeys.permissions, "none" ) ) );
+		byte[]	openPassword	= protection.get( ModuleKeys.openpassword ) != null ? StringCaster.cast( protection.get( ModuleKeys.openpassword ) ).getBytes() : null;
+		byte[]	ownerPassword	= protection.get( ModuleKeys.ownerPassword ) != null ? StringCaster.cast( protection.get( ModuleKeys.ownerPassword ) ).getBytes() : null;
+
+		if ( encryptionType == PdfWriter.ENCRYPTION_NONE ) {
+			throw new BoxRuntimeException( "The algorithm must be one of aes-256, aes-128, 128-bit or 40-bit" );
+		}
+
+		PdfReader reader = PDFReaderUtil.openReader( context, source );
+		if ( reader.isEncrypted() ) {
+			reader.close();
+			throw new BoxRuntimeException( "The PDF source is already encrypted" );
+		}
+
+		ByteArrayOutputStream binaryOutput = destination == null ? new ByteArrayOutputStream() : null;
+		try ( OutputStream outputStream = destination == null ? binaryOutput : PDFReaderUtil.openOutput( context, destination, overwrite ) ) {
+			PdfStamper stamper = new PdfStamper( reader, outputStream );
+			stamper.setEncryption( openPassword, ownerPassword, permissions, encryptionType );
+			stamper.close();
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		} finally {
+			reader.close();
+		}
+
+		return binaryOutput != null ? binaryOutput.toByteArray() : null;
+	}
+
+}
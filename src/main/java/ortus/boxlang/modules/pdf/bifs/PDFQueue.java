@@ -0,0 +1,94 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.util.Set;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFSpool;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.validation.Validator;
+
+@BoxBIF
+public class PDFQueue extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFQueue() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( false, "string", ModuleKeys.action, "status", Set.of( Validator.valueOneOf( "start", "stop", "status", "retry" ) ) ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Controls the processing of a PDF spool directory, to which jobs are added by `pdfEnqueue()`. Processing is started
+	 * by `pdfEnqueue()`, so starting it here is only needed to resume the jobs left in the spool after a restart, or to
+	 * process a spool on a dedicated server while other servers only enqueue jobs.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.action The action to take. Default is status. Possible values are:
+	 *                  <ul>
+	 *                  <li>start - Starts processing the spool, or changes the rate and retry settings of a spool which is already processed. Jobs interrupted by a restart count as a failed attempt and are retried</li>
+	 *                  <li>stop - Stops starting new jobs. Jobs being rendered are finished and pending jobs stay in the spool</li>
+	 *                  <li>status - Reports the spool only</li>
+	 *                  <li>retry - Returns the quarantined jobs to the pending jobs, with their attempts reset</li>
+	 *                  </ul>
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>spoolDirectory - The spool directory. Defaults to bx-pdf/spool in the BoxLang home</li>
+	 *                   <li>concurrency - The number of jobs rendered at once. Default is 1</li>
+	 *                   <li>rate - The maximum number of jobs started per minute. Default is 0, for no limit</li>
+	 *                   <li>maxAttempts - The number of attempts after which a failing job is quarantined. Default is 3</li>
+	 *                   <li>retryDelay - The delay, in seconds, before a failed job is retried, which doubles with each attempt. Default is 30</li>
+	 *                   </ul>
+	 *
+	 * @return A struct of the spoolDirectory, whether it is running, its concurrency and rate, the number of pending, working and failed jobs, and the number of jobs processed, retried and quarantined since processing started
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		IStruct		options	= arguments.getAsStruct( ModuleKeys.options );
+		PDFSpool	spool	= PDFSpool.of( PDFEnqueue.spoolDirectory( context, options ) );
+		switch ( arguments.getAsString( ModuleKeys.action ).toLowerCase() ) {
+			case "start" -> spool.start(
+			    IntegerCaster.cast( options.getOrDefault( ModuleKeys.concurrency, 1 ) ),
+			    IntegerCaster.cast( options.getOrDefault( ModuleKeys.rate, 0 ) ),
+			    IntegerCaster.cast( options.getOrDefault( ModuleKeys.maxAttempts, 3 ) ),
+			    IntegerCaster.cast( options.getOrDefault( ModuleKeys.retryDelay, 30 ) )
+			);
+			case "stop" -> spool.stop();
+			case "retry" -> spool.retryFailed();
+			default -> {
+				// status only
+			}
+		}
+		return spool.status();
+	}
+
+}
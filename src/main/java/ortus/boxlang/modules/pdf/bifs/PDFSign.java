@@ -0,0 +1,172 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+import com.lowagie.text.pdf.PdfReader;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.modules.pdf.util.PDFSigner;
+import ortus.boxlang.modules.pdf.util.PDFUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+@BoxBIF
+public class PDFSign extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFSign() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.source ),
+		    new Argument( true, "struct", ModuleKeys.signature ),
+		    new Argument( false, "string", ModuleKeys.destination ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Signs one or more existing PDFs with the key of a keystore. The keystore is read and its key decrypted once and
+	 * then cached, so later calls with the same keystore settings only sign. An array of sources is signed in parallel.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The PDF source, or an array of sources to sign as a batch. A source may be a binary, a file path or a PDF object produced by the `document` component
+	 *
+	 * @argument.signature A struct describing the signature:
+	 *                     <ul>
+	 *                     <li>keystore - The path of the keystore file. Required</li>
+	 *                     <li>keystorePassword - The password of the keystore</li>
+	 *                     <li>keystoreType - The type of the keystore. Default is PKCS12</li>
+	 *                     <li>alias - The alias of the key entry. Default is the first key entry</li>
+	 *                     <li>keyPassword - The password of the key entry. Default is the keystorePassword</li>
+	 *                     <li>reason - The reason for signing</li>
+	 *                     <li>location - The location of signing</li>
+	 *                     <li>contact - The contact details of the signer</li>
+	 *                     <li>fieldName - The name of the signature field. Default is Signature followed by a number</li>
+	 *                     <li>digestAlgorithm - The digest algorithm. Default is SHA-256</li>
+	 *                     <li>tsaUrl - The URL of an RFC 3161 timestamp authority whose timestamp is embedded in the signature</li>
+	 *                     <li>tsaUsername and tsaPassword - The credentials of the timestamp authority</li>
+	 *                     </ul>
+	 *
+	 * @argument.destination The file path to write the signed PDF to, or the directory to write a batch to. If not provided the signed PDF is returned as a binary, or a batch as an array of binaries
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>append - If true, the signature is written as an incremental update, which keeps earlier signatures valid. When the destination is the source file, only the new objects are appended to it. Default is false</li>
+	 *                   <li>overwrite - If true, existing destination files will be overwritten. Default is false</li>
+	 *                   <li>concurrency - The number of documents of a batch signed at the same time. Default is the number of processors</li>
+	 *                   </ul>
+	 *
+	 * @return The signed PDF binary when no destination is provided. For a batch, an array of the signed binaries, or of the paths written when a destination is provided
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		Object		source		= arguments.get( ModuleKeys.source );
+		IStruct		signature	= new Struct( arguments.getAsStruct( ModuleKeys.signature ) );
+		String		destination	= arguments.getAsString( ModuleKeys.destination );
+		IStruct		options		= arguments.getAsStruct( ModuleKeys.options );
+		boolean		append		= BooleanCaster.cast( options.getOrDefault( ModuleKeys.append, false ) );
+		boolean		overwrite	= BooleanCaster.cast( options.getOrDefault( Key.overwrite, false ) );
+
+		if ( signature.get( ModuleKeys.keystore ) == null ) {
+			throw new BoxRuntimeException( "The signature must contain the keystore key" );
+		}
+		signature.put( ModuleKeys.keystore, PDFReaderUtil.resolvePath( context, signature.getAsString( ModuleKeys.keystore ) ) );
+		PDFSigner signer = PDFSigner.of( signature );
+
+		if ( ! ( source instanceof Array sources ) ) {
+			return sign( context, signer, signature, source, destination, append, overwrite );
+		}
+
+		// A batch is written to files in the destination directory, named after their sources
+		Path	directory	= destination != null ? FileSystemUtil.expandPath( context, destination ).absolutePath() : null;
+		int		concurrency	= IntegerCaster.cast( options.getOrDefault( ModuleKeys.concurrency, Runtime.getRuntime().availableProcessors() ) );
+		if ( directory != null && !FileSystemUtil.exists( directory.toString() ) ) {
+			FileSystemUtil.createDirectory( directory.toString(), true, null );
+		}
+		return PDFUtil.runBatch( sources.size(), concurrency, "bx-pdf-sign", i -> {
+			Object	batchSource			= sources.get( i );
+			String	batchDestination	= directory == null ? null
+			    : directory.resolve( ( batchSource instanceof String ? PDFReaderUtil.describe( batchSource, i ) : "document_" + ( i + 1 ) ) + ".pdf" )
+			        .toString();
+			byte[]	signed				= sign( context, signer, signature, batchSource, batchDestination, append, overwrite );
+			return batchDestination != null ? batchDestination : signed;
+		} );
+	}
+
+	/**
+	 * Signs a single PDF
+	 *
+	 * @param context     The context used to expand relative paths
+	 * @param signer      The signer of the keystore entry
+	 * @param signature   The signature settings
+	 * @param source      The PDF source
+	 * @param destination The file path to write the signed PDF to, or null to return it as a binary
+	 * @param append      Whether the signature is written as an incremental update
+	 * @param overwrite   Whether an existing destination file may be overwritten
+	 *
+	 * @return the signed PDF binary when no destination is provided
+	 */
+	private static byte[] sign( IBoxContext context, PDFSigner signer, IStruct signature, Object source, String destination, boolean append,
+	    boolean overwrite ) {
+		// An append to the source file itself is written as an incremental update in place
+		String inPlacePath = null;
+		if ( append && destination != null && source instanceof String sourcePath ) {
+			String resolvedSource = PDFReaderUtil.resolvePath( context, sourcePath );
+			if ( resolvedSource.equals( PDFReaderUtil.resolveDestination( context, destination ) ) ) {
+				inPlacePath = resolvedSource;
+			}
+		}
+
+		PdfReader				reader			= PDFReaderUtil.openReader( context, source, inPlacePath == null );
+		ByteArrayOutputStream	binaryOutput	= destination == null ? new ByteArrayOutputStream() : null;
+		try (
+		    OutputStream outputStream = inPlacePath != null ? PDFReaderUtil.openIncrementalOutput( inPlacePath )
+		        : destination == null ? binaryOutput : PDFReaderUtil.openOutput( context, destination, overwrite ) ) {
+			signer.sign( reader, outputStream, signature, append );
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		} finally {
+			reader.close();
+		}
+
+		return binaryOutput != null ? binaryOutput.toByteArray() : null;
+	}
+
+}
@@ -0,0 +1,128 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Set;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfReader;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+import ortus.boxlang.runtime.validation.Validator;
+
+@BoxBIF
+public class PDFSplit extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFSplit() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.source ),
+		    new Argument( true, "string", ModuleKeys.destination, Set.of( Validator.NON_EMPTY ) ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Splits a PDF document in to multiple documents written to a directory. Each output document is streamed to disk
+	 * as it is completed and its pages are released before the next document is started.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The PDF source. May be a binary, a file path or a PDF object produced by the `document` component
+	 *
+	 * @argument.destination The directory to write the split documents to. The directory will be created if it does not exist
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>pagesPerFile - The number of pages in each split document. Default is 1</li>
+	 *                   <li>prefix - The file name prefix of the split documents. Defaults to the source file name, or "page"</li>
+	 *                   <li>overwrite - If true, existing files will be overwritten. Default is false</li>
+	 *                   </ul>
+	 *
+	 * @return An array of the paths of the split documents
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		Object	source			= arguments.get( ModuleKeys.source );
+		IStruct	options			= arguments.getAsStruct( ModuleKeys.options );
+		int		pagesPerFile	= IntegerCaster.cast( options.getOrDefault( ModuleKeys.pagesPerFile, 1 ) );
+		boolean	overwrite		= BooleanCaster.cast( options.getOrDefault( Key.overwrite, false ) );
+		String	prefix			= StringCaster.cast(
+		    options.getOrDefault( ModuleKeys.prefix, source instanceof String ? PDFReaderUtil.describe( source, 0 ) : "page" )
+		);
+		Path	directory		= FileSystemUtil.expandPath( context, arguments.getAsString( ModuleKeys.destination ) ).absolutePath();
+
+		if ( pagesPerFile < 1 ) {
+			throw new BoxRuntimeException( "The pagesPerFile option must be greater than zero" );
+		}
+		if ( !FileSystemUtil.exists( directory.toString() ) ) {
+			FileSystemUtil.createDirectory( directory.toString(), true, null );
+		}
+
+		Array		files	= new Array();
+		PdfReader	reader	= PDFReaderUtil.openReader( context, source );
+		try {
+			int pageCount = reader.getNumberOfPages();
+			for ( int start = 1; start <= pageCount; start += pagesPerFile ) {
+				int		end			= Math.min( start + pagesPerFile - 1, pageCount );
+				String	fileName	= directory.resolve( prefix + "_" + ( start == end ? start : start + "-" + end ) + ".pdf" ).toString();
+				try ( OutputStream outputStream = PDFReaderUtil.openOutput( context, fileName, overwrite ) ) {
+					Document	chunk	= new Document();
+					PdfCopy		copy	= new PdfCopy( chunk, outputStream );
+					chunk.open();
+					for ( int pageNumber = start; pageNumber <= end; pageNumber++ ) {
+						copy.addPage( copy.getImportedPage( reader, pageNumber ) );
+					}
+					// Release the pages of this chunk before the next one is read
+					copy.freeReader( reader );
+					chunk.close();
+				} catch ( IOException e ) {
+					throw new BoxIOException( e );
+				}
+				files.add( fileName );
+			}
+		} finally {
+			reader.close();
+		}
+		return files;
+	}
+
+}
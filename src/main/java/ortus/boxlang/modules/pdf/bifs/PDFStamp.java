@@ -0,0 +1,238 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+import com.lowagie.text.Element;
+import com.lowagie.text.Image;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfContentByte;
+import com.lowagie.text.pdf.PdfGState;
+import com.lowagie.text.pdf.PdfImportedPage;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfStamper;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFReaderUtil;
+import ortus.boxlang.modules.pdf.util.PDFUtil;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.DoubleCaster;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+@BoxBIF
+public class PDFStamp extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PDFStamp() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", ModuleKeys.source ),
+		    new Argument( true, "struct", ModuleKeys.stamp ),
+		    new Argument( false, "string", ModuleKeys.destination ),
+		    new Argument( false, "struct", ModuleKeys.options, Struct.of() )
+		};
+	}
+
+	/**
+	 * Overlays text, an image or a page of another PDF on to selected pages of an existing PDF
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The PDF source. May be a binary, a file path or a PDF object produced by the `document` component
+	 *
+	 * @argument.stamp A struct describing the stamp. One of text, image or pdf is required:
+	 *                 <ul>
+	 *                 <li>text - The text to stamp. The tokens {page} and {pages} are replaced with the page number and page count</li>
+	 *                 <li>image - The image to stamp, as a file path or binary</li>
+	 *                 <li>pdf - A PDF source whose page is stamped</li>
+	 *                 <li>pdfPage - The page of the pdf source to stamp. Default is 1</li>
+	 *                 <li>pages - The pages to stamp, such as 1,3,10-20. Default is all pages</li>
+	 *                 <li>x - The horizontal position of the center of the stamp, in points from the left of the page. Default is the center of the page</li>
+	 *                 <li>y - The vertical position of the center of the stamp, in points from the bottom of the page. Default is the center of the page</li>
+	 *                 <li>rotation - The counter-clockwise rotation of the stamp in degrees. Default is 0</li>
+	 *                 <li>opacity - The opacity of the stamp from 0 to 1. Default is 1</li>
+	 *                 <li>scale - The percentage to scale an image or pdf stamp. Default is 100</li>
+	 *                 <li>fontSize - The font size of a text stamp. Default is 36</li>
+	 *                 <li>color - The hex color of a text stamp. Default is #808080</li>
+	 *                 <li>underlay - If true, the stamp is placed beneath the page content. Default is false</li>
+	 *                 </ul>
+	 *
+	 * @argument.destination The file path to write the stamped PDF to. If not provided the stamped PDF is returned as a binary
+	 *
+	 * @argument.options A struct of options:
+	 *                   <ul>
+	 *                   <li>append - If true, the stamp is written as an incremental update after the original content. When the destination is the source file, only the new objects are appended to it. Default is false</li>
+	 *                   <li>overwrite - If true, an existing destination file will be overwritten. Default is false</li>
+	 *                   </ul>
+	 *
+	 * @return The stamped PDF binary when no destination is provided
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		Object	source		= arguments.get( ModuleKeys.source );
+		IStruct	stamp		= arguments.getAsStruct( ModuleKeys.stamp );
+		String	destination	= arguments.getAsString( ModuleKeys.destination );
+		IStruct	options		= arguments.getAsStruct( ModuleKeys.options );
+		boolean	append		= BooleanCaster.cast( options.getOrDefault( ModuleKeys.append, false ) );
+		boolean	overwrite	= BooleanCaster.cast( options.getOrDefault( Key.overwrite, false ) );
+
+		if ( stamp.get( ModuleKeys.text ) == null && stamp.get( ModuleKeys.image ) == null && stamp.get( ModuleKeys.pdf ) == null ) {
+			throw new BoxRuntimeException( "The stamp must contain one of the keys text, image or pdf" );
+		}
+
+		// An append to the source file itself is written as an incremental update in place
+		String	inPlacePath	= null;
+		if ( append && destination != null && source instanceof String sourcePath ) {
+			String resolvedSource = PDFReaderUtil.resolvePath( context, sourcePath );
+			if ( resolvedSource.equals( PDFReaderUtil.resolveDestination( context, destination ) ) ) {
+				inPlacePath = resolvedSource;
+			}
+		}
+
+		PdfReader				reader			= PDFReaderUtil.openReader( context, source, inPlacePath == null );
+		PdfReader				overlayReader	= null;
+		ByteArrayOutputStream	binaryOutput	= destination == null ? new ByteArrayOutputStream() : null;
+		try (
+		    OutputStream outputStream = inPlacePath != null ? PDFReaderUtil.openIncrementalOutput( inPlacePath )
+		        : destination == null ? binaryOutput : PDFReaderUtil.openOutput( context, destination, overwrite ) ) {
+			PdfStamper	stamper		= new PdfStamper( reader, outputStream, '\0', append );
+			int			pageCount	= reader.getNumberOfPages();
+
+			// Resolve the stamp content once so that it is written to the document a single time and referenced from each page
+			Image		image		= null;
+			PdfImportedPage overlay	= null;
+			BaseFont	font		= null;
+			if ( stamp.get( ModuleKeys.image ) != null ) {
+				Object imageSource = stamp.get( ModuleKeys.image );
+				image = imageSource instanceof byte[] bytes
+				    ? Image.getInstance( bytes )
+				    : Image.getInstance( PDFReaderUtil.resolvePath( context, StringCaster.cast( imageSource ) ) );
+			} else if ( stamp.get( ModuleKeys.pdf ) != null ) {
+				overlayReader	= PDFReaderUtil.openReader( context, stamp.get( ModuleKeys.pdf ) );
+				overlay			= stamper.getImportedPage( overlayReader, IntegerCaster.cast( stamp.getOrDefault( ModuleKeys.pdfPage, 1 ) ) );
+			} else {
+				font = BaseFont.createFont( BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED );
+			}
+
+			double	rotation	= Math.toRadians( DoubleCaster.cast( stamp.getOrDefault( ModuleKeys.rotation, 0 ) ) );
+			float	opacity		= DoubleCaster.cast( stamp.getOrDefault( ModuleKeys.opacity, 1 ) ).floatValue();
+			float	scale		= DoubleCaster.cast( stamp.getOrDefault( Key.scale, 100 ) ).floatValue() / 100f;
+			boolean	underlay	= BooleanCaster.cast( stamp.getOrDefault( ModuleKeys.underlay, false ) );
+
+			List<Integer> pageNumbers = PDFUtil.parsePageList( stamp.getAsString( ModuleKeys.pages ), pageCount );
+			for ( int pageNumber : pageNumbers ) {
+				Rectangle		pageBox	= reader.getPageSizeWithRotation( pageNumber );
+				float			centerX	= pageBox.getLeft() + ( stamp.get( ModuleKeys.x ) != null
+				    ? DoubleCaster.cast( stamp.get( ModuleKeys.x ) ).floatValue()
+				    : pageBox.getWidth() / 2 );
+				float			centerY	= pageBox.getBottom() + ( stamp.get( ModuleKeys.y ) != null
+				    ? DoubleCaster.cast( stamp.get( ModuleKeys.y ) ).floatValue()
+				    : pageBox.getHeight() / 2 );
+				PdfContentByte	canvas	= underlay ? stamper.getUnderContent( pageNumber ) : stamper.getOverContent( pageNumber );
+
+				canvas.saveState();
+				if ( opacity < 1 ) {
+					PdfGState state = new PdfGState();
+					state.setFillOpacity( opacity );
+					state.setStrokeOpacity( opacity );
+					canvas.setGState( state );
+				}
+
+				if ( image != null ) {
+					float[] matrix = centeredMatrix( image.getWidth() * scale, image.getHeight() * scale, 1, 1, rotation, centerX, centerY );
+					canvas.addImage( image, matrix[ 0 ], matrix[ 1 ], matrix[ 2 ], matrix[ 3 ], matrix[ 4 ], matrix[ 5 ] );
+				} else if ( overlay != null ) {
+					float[] matrix = centeredMatrix( scale, scale, overlay.getWidth(), overlay.getHeight(), rotation, centerX, centerY );
+					canvas.addTemplate( overlay, matrix[ 0 ], matrix[ 1 ], matrix[ 2 ], matrix[ 3 ], matrix[ 4 ], matrix[ 5 ] );
+				} else {
+					String text = StringCaster.cast( stamp.get( ModuleKeys.text ) )
+					    .replace( "{page}", String.valueOf( pageNumber ) )
+					    .replace( "{pages}", String.valueOf( pageCount ) );
+					canvas.beginText();
+					canvas.setFontAndSize( font, DoubleCaster.cast( stamp.getOrDefault( ModuleKeys.fontSize, 36 ) ).floatValue() );
+					canvas.setColorFill( Color.decode( StringCaster.cast( stamp.getOrDefault( ModuleKeys.color, "#808080" ) ) ) );
+					canvas.showTextAligned( Element.ALIGN_CENTER, text, centerX, centerY, ( float ) Math.toDegrees( rotation ) );
+					canvas.endText();
+				}
+				canvas.restoreState();
+			}
+
+			stamper.close();
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		} finally {
+			reader.close();
+			if ( overlayReader != null ) {
+				overlayReader.close();
+			}
+		}
+
+		return binaryOutput != null ? binaryOutput.toByteArray() : null;
+	}
+
+	/**
+	 * Creates a transformation matrix which scales and rotates content about its center and places the center at a point
+	 *
+	 * @param scaleX   The horizontal scale
+	 * @param scaleY   The vertical scale
+	 * @param width    The unscaled width of the content
+	 * @param height   The unscaled height of the content
+	 * @param rotation The rotation in radians
+	 * @param centerX  The horizontal position of the center
+	 * @param centerY  The vertical position of the center
+	 *
+	 * @return the six matrix values a, b, c, d, e, f
+	 */
+	private static float[] centeredMatrix( float scaleX, float scaleY, float width, float height, double rotation, float centerX, float centerY ) {
+		float	cos	= ( float ) Math.cos( rotation );
+		float	sin	= ( float ) Math.sin( rotation );
+		float	a	= scaleX * cos;
+		float	b	= scaleX * sin;
+		float	c	= -scaleY * sin;
+		float	d	= scaleY * cos;
+		return new float[] {
+		    a,
+		    b,
+		    c,
+		    d,
+		    centerX - ( a * width + c * height ) / 2,
+		    centerY - ( b * width + d * height ) / 2
+		};
+	}
+
+}
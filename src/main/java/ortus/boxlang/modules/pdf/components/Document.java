@@ -18,6 +18,9 @@
  */
 package ortus.boxlang.modules.pdf.components;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -31,6 +34,7 @@ import ortus.boxlang.runtime.context.IBoxContext;
 import ortus.boxlang.runtime.dynamic.ExpressionInterpreter;
 import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
 import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.dynamic.casters.StructCaster;
 import ortus.boxlang.runtime.scopes.Key;
 import ortus.boxlang.runtime.types.Array;
 import ortus.boxlang.runtime.types.IStruct;
@@ -51,7 +55,7 @@ public class Document extends Component {
 		// Uncomment and define declare argument to this Component
 		declaredAttributes = new Attribute[] {
 		    new Attribute( Key.format, "string", "pdf", Set.of( Validator.valueOneOf( "pdf", "PDF" ) ) ), // "PDF|FlashPaper"
-		    new Attribute( ModuleKeys.encryption, "string", "none" ), // "128-bit|40-bit|none"
+		    new Attribute( ModuleKeys.encryption, "string", "none" ), // "aes-256|aes-128|128-bit|40-bit|none"
 		    new Attribute( ModuleKeys.localUrl, "boolean", false ), // "yes|no"
 		    new Attribute( Key.variable, "string" ), // "output variable name"
 
@@ -65,6 +69,9 @@ public class Document extends Component {
 		    // hyperlinks to PDF hyperlinks (if not explicitly disabled). Hyperlink jumps
 		    // within the same
 		    // document are supported as well
+		    new Attribute( ModuleKeys.cacheSections, "boolean", false ), // "yes|no"
+		    new Attribute( ModuleKeys.chunkSize, "integer" ), // "number of blocks or table rows"
+		    new Attribute( ModuleKeys.mailMerge, "boolean", false ), // "yes|no"
 
 		    // Formatting attributes
 		    new Attribute( ModuleKeys.orientation, "string", "portrait",
@@ -76,14 +83,43 @@ public class Document extends Component {
 		    new Attribute( ModuleKeys.marginTop, "double" ), // "number"
 		    new Attribute( ModuleKeys.pageWidth, "double" ), // "page width in inches"
 		    new Attribute( ModuleKeys.pageHeight, "double" ), // "page height in inches"
+		    new Attribute( ModuleKeys.imageMaxDpi, "double" ), // "maximum image resolution"
+		    new Attribute( ModuleKeys.jpegQuality, "double" ), // "0 to 1"
+		    new Attribute( ModuleKeys.compression, "string", "default",
+		        Set.of( Validator.valueOneOf( "fast", "default", "max" ) ) ), // "fast|default|max"
+		    new Attribute( ModuleKeys.fullCompression, "boolean", false ), // "yes|no"
+		    new Attribute( ModuleKeys.linearize, "boolean", false ), // "yes|no"
+
+		    // Page preview attributes
+		    new Attribute( ModuleKeys.previewVariable, "string" ), // "preview images variable name"
+		    new Attribute( ModuleKeys.previewPages, "string", "1" ), // "page list"
+		    new Attribute( ModuleKeys.previewDpi, "double" ), // "dots per inch"
+		    new Attribute( ModuleKeys.previewFormat, "string", "png",
+		        Set.of( Validator.valueOneOf( "png", "jpg", "jpeg" ) ) ), // "png|jpg"
+		    new Attribute( ModuleKeys.previewOnly, "boolean", false ), // "yes|no"
+		    new Attribute( ModuleKeys.preflightVariable, "string" ), // "preflight report variable name"
+
+		    // Remote rendering attributes
+		    new Attribute( ModuleKeys.renderWorkers, "integer" ), // "number of local worker processes"
+		    new Attribute( ModuleKeys.renderHosts, "string" ), // "list of host:port"
+		    new Attribute( ModuleKeys.renderSecret, "string" ), // "secret shared with the render hosts"
+		    new Attribute( ModuleKeys.renderTimeout, "integer", 120 ), // "seconds"
+		    new Attribute( ModuleKeys.renderWorkerJobs, "integer", 100 ), // "jobs before a worker is replaced"
+		    new Attribute( ModuleKeys.renderWorkerMemory, "integer", 1024 ), // "megabytes"
 
 		    // Font handling attributes
 		    new Attribute( ModuleKeys.fontEmbed, "boolean", true ), // "yes|no"
+		    new Attribute( ModuleKeys.fontSubset, "string", "subset",
+		        Set.of( Validator.valueOneOf( "subset", "full", "none" ) ) ), // "subset|full|none"
 		    new Attribute( ModuleKeys.fontDirectory, "string" ), // "yes|no"
+		    new Attribute( ModuleKeys.textFont, "string" ), // "font family, file or standard font name"
+		    new Attribute( ModuleKeys.textFontSize, "double" ), // "points"
 
 		    // Document security and file system attributes
 		    new Attribute( ModuleKeys.openpassword, "string" ), // "password to open protected documents"
 		    new Attribute( ModuleKeys.ownerPassword, "string" ), // "password"
+		    new Attribute( ModuleKeys.permissions, "string" ), // "permission list"
+		    new Attribute( ModuleKeys.signature, "struct" ), // "signature settings"
 		    new Attribute( ModuleKeys.pageType, "string" ), // "page type"
 		    new Attribute( ModuleKeys.pdfa, "string", false ), // "yes|no"
 
@@ -99,7 +135,7 @@ public class Document extends Component {
 		        "text/html",
 		        Set.of(
 		            Validator.valueOneOf( "text/html", "text/plain", "application/xml", "image/jpeg",
-		                "image/png", "image/bmp", "image/gif" ) ) ), // mimetype of the source (when
+		                "image/png", "image/bmp", "image/gif", "image/tiff" ) ) ), // mimetype of the source (when
 		                                                             // attribute src or srcfile are
 		                                                             // defined)
 		    new Attribute( ModuleKeys.unit, "string", "in" ), // "in|cm"
@@ -107,7 +143,6 @@ public class Document extends Component {
 		    /**
 		     * Granular permissability is not yet supported
 		     */
-		    new Attribute( ModuleKeys.permissions, "string", Set.of( Validator.NOT_IMPLEMENTED ) ), // "permission list"
 		    new Attribute( ModuleKeys.permissionspassword, "string", Set.of( Validator.NOT_IMPLEMENTED ) ), // "password
 		                                                                                                    // to access
 		                                                                                                    // restricted
@@ -155,7 +190,7 @@ public class Document extends Component {
 	 *
 	 * @attribute.format [Deprecated] The format of the document to generate. This attribute is deprecated and will be removed in a future release as only PDF generation is supported
 	 *
-	 * @attribute.encryption The encryption level to use for the document. Default is none. Possible values are 128-bit, 40-bit, none
+	 * @attribute.encryption The encryption level to use for the document. Default is none. Possible values are aes-256, aes-128, 128-bit, 40-bit, none. Passwords or permissions without an encryption level are applied with 128-bit encryption
 	 *
 	 * @attribute.localUrl If true, the document will be generated with local URLs. Default is false
 	 *
@@ -167,6 +202,12 @@ public class Document extends Component {
 	 *
 	 * @attribute.htmlBookmark If true, it is possible to convert outlines to a list of named anchors (<a name="anchor_id">label</a>) or a headings structure ( <h1>... <h6>). Transforming of HTML hyperlinks to PDF hyperlinks (if not explicitly disabled). Hyperlink jumps within the same document are supported as well
 	 *
+	 * @attribute.cacheSections If true, each document section is rendered on its own and cached, so that only changed sections are re-rendered. Default is false
+	 *
+	 * @attribute.chunkSize If set, the document is laid out and written in chunks of at most this many top-level blocks or table rows, so that memory use is bounded by the chunk size rather than the document size
+	 *
+	 * @attribute.mailMerge If true, each section is laid out as a document of its own, such as a letter of a mail merge. The currentsectionpagenumber and totalsectionpagecount placeholders restart in each section, and the document-wide currentpagenumber and totalpages placeholders may not be used. Layout time and memory grow with the size of each section rather than the whole document. Default is false
+	 *
 	 * @attribute.orientation The orientation of the document. Default is portrait. Possible values are portrait, landscape
 	 *
 	 * @attribute.scale The percentage to scale the document. Must be less than 100
@@ -183,14 +224,56 @@ public class Document extends Component {
 	 *
 	 * @attribute.pageHeight The height of the page in inches
 	 *
+	 * @attribute.imageMaxDpi The maximum resolution, in dots per inch, at which images are embedded. Larger images are downscaled to the resolution required by their laid-out size. By default images are embedded at their original resolution
+	 *
+	 * @attribute.jpegQuality The JPEG compression quality, from 0 to 1, of images downscaled by imageMaxDpi. Default is 0.8
+	 *
+	 * @attribute.compression The compression level of the document streams. Default is default. Possible values are fast, default, max
+	 *
+	 * @attribute.fullCompression If true, the document is written as PDF 1.5 with compressed cross-reference and object streams. Cannot be used with pdfa. Default is false
+	 *
+	 * @attribute.linearize If true, the document is written in linearized form, so viewers can display the first page before the whole file is downloaded. Cannot be used with encryption, fullCompression or signature. Default is false
+	 *
+	 * @attribute.previewVariable The name of the variable to store an array of page preview images, rasterized from the same layout as the PDF
+	 *
+	 * @attribute.previewPages The pages to preview, as a list of page numbers and ranges such as 1-3,5. Default is 1
+	 *
+	 * @attribute.previewDpi The resolution of the page previews, in dots per inch. Default is 96
+	 *
+	 * @attribute.previewFormat The image format of the page previews. Default is png. Possible values are png, jpg
+	 *
+	 * @attribute.previewOnly If true, only the page previews are created and the PDF is not written. Default is false
+	 *
+	 * @attribute.preflightVariable The name of the variable to store a preflight report of the page count, section page ranges and overflowing content. The document is only laid out and the PDF is not written
+	 *
+	 * @attribute.renderWorkers The number of local worker processes which lay out and write HTML documents outside of the runtime JVM, so that a document which exhausts memory or never finishes only stops its worker. By default documents are rendered in-process
+	 *
+	 * @attribute.renderHosts A list of host:port addresses of render workers on other hosts, which render HTML documents alongside any local workers
+	 *
+	 * @attribute.renderSecret The secret shared with the render workers on other hosts, which must know it before they accept a document
+	 *
+	 * @attribute.renderTimeout The time, in seconds, a render worker may spend on a document before it is stopped. Default is 120
+	 *
+	 * @attribute.renderWorkerJobs The number of documents after which a local render worker is replaced. Default is 100
+	 *
+	 * @attribute.renderWorkerMemory The maximum heap, in megabytes, of a local render worker. Default is 1024
+	 *
 	 * @attribute.fontEmbed If true, fonts will be embedded in the document. Default is true
 	 *
+	 * @attribute.fontSubset How the fonts of the fontDirectory are embedded. Default is subset. Possible values are subset, which embeds only the glyphs used, full, which embeds the complete fonts, and none, which references the fonts by name like the standard 14 fonts
+	 *
 	 * @attribute.fontDirectory The directory where fonts are located
 	 *
+	 * @attribute.textFont The font of plain text sources. May be the family name of a font in the fontDirectory, the path to a font file or the name of a standard font. Default is Courier
+	 *
+	 * @attribute.textFontSize The font size, in points, of plain text sources. Default is 9
+	 *
 	 * @attribute.openpassword The password to open protected documents
 	 *
 	 * @attribute.ownerPassword The password to access restricted permissions
 	 *
+	 * @attribute.permissions A comma-delimited list of the permissions granted to users without the ownerPassword. Possible values are AllowPrinting, AllowDegradedPrinting, AllowModifyContents, AllowCopy, AllowModifyAnnotations, AllowFillIn, AllowScreenReaders, AllowAssembly, all and none. Default is AllowCopy, or none when an ownerPassword is given
+	 *
 	 * @attribute.pageType The type of page to generate. Default is A4.
 	 *
 	 * @attribute.pdfa If true, the document will be generated as a PDF/A document. Default is false
@@ -201,11 +284,13 @@ public class Document extends Component {
 	 *
 	 * @attribute.saveAsName The name to save the PDF as in the browser
 	 *
+	 * @attribute.signature A struct of signature settings with which the finished document is signed, as for the pdfSign() BIF. The keystore key is required. Encrypted documents require an ownerPassword to be signed
+	 *
 	 * @attribute.src A full URL or path relative to the web root of the source
 	 *
 	 * @attribute.srcfile The absolute path to a source file
 	 *
-	 * @attribute.mimeType The mime type of the source. Default is text/html. Possible values are text/html, text/plain, application/xml, image/jpeg, image/png, image/bmp, image/gif
+	 * @attribute.mimeType The mime type of the source. Default is text/html. Possible values are text/html, text/plain, application/xml, image/jpeg, image/png, image/bmp, image/gif, image/tiff
 	 *
 	 * @attribute.unit The unit of measurement to use. Default is inches. Possible values are in, cm
 	 *
@@ -213,7 +298,7 @@ public class Document extends Component {
 	// @formatter:on
 	public BodyResult _invoke( IBoxContext context, IStruct attributes, ComponentBody body, IStruct executionState ) {
 
-		context.getDefaultAssignmentScope().put( PDFUtil.DOCUMENT_LOCAL_VARIABLE, PDFUtil.DOCUMENT_LOCAL_PLACEHOLDERS );
+		context.getDefaultAssignmentScope().put( PDFUtil.DOCUMENT_LOCAL_VARIABLE, PDFUtil.newDocumentLocalPlaceholders() );
 
 		executionState.put( ModuleKeys.documentItems, new Array() );
 		executionState.put( ModuleKeys.documentSections, new Array() );
@@ -240,10 +325,26 @@ public class Document extends Component {
 			        .collect( Collectors.joining( ListUtil.DEFAULT_DELIMITER ) ) );
 		}
 
+		// A text font given as a font file is resolved like the font directories
+		String textFont = attributes.getAsString( ModuleKeys.textFont );
+		if ( textFont != null && textFont.toLowerCase().matches( ".*\\.(ttf|otf)$" ) ) {
+			attributes.put( ModuleKeys.textFont, FileSystemUtil.expandPath( context, textFont ).absolutePath().toString() );
+		}
+
+		// The keystore of a signature is resolved like the font directories, on a copy so the caller's struct is unchanged
+		if ( attributes.get( ModuleKeys.signature ) != null ) {
+			IStruct signature = new Struct( StructCaster.cast( attributes.get( ModuleKeys.signature ) ) );
+			if ( signature.get( ModuleKeys.keystore ) != null ) {
+				signature.put( ModuleKeys.keystore, FileSystemUtil.expandPath( context, signature.getAsString( ModuleKeys.keystore ) ).absolutePath().toString() );
+			}
+			attributes.put( ModuleKeys.signature, signature );
+		}
+
 		StringBuffer	buffer			= new StringBuffer();
 		Object			sourceFile		= null;
 		PDF				pdf				= null;
 		byte[]			binarySource	= null;
+		Path			textSource		= null;
 		boolean			isRemoteFile	= false;
 
 		if ( attributes.containsKey( ModuleKeys.src ) ) {
@@ -259,7 +360,8 @@ public class Document extends Component {
 				isRemoteFile = true;
 			}
 			if ( !isRemoteFile ) {
-				sourceFile = FileSystemUtil.read( srcFile );
+				// plain text files are streamed as the document is written rather than read in to memory
+				sourceFile = "text/plain".equalsIgnoreCase( mimeType ) ? Path.of( srcFile ) : FileSystemUtil.read( srcFile );
 			}
 			if ( mimeType == null ) {
 				attributes.put( ModuleKeys.mimeType, FileSystemUtil.getMimeType( srcFile ) );
@@ -275,6 +377,8 @@ public class Document extends Component {
 		if ( !isRemoteFile && sourceFile != null ) {
 			if ( sourceFile instanceof String ) {
 				buffer.append( sourceFile );
+			} else if ( sourceFile instanceof Path textFile ) {
+				textSource = textFile;
 			} else {
 				binarySource = ( byte[] ) sourceFile;
 			}
@@ -284,6 +388,8 @@ public class Document extends Component {
 			pdf = new PDF( attributes.getAsString( ModuleKeys.srcfile ), attributes );
 		} else if ( binarySource != null ) {
 			pdf = PDFUtil.generatePDF( binarySource, context, attributes, executionState );
+		} else if ( textSource != null ) {
+			pdf = PDFUtil.generatePDF( textSource, context, attributes, executionState );
 		} else {
 			pdf = PDFUtil.generatePDF( buffer, context, attributes, executionState );
 		}
@@ -299,23 +405,41 @@ public class Document extends Component {
 			    pdf );
 		}
 
+		// A preflight lays out the document without writing it
+		String preflightVariable = attributes.getAsString( ModuleKeys.preflightVariable );
+		if ( preflightVariable != null ) {
+			ExpressionInterpreter.setVariable( context, preflightVariable, pdf.preflight() );
+			return DEFAULT_RETURN;
+		}
+
+		// Page previews are rasterized from the layout of the PDF as it is written
+		String			previewVariable	= attributes.getAsString( ModuleKeys.previewVariable );
+		List<byte[]>	previews		= previewVariable != null ? new ArrayList<byte[]>() : null;
+		if ( previews != null && BooleanCaster.cast( attributes.getOrDefault( ModuleKeys.previewOnly, false ) ) ) {
+			ExpressionInterpreter.setVariable( context, previewVariable, Array.fromList( pdf.toPreviews() ) );
+			return DEFAULT_RETURN;
+		}
+
 		if ( variable != null ) {
 			ExpressionInterpreter.setVariable(
 			    context,
 			    variable,
-			    pdf.toBinary() );
+			    pdf.toBinary( previews ) );
+			setPreviews( context, previewVariable, previews );
 			return DEFAULT_RETURN;
 		} else if ( fileName != null ) {
 			fileName = FileSystemUtil.expandPath( context, fileName ).absolutePath().toString();
 			pdf.toFile(
 			    fileName,
-			    BooleanCaster.cast( attributes.get( Key.overwrite ) )
+			    BooleanCaster.cast( attributes.get( Key.overwrite ) ),
+			    previews
 			);
+			setPreviews( context, previewVariable, previews );
 			return DEFAULT_RETURN;
 		} else {
 			IStruct interceptorArgs = Struct.of(
 			    Key.context, context,
-			    Key.content, pdf.toBinary(),
+			    Key.content, pdf.toBinary( previews ),
 			    Key.mimetype, "application/pdf",
 			    ModuleKeys.filename, browserFileName != null ? browserFileName : "Document.pdf",
 			    Key.reset, true,
@@ -328,4 +452,17 @@ public class Document extends Component {
 
 	}
 
+	/**
+	 * Stores the page previews in their variable, when previews were requested
+	 *
+	 * @param context         The context in which the Component is being invoked
+	 * @param previewVariable The name of the variable, or null
+	 * @param previews        The encoded page images
+	 */
+	private void setPreviews( IBoxContext context, String previewVariable, List<byte[]> previews ) {
+		if ( previewVariable != null ) {
+			ExpressionInterpreter.setVariable( context, previewVariable, Array.fromList( previews ) );
+		}
+	}
+
 }
@@ -42,7 +42,8 @@ public class DocumentItem extends Component {
 		// Uncomment and define declare argument to this Component
 		declaredAttributes = new Attribute[] {
 		    new Attribute( Key.type, "string" ), // "pagebreak|header|footer"
-		    new Attribute( ModuleKeys.evalAtPrint, "string", true ) // "true"
+		    new Attribute( ModuleKeys.evalAtPrint, "string", true ), // "true"
+		    new Attribute( Key._NAME, "string" ) // "name of a shared header or footer"
 		};
 	}
 
@@ -58,6 +59,8 @@ public class DocumentItem extends Component {
 	 * @attribute.type string pagebreak|header|footer
 	 *
 	 * @attribute.evalAtPrint A boolean which determines if the contents of the cfdocumentitem tag body has to be evaluated at the time of printing the document.  This attribute is deprecated as all content is evaluated at print time.
+	 *
+	 * @attribute.name The name of a shared header or footer, which sections reference with their `header` and `footer` attributes. Named items are declared in the body of the document, and are not used by sections which do not reference them.
 	 */
 	// @formatter:on
 	public BodyResult _invoke( IBoxContext context, IStruct attributes, ComponentBody body, IStruct executionState ) {
@@ -77,6 +80,10 @@ public class DocumentItem extends Component {
 			return DEFAULT_RETURN;
 		}
 
+		if ( attributes.get( Key._NAME ) != null && parentState.get( ModuleKeys.documentSections ) == null ) {
+			throw new BoxRuntimeException( "A named DocumentItem must be declared in the body of the Document component, rather than a DocumentSection" );
+		}
+
 		StringBuffer buffer = new StringBuffer();
 
 		processBody( context, body, buffer );
@@ -51,12 +51,15 @@ public class DocumentSection extends Component {
 		        ModuleKeys.mimeType,
 		        "string",
 		        Set.of(
-		            Validator.valueOneOf( "text/html", "text/plain", "application/xml", "image/jpeg", "image/png", "image/bmp", "image/gif" )
+		            Validator.valueOneOf( "text/html", "text/plain", "application/xml", "image/jpeg", "image/png", "image/bmp", "image/gif", "image/tiff" )
 		        ) ), // "text/plain|application/xmlimage/jpeg|image/png|image/bmp|image/gif"
 		    new Attribute( Key._NAME, "string" ), // "bookmark for the section"
 		    new Attribute( ModuleKeys.srcfile, "string" ), // "absolute path of file"
 		    // URL attributes
 		    new Attribute( ModuleKeys.src, "string" ), // "URL|path relative to web root"
+		    // Shared header and footer attributes
+		    new Attribute( Key.header, "string" ), // "name of a shared header"
+		    new Attribute( ModuleKeys.footer, "string" ), // "name of a shared footer"
 		    new Attribute( ModuleKeys.userAgent, "string", Set.of( Validator.NOT_IMPLEMENTED ) ), // "HTTP user agent identifier"
 		    new Attribute( ModuleKeys.authPassword, "string", Set.of( Validator.NOT_IMPLEMENTED ) ), // "authentication password"
 		    new Attribute( ModuleKeys.authUser, "string", Set.of( Validator.NOT_IMPLEMENTED ) ), // "authentication user name"
@@ -81,6 +84,8 @@ public class DocumentSection extends Component {
 	 * @attribute.name The name of the section.  This is used as a bookmark for the section.
 	 * @attribute.srcfile The absolute path of the file to include in the section.
 	 * @attribute.src The URL or path relative to the web root of the content to include in the section.
+	 * @attribute.header The name of a shared header, declared with a named `documentitem` in the body of the document, to use for the section. A header item within the section takes precedence.
+	 * @attribute.footer The name of a shared footer, declared with a named `documentitem` in the body of the document, to use for the section. A footer item within the section takes precedence.
 	 * @attribute.userAgent The HTTP user agent identifier to use when fetching the content from a URL. Not currently implemented
 	 * @attribute.authPassword The authentication password to use when fetching the content from a URL. Not currently implemented
 	 * @attribute.authUser The authentication user name to use when fetching the content from a URL. Not currently implemented
@@ -89,7 +94,7 @@ public class DocumentSection extends Component {
 	// @formatter:on
 	public BodyResult _invoke( IBoxContext context, IStruct attributes, ComponentBody body, IStruct executionState ) {
 
-		context.getDefaultAssignmentScope().put( PDFUtil.DOCUMENT_LOCAL_VARIABLE, PDFUtil.DOCUMENT_LOCAL_PLACEHOLDERS );
+		context.getDefaultAssignmentScope().put( PDFUtil.DOCUMENT_LOCAL_VARIABLE, PDFUtil.newDocumentLocalPlaceholders() );
 
 		executionState.put( ModuleKeys.documentItems, new Array() );
 
@@ -103,7 +108,8 @@ public class DocumentSection extends Component {
 
 		processBody( context, body, buffer );
 
-		attributes.put( Key.result, buffer.toString() );
+		// The buffer is stored as-is and read directly when the document is generated
+		attributes.put( Key.result, buffer );
 
 		// Add our section to the document
 		parentState.getAsArray( ModuleKeys.documentSections ).add( Struct.of(
@@ -0,0 +1,89 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.types;
+
+import java.nio.file.Path;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.IStruct;
+
+/**
+ * A single part of a PDF document, such as the body of the document or a document section. Each part starts on a new page.
+ *
+ * @param content        The content of the part: markup as a character sequence, binary image data, or the path to a plain text file
+ * @param header         The header markup of the part, or null to use the header of the document
+ * @param footer         The footer markup of the part, or null to use the footer of the document
+ * @param attributes     The component attributes of the part
+ * @param executionState The component execution state of the part
+ * @param name           The name of the part, used as its bookmark, if any
+ * @param mimeType       The mime type of the content, if known
+ */
+public record DocumentPart(
+    Object content,
+    String header,
+    String footer,
+    IStruct attributes,
+    IStruct executionState,
+    String name,
+    String mimeType ) {
+
+	/**
+	 * Creates a document part, reading its name and mime type from its attributes
+	 *
+	 * @param content        The content of the part
+	 * @param header         The header markup of the part, or null to use the header of the document
+	 * @param footer         The footer markup of the part, or null to use the footer of the document
+	 * @param attributes     The component attributes of the part
+	 * @param executionState The component execution state of the part
+	 *
+	 * @return the document part
+	 */
+	public static DocumentPart of( Object content, String header, String footer, IStruct attributes, IStruct executionState ) {
+		Object mimeType = attributes.get( ModuleKeys.mimeType );
+		return new DocumentPart(
+		    content,
+		    header,
+		    footer,
+		    attributes,
+		    executionState,
+		    attributes.getAsString( Key._NAME ),
+		    mimeType != null ? StringCaster.cast( mimeType ).toLowerCase() : null
+		);
+	}
+
+	/**
+	 * Whether the part is binary image data
+	 *
+	 * @return true if the part is an image source
+	 */
+	public boolean isImage() {
+		return content instanceof byte[] && mimeType != null && mimeType.startsWith( "image/" );
+	}
+
+	/**
+	 * Whether the part is plain text, either a text file or text/plain content
+	 *
+	 * @return true if the part is a plain text source
+	 */
+	public boolean isPlainText() {
+		return ( content instanceof Path || content instanceof CharSequence ) && "text/plain".equals( mimeType );
+	}
+
+}
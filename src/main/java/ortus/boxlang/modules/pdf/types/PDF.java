@@ -26,30 +26,73 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Entities;
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.pdf.DefaultPDFCreationListener;
+import org.xhtmlrenderer.pdf.FontFamily;
 import org.xhtmlrenderer.pdf.ITextRenderer;
 import org.xhtmlrenderer.pdf.PDFEncryption;
-
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.render.PageBox;
+
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Font;
+import com.lowagie.text.Image;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.ColumnText;
+import com.lowagie.text.pdf.PdfContentByte;
+import com.lowagie.text.pdf.PdfAction;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfDestination;
+import com.lowagie.text.pdf.PdfOutline;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfSmartCopy;
+import com.lowagie.text.pdf.PdfStream;
 import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+import com.lowagie.text.pdf.SimpleBookmark;
 
 import ortus.boxlang.modules.pdf.util.Base64PDFReplacementFactory;
+import ortus.boxlang.modules.pdf.util.DocumentChunker;
+import ortus.boxlang.modules.pdf.util.ImageOptimizer;
+import ortus.boxlang.modules.pdf.util.ImagePages;
 import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.OptimizedImageReplacementFactory;
+import ortus.boxlang.modules.pdf.util.PDFLinearizer;
+import ortus.boxlang.modules.pdf.util.PDFSigner;
 import ortus.boxlang.modules.pdf.util.PDFUtil;
+import ortus.boxlang.modules.pdf.util.PagePreviews;
+import ortus.boxlang.modules.pdf.util.PlainTextLayout;
+import ortus.boxlang.modules.pdf.util.PreflightReport;
+import ortus.boxlang.modules.pdf.util.RenderProtocol;
+import ortus.boxlang.modules.pdf.util.RenderWorkerPool;
+import ortus.boxlang.modules.pdf.util.SectionCache;
 import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
 import ortus.boxlang.runtime.dynamic.casters.DoubleCaster;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
 import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.dynamic.casters.StructCaster;
 import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Array;
 import ortus.boxlang.runtime.types.IStruct;
 import ortus.boxlang.runtime.types.Struct;
 import ortus.boxlang.runtime.types.exceptions.BoxIOException;
@@ -80,21 +123,144 @@ public class PDF {
 	private IStruct						componentAttributes;
 
 	/**
-	 * An array of document sections
+	 * The parts of the document, in order
+	 */
+	private final List<DocumentPart>	documentParts		= new ArrayList<DocumentPart>();
+
+	/**
+	 * The state of the last generation of the document, which is written on output
 	 */
-	public ArrayList<IStruct>			documentParts		= new ArrayList<IStruct>();
+	private volatile RenderState		renderState			= null;
 
 	/**
-	 * An array containing book marks of the PDF document
+	 * The font files loaded from the font directories, which are loaded in to the renderer of each render
 	 */
-	public ArrayList<String>			bookmarks			= new ArrayList<String>();
+	private final List<String>			fontFiles			= new ArrayList<String>();
+
+	/**
+	 * Whether the document is generated from a remote URL
+	 */
+	private boolean						remoteDocument		= false;
 
 	/**
 	 * The default settings for the PDF
 	 */
-	public boolean						embedFonts			= false;
+	public boolean						embedFonts			= true;
+	public String						fontSubset			= "subset";
 	public boolean						bookmarkSections	= true;
 	public boolean						bookmarkAnchors		= false;
+	public boolean						cacheSections		= false;
+
+	/**
+	 * The maximum number of top-level blocks or table rows laid out at once, when the document is laid out in chunks
+	 */
+	private Integer						chunkSize			= null;
+
+	/**
+	 * Whether each section is laid out as a document of its own, with page counters which restart in each section
+	 */
+	private boolean						mailMerge			= false;
+
+	/**
+	 * The font and font size of plain text sources
+	 */
+	private String						textFont			= BaseFont.COURIER;
+	private float						textFontSize		= 9f;
+
+	/**
+	 * Whether page previews are requested, and the pages, resolution and image format of the previews
+	 */
+	private boolean						previewsEnabled		= false;
+	private String						previewPages		= "1";
+	private float						previewDpi			= PagePreviews.DEFAULT_DPI;
+	private String						previewFormat		= "png";
+
+	/**
+	 * Whether a layout-only preflight of the document is requested
+	 */
+	private boolean						preflightEnabled	= false;
+
+	/**
+	 * The tokens which stand in for the page counters in the plain text of headers and footers
+	 */
+	private static final Map<Key, String>	textPageTokens		= Map.of(
+	    ModuleKeys.currentpagenumber, "{currentpagenumber}",
+	    ModuleKeys.totalpages, "{totalpages}",
+	    ModuleKeys.currentsectionpagenumber, "{currentsectionpagenumber}",
+	    ModuleKeys.totalsectionpagecount, "{totalsectionpagecount}"
+	);
+
+	/**
+	 * The element identifier used for sections which are rendered individually
+	 */
+	private static final String			SECTION_IDENTIFIER	= "bx-pdf-section";
+
+	/**
+	 * The maximum resolution at which images are embedded and the JPEG quality of downscaled images, when image optimization is enabled
+	 */
+	private Double						imageMaxDpi			= null;
+	private float						jpegQuality			= 0.8f;
+
+	/**
+	 * The Flate compression level of the PDF streams and whether cross-reference and object streams are used
+	 */
+	private int							compressionLevel	= PdfStream.DEFAULT_COMPRESSION;
+	private boolean						fullCompression		= false;
+
+	/**
+	 * Whether the finished PDF is rewritten in linearized form for fast web view
+	 */
+	private boolean						linearize			= false;
+
+	/**
+	 * The signature settings and the signer of the key they name, when the finished PDF is signed
+	 */
+	private IStruct						signature			= null;
+	private PDFSigner					signer				= null;
+
+	/**
+	 * The pool of render workers which lay out and write the document in other processes, and the time a worker may
+	 * spend on the document, when remote rendering is enabled
+	 */
+	private RenderWorkerPool			renderWorkerPool	= null;
+	private int							renderTimeout		= 120;
+
+	/**
+	 * The attributes which are not sent to render workers: the output of the document, which is handled locally, the
+	 * font directories, whose files are sent instead, the signature, which is applied locally so that keys are never
+	 * sent to workers, and the remote rendering settings themselves, which include the render secret
+	 */
+	private static final List<Key>		localAttributes		= List.of(
+	    Key.variable,
+	    Key._NAME,
+	    ModuleKeys.filename,
+	    ModuleKeys.saveAsName,
+	    ModuleKeys.src,
+	    ModuleKeys.srcfile,
+	    ModuleKeys.fontDirectory,
+	    ModuleKeys.linearize,
+	    ModuleKeys.signature,
+	    ModuleKeys.renderWorkers,
+	    ModuleKeys.renderHosts,
+	    ModuleKeys.renderSecret,
+	    ModuleKeys.renderTimeout,
+	    ModuleKeys.renderWorkerJobs,
+	    ModuleKeys.renderWorkerMemory
+	);
+
+	/**
+	 * The Flate compression levels for each compression setting
+	 */
+	private static final Map<String, Integer>	compressionLevels	= Map.of(
+	    "fast", PdfStream.BEST_SPEED,
+	    "default", PdfStream.DEFAULT_COMPRESSION,
+	    "max", PdfStream.BEST_COMPRESSION
+	);
+
+	/**
+	 * The encryption settings applied to the PDF, if any
+	 */
+	private PDFEncryption				encryptionSettings	= null;
 
 	private static final double			defaultMarginTop	= 1d;
 	private static final double			defaultMarginBottom	= 1d;
@@ -132,6 +298,9 @@ public class PDF {
 			max-width: 100%;
 			max-height: 100%;
 		}
+		pre.bx-pdf-text {
+			white-space: pre-wrap;
+		}
 		span.currentpagenumber:before, span.currentsectionpagenumber:before {
 			content: counter(page);
 		}
@@ -156,15 +325,6 @@ public class PDF {
 	 */
 	private String						orientation			= "portrait";
 
-	private HashMap<String, Integer>	encryptionTypes		= new HashMap<String, Integer>() {
-
-																{
-																	put( "none", 0 );
-																	put( "40-bit", 1 );
-																	put( "128-bit", 0 );
-																}
-															};
-
 	/**
 	 * Constructor
 	 *
@@ -176,6 +336,11 @@ public class PDF {
 		componentAttributes	= attributes;
 		parseDefaults( attributes, executionState );
 		parseEncryption( attributes );
+		parseCompression( attributes );
+		parseLinearization( attributes );
+		parseSignature( attributes );
+		parseRemoteRendering( attributes );
+		applyImageHandling( renderer );
 		if ( attributes.containsKey( ModuleKeys.fontDirectory ) ) {
 			ListUtil.asList( attributes.getAsString( ModuleKeys.fontDirectory ), ListUtil.DEFAULT_DELIMITER )
 			    .stream()
@@ -195,8 +360,12 @@ public class PDF {
 		SharedContext sharedContext = renderer.getSharedContext();
 		sharedContext.setReplacedElementFactory( new Base64PDFReplacementFactory() );
 		sharedContext.getTextRenderer().setSmoothingThreshold( 0 );
-		componentAttributes = attributes;
+		componentAttributes	= attributes;
+		remoteDocument		= true;
 		parseEncryption( attributes );
+		parseCompression( attributes );
+		parseLinearization( attributes );
+		parseSignature( attributes );
 		generateFromRemote( url );
 	};
 
@@ -206,13 +375,80 @@ public class PDF {
 	 * @return
 	 */
 	private ITextRenderer newRenderer() {
-		ITextRenderer	newRenderer		= new ITextRenderer();
+		return newRenderer( new ITextRenderer() );
+	}
+
+	/**
+	 * Applies the default print settings to a renderer
+	 *
+	 * @param newRenderer the renderer to configure
+	 *
+	 * @return
+	 */
+	private ITextRenderer newRenderer( ITextRenderer newRenderer ) {
 		SharedContext	sharedContext	= newRenderer.getSharedContext();
 		sharedContext.setPrint( true );
 		sharedContext.setInteractive( false );
 		return newRenderer;
 	}
 
+	/**
+	 * Replaces the image handling of a renderer so that each distinct image is written once and, when image optimization
+	 * is enabled, downscaled to the resolution required by its laid-out size
+	 *
+	 * @param targetRenderer the renderer to configure
+	 */
+	private void applyImageHandling( ITextRenderer targetRenderer ) {
+		targetRenderer.getSharedContext().setReplacedElementFactory(
+		    new OptimizedImageReplacementFactory( targetRenderer.getOutputDevice(), imageMaxDpi, jpegQuality )
+		);
+	}
+
+	/**
+	 * Creates the renderer for a single render. Each render lays out the document with its own renderer and font
+	 * resolver, so that a PDF may be written repeatedly or concurrently, with the fonts, output and image settings of the PDF.
+	 *
+	 * @return the renderer
+	 */
+	private ITextRenderer newRenderRenderer() {
+		return newRenderRenderer( true );
+	}
+
+	/**
+	 * Creates the renderer for a single render, optionally without the encryption of the PDF. Sections which are cached
+	 * and stitched together are rendered unencrypted, as they are read back without a password and only the stitched
+	 * document is encrypted.
+	 *
+	 * @param encrypted whether the renderer applies the encryption settings of the PDF
+	 *
+	 * @return the renderer
+	 */
+	private ITextRenderer newRenderRenderer( boolean encrypted ) {
+		ITextRenderer renderRenderer = newRenderer();
+		if ( remoteDocument ) {
+			renderRenderer.getSharedContext().setReplacedElementFactory( new Base64PDFReplacementFactory() );
+			renderRenderer.getSharedContext().getTextRenderer().setSmoothingThreshold( 0 );
+		} else {
+			applyImageHandling( renderRenderer );
+		}
+		loadFonts( renderRenderer, fontFiles );
+		renderRenderer.setPDFXConformance( renderer.getPDFXConformance() );
+		if ( encrypted && encryptionSettings != null ) {
+			renderRenderer.setPDFEncryption( encryptionSettings );
+		}
+		applyCompression( renderRenderer );
+		return renderRenderer;
+	}
+
+	/**
+	 * Returns the parts of the document
+	 *
+	 * @return the document parts, in order
+	 */
+	public List<DocumentPart> getDocumentParts() {
+		return Collections.unmodifiableList( documentParts );
+	}
+
 	/**
 	 * Add a binary item to the document
 	 *
@@ -231,13 +467,14 @@ public class PDF {
 	}
 
 	/**
-	 * Add a string content item to the document
+	 * Add a string content item to the document. The content is read directly when the document is generated, so a
+	 * captured body buffer may be passed without copying it to a string first.
 	 *
 	 * @param item
 	 *
 	 * @return
 	 */
-	public PDF addDocumentItem( String item ) {
+	public PDF addDocumentItem( CharSequence item ) {
 		return addDocumentItem(
 		    item,
 		    globalHeader,
@@ -261,20 +498,12 @@ public class PDF {
 	 * @return
 	 */
 	public PDF addDocumentItem(
-	    String item,
+	    CharSequence item,
 	    String header,
 	    String footer,
 	    IStruct attributes,
 	    IStruct state ) {
-		documentParts.add(
-		    Struct.of(
-		        Key.content, item,
-		        Key.header, header,
-		        ModuleKeys.footer, footer,
-		        Key.attributes, attributes,
-		        Key.executionState, state
-		    )
-		);
+		documentParts.add( DocumentPart.of( item, header, footer, attributes, state ) );
 		return this;
 	}
 
@@ -297,15 +526,29 @@ public class PDF {
 	    String footer,
 	    IStruct attributes,
 	    IStruct state ) {
-		documentParts.add(
-		    Struct.of(
-		        Key.content, item,
-		        Key.header, header,
-		        ModuleKeys.footer, footer,
-		        Key.attributes, attributes,
-		        Key.executionState, state
-		    )
-		);
+		documentParts.add( DocumentPart.of( item, header, footer, attributes, state ) );
+		return this;
+	}
+
+	/**
+	 * Adds a plain text file to the PDF document. The file is read as the document is written, rather than being
+	 * loaded in to memory.
+	 *
+	 * @param item
+	 * @param header
+	 * @param footer
+	 * @param attributes
+	 * @param state
+	 *
+	 * @return
+	 */
+	public PDF addDocumentItem(
+	    Path item,
+	    String header,
+	    String footer,
+	    IStruct attributes,
+	    IStruct state ) {
+		documentParts.add( DocumentPart.of( item, header, footer, attributes, state ) );
 		return this;
 	}
 
@@ -317,27 +560,48 @@ public class PDF {
 	 * @return
 	 */
 	public PDF addFontDirectory( String directory ) {
-		FileSystemUtil.listDirectory(
+		List<String> directoryFonts = FileSystemUtil.listDirectory(
 		    directory,
 		    true,
 		    validFontExtensions.stream().map( ext -> "*." + ext ).collect( Collectors.joining( "," ) ),
 		    "namenocase",
 		    "file"
-		).forEach( font -> {
+		).map( font -> font.toAbsolutePath().toString() ).collect( Collectors.toList() );
+		fontFiles.addAll( directoryFonts );
+		loadFonts( renderer, directoryFonts );
+		return this;
+	}
+
+	/**
+	 * Loads font files in to the font resolver of a renderer
+	 *
+	 * @param targetRenderer the renderer to configure
+	 * @param fontPaths      the absolute paths of the font files
+	 */
+	private void loadFonts( ITextRenderer targetRenderer, List<String> fontPaths ) {
+		for ( String fontPath : fontPaths ) {
+			boolean	isType1	= fontPath.toLowerCase().endsWith( ".afm" ) || fontPath.toLowerCase().endsWith( ".pfb" );
+			// Identity-H fonts are always embedded, so fonts which are referenced by name only use the WinAnsi encoding
+			boolean	embed	= !fontSubset.equals( "none" );
 			try {
-				renderer.getFontResolver().addFont( font.toAbsolutePath().toString(), font.getFileName().toString(), true );
-			} catch ( IOException e ) {
+				targetRenderer.getFontResolver().addFont( fontPath, embed && !isType1 ? BaseFont.IDENTITY_H : BaseFont.CP1252, embed );
+			} catch ( IOException | DocumentException e ) {
 				logger.error(
 				    String.format(
 				        "Error adding font [%s].  The messageReceived was: %s",
-				        font.toAbsolutePath().toString(),
+				        fontPath,
 				        e.getMessage()
 				    ),
 				    e
 				);
 			}
-		} );
-		return this;
+		}
+
+		if ( fontSubset.equals( "full" ) ) {
+			targetRenderer.getFontResolver().getFonts().values().stream()
+			    .flatMap( family -> family.getFontDescriptions().stream() )
+			    .forEach( description -> description.getFont().setSubset( false ) );
+		}
 	}
 
 	/**
@@ -351,128 +615,384 @@ public class PDF {
 		Document pdfDocument = PDFUtil.parseRemoteFile( url );
 		postProcessRemoteDocument( pdfDocument, url );
 		renderer.setDocument( pdfDocument );
+		renderState = RenderState.layout( pdfDocument, List.of() );
 		return this;
 	}
 
 	/**
-	 * Generates the finalized PDF
+	 * Generates the finalized PDF. Each generation starts from the document parts and the settings of the PDF, so a PDF
+	 * may be generated again once further parts are added.
 	 *
 	 * @return
 	 */
 	public PDF generate() {
 
-		String	content			= "<html>\n<head>\n";
+		String pageStyles = getPageStyles( componentAttributes, globalFooter.trim().length() == 0 );
+
+		if ( canWriteImagePages() ) {
+			// Image sources bypass the HTML layout and are written straight to their own pages on output
+			renderState = RenderState.direct( RenderState.Mode.IMAGE_PAGES );
+			return this;
+		}
+
+		if ( canWriteTextPages() ) {
+			// Plain text sources bypass the HTML layout and are streamed on to pages on output
+			renderState = RenderState.direct( RenderState.Mode.TEXT_PAGES );
+			return this;
+		}
+
+		if ( canCacheSections() ) {
+			// Each section is rendered as a standalone document so it can be cached and stitched on output
+			renderState = RenderState.sections(
+			    documentParts.stream()
+			        .map( part -> {
+				        ArrayList<String> sectionBookmarks = new ArrayList<String>();
+				        StringBuilder sectionBody = new StringBuilder();
+				        buildPartContent( part, null, SECTION_IDENTIFIER, sectionBookmarks, sectionBody );
+				        return wrapContent( sectionBody, sectionBookmarks, pageStyles );
+			        } )
+			        .collect( Collectors.toList() )
+			);
+			return this;
+		}
+
+		if ( mailMerge && documentParts.stream().anyMatch( this::usesDocumentPageCounters ) ) {
+			throw new BoxRuntimeException(
+			    "The currentpagenumber and totalpages placeholders cannot be used in mail merge documents, as the pages of each section are numbered on their own. Use currentsectionpagenumber and totalsectionpagecount instead"
+			);
+		}
+
+		// The parts are appended to a single builder so that large bodies are copied once
+		List<String>	bookmarks		= new ArrayList<String>();
+		List<String>	sectionIds		= new ArrayList<String>();
+		StringBuilder	bodyContents	= new StringBuilder();
+		for ( int idx = 0; idx < documentParts.size(); idx++ ) {
+			// mail merge sections are laid out as documents of their own, which always start on a new page
+			if ( idx > 0 && !mailMerge ) {
+				bodyContents.append( "\n<div style='page-break-before: always;'></div>\n" );
+			}
+			sectionIds.add( UUID.randomUUID().toString() );
+			buildPartContent( documentParts.get( idx ), idx > 0 ? documentParts.get( idx - 1 ) : null, sectionIds.get( idx ), bookmarks, bodyContents );
+		}
+
+		String				markup			= wrapContent( bodyContents, bookmarks, pageStyles );
+		Document			parsedContent	= PDFUtil.parseContent( markup );
+		Map<String, String>	imageSources	= new HashMap<String, String>();
+
+		postProcessContent( parsedContent, imageSources );
+
+		// // Useful for debugging the HTML of the PDF before generation
+		// System.out.println( W3CDom.asString( parsedContent, null ) );
+
+		if ( renderWorkerPool != null ) {
+			// The markup is sent with its images already read, so that the worker needs no access to local files
+			renderState = RenderState.remote( markup, imageSources, sectionIds );
+			return this;
+		}
+
+		return layoutContent( parsedContent, sectionIds );
+	}
+
+	/**
+	 * Generates the PDF from assembled markup, such as the markup a render worker receives. The images of the markup
+	 * are taken from the given data URIs rather than read again.
+	 *
+	 * @param markup       The assembled HTML markup of the document
+	 * @param imageSources The data URIs of the images of the markup, keyed by their source
+	 * @param sectionIds   The element ids of the sections of the markup, in order
+	 *
+	 * @return
+	 */
+	public PDF generateFromMarkup( String markup, Map<String, String> imageSources, List<String> sectionIds ) {
+		Document parsedContent = PDFUtil.parseContent( markup );
+		postProcessContent( parsedContent, new HashMap<String, String>( imageSources ) );
+		return layoutContent( parsedContent, sectionIds );
+	}
+
+	/**
+	 * Sets the parsed document to be laid out at once, or in chunks when a chunk size is set
+	 *
+	 * @param parsedContent The parsed and post-processed document
+	 * @param sectionIds    The element ids of the sections of the document, in order
+	 *
+	 * @return
+	 */
+	private PDF layoutContent( Document parsedContent, List<String> sectionIds ) {
+		if ( mailMerge ) {
+			// Each section is laid out on its own, so its page counters restart and layout time grows with the section count
+			renderState = RenderState.chunks( DocumentChunker.bySection( parsedContent ), sectionIds );
+			return this;
+		}
+
+		if ( chunkSize != null ) {
+			// Very large documents are laid out and written one chunk at a time
+			renderState = RenderState.chunks( new DocumentChunker( parsedContent, chunkSize ), sectionIds );
+			return this;
+		}
+
+		renderer.setDocument( parsedContent );
+		renderState = RenderState.layout( parsedContent, sectionIds );
+
+		return this;
+	}
+
+	/**
+	 * Appends the HTML markup for a single document part to the given builder. Headers and footers are running
+	 * elements which stay in place on the following pages until they are replaced, so a part only carries its header
+	 * and footer when they differ from those of the part before it.
+	 *
+	 * @param part           The document part
+	 * @param previousPart   The part laid out before it in the same document, or null if it starts the document
+	 * @param partIdentifier The element id used as the bookmark target of the part
+	 * @param partBookmarks  The list to which any bookmarks of the part are added
+	 * @param partContent    The builder to which the markup of the part is appended
+	 */
+	private void buildPartContent( DocumentPart part, DocumentPart previousPart, String partIdentifier, List<String> partBookmarks, StringBuilder partContent ) {
+		int partStart = partContent.length();
+		partContent.append( "<div class='bx-pdf-section' id='" ).append( partIdentifier ).append( "'>\n" );
 
 		// @formatter:off
-		String				bodyContents	= IntStream.range( 0, documentParts.size() )
-		    .mapToObj( idx -> {
-				IStruct part = documentParts.get( idx );
-				String partContent = "";
-				if( idx > 0 ){
-					partContent += "<div style='page-break-before: always;'></div>\n";
-				}
-				String partIdentifier = UUID.randomUUID().toString();
-				partContent += "<div class='bx-pdf-section' id='" + partIdentifier + "'>\n";
+		try {
 
-				IStruct partAttributes = part.getAsStruct( Key.attributes );
+			String header		= headerOf( part );
+			String footer		= footerOf( part );
+			String partName     = part.name();
 
-				try {
+			if( bookmarkSections && partName != null ) {
+				partBookmarks.add( "<bookmark name='" + partName + "' href='#" + partIdentifier + "'/>" );
+			}
 
-					String header		= part.get( Key.header ) != null ? part.getAsString( Key.header ) : globalHeader;
-					String footer		= part.get( ModuleKeys.footer ) != null ? part.getAsString( ModuleKeys.footer ) : globalFooter;
-					String partName     = partAttributes.getAsString( Key._NAME );
+			if ( header != null && ( previousPart == null || !header.equals( headerOf( previousPart ) ) ) ) {
+				partContent.append( "<div class='bx-pdf-header'>" ).append( header ).append( "</div>\n" );
+			}
 
-					if( bookmarkSections && partName != null ) {
-						bookmarks.add( "<bookmark name='" + partName + "' href='#" + partIdentifier + "'/>" );
-					}
+			if ( footer != null && ( previousPart == null || !footer.equals( footerOf( previousPart ) ) ) ) {
+				partContent.append( "<div class='bx-pdf-footer'>" ).append( footer ).append( "</div>\n" );
+			}
 
-					if ( header != null ) {
-						partContent += "<div class='bx-pdf-header'>" + header + "</div>\n";
-					}
+			Object contentValue = part.content();
+			if( contentValue instanceof byte[] bytes ){
+				// binary content handling
+				String mimeType		= part.mimeType();
 
-					if ( footer != null ) {
-						partContent += "<div class='bx-pdf-footer'>" + footer + "</div>\n";
-					}
+				partContent.append( "<div class='body-image' align='center'><img src='data:" ).append( mimeType ).append( ";base64," )
+					.append( Base64.getEncoder().encodeToString( bytes ) ).append( "'/></div>\n" );
 
-					Object contentValue = part.get( Key.content );
-					if( contentValue instanceof byte[] ){
-						// binary content handling
-						byte[] bytes		= ( byte[] ) part.get( Key.content );
-						String mimeType		= partAttributes.getAsString( ModuleKeys.mimeType );
-
-						partContent += "<div class='body-image' align='center'><img src='data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString( bytes ).trim() + "'/></div>\n";
-
-					} else {
-						String item			= StringCaster.cast( contentValue );
-
-						partContent += "<div class='bx-pdf-content'>" + item + "</div>\n";
-
-						if ( bookmarkAnchors ) {
-							// Parse our content in to a document so we can extract bookmarks
-							Document parsedFragment = PDFUtil.parseContent( partContent );
-							NodeList anchors = parsedFragment.getElementsByTagName( "a" );
-
-							for ( int i = 0; i < anchors.getLength(); i++ ) {
-
-								Node anchor = anchors.item( i );
-								String id = null;
-								String title = null;
-								// Parse the deprecated name attribute then fallback to id/content
-								Node nameNode	= anchor.getAttributes().getNamedItem( "name" );
-								if ( nameNode == null ) {
-									nameNode = anchor.getAttributes().getNamedItem( "id" );
-									id = nameNode.getNodeValue();
-									title = anchor.getNodeValue();
-								} else {
-									id = nameNode.getNodeValue();
-									title = anchor.getNodeValue().length() > 1 ? anchor.getTextContent() : id;
-								}
-								if ( nameNode != null ) {
-									bookmarks.add( "<bookmark name='" + title + "' href='#" + id + "'/>" );
-								}
-							}
-						}
+			} else if ( contentValue instanceof Path path ) {
+				// plain text files are escaped and keep their line breaks
+				try {
+					partContent.append( "<pre class='bx-pdf-text'>" ).append( Entities.escape( Files.readString( path ) ) ).append( "</pre>\n" );
+				} catch ( IOException e ) {
+					throw new BoxIOException( e );
+				}
 
+			} else {
+				// Captured bodies are appended as-is rather than being copied to an intermediate string
+				CharSequence item	= contentValue instanceof CharSequence sequence ? sequence : StringCaster.cast( contentValue );
+
+				partContent.append( "<div class='bx-pdf-content'>" ).append( item ).append( "</div>\n" );
+
+				if ( bookmarkAnchors ) {
+					// Parse our content in to a document so we can extract bookmarks
+					Document parsedFragment = PDFUtil.parseContent( partContent.substring( partStart ) );
+					NodeList anchors = parsedFragment.getElementsByTagName( "a" );
+
+					for ( int i = 0; i < anchors.getLength(); i++ ) {
+
+						Node anchor = anchors.item( i );
+						String id = null;
+						String title = null;
+						// Parse the deprecated name attribute then fallback to id/content
+						Node nameNode	= anchor.getAttributes().getNamedItem( "name" );
+						if ( nameNode == null ) {
+							nameNode = anchor.getAttributes().getNamedItem( "id" );
+							id = nameNode.getNodeValue();
+							title = anchor.getNodeValue();
+						} else {
+							id = nameNode.getNodeValue();
+							title = anchor.getNodeValue().length() > 1 ? anchor.getTextContent() : id;
+						}
+						if ( nameNode != null ) {
+							partBookmarks.add( "<bookmark name='" + title + "' href='#" + id + "'/>" );
+						}
 					}
+				}
 
+			}
 
-					partContent += "</div>\n";
 
-				}catch ( BoxRuntimeException e ) {
-					logger.error(
-						String.format(
-							"Error generating PDF for document part [%s].  The messageReceived was: %s",
-							part.getAsString( Key._NAME ),
-							e.getMessage()
-						),
-						e
-					);
-				}
+			partContent.append( "</div>\n" );
 
-				return partContent;
-			} )
-		    .collect( Collectors.joining( "\n" ) );
+		}catch ( BoxRuntimeException e ) {
+			logger.error(
+				String.format(
+					"Error generating PDF for document part [%s].  The messageReceived was: %s",
+					part.name(),
+					e.getMessage()
+				),
+				e
+			);
+		}
 		// @formatter:on
-		if ( !bookmarks.isEmpty() ) {
-			content += "<bookmarks>\n" + bookmarks.stream().collect( Collectors.joining( "\n" ) ) + "\n</bookmarks>\n";
+	}
+
+	/**
+	 * Wraps the body markup of the PDF in a full HTML document
+	 *
+	 * @param bodyContents  The body markup
+	 * @param bookmarkItems The bookmark elements to place in the document head
+	 * @param pageStyles    The page styles of the document
+	 *
+	 * @return the HTML document
+	 */
+	private String wrapContent( CharSequence bodyContents, List<String> bookmarkItems, String pageStyles ) {
+		StringBuilder content = new StringBuilder( bodyContents.length() + pageStyles.length() + 256 );
+		content.append( "<html>\n<head>\n" );
+		if ( !bookmarkItems.isEmpty() ) {
+			content.append( "<bookmarks>\n" ).append( String.join( "\n", bookmarkItems ) ).append( "\n</bookmarks>\n" );
+		}
+		content.append( "<style type='text/css'>\n" ).append( pageStyles ).append( "\n</style>\n" );
+		content.append( "</head>\n<body>\n" );
+
+		content.append( bodyContents );
+
+		content.append( "</body>\n</html>" );
+		return content.toString();
+	}
+
+	/**
+	 * Determines whether the sections of this PDF may be rendered and cached individually.
+	 * Sections which reference the document-wide page counters must be laid out together, as must PDF/A documents and
+	 * documents which are previewed, preflighted or rendered by render workers.
+	 *
+	 * @return true if section caching may be used
+	 */
+	private boolean canCacheSections() {
+		if ( !cacheSections || requiresLayout() || renderWorkerPool != null || documentParts.size() < 2 || renderer.getPDFXConformance() != PdfWriter.PDFXNONE ) {
+			return false;
 		}
-		content	+= "<style type='text/css'>\n" + getPageStyles( componentAttributes, globalFooter.trim().length() == 0 ) + "\n</style>\n";
-		content	+= "</head>\n<body>\n";
+		return documentParts.stream().noneMatch( this::usesDocumentPageCounters );
+	}
 
-		content	+= bodyContents;
+	/**
+	 * Determines whether a part references the document-wide page counters in its header, footer or content
+	 *
+	 * @param part the document part
+	 *
+	 * @return true if the current page number or total page count of the document is used
+	 */
+	private boolean usesDocumentPageCounters( DocumentPart part ) {
+		return PDFUtil.usesDocumentPageCounters( headerOf( part ) )
+		    || PDFUtil.usesDocumentPageCounters( footerOf( part ) )
+		    || ( part.content() instanceof CharSequence sequence && PDFUtil.usesDocumentPageCounters( sequence ) );
+	}
 
-		content	+= "</body>\n</html>";
+	/**
+	 * Determines whether the document may be written as image pages directly, without HTML layout.
+	 * Every part must be an image source with no header or footer, and the document may not be PDF/A, previewed or
+	 * preflighted.
+	 *
+	 * @return true if the image page fast path may be used
+	 */
+	private boolean canWriteImagePages() {
+		if ( documentParts.isEmpty() || requiresLayout() || renderer.getPDFXConformance() != PdfWriter.PDFXNONE ) {
+			return false;
+		}
+		return documentParts.stream().allMatch( part -> {
+			String	header	= headerOf( part );
+			String	footer	= footerOf( part );
+			return part.isImage()
+			    && ( header == null || PDFUtil.isBlank( header ) )
+			    && ( footer == null || PDFUtil.isBlank( footer ) );
+		} );
+	}
 
-		Document parsedContent = PDFUtil.parseContent( content );
+	/**
+	 * Determines whether the document may be streamed as plain text pages directly, without HTML layout.
+	 * Every part must be a plain text source, and the document may not be PDF/A, previewed or preflighted.
+	 *
+	 * @return true if the plain text fast path may be used
+	 */
+	private boolean canWriteTextPages() {
+		if ( documentParts.isEmpty() || requiresLayout() || renderer.getPDFXConformance() != PdfWriter.PDFXNONE ) {
+			return false;
+		}
+		return documentParts.stream().allMatch( DocumentPart::isPlainText );
+	}
 
-		postProcessContent( parsedContent );
+	/**
+	 * Whether the whole document must be laid out as HTML, because page previews or a preflight are requested
+	 *
+	 * @return true if the fast paths which bypass the HTML layout may not be used
+	 */
+	private boolean requiresLayout() {
+		return previewsEnabled || preflightEnabled;
+	}
 
-		// // Useful for debugging the HTML of the PDF before generation
-		// System.out.println( W3CDom.asString( parsedContent, null ) );
+	/**
+	 * Returns the header markup of a part, which is the header of the document unless the part has its own
+	 *
+	 * @param part the document part
+	 *
+	 * @return the header markup, if any
+	 */
+	private String headerOf( DocumentPart part ) {
+		return part.header() != null ? part.header() : globalHeader;
+	}
 
-		renderer.setDocument( parsedContent );
+	/**
+	 * Returns the footer markup of a part, which is the footer of the document unless the part has its own
+	 *
+	 * @param part the document part
+	 *
+	 * @return the footer markup, if any
+	 */
+	private String footerOf( DocumentPart part ) {
+		return part.footer() != null ? part.footer() : globalFooter;
+	}
 
-		return this;
+	/**
+	 * Resolves the page size and orientation of the document in points
+	 *
+	 * @return the page size
+	 */
+	private Rectangle getPageRectangle() {
+		Rectangle	pageRectangle;
+		String[]	dimensions	= pageSize.trim().split( "\\s+" );
+		if ( dimensions.length == 2 ) {
+			pageRectangle = new Rectangle( toPoints( dimensions[ 0 ] ), toPoints( dimensions[ 1 ] ) );
+		} else if ( PDFUtil.PAGE_DIMENSIONS.containsKey( pageSize ) ) {
+			double[] millimeters = PDFUtil.PAGE_DIMENSIONS.get( pageSize );
+			pageRectangle = new Rectangle( toPoints( millimeters[ 0 ] + "mm" ), toPoints( millimeters[ 1 ] + "mm" ) );
+		} else {
+			pageRectangle = PageSize.getRectangle( pageSize );
+		}
+		String pageOrientation = StringCaster.cast( componentAttributes.getOrDefault( ModuleKeys.orientation, orientation ) ).toLowerCase();
+		if ( pageOrientation.equals( "landscape" ) && pageRectangle.getHeight() > pageRectangle.getWidth() ) {
+			pageRectangle = pageRectangle.rotate();
+		}
+		return pageRectangle;
+	}
+
+	/**
+	 * Converts a CSS length in inches, centimeters or millimeters to points
+	 *
+	 * @param length the length, such as <code>8.5in</code> or <code>210.0mm</code>
+	 *
+	 * @return the length in points
+	 */
+	private static float toPoints( String length ) {
+		String	value	= length.trim().toLowerCase();
+		String	unit	= value.replaceAll( "[0-9.]", "" );
+		double	amount	= Double.parseDouble( value.substring( 0, value.length() - unit.length() ) );
+		switch ( unit ) {
+			case "mm" :
+				return ( float ) ( amount * 72d / 25.4d );
+			case "cm" :
+				return ( float ) ( amount * 72d / 2.54d );
+			default :
+				return ( float ) ( amount * 72d );
+		}
 	}
 
 	/**
@@ -481,57 +1001,254 @@ public class PDF {
 	 * @param attributes
 	 */
 	private void parseEncryption( IStruct attributes ) {
-		int encryptionType = encryptionTypes.get( attributes.getAsString( ModuleKeys.encryption ).toLowerCase() );
-		if ( encryptionType == 0 && attributes.get( ModuleKeys.openpassword ) == null && attributes.get( ModuleKeys.ownerPassword ) == null ) {
+		int		encryptionType	= PDFUtil.parseEncryptionType( attributes.getAsString( ModuleKeys.encryption ) );
+		String	permissions		= attributes.getAsString( ModuleKeys.permissions );
+		if ( encryptionType == PdfWriter.ENCRYPTION_NONE && attributes.get( ModuleKeys.openpassword ) == null
+		    && attributes.get( ModuleKeys.ownerPassword ) == null && permissions == null ) {
 			return;
 		}
 
-		/**
-		 * Privilege types - https://javadoc.io/doc/com.itextpdf/itextpdf/5.1.0/constant-values.html
-		 * public static final int ALLOW_ASSEMBLY 1024
-		 * public static final int ALLOW_COPY 16
-		 * public static final int ALLOW_DEGRADED_PRINTING 4
-		 * public static final int ALLOW_FILL_IN 256
-		 * public static final int ALLOW_MODIFY_ANNOTATIONS 32
-		 * public static final int ALLOW_MODIFY_CONTENTS 8
-		 * public static final int ALLOW_PRINTING 2052
-		 * public static final int ALLOW_SCREENREADERS 512
-		 */
+		// Passwords or permissions without an encryption level are applied with 128-bit encryption
 		PDFEncryption pdfEncryption = new PDFEncryption(
 		    attributes.get( ModuleKeys.openpassword ) != null ? attributes.getAsString( ModuleKeys.openpassword ).getBytes() : null,
 		    attributes.get( ModuleKeys.ownerPassword ) != null ? attributes.getAsString( ModuleKeys.ownerPassword ).getBytes() : null,
-		    attributes.get( ModuleKeys.ownerPassword ) != null ? 0 : 16,
-		    encryptionType
+		    permissions != null ? PDFUtil.parsePermissions( permissions ) : attributes.get( ModuleKeys.ownerPassword ) != null ? 0 : PdfWriter.ALLOW_COPY,
+		    encryptionType == PdfWriter.ENCRYPTION_NONE ? PdfWriter.STANDARD_ENCRYPTION_128 : encryptionType
 		);
 
 		renderer.setPDFEncryption( pdfEncryption );
+		encryptionSettings = pdfEncryption;
 	}
 
 	/**
-	 * Parses the default settings for the PDF
+	 * Parses the compression settings in the attributes
 	 *
 	 * @param attributes
-	 * @param executionState
 	 */
-	private void parseDefaults( IStruct attributes, IStruct executionState ) {
-
-		IStruct header = PDFUtil.extractHeaderFromState( executionState );
-		if ( header != null ) {
-			globalHeader = header.getAsString( Key.result );
+	private void parseCompression( IStruct attributes ) {
+		String compression = StringCaster.cast( attributes.getOrDefault( ModuleKeys.compression, "default" ) ).toLowerCase();
+		if ( !compressionLevels.containsKey( compression ) ) {
+			throw new BoxRuntimeException( String.format( "The compression [%s] is not supported. Possible values are fast, default, max", compression ) );
 		}
+		compressionLevel	= compressionLevels.get( compression );
+		fullCompression		= attributes.get( ModuleKeys.fullCompression ) != null && BooleanCaster.cast( attributes.get( ModuleKeys.fullCompression ) );
 
-		IStruct footer = PDFUtil.extractFooterFromState( executionState );
-		if ( footer != null ) {
-			globalFooter = footer.getAsString( Key.result );
+		if ( fullCompression && renderer.getPDFXConformance() != PdfWriter.PDFXNONE ) {
+			throw new BoxRuntimeException( "The fullCompression attribute cannot be used with PDF/A documents, which do not allow object streams" );
 		}
 
-		globalMarginTop		= DoubleCaster.cast( attributes.getOrDefault( ModuleKeys.marginTop, defaultMarginTop ) );
-		globalMarginBottom	= DoubleCaster.cast( attributes.getOrDefault( ModuleKeys.marginBottom, defaultMarginBottom ) );
+		applyCompression( renderer );
+	}
+
+	/**
+	 * Configures a renderer to apply the compression settings to its writer before the document is opened
+	 *
+	 * @param targetRenderer the renderer to configure
+	 */
+	private void applyCompression( ITextRenderer targetRenderer ) {
+		targetRenderer.setListener( new DefaultPDFCreationListener() {
+
+			@Override
+			public void preOpen( ITextRenderer iTextRenderer ) {
+				applyCompression( iTextRenderer.getWriter() );
+			}
+		} );
+	}
+
+	/**
+	 * Applies the compression settings to a writer
+	 *
+	 * @param writer the writer to configure
+	 */
+	private void applyCompression( PdfWriter writer ) {
+		writer.setCompressionLevel( compressionLevel );
+		if ( fullCompression ) {
+			writer.setFullCompression();
+		}
+	}
+
+	/**
+	 * Parses the linearization setting. Linearized documents are rewritten with their object numbers changed, so they
+	 * cannot be encrypted, and are written with a classic cross-reference table rather than object streams.
+	 *
+	 * @param attributes
+	 */
+	private void parseLinearization( IStruct attributes ) {
+		linearize = attributes.get( ModuleKeys.linearize ) != null && BooleanCaster.cast( attributes.get( ModuleKeys.linearize ) );
+		if ( linearize && encryptionSettings != null ) {
+			throw new BoxRuntimeException( "The linearize attribute cannot be used with encrypted documents" );
+		}
+		if ( linearize && fullCompression ) {
+			throw new BoxRuntimeException( "The linearize attribute cannot be used with fullCompression, as linearized documents do not use object streams" );
+		}
+	}
+
+	/**
+	 * Parses the signature settings. The signature is applied once the document is written, so it cannot be combined
+	 * with linearization, and encrypted documents are reopened with their owner password to be signed.
+	 *
+	 * @param attributes
+	 */
+	private void parseSignature( IStruct attributes ) {
+		if ( attributes.get( ModuleKeys.signature ) == null ) {
+			return;
+		}
+		if ( linearize ) {
+			throw new BoxRuntimeException( "The linearize attribute cannot be used with signed documents" );
+		}
+		if ( encryptionSettings != null && encryptionSettings.getOwnerPassword() == null ) {
+			throw new BoxRuntimeException( "The signature attribute requires an ownerPassword when the document is encrypted" );
+		}
+		signature	= StructCaster.cast( attributes.get( ModuleKeys.signature ) );
+		signer		= PDFSigner.of( signature );
+	}
+
+	/**
+	 * Parses the remote rendering settings. Documents are rendered by render workers when local worker processes or
+	 * render hosts are given.
+	 *
+	 * @param attributes
+	 */
+	private void parseRemoteRendering( IStruct attributes ) {
+		int				localWorkers	= attributes.get( ModuleKeys.renderWorkers ) != null ? IntegerCaster.cast( attributes.get( ModuleKeys.renderWorkers ) ) : 0;
+		List<String>	hosts			= attributes.get( ModuleKeys.renderHosts ) != null
+		    ? ListUtil.asList( attributes.getAsString( ModuleKeys.renderHosts ), ListUtil.DEFAULT_DELIMITER ).stream()
+		        .map( StringCaster::cast )
+		        .map( String::trim )
+		        .filter( host -> !host.isEmpty() )
+		        .toList()
+		    : List.of();
+		if ( localWorkers == 0 && hosts.isEmpty() ) {
+			return;
+		}
+		if ( attributes.get( ModuleKeys.renderTimeout ) != null ) {
+			renderTimeout = IntegerCaster.cast( attributes.get( ModuleKeys.renderTimeout ) );
+			if ( renderTimeout < 1 ) {
+				throw new BoxRuntimeException( "The renderTimeout attribute must be greater than zero" );
+			}
+		}
+		renderWorkerPool = RenderWorkerPool.of(
+		    localWorkers,
+		    hosts,
+		    attributes.get( ModuleKeys.renderWorkerJobs ) != null ? IntegerCaster.cast( attributes.get( ModuleKeys.renderWorkerJobs ) ) : 100,
+		    attributes.get( ModuleKeys.renderWorkerMemory ) != null ? IntegerCaster.cast( attributes.get( ModuleKeys.renderWorkerMemory ) ) : 1024,
+		    attributes.get( ModuleKeys.renderSecret ) != null ? attributes.getAsString( ModuleKeys.renderSecret ) : null
+		);
+	}
+
+	/**
+	 * Renders the document with a render worker
+	 *
+	 * @param state     The render state of the document
+	 * @param operation The render operation
+	 *
+	 * @return the result of the worker
+	 */
+	private RenderProtocol.Result renderRemotely( RenderState state, int operation ) {
+		IStruct workerAttributes = new Struct( Struct.TYPES.LINKED );
+		componentAttributes.entrySet().stream()
+		    .filter( entry -> !localAttributes.contains( entry.getKey() ) )
+		    .filter( entry -> entry.getValue() == null || entry.getValue() instanceof String || entry.getValue() instanceof Number
+		        || entry.getValue() instanceof Boolean )
+		    .forEach( entry -> workerAttributes.put( entry.getKey(), entry.getValue() ) );
+
+		// The font files are sent under unique names, as fonts from different directories may share a file name
+		Map<String, byte[]> fonts = new LinkedHashMap<String, byte[]>();
+		try {
+			for ( String fontFile : fontFiles ) {
+				fonts.put( fonts.size() + "-" + Path.of( fontFile ).getFileName(), Files.readAllBytes( Path.of( fontFile ) ) );
+			}
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+
+		return renderWorkerPool.render(
+		    new RenderProtocol.Job( operation, workerAttributes, state.markup(), state.imageSources(), state.sectionIds(), fonts, renderTimeout )
+		);
+	}
+
+	/**
+	 * Parses the default settings for the PDF
+	 *
+	 * @param attributes
+	 * @param executionState
+	 */
+	private void parseDefaults( IStruct attributes, IStruct executionState ) {
+
+		IStruct header = PDFUtil.extractHeaderFromState( executionState );
+		if ( header != null ) {
+			globalHeader = header.getAsString( Key.result );
+		}
+
+		IStruct footer = PDFUtil.extractFooterFromState( executionState );
+		if ( footer != null ) {
+			globalFooter = footer.getAsString( Key.result );
+		}
+
+		globalMarginTop		= DoubleCaster.cast( attributes.getOrDefault( ModuleKeys.marginTop, defaultMarginTop ) );
+		globalMarginBottom	= DoubleCaster.cast( attributes.getOrDefault( ModuleKeys.marginBottom, defaultMarginBottom ) );
 		globalMarginLeft	= DoubleCaster.cast( attributes.getOrDefault( ModuleKeys.marginLeft, defaultMarginLeft ) );
 		globalMarginRight	= DoubleCaster.cast( attributes.getOrDefault( ModuleKeys.marginRight, defaultMarginRight ) );
 
 		bookmarkSections	= attributes.getAsBoolean( ModuleKeys.bookmark );
 		bookmarkAnchors		= attributes.getAsBoolean( ModuleKeys.htmlBookmark );
+		cacheSections		= attributes.get( ModuleKeys.cacheSections ) != null && attributes.getAsBoolean( ModuleKeys.cacheSections );
+
+		mailMerge			= attributes.get( ModuleKeys.mailMerge ) != null && BooleanCaster.cast( attributes.get( ModuleKeys.mailMerge ) );
+
+		if ( attributes.get( ModuleKeys.chunkSize ) != null ) {
+			chunkSize = IntegerCaster.cast( attributes.get( ModuleKeys.chunkSize ) );
+			if ( chunkSize < 1 ) {
+				throw new BoxRuntimeException( "The chunkSize attribute must be greater than zero" );
+			}
+		}
+		embedFonts			= attributes.get( ModuleKeys.fontEmbed ) == null || BooleanCaster.cast( attributes.get( ModuleKeys.fontEmbed ) );
+		fontSubset			= embedFonts ? StringCaster.cast( attributes.getOrDefault( ModuleKeys.fontSubset, fontSubset ) ).toLowerCase() : "none";
+		if ( !List.of( "subset", "full", "none" ).contains( fontSubset ) ) {
+			throw new BoxRuntimeException( String.format( "The font subset [%s] is not supported. Possible values are subset, full, none", fontSubset ) );
+		}
+
+		if ( attributes.get( ModuleKeys.imageMaxDpi ) != null ) {
+			imageMaxDpi = DoubleCaster.cast( attributes.get( ModuleKeys.imageMaxDpi ) );
+			if ( imageMaxDpi <= 0 ) {
+				throw new BoxRuntimeException( "The imageMaxDpi attribute must be greater than zero" );
+			}
+		}
+		if ( attributes.get( ModuleKeys.jpegQuality ) != null ) {
+			jpegQuality = DoubleCaster.cast( attributes.get( ModuleKeys.jpegQuality ) ).floatValue();
+			if ( jpegQuality <= 0 || jpegQuality > 1 ) {
+				throw new BoxRuntimeException( "The jpegQuality attribute must be greater than zero and no more than 1" );
+			}
+		}
+
+		if ( attributes.get( ModuleKeys.textFont ) != null ) {
+			textFont = attributes.getAsString( ModuleKeys.textFont );
+		}
+		if ( attributes.get( ModuleKeys.textFontSize ) != null ) {
+			textFontSize = DoubleCaster.cast( attributes.get( ModuleKeys.textFontSize ) ).floatValue();
+			if ( textFontSize <= 0 ) {
+				throw new BoxRuntimeException( "The textFontSize attribute must be greater than zero" );
+			}
+		}
+
+		previewsEnabled		= attributes.get( ModuleKeys.previewVariable ) != null;
+		preflightEnabled	= attributes.get( ModuleKeys.preflightVariable ) != null;
+		if ( attributes.get( ModuleKeys.previewPages ) != null ) {
+			previewPages = attributes.getAsString( ModuleKeys.previewPages );
+			PagePreviews.lastListedPage( previewPages );
+		}
+		if ( attributes.get( ModuleKeys.previewDpi ) != null ) {
+			previewDpi = DoubleCaster.cast( attributes.get( ModuleKeys.previewDpi ) ).floatValue();
+			if ( previewDpi <= 0 ) {
+				throw new BoxRuntimeException( "The previewDpi attribute must be greater than zero" );
+			}
+		}
+		if ( attributes.get( ModuleKeys.previewFormat ) != null ) {
+			previewFormat = attributes.getAsString( ModuleKeys.previewFormat ).toLowerCase().replace( "jpeg", "jpg" );
+			if ( !PagePreviews.FORMATS.contains( previewFormat ) ) {
+				throw new BoxRuntimeException( String.format( "The preview format [%s] is not supported. Possible values are png, jpg", previewFormat ) );
+			}
+		}
 
 		if ( attributes.getAsBoolean( ModuleKeys.pdfa ) ) {
 			renderer.setPDFXConformance( PdfWriter.PDFA1A );
@@ -650,9 +1367,10 @@ public class PDF {
 	/**
 	 * Performs post-processing on the finalized PDF document
 	 *
-	 * @param parsDocument
+	 * @param parsedDocument
+	 * @param imageSources   The data URIs of the local and remote images, keyed by their source, so that each is read and encoded once
 	 */
-	void postProcessContent( Document parsedDocument ) {
+	void postProcessContent( Document parsedDocument, Map<String, String> imageSources ) {
 		boolean		localURL	= componentAttributes.getAsBoolean( ModuleKeys.localUrl );
 
 		// Process image sources and convert to Base64 Href
@@ -664,12 +1382,14 @@ public class PDF {
 			if ( src.startsWith( "data:" ) ) {
 				continue;
 			} else if ( localURL || ( !localURL && src.startsWith( "http" ) ) ) {
-				byte[]	bytes		= ( byte[] ) FileSystemUtil.read( src );
-				String	mimeType	= FileSystemUtil.getMimeType( src );
-				if ( mimeType.equals( "image/jpeg" ) ) {
-					mimeType = "image/jpg";
-				}
-				src = "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString( bytes ).trim();
+				src = imageSources.computeIfAbsent( src, imageSource -> {
+					byte[]	bytes		= ( byte[] ) FileSystemUtil.read( imageSource );
+					String	mimeType	= FileSystemUtil.getMimeType( imageSource );
+					if ( mimeType.equals( "image/jpeg" ) ) {
+						mimeType = "image/jpg";
+					}
+					return "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString( bytes ).trim();
+				} );
 			}
 			img.getAttributes().getNamedItem( "src" ).setNodeValue( src );
 		}
@@ -745,10 +1465,29 @@ public class PDF {
 	 * @return
 	 */
 	public byte[] toBinary() {
+		return toBinary( null );
+	}
+
+	/**
+	 * returns a binary representation of the PDF, along with previews of its pages from the same layout
+	 *
+	 * @param previews the list to which the page previews are added, or null to skip previews
+	 *
+	 * @return
+	 */
+	public byte[] toBinary( List<byte[]> previews ) {
 		try ( ByteArrayOutputStream outputStream = new ByteArrayOutputStream() ) {
-			renderer.layout();
-			renderer.createPDF( outputStream, true );
-			renderer.finishPDF();
+			writePDF( outputStream, previews );
+			if ( linearize ) {
+				ByteArrayOutputStream linearizedStream = new ByteArrayOutputStream( outputStream.size() );
+				PDFLinearizer.linearize( new RandomAccessFileOrArray( outputStream.toByteArray() ), linearizedStream );
+				return linearizedStream.toByteArray();
+			}
+			if ( signer != null ) {
+				ByteArrayOutputStream signedStream = new ByteArrayOutputStream( outputStream.size() + 16384 );
+				signer.sign( new PdfReader( outputStream.toByteArray(), ownerPassword() ), signedStream, signature, false );
+				return signedStream.toByteArray();
+			}
 			return outputStream.toByteArray();
 		} catch ( IOException e ) {
 			throw new BoxIOException( e );
@@ -758,13 +1497,726 @@ public class PDF {
 	public void toFile(
 	    String filename,
 	    boolean overwrite ) {
+		toFile( filename, overwrite, null );
+	}
+
+	/**
+	 * Writes the PDF to a file, along with previews of its pages from the same layout
+	 *
+	 * @param filename  the file to write
+	 * @param overwrite whether an existing file is overwritten
+	 * @param previews  the list to which the page previews are added, or null to skip previews
+	 */
+	public void toFile(
+	    String filename,
+	    boolean overwrite,
+	    List<byte[]> previews ) {
 		try (
 		    OutputStream outputStream = Files.newOutputStream( Path.of( filename ), overwrite ? StandardOpenOption.CREATE : StandardOpenOption.CREATE_NEW ) ) {
-			renderer.layout();
-			renderer.createPDF( outputStream, true );
-			renderer.finishPDF();
+			if ( linearize ) {
+				writeLinearized( outputStream, Path.of( filename ), previews );
+			} else if ( signer != null ) {
+				writeSigned( outputStream, Path.of( filename ), previews );
+			} else {
+				writePDF( outputStream, previews );
+			}
 		} catch ( IOException e ) {
 			logger.error( "Error creating PDF", e );
 		}
 	}
+
+	/**
+	 * Writes the PDF to a temporary file beside the target, then rewrites it in linearized form to the output stream, so
+	 * that large documents are not held in memory while they are linearized
+	 *
+	 * @param outputStream the stream the linearized PDF is written to
+	 * @param target       the file being written
+	 * @param previews     the list to which the page previews are added, or null to skip previews
+	 *
+	 * @throws IOException
+	 */
+	private void writeLinearized( OutputStream outputStream, Path target, List<byte[]> previews ) throws IOException {
+		Path unlinearized = Files.createTempFile( target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp" );
+		try {
+			try ( OutputStream unlinearizedStream = Files.newOutputStream( unlinearized ) ) {
+				writePDF( unlinearizedStream, previews );
+			}
+			PDFLinearizer.linearize( new RandomAccessFileOrArray( unlinearized.toString(), false, true ), outputStream );
+		} finally {
+			Files.deleteIfExists( unlinearized );
+		}
+	}
+
+	/**
+	 * Writes the PDF to a temporary file beside the target, then signs it to the output stream, so that large documents
+	 * are not held in memory while they are signed
+	 *
+	 * @param outputStream the stream the signed PDF is written to
+	 * @param target       the file being written
+	 * @param previews     the list to which the page previews are added, or null to skip previews
+	 *
+	 * @throws IOException
+	 */
+	private void writeSigned( OutputStream outputStream, Path target, List<byte[]> previews ) throws IOException {
+		Path unsigned = Files.createTempFile( target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp" );
+		try {
+			try ( OutputStream unsignedStream = Files.newOutputStream( unsigned ) ) {
+				writePDF( unsignedStream, previews );
+			}
+			PdfReader reader = new PdfReader( new RandomAccessFileOrArray( unsigned.toString(), false, true ), ownerPassword() );
+			try {
+				signer.sign( reader, outputStream, signature, false );
+			} finally {
+				reader.close();
+			}
+		} finally {
+			Files.deleteIfExists( unsigned );
+		}
+	}
+
+	/**
+	 * The owner password of the PDF, with which an encrypted PDF is reopened to be signed
+	 *
+	 * @return the owner password, or null when the PDF is not encrypted
+	 */
+	private byte[] ownerPassword() {
+		return encryptionSettings != null ? encryptionSettings.getOwnerPassword() : null;
+	}
+
+	/**
+	 * Lays out the document and returns previews of its pages, without writing the PDF. When the document is laid out in
+	 * chunks, layout stops once the last previewed page is laid out.
+	 *
+	 * @return the encoded page images, in page order
+	 */
+	public List<byte[]> toPreviews() {
+		List<byte[]> previews = new ArrayList<byte[]>();
+		try {
+			writePDF( null, previews );
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+		return previews;
+	}
+
+	/**
+	 * Lays out the document without writing the PDF, and reports the page count, the page range of each section and any
+	 * content which overflows the page. A document which is laid out in chunks is laid out one chunk at a time.
+	 *
+	 * @return a struct of the pageCount, pageWidth and pageHeight in points, the sections with their name, startPage
+	 *         and endPage, and the overflows with their page, element, direction and overflow in points
+	 */
+	public IStruct preflight() {
+		RenderState state = renderState;
+		if ( state == null ) {
+			generate();
+			state = renderState;
+		}
+		if ( !preflightEnabled
+		    || ( state.mode() != RenderState.Mode.LAYOUT && state.mode() != RenderState.Mode.CHUNKS && state.mode() != RenderState.Mode.REMOTE ) ) {
+			throw new BoxRuntimeException( "A preflight was not enabled for this PDF" );
+		}
+
+		if ( state.mode() == RenderState.Mode.REMOTE ) {
+			// The worker has no document parts, so the section names are filled in here
+			IStruct	remoteReport	= renderRemotely( state, RenderProtocol.OPERATION_PREFLIGHT ).preflight();
+			Array	sections		= remoteReport.getAsArray( ModuleKeys.sections );
+			for ( int i = 0; i < sections.size(); i++ ) {
+				StructCaster.cast( sections.get( i ) ).put( Key._NAME, documentParts.get( i ).name() );
+			}
+			return remoteReport;
+		}
+
+		PreflightReport report = new PreflightReport(
+		    state.sectionIds(),
+		    documentParts.stream().limit( state.sectionIds().size() ).map( DocumentPart::name ).toList()
+		);
+		if ( state.mode() == RenderState.Mode.CHUNKS ) {
+			ITextRenderer chunkRenderer = newRenderRenderer();
+			for ( int i = 0; i < state.documentChunker().size(); i++ ) {
+				chunkRenderer.setDocument( state.documentChunker().getChunk( i ) );
+				chunkRenderer.layout();
+				report.addLayout( chunkRenderer );
+			}
+		} else {
+			ITextRenderer layoutRenderer = renderer;
+			if ( !state.claimRenderer() ) {
+				layoutRenderer = newRenderRenderer();
+				layoutRenderer.setDocument( state.copyDocument() );
+			}
+			layoutRenderer.layout();
+			report.addLayout( layoutRenderer );
+		}
+		return report.toStruct();
+	}
+
+	/**
+	 * Lays out and writes the PDF to an output stream
+	 *
+	 * @param outputStream the stream the PDF is written to, or null to only lay out the document for previews
+	 * @param previews     the list to which the page previews are added, or null to skip previews
+	 *
+	 * @throws IOException
+	 */
+	private void writePDF( OutputStream outputStream, List<byte[]> previews ) throws IOException {
+		RenderState state = renderState;
+		if ( state == null ) {
+			generate();
+			state = renderState;
+		}
+		if ( previews != null && !previewsEnabled ) {
+			throw new BoxRuntimeException( "Page previews were not enabled for this PDF" );
+		}
+		switch ( state.mode() ) {
+			case SECTIONS -> writeSections( outputStream, state.sectionContents() );
+			case CHUNKS -> writeChunks( outputStream, state.documentChunker(), previews );
+			case IMAGE_PAGES -> writeImagePages( outputStream );
+			case TEXT_PAGES -> writeTextPages( outputStream );
+			case REMOTE -> {
+				RenderProtocol.Result result = renderRemotely( state, outputStream != null ? RenderProtocol.OPERATION_WRITE : RenderProtocol.OPERATION_PREVIEWS );
+				if ( outputStream != null ) {
+					outputStream.write( result.pdf() );
+				}
+				if ( previews != null ) {
+					previews.addAll( result.previews() );
+				}
+			}
+			case LAYOUT -> {
+				// The first render uses the renderer the document was set on, and any further render lays out a copy of it
+				ITextRenderer layoutRenderer = renderer;
+				if ( !state.claimRenderer() ) {
+					layoutRenderer = newRenderRenderer();
+					layoutRenderer.setDocument( state.copyDocument() );
+				}
+				layoutRenderer.layout();
+				if ( outputStream != null ) {
+					layoutRenderer.createPDF( outputStream, true );
+					layoutRenderer.finishPDF();
+				}
+				if ( previews != null ) {
+					new PagePreviews( layoutRenderer, previewDpi, previewFormat, fontFiles ).renderListed( previewPages, 1, previews );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lays out and writes the PDF one chunk at a time, so that only the layout of a single chunk is held in memory.
+	 * The page numbering continues across chunks, or restarts in each chunk when the document is split by section.
+	 * When the document displays the total page count across chunks, every chunk is laid out once beforehand to count
+	 * the pages.
+	 *
+	 * @param outputStream    the stream the PDF is written to, or null to only lay out the document for previews
+	 * @param documentChunker the chunks of the document
+	 * @param previews        the list to which the page previews are added, or null to skip previews
+	 *
+	 * @throws IOException
+	 */
+	private void writeChunks( OutputStream outputStream, DocumentChunker documentChunker, List<byte[]> previews ) throws IOException {
+		ITextRenderer	chunkRenderer	= newRenderRenderer();
+		PagePreviews	pagePreviews	= previews != null ? new PagePreviews( chunkRenderer, previewDpi, previewFormat, fontFiles ) : null;
+		String			totalPagesStyle	= null;
+		if ( !documentChunker.isSectioned() && documentChunker.usesTotalPages() ) {
+			int totalPages = 0;
+			for ( int i = 0; i < documentChunker.size(); i++ ) {
+				chunkRenderer.setDocument( documentChunker.getChunk( i ) );
+				chunkRenderer.layout();
+				totalPages += chunkRenderer.getRootBox().getLayer().getPages().size();
+			}
+			totalPagesStyle = "span.totalpages:before, span.totalsectionpagecount:before { content: \"" + totalPages + "\"; }";
+		}
+
+		// The bookmark targets are located as the chunk which holds them is laid out and the outline is written once every
+		// page is known
+		List<String[]>				chunkBookmarks	= documentChunker.getBookmarks();
+		Map<Integer, List<String>>	chunkTargets	= new HashMap<Integer, List<String>>();
+		Map<String, Integer>		targetPages		= new HashMap<String, Integer>();
+		for ( String[] bookmark : chunkBookmarks ) {
+			chunkTargets.computeIfAbsent( documentChunker.getChunkOf( bookmark[ 1 ] ), index -> new ArrayList<String>() ).add( bookmark[ 1 ] );
+		}
+
+		int						nextPage		= 1;
+		for ( int i = 0; i < documentChunker.size(); i++ ) {
+			Document chunk = documentChunker.getChunk( i );
+			if ( totalPagesStyle != null ) {
+				Element style = chunk.createElement( "style" );
+				style.setAttribute( "type", "text/css" );
+				style.setTextContent( totalPagesStyle );
+				chunk.getElementsByTagName( "head" ).item( 0 ).appendChild( style );
+			}
+			chunkRenderer.setDocument( chunk );
+			chunkRenderer.layout();
+			List<PageBox> pages = chunkRenderer.getRootBox().getLayer().getPages();
+			if ( pagePreviews != null ) {
+				pagePreviews.renderListed( previewPages, nextPage, previews );
+			}
+			if ( outputStream == null ) {
+				// only previews are taken, so layout stops once the last previewed page is laid out
+				nextPage += pages.size();
+				if ( nextPage > PagePreviews.lastListedPage( previewPages ) ) {
+					return;
+				}
+				continue;
+			}
+			// sections number their own pages from one, while other chunks continue the numbering of the document
+			int initialPageNo = documentChunker.isSectioned() ? 1 : nextPage;
+			if ( i == 0 ) {
+				chunkRenderer.createPDF( outputStream, false, initialPageNo );
+			} else {
+				chunkRenderer.writeNextDocument( initialPageNo );
+			}
+			for ( String targetId : chunkTargets.getOrDefault( i, List.of() ) ) {
+				Box target = chunkRenderer.getSharedContext().getBoxById( targetId );
+				if ( target != null && !targetPages.containsKey( targetId ) ) {
+					for ( int pageIndex = 0; pageIndex < pages.size(); pageIndex++ ) {
+						if ( target.getAbsY() < pages.get( pageIndex ).getBottom() ) {
+							targetPages.put( targetId, nextPage + pageIndex );
+							break;
+						}
+					}
+				}
+			}
+			nextPage += pages.size();
+		}
+
+		PdfWriter writer = chunkRenderer.getWriter();
+		for ( String[] bookmark : chunkBookmarks ) {
+			Integer targetPage = targetPages.get( bookmark[ 1 ] );
+			if ( targetPage != null ) {
+				new PdfOutline(
+				    writer.getRootOutline(),
+				    PdfAction.gotoLocalPage( targetPage, new PdfDestination( PdfDestination.FIT ), writer ),
+				    bookmark[ 0 ]
+				);
+			}
+		}
+		if ( !targetPages.isEmpty() ) {
+			writer.setViewerPreferences( PdfWriter.PageModeUseOutlines );
+		}
+		chunkRenderer.finishPDF();
+	}
+
+	/**
+	 * Writes each image source directly on to its own pages, scaled down to fit within the margins of the page.
+	 * Every page of a multi-page TIFF is written on a page of its own. When an image resolution limit is set, larger
+	 * images are downscaled to the size at which they are placed.
+	 *
+	 * @param outputStream
+	 *
+	 * @throws IOException
+	 */
+	private void writeImagePages( OutputStream outputStream ) throws IOException {
+		com.lowagie.text.Document	document		= newPageDocument();
+		Rectangle					pageRectangle	= document.getPageSize();
+		Font						counterFont		= new Font( Font.TIMES_ROMAN, 12f );
+		Map<String, Image>			placedImages	= new HashMap<String, Image>();
+
+		try {
+			PdfWriter writer = openPageWriter( document, outputStream );
+
+			float	availableWidth	= pageRectangle.getWidth() - document.leftMargin() - document.rightMargin();
+			float	availableHeight	= pageRectangle.getHeight() - document.topMargin() - document.bottomMargin();
+
+			for ( DocumentPart part : documentParts ) {
+				byte[]	source		= ( byte[] ) part.content();
+				String	partName	= part.name();
+				String	sourceHash	= PDFUtil.hashContent( source );
+				boolean	firstPage	= true;
+
+				for ( Image page : ImagePages.read( source ) ) {
+					Rectangle	natural	= ImagePages.naturalSize( page );
+					float		scale	= Math.min( 1f, Math.min( availableWidth / natural.getWidth(), availableHeight / natural.getHeight() ) );
+					float		width	= natural.getWidth() * scale;
+					float		height	= natural.getHeight() * scale;
+
+					// Sources embedded without decoding may be downscaled, and identical sources are written once
+					boolean		encoded		= page.getOriginalType() != Image.ORIGINAL_NONE;
+					String		imageKey	= sourceHash + ":" + width + "x" + height;
+					Image		placed		= encoded ? placedImages.get( imageKey ) : null;
+					if ( placed == null ) {
+						placed = page;
+						if ( encoded && imageMaxDpi != null ) {
+							byte[] optimized = ImageOptimizer.optimize(
+							    source,
+							    ( int ) Math.ceil( width / 72f * imageMaxDpi ),
+							    ( int ) Math.ceil( height / 72f * imageMaxDpi ),
+							    jpegQuality
+							);
+							if ( optimized != source ) {
+								placed = Image.getInstance( optimized );
+							}
+						}
+						if ( encoded ) {
+							placedImages.put( imageKey, placed );
+						}
+					}
+					placed = Image.getInstance( placed );
+					placed.scaleAbsolute( width, height );
+					placed.setAbsolutePosition(
+					    document.leftMargin() + ( availableWidth - width ) / 2f,
+					    pageRectangle.getHeight() - document.topMargin() - height
+					);
+
+					document.newPage();
+					writer.getDirectContent().addImage( placed );
+
+					writePageDecorations( writer, document, firstPage ? partName : null, null, null, counterFont );
+					firstPage = false;
+				}
+			}
+		} catch ( DocumentException e ) {
+			throw new BoxRuntimeException( "Error writing the image pages of the PDF: " + e.getMessage(), e );
+		} finally {
+			if ( document.isOpen() ) {
+				document.close();
+			}
+		}
+	}
+
+	/**
+	 * Streams each plain text source on to pages in the text font, wrapping lines to the width between the margins.
+	 * Every source starts on a new page. Headers and footers are written as plain text, and when they display a total
+	 * page count the sources are read once beforehand to count the pages.
+	 *
+	 * @param outputStream
+	 *
+	 * @throws IOException
+	 */
+	private void writeTextPages( OutputStream outputStream ) throws IOException {
+		com.lowagie.text.Document	document		= newPageDocument();
+		Rectangle					pageRectangle	= document.getPageSize();
+		BaseFont					font			= resolveTextFont();
+		Font						pageFont		= new Font( font, textFontSize );
+		float						leading			= textFontSize * 1.2f;
+		float						lineWidth		= pageRectangle.getWidth() - document.leftMargin() - document.rightMargin();
+		float						textHeight		= pageRectangle.getHeight() - document.topMargin() - document.bottomMargin();
+		int							linesPerPage	= Math.max( 1, ( int ) Math.floor( textHeight / leading ) );
+
+		int							partCount		= documentParts.size();
+		String[]					headers			= new String[ partCount ];
+		String[]					footers			= new String[ partCount ];
+		boolean						countPages		= false;
+		for ( int i = 0; i < partCount; i++ ) {
+			DocumentPart part = documentParts.get( i );
+			headers[ i ]	= toPlainText( headerOf( part ) );
+			footers[ i ]	= toPlainText( footerOf( part ) );
+			for ( String text : new String[] { headers[ i ], footers[ i ] } ) {
+				countPages = countPages || ( text != null && ( text.contains( textPageTokens.get( ModuleKeys.totalpages ) )
+				    || text.contains( textPageTokens.get( ModuleKeys.totalsectionpagecount ) ) ) );
+			}
+		}
+
+		int[]	partPages	= new int[ partCount ];
+		int		totalPages	= 0;
+		if ( countPages ) {
+			for ( int i = 0; i < partCount; i++ ) {
+				try ( PlainTextLayout layout = new PlainTextLayout( documentParts.get( i ).content(), font, textFontSize, lineWidth ) ) {
+					partPages[ i ] = ( int ) Math.max( 1, ( layout.countLines() + linesPerPage - 1 ) / linesPerPage );
+				}
+				totalPages += partPages[ i ];
+			}
+		}
+
+		try {
+			PdfWriter		writer	= openPageWriter( document, outputStream );
+			PdfContentByte	content	= writer.getDirectContent();
+
+			for ( int i = 0; i < partCount; i++ ) {
+				DocumentPart part = documentParts.get( i );
+				try ( PlainTextLayout layout = new PlainTextLayout( part.content(), font, textFontSize, lineWidth ) ) {
+					String	partName	= part.name();
+					String	line		= layout.nextLine();
+					int		partPage	= 0;
+					do {
+						document.newPage();
+						writer.setPageEmpty( false );
+						partPage++;
+
+						Map<Key, String> counters = Map.of(
+						    ModuleKeys.currentpagenumber, String.valueOf( writer.getPageNumber() ),
+						    ModuleKeys.totalpages, String.valueOf( totalPages ),
+						    ModuleKeys.currentsectionpagenumber, String.valueOf( partPage ),
+						    ModuleKeys.totalsectionpagecount, String.valueOf( partPages[ i ] )
+						);
+						writePageDecorations(
+						    writer,
+						    document,
+						    partPage == 1 ? partName : null,
+						    replaceTextPageTokens( headers[ i ], counters ),
+						    replaceTextPageTokens( footers[ i ], counters ),
+						    pageFont
+						);
+
+						content.beginText();
+						content.setFontAndSize( font, textFontSize );
+						float top = pageRectangle.getHeight() - document.topMargin() - textFontSize;
+						for ( int lineIndex = 0; lineIndex < linesPerPage && line != null; lineIndex++ ) {
+							content.setTextMatrix( document.leftMargin(), top - lineIndex * leading );
+							content.showText( line );
+							line = layout.nextLine();
+						}
+						content.endText();
+					} while ( line != null );
+				}
+			}
+		} catch ( DocumentException e ) {
+			throw new BoxRuntimeException( "Error writing the text pages of the PDF: " + e.getMessage(), e );
+		} finally {
+			if ( document.isOpen() ) {
+				document.close();
+			}
+		}
+	}
+
+	/**
+	 * Resolves the text font, which may be the family name of a font in the fontDirectory, the path to a font file or
+	 * the name of one of the standard 14 fonts
+	 *
+	 * @return the text font
+	 */
+	private BaseFont resolveTextFont() {
+		for ( Map.Entry<String, FontFamily> family : renderer.getFontResolver().getFonts().entrySet() ) {
+			if ( family.getKey().equalsIgnoreCase( textFont ) && !family.getValue().getFontDescriptions().isEmpty() ) {
+				return family.getValue().getFontDescriptions().get( 0 ).getFont();
+			}
+		}
+		try {
+			if ( Files.isRegularFile( Path.of( textFont ) ) ) {
+				return BaseFont.createFont( textFont, embedFonts ? BaseFont.IDENTITY_H : BaseFont.CP1252, embedFonts );
+			}
+			return BaseFont.createFont( textFont, BaseFont.CP1252, BaseFont.NOT_EMBEDDED );
+		} catch ( IOException | DocumentException e ) {
+			throw new BoxRuntimeException( String.format( "The text font [%s] could not be loaded: %s", textFont, e.getMessage() ), e );
+		}
+	}
+
+	/**
+	 * Converts the markup of a header or footer to plain text, with tokens standing in for the page counters
+	 *
+	 * @param markup the header or footer markup
+	 *
+	 * @return the plain text, or null if the markup is empty
+	 */
+	private String toPlainText( String markup ) {
+		if ( markup == null || PDFUtil.isBlank( markup ) ) {
+			return null;
+		}
+		for ( Map.Entry<Key, String> token : textPageTokens.entrySet() ) {
+			markup = markup.replace( PDFUtil.DOCUMENT_LOCAL_PLACEHOLDERS.getAsString( token.getKey() ), token.getValue() );
+		}
+		return Jsoup.parse( markup ).text();
+	}
+
+	/**
+	 * Replaces the page counter tokens in the plain text of a header or footer
+	 *
+	 * @param text     the plain text
+	 * @param counters the page counter values
+	 *
+	 * @return the text with the page counters
+	 */
+	private String replaceTextPageTokens( String text, Map<Key, String> counters ) {
+		if ( text == null ) {
+			return null;
+		}
+		for ( Map.Entry<Key, String> token : textPageTokens.entrySet() ) {
+			text = text.replace( token.getValue(), counters.get( token.getKey() ) );
+		}
+		return text;
+	}
+
+	/**
+	 * Creates a document for pages which are written directly, with the page size, orientation and margins of the PDF
+	 *
+	 * @return the document
+	 */
+	private com.lowagie.text.Document newPageDocument() {
+		float unit = globalMeasureUnit.equalsIgnoreCase( "cm" ) ? 72f / 2.54f : 72f;
+		return new com.lowagie.text.Document(
+		    getPageRectangle(),
+		    ( float ) globalMarginLeft * unit,
+		    ( float ) globalMarginRight * unit,
+		    ( float ) globalMarginTop * unit,
+		    ( float ) globalMarginBottom * unit
+		);
+	}
+
+	/**
+	 * Opens a document for pages which are written directly, applying the encryption and compression of the PDF
+	 *
+	 * @param document     the document
+	 * @param outputStream the stream the PDF is written to
+	 *
+	 * @return the writer of the document
+	 */
+	private PdfWriter openPageWriter( com.lowagie.text.Document document, OutputStream outputStream ) {
+		PdfWriter writer = PdfWriter.getInstance( document, outputStream );
+		if ( encryptionSettings != null ) {
+			writer.setEncryption(
+			    encryptionSettings.getUserPassword(),
+			    encryptionSettings.getOwnerPassword(),
+			    encryptionSettings.getAllowedPrivileges(),
+			    encryptionSettings.getEncryptionType()
+			);
+		}
+		applyCompression( writer );
+		document.open();
+		return writer;
+	}
+
+	/**
+	 * Writes the bookmark, header, footer and page counter of a page which is written directly. As with the HTML
+	 * layout, the page counter is shown at the top right of the page when the document has no footer.
+	 *
+	 * @param writer       the writer of the document
+	 * @param document     the document
+	 * @param bookmarkName the name of the bookmark which targets the page, if any
+	 * @param header       the plain text header of the page, if any
+	 * @param footer       the plain text footer of the page, if any
+	 * @param font         the font of the header, footer and page counter
+	 */
+	private void writePageDecorations(
+	    PdfWriter writer,
+	    com.lowagie.text.Document document,
+	    String bookmarkName,
+	    String header,
+	    String footer,
+	    Font font ) {
+		PdfContentByte	content		= writer.getDirectContent();
+		Rectangle		pageSize	= document.getPageSize();
+		float			centerX		= ( document.leftMargin() + pageSize.getWidth() - document.rightMargin() ) / 2f;
+
+		if ( bookmarkName != null && bookmarkSections ) {
+			new PdfOutline(
+			    writer.getRootOutline(),
+			    PdfAction.gotoLocalPage( writer.getPageNumber(), new PdfDestination( PdfDestination.FIT ), writer ),
+			    bookmarkName
+			);
+			writer.setViewerPreferences( PdfWriter.PageModeUseOutlines );
+		}
+		if ( header != null ) {
+			ColumnText.showTextAligned( content, com.lowagie.text.Element.ALIGN_CENTER, new Phrase( header, font ), centerX,
+			    pageSize.getHeight() - document.topMargin() / 2f, 0 );
+		}
+		if ( footer != null ) {
+			ColumnText.showTextAligned( content, com.lowagie.text.Element.ALIGN_CENTER, new Phrase( footer, font ), centerX,
+			    document.bottomMargin() / 2f, 0 );
+		} else if ( PDFUtil.isBlank( globalFooter ) ) {
+			ColumnText.showTextAligned( content, com.lowagie.text.Element.ALIGN_RIGHT, new Phrase( "Page " + writer.getPageNumber(), font ),
+			    pageSize.getWidth() - document.rightMargin(), pageSize.getHeight() - document.topMargin() / 2f, 0 );
+		}
+	}
+
+	/**
+	 * Writes the PDF by stitching together the individually rendered sections.
+	 * Sections are retrieved from the section cache when their content is unchanged and rendered otherwise.
+	 *
+	 * @param outputStream
+	 * @param sectionContents the standalone HTML documents of each section
+	 *
+	 * @throws IOException
+	 */
+	private void writeSections( OutputStream outputStream, List<String> sectionContents ) throws IOException {
+		com.lowagie.text.Document		stitched	= new com.lowagie.text.Document();
+		PdfCopy							copy		= new PdfSmartCopy( stitched, outputStream );
+		List<Map<String, Object>>		outlines	= new ArrayList<Map<String, Object>>();
+		int								pageOffset	= 0;
+
+		if ( encryptionSettings != null ) {
+			copy.setEncryption(
+			    encryptionSettings.getUserPassword(),
+			    encryptionSettings.getOwnerPassword(),
+			    encryptionSettings.getAllowedPrivileges(),
+			    encryptionSettings.getEncryptionType()
+			);
+		}
+		applyCompression( copy );
+		stitched.open();
+
+		// the images of every section are read once, and the fonts are identified by their files as they are now
+		Map<String, String>	imageSources	= new HashMap<String, String>();
+		List<String>		fontStamps		= fontFiles.stream().map( PDF::fileStamp ).toList();
+		for ( String sectionContent : sectionContents ) {
+			Document parsedContent = PDFUtil.parseContent( sectionContent );
+			postProcessContent( parsedContent, imageSources );
+
+			// the key covers the section after its images are inlined, so a changed image or font file is rendered again
+			List<String>	keyParts	= new ArrayList<String>( fontStamps );
+			keyParts.add( sectionContent );
+			keyParts.add( imageMaxDpi + ":" + jpegQuality + ":" + compressionLevel + ":" + fontSubset + ":" + embedFonts );
+			NodeList imgTags = parsedContent.getElementsByTagName( "img" );
+			for ( int i = 0; i < imgTags.getLength(); i++ ) {
+				Node src = imgTags.item( i ).getAttributes().getNamedItem( "src" );
+				if ( src != null ) {
+					keyParts.add( src.getNodeValue().startsWith( "data:" ) ? src.getNodeValue() : fileStamp( src.getNodeValue() ) );
+				}
+			}
+			String	cacheKey	= PDFUtil.hashContent( keyParts.toArray( String[]::new ) );
+			byte[]	sectionPDF	= SectionCache.get( cacheKey );
+			if ( sectionPDF == null ) {
+				sectionPDF = renderSection( parsedContent );
+				SectionCache.put( cacheKey, sectionPDF );
+			}
+
+			PdfReader reader = new PdfReader( sectionPDF );
+			try {
+				List<Map<String, Object>> sectionOutlines = SimpleBookmark.getBookmarkList( reader );
+				if ( sectionOutlines != null ) {
+					SimpleBookmark.shiftPageNumbersInRange( sectionOutlines, pageOffset, null );
+					outlines.addAll( sectionOutlines );
+				}
+				for ( int i = 1; i <= reader.getNumberOfPages(); i++ ) {
+					copy.addPage( copy.getImportedPage( reader, i ) );
+				}
+				pageOffset += reader.getNumberOfPages();
+				copy.freeReader( reader );
+			} finally {
+				reader.close();
+			}
+		}
+
+		if ( !outlines.isEmpty() ) {
+			copy.setOutlines( outlines );
+		}
+		stitched.close();
+	}
+
+	/**
+	 * Identifies a file by its path, size and modification time, so that a file which is replaced at the same path is
+	 * told apart. Paths which are not local files are identified by the path alone.
+	 *
+	 * @param path the file path or URL
+	 *
+	 * @return the identity of the file
+	 */
+	private static String fileStamp( String path ) {
+		try {
+			Path file = Path.of( path.startsWith( "file:" ) ? URI.create( path ).getPath() : path );
+			if ( Files.isRegularFile( file ) ) {
+				return path + ":" + Files.size( file ) + ":" + Files.getLastModifiedTime( file ).toMillis();
+			}
+		} catch ( IOException | RuntimeException e ) {
+			// the path is identified by itself
+		}
+		return path;
+	}
+
+	/**
+	 * Renders a single section document to PDF bytes
+	 *
+	 * @param parsedContent the post-processed HTML document of the section
+	 *
+	 * @return the rendered PDF
+	 */
+	private byte[] renderSection( Document parsedContent ) {
+		ITextRenderer sectionRenderer = newRenderRenderer( false );
+		sectionRenderer.setDocument( parsedContent );
+		try ( ByteArrayOutputStream outputStream = new ByteArrayOutputStream() ) {
+			sectionRenderer.layout();
+			sectionRenderer.createPDF( outputStream, true );
+			return outputStream.toByteArray();
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
 }
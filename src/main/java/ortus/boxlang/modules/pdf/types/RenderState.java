@@ -0,0 +1,162 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.types;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.w3c.dom.Document;
+
+import ortus.boxlang.modules.pdf.util.DocumentChunker;
+
+/**
+ * The output of a single generation of a PDF: how the document is written and what is written. A new state is created
+ * each time the PDF is generated, and it is not modified once created, so it may be written any number of times,
+ * including concurrently.
+ *
+ * @param mode            How the document is written
+ * @param document        The HTML document which is laid out, when the whole document is laid out at once
+ * @param sectionContents The standalone HTML documents of each section, when the sections are rendered individually
+ * @param documentChunker The chunks of the HTML document, when it is laid out in chunks
+ * @param sectionIds      The element ids of the sections of the HTML document, in order, when it is laid out
+ * @param markup          The assembled HTML markup, when the document is rendered by a render worker
+ * @param imageSources    The data URIs of the images of the markup, keyed by their source, when the document is rendered by a render worker
+ * @param rendererClaimed Whether a render has claimed the renderer of the PDF, on which the document was set
+ */
+record RenderState(
+    Mode mode,
+    Document document,
+    List<String> sectionContents,
+    DocumentChunker documentChunker,
+    List<String> sectionIds,
+    String markup,
+    Map<String, String> imageSources,
+    AtomicBoolean rendererClaimed ) {
+
+	/**
+	 * How a generated document is written
+	 */
+	enum Mode {
+		/**
+		 * The HTML document is laid out at once
+		 */
+		LAYOUT,
+		/**
+		 * Each section is rendered individually, using the section cache, and the sections are stitched together
+		 */
+		SECTIONS,
+		/**
+		 * The HTML document is laid out and written one chunk at a time
+		 */
+		CHUNKS,
+		/**
+		 * Image sources are placed directly on their own pages
+		 */
+		IMAGE_PAGES,
+		/**
+		 * Plain text sources are streamed directly on to pages
+		 */
+		TEXT_PAGES,
+		/**
+		 * The HTML markup is laid out and written by a render worker in another process
+		 */
+		REMOTE
+	}
+
+	/**
+	 * Creates the state of a document which is laid out at once
+	 *
+	 * @param document   The HTML document
+	 * @param sectionIds The element ids of the sections of the document, in order
+	 *
+	 * @return the render state
+	 */
+	static RenderState layout( Document document, List<String> sectionIds ) {
+		return new RenderState( Mode.LAYOUT, document, null, null, List.copyOf( sectionIds ), null, null, new AtomicBoolean() );
+	}
+
+	/**
+	 * Creates the state of a document whose sections are rendered individually
+	 *
+	 * @param sectionContents The standalone HTML documents of each section
+	 *
+	 * @return the render state
+	 */
+	static RenderState sections( List<String> sectionContents ) {
+		return new RenderState( Mode.SECTIONS, null, List.copyOf( sectionContents ), null, List.of(), null, null, new AtomicBoolean() );
+	}
+
+	/**
+	 * Creates the state of a document which is laid out in chunks
+	 *
+	 * @param documentChunker The chunks of the HTML document
+	 * @param sectionIds      The element ids of the sections of the document, in order
+	 *
+	 * @return the render state
+	 */
+	static RenderState chunks( DocumentChunker documentChunker, List<String> sectionIds ) {
+		return new RenderState( Mode.CHUNKS, null, null, documentChunker, List.copyOf( sectionIds ), null, null, new AtomicBoolean() );
+	}
+
+	/**
+	 * Creates the state of a document which is written directly, without HTML layout
+	 *
+	 * @param mode Either IMAGE_PAGES or TEXT_PAGES
+	 *
+	 * @return the render state
+	 */
+	static RenderState direct( Mode mode ) {
+		return new RenderState( mode, null, null, null, List.of(), null, null, new AtomicBoolean() );
+	}
+
+	/**
+	 * Creates the state of a document which is rendered by a render worker
+	 *
+	 * @param markup       The assembled HTML markup
+	 * @param imageSources The data URIs of the images of the markup, keyed by their source
+	 * @param sectionIds   The element ids of the sections of the document, in order
+	 *
+	 * @return the render state
+	 */
+	static RenderState remote( String markup, Map<String, String> imageSources, List<String> sectionIds ) {
+		return new RenderState( Mode.REMOTE, null, null, null, List.copyOf( sectionIds ), markup, Map.copyOf( imageSources ), new AtomicBoolean() );
+	}
+
+	/**
+	 * Claims the renderer of the PDF, which already holds the document, for a single render
+	 *
+	 * @return true for the first render of the state, which may lay out the document with the renderer of the PDF
+	 */
+	boolean claimRenderer() {
+		return rendererClaimed.compareAndSet( false, true );
+	}
+
+	/**
+	 * Copies the document, so that a render may lay it out alongside other renders. The DOM is not safe for concurrent
+	 * use, so copies are taken one at a time, and copying only walks the node tree which the layout does not modify.
+	 *
+	 * @return a deep copy of the document
+	 */
+	Document copyDocument() {
+		synchronized ( document ) {
+			return ( Document ) document.cloneNode( true );
+		}
+	}
+
+}
@@ -0,0 +1,439 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Splits a large HTML document in to a series of smaller documents which can be laid out one at a time.
+ * The body is split between top-level blocks and between the rows of large tables, or at each top-level block when
+ * it is split by section. Each chunk repeats the running headers and footers in effect where it starts, and the header
+ * rows and column groups of split tables.
+ * A chunker may be shared by concurrent renders, as the chunks are built from the original document one at a time.
+ */
+public class DocumentChunker {
+
+	/**
+	 * A block of the document which is placed in a single chunk, along with the elements which contain it
+	 *
+	 * @param ancestors The containing elements, outermost first, excluding the body
+	 * @param node      The node
+	 * @param weight    The number of table rows in the node, or 1 for other nodes
+	 */
+	private record Block( List<Element> ancestors, Node node, int weight ) {
+	}
+
+	/**
+	 * The classes of the running elements which are repeated in every chunk
+	 */
+	private static final Set<String>	RUNNING_CLASSES		= Set.of( "bx-pdf-header", "bx-pdf-footer" );
+
+	/**
+	 * The table children which are repeated in every chunk of a split table
+	 */
+	private static final Set<String>	REPEATED_TABLE_TAGS	= Set.of( "thead", "colgroup", "col" );
+
+	/**
+	 * The document being split
+	 */
+	private final Document				document;
+
+	/**
+	 * The blocks of each chunk
+	 */
+	private final List<List<Block>>		chunks				= new ArrayList<List<Block>>();
+
+	/**
+	 * The running elements in effect at the start of each chunk, which are written before parts of the document which
+	 * do not carry their own, such as sections which share the header of the section before them
+	 */
+	private final List<List<Element>>	inheritedRunning	= new ArrayList<List<Element>>();
+
+	/**
+	 * The index of the first chunk of each containing element
+	 */
+	private final Map<Element, Integer>	firstChunks			= new HashMap<Element, Integer>();
+
+	/**
+	 * The index of the chunk which holds each element id
+	 */
+	private final Map<String, Integer>	idChunks			= new HashMap<String, Integer>();
+
+	/**
+	 * Whether each top-level block is a chunk of its own, such as a section
+	 */
+	private final boolean				sectioned;
+
+	/**
+	 * Constructor
+	 *
+	 * @param document  The document to split
+	 * @param chunkSize The maximum number of blocks or table rows in each chunk
+	 */
+	public DocumentChunker( Document document, int chunkSize ) {
+		this( document, chunkSize, false );
+	}
+
+	/**
+	 * Creates a chunker which splits a document at each of its top-level blocks, without splitting the blocks, so that
+	 * each section of the document is laid out as a document of its own
+	 *
+	 * @param document The document to split
+	 *
+	 * @return the chunker
+	 */
+	public static DocumentChunker bySection( Document document ) {
+		return new DocumentChunker( document, Integer.MAX_VALUE, true );
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param document  The document to split
+	 * @param chunkSize The maximum number of blocks or table rows in each chunk
+	 * @param sectioned Whether each top-level element starts a new chunk
+	 */
+	private DocumentChunker( Document document, int chunkSize, boolean sectioned ) {
+		this.document	= document;
+		this.sectioned	= sectioned;
+
+		Element body = getChild( document.getDocumentElement(), "body" );
+		if ( body == null ) {
+			throw new BoxRuntimeException( "The document cannot be split as it does not contain a body" );
+		}
+
+		List<Block> blocks = new ArrayList<Block>();
+		collectBlocks( body, new ArrayList<Element>(), chunkSize, blocks );
+
+		List<Block>				chunk	= new ArrayList<Block>();
+		int						weight	= 0;
+		Map<String, Element>	running	= new HashMap<String, Element>();
+		for ( Block block : blocks ) {
+			boolean startsChunk = sectioned ? block.node() instanceof Element : weight + block.weight() > chunkSize;
+			if ( !chunk.isEmpty() && startsChunk ) {
+				chunks.add( chunk );
+				chunk	= new ArrayList<Block>();
+				weight	= 0;
+			}
+			if ( chunk.isEmpty() ) {
+				inheritedRunning.add( new ArrayList<Element>( running.values() ) );
+			}
+			chunk.add( block );
+			weight += block.weight();
+			// the running children of a container only need to be found once, where the container starts
+			List<Element> startedAncestors = new ArrayList<Element>();
+			for ( Element ancestor : block.ancestors() ) {
+				if ( firstChunks.putIfAbsent( ancestor, chunks.size() ) == null ) {
+					startedAncestors.add( ancestor );
+					if ( ancestor.hasAttribute( "id" ) ) {
+						idChunks.putIfAbsent( ancestor.getAttribute( "id" ), chunks.size() );
+					}
+				}
+			}
+			running.putAll( findRunning( startedAncestors, block.node() ) );
+			if ( block.node() instanceof Element element ) {
+				if ( element.hasAttribute( "id" ) ) {
+					idChunks.putIfAbsent( element.getAttribute( "id" ), chunks.size() );
+				}
+				NodeList descendants = element.getElementsByTagName( "*" );
+				for ( int i = 0; i < descendants.getLength(); i++ ) {
+					Element descendant = ( Element ) descendants.item( i );
+					if ( descendant.hasAttribute( "id" ) ) {
+						idChunks.putIfAbsent( descendant.getAttribute( "id" ), chunks.size() );
+					}
+				}
+			}
+		}
+		if ( !chunk.isEmpty() ) {
+			chunks.add( chunk );
+		}
+	}
+
+	/**
+	 * Returns the number of chunks
+	 *
+	 * @return
+	 */
+	public int size() {
+		return chunks.size();
+	}
+
+	/**
+	 * Whether the document is split at each of its top-level blocks, so that each chunk is a section of its own
+	 *
+	 * @return true if the document is split by section
+	 */
+	public boolean isSectioned() {
+		return sectioned;
+	}
+
+	/**
+	 * Returns the index of the chunk which holds an element, such as the target of a bookmark
+	 *
+	 * @param id The element id
+	 *
+	 * @return the chunk index, or -1 if no chunk holds the element
+	 */
+	public int getChunkOf( String id ) {
+		return idChunks.getOrDefault( id, -1 );
+	}
+
+	/**
+	 * Returns the bookmarks of the document, in order. Chunks do not contain bookmarks, as the outline of the whole
+	 * document is written once all of the chunks have been laid out.
+	 *
+	 * @return the name and target element id of each bookmark
+	 */
+	public synchronized List<String[]> getBookmarks() {
+		List<String[]>	bookmarks	= new ArrayList<String[]>();
+		NodeList		elements	= document.getElementsByTagName( "bookmark" );
+		for ( int i = 0; i < elements.getLength(); i++ ) {
+			Element	bookmark	= ( Element ) elements.item( i );
+			String	href		= bookmark.getAttribute( "href" );
+			if ( href.startsWith( "#" ) && href.length() > 1 ) {
+				bookmarks.add( new String[] { bookmark.getAttribute( "name" ), href.substring( 1 ) } );
+			}
+		}
+		return bookmarks;
+	}
+
+	/**
+	 * Builds the standalone document of a chunk. The head of the original document is copied without its bookmarks.
+	 *
+	 * @param index The index of the chunk
+	 *
+	 * @return the document of the chunk
+	 */
+	public synchronized Document getChunk( int index ) {
+		Document chunkDocument;
+		try {
+			chunkDocument = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		} catch ( ParserConfigurationException e ) {
+			throw new BoxRuntimeException( "Unable to create a document for the chunk", e );
+		}
+
+		Element	root	= ( Element ) chunkDocument.importNode( document.getDocumentElement(), false );
+		Element	body	= ( Element ) chunkDocument.importNode( getChild( document.getDocumentElement(), "body" ), false );
+		chunkDocument.appendChild( root );
+
+		// Copies of the containing elements in this chunk, keyed by the original element
+		Map<Node, Element> copies = new HashMap<Node, Element>();
+		for ( Block block : chunks.get( index ) ) {
+			Element parent = body;
+			for ( Element ancestor : block.ancestors() ) {
+				Element copy = copies.get( ancestor );
+				if ( copy == null ) {
+					copy = copyContainer( chunkDocument, ancestor );
+					// the id belongs to the first chunk of the element, so that links and bookmarks target its start
+					if ( firstChunks.get( ancestor ) < index ) {
+						copy.removeAttribute( "id" );
+					}
+					parent.appendChild( copy );
+					copies.put( ancestor, copy );
+				}
+				parent = copy;
+			}
+			parent.appendChild( chunkDocument.importNode( block.node(), true ) );
+		}
+
+		// the running elements in effect where the chunk starts are written first, unless its first block replaces them
+		Block					first		= chunks.get( index ).get( 0 );
+		Map<String, Element>	replaced	= findRunning( first.ancestors(), first.node() );
+		for ( Element inherited : inheritedRunning.get( index ) ) {
+			if ( !replaced.containsKey( inherited.getAttribute( "class" ) ) ) {
+				body.insertBefore( chunkDocument.importNode( inherited, true ), body.getFirstChild() );
+			}
+		}
+
+		Element head = getChild( document.getDocumentElement(), "head" );
+		if ( head != null ) {
+			// the head is copied without its bookmarks, which would otherwise be copied in to every chunk
+			Element	headCopy		= ( Element ) chunkDocument.importNode( head, false );
+			boolean	hasBookmarks	= false;
+			for ( Node child = head.getFirstChild(); child != null; child = child.getNextSibling() ) {
+				if ( child instanceof Element element && element.getNodeName().equalsIgnoreCase( "bookmarks" ) ) {
+					hasBookmarks = true;
+					continue;
+				}
+				headCopy.appendChild( chunkDocument.importNode( child, true ) );
+			}
+			if ( hasBookmarks ) {
+				// without bookmarks the renderer would outline the headings of the chunk instead
+				for ( int level = 1; level <= 6; level++ ) {
+					NodeList headings = body.getElementsByTagName( "h" + level );
+					for ( int i = 0; i < headings.getLength(); i++ ) {
+						Element heading = ( Element ) headings.item( i );
+						if ( !heading.hasAttribute( "data-pdf-bookmark" ) ) {
+							heading.setAttribute( "data-pdf-bookmark", "none" );
+						}
+					}
+				}
+			}
+			root.appendChild( headCopy );
+		}
+		root.appendChild( body );
+
+		return chunkDocument;
+	}
+
+	/**
+	 * Determines whether the document displays the total page count, which is only known once every chunk has been laid out
+	 *
+	 * @return true if the document contains a total page count placeholder
+	 */
+	public synchronized boolean usesTotalPages() {
+		NodeList spans = document.getElementsByTagName( "span" );
+		for ( int i = 0; i < spans.getLength(); i++ ) {
+			String className = ( ( Element ) spans.item( i ) ).getAttribute( "class" );
+			if ( className.equals( "totalpages" ) || className.equals( "totalsectionpagecount" ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Splits the children of an element in to blocks. Children which contain more table rows than fit in a chunk are split further.
+	 *
+	 * @param parent    The element whose children are split
+	 * @param ancestors The containing elements of the children
+	 * @param chunkSize The maximum number of blocks or table rows in each chunk
+	 * @param blocks    The list to which the blocks are added
+	 */
+	private static void collectBlocks( Element parent, List<Element> ancestors, int chunkSize, List<Block> blocks ) {
+		boolean isTable = parent.getNodeName().equalsIgnoreCase( "table" );
+		for ( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+			if ( child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().isBlank() ) {
+				continue;
+			}
+			if ( child instanceof Element element ) {
+				if ( isRepeated( element, isTable ) ) {
+					continue;
+				}
+				int rows = element.getNodeName().equalsIgnoreCase( "tr" ) ? 1 : element.getElementsByTagName( "tr" ).getLength();
+				if ( rows > chunkSize && !element.getNodeName().equalsIgnoreCase( "tr" ) ) {
+					List<Element> childAncestors = new ArrayList<Element>( ancestors );
+					childAncestors.add( element );
+					collectBlocks( element, childAncestors, chunkSize, blocks );
+					continue;
+				}
+				blocks.add( new Block( ancestors, element, Math.max( 1, rows ) ) );
+			} else {
+				blocks.add( new Block( ancestors, child, 1 ) );
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of a containing element in a chunk, along with the children which are repeated in every chunk
+	 *
+	 * @param chunkDocument The document of the chunk
+	 * @param container     The containing element
+	 *
+	 * @return the copy
+	 */
+	private static Element copyContainer( Document chunkDocument, Element container ) {
+		Element	copy	= ( Element ) chunkDocument.importNode( container, false );
+		boolean	isTable	= container.getNodeName().equalsIgnoreCase( "table" );
+		for ( Node child = container.getFirstChild(); child != null; child = child.getNextSibling() ) {
+			if ( child instanceof Element element && isRepeated( element, isTable ) ) {
+				copy.appendChild( chunkDocument.importNode( element, true ) );
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Determines whether a child element is repeated in every chunk of its parent
+	 *
+	 * @param element The child element
+	 * @param inTable Whether the parent is a table
+	 *
+	 * @return true if the element is repeated
+	 */
+	private static boolean isRepeated( Element element, boolean inTable ) {
+		if ( inTable && REPEATED_TABLE_TAGS.contains( element.getNodeName().toLowerCase() ) ) {
+			return true;
+		}
+		return RUNNING_CLASSES.contains( element.getAttribute( "class" ) );
+	}
+
+	/**
+	 * Finds the last running element of each class which is a child of the containers or within the node
+	 *
+	 * @param containers The containing elements, whose running children are repeated with them
+	 * @param node       The node
+	 *
+	 * @return the running elements, keyed by class
+	 */
+	private static Map<String, Element> findRunning( List<Element> containers, Node node ) {
+		Map<String, Element> running = new HashMap<String, Element>();
+		for ( Element container : containers ) {
+			for ( Node child = container.getFirstChild(); child != null; child = child.getNextSibling() ) {
+				if ( child instanceof Element element && RUNNING_CLASSES.contains( element.getAttribute( "class" ) ) ) {
+					running.put( element.getAttribute( "class" ), element );
+				}
+			}
+		}
+		if ( node instanceof Element element ) {
+			if ( RUNNING_CLASSES.contains( element.getAttribute( "class" ) ) ) {
+				running.put( element.getAttribute( "class" ), element );
+			}
+			NodeList divs = element.getElementsByTagName( "div" );
+			for ( int i = 0; i < divs.getLength(); i++ ) {
+				Element div = ( Element ) divs.item( i );
+				if ( RUNNING_CLASSES.contains( div.getAttribute( "class" ) ) ) {
+					running.put( div.getAttribute( "class" ), div );
+				}
+			}
+		}
+		return running;
+	}
+
+	/**
+	 * Returns the first child element with a tag name
+	 *
+	 * @param parent  The parent element
+	 * @param tagName The tag name
+	 *
+	 * @return the child element, or null if there is none
+	 */
+	private static Element getChild( Element parent, String tagName ) {
+		for ( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+			if ( child instanceof Element element && element.getNodeName().equalsIgnoreCase( tagName ) ) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,295 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.lowagie.text.pdf.AcroFields;
+import com.lowagie.text.pdf.BaseField;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfStamper;
+
+import ortus.boxlang.modules.pdf.types.PDF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * A parsed AcroForm template: its bytes and the fields it declares. Templates are held in a size-bounded,
+ * least-recently-used cache, keyed by the template file and its modification time or by a hash of a binary template,
+ * so each fill only opens a reader over the cached bytes and stamps the values.
+ * <p>
+ * The text field appearances which are parsed from the template as it is filled are kept in a pool of caches, which are
+ * reused by later fills of the same template. Each cache is used by one fill at a time.
+ */
+public class FormTemplate {
+
+	/**
+	 * The maximum number of bytes of templates held in the cache
+	 */
+	public static final long									MAX_BYTES			= 64L * 1024L * 1024L;
+
+	/**
+	 * The templates, in access order
+	 */
+	private static final LinkedHashMap<String, FormTemplate>	templates			= new LinkedHashMap<String, FormTemplate>( 16, 0.75f, true );
+
+	/**
+	 * The number of bytes currently held in the cache
+	 */
+	private static long											currentBytes		= 0;
+
+	/**
+	 * A field of a template
+	 *
+	 * @param name   The fully qualified name of the field
+	 * @param type   The AcroFields field type
+	 * @param states The appearance states of a checkbox or radio button, otherwise null
+	 */
+	public record Field( String name, int type, String[] states ) {
+	}
+
+	private final byte[]										bytes;
+	private final Map<String, Field>							fields;
+	private final Queue<Map<String, BaseField>>					appearanceCaches	= new ConcurrentLinkedQueue<Map<String, BaseField>>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param bytes  The template PDF
+	 * @param fields The fields of the template, by their lower case names
+	 */
+	private FormTemplate( byte[] bytes, Map<String, Field> fields ) {
+		this.bytes	= bytes;
+		this.fields	= fields;
+	}
+
+	/**
+	 * Returns the parsed template of a PDF source, parsing it the first time it is used or after its file has changed
+	 *
+	 * @param context The context used to expand relative paths
+	 * @param source  A byte array, a file path or a PDF object produced by the document component
+	 *
+	 * @return the template
+	 */
+	public static FormTemplate of( IBoxContext context, Object source ) {
+		try {
+			if ( source instanceof String path ) {
+				Path	templatePath	= Path.of( PDFReaderUtil.resolvePath( context, path ) );
+				// the file modification time and size are part of the cache key, so a replaced template is parsed again
+				String	cacheKey		= "file:" + templatePath + ":" + Files.getLastModifiedTime( templatePath ).toMillis() + ":" + Files.size( templatePath );
+				FormTemplate template = get( cacheKey );
+				if ( template == null ) {
+					template = parse( Files.readAllBytes( templatePath ) );
+					put( cacheKey, template );
+				}
+				return template;
+			}
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+
+		byte[] binary;
+		if ( source instanceof byte[] bytes ) {
+			binary = bytes;
+		} else if ( source instanceof PDF pdf ) {
+			binary = pdf.toBinary();
+		} else {
+			throw new BoxRuntimeException(
+			    String.format( "The PDF source of type [%s] is not supported. Sources must be a binary, a file path or a PDF object",
+			        source == null ? "null" : source.getClass().getSimpleName() )
+			);
+		}
+		String			cacheKey	= "binary:" + PDFUtil.hashContent( binary );
+		FormTemplate	template	= get( cacheKey );
+		if ( template == null ) {
+			template = parse( binary );
+			put( cacheKey, template );
+		}
+		return template;
+	}
+
+	/**
+	 * Reads the fields of a template
+	 *
+	 * @param bytes The template PDF
+	 *
+	 * @return the parsed template
+	 */
+	private static FormTemplate parse( byte[] bytes ) {
+		try {
+			PdfReader reader = new PdfReader( bytes );
+			try {
+				AcroFields			form	= reader.getAcroFields();
+				Map<String, Field>	fields	= new LinkedHashMap<String, Field>();
+				for ( String name : form.getAllFields().keySet() ) {
+					int type = form.getFieldType( name );
+					fields.put(
+					    name.toLowerCase(),
+					    new Field(
+					        name,
+					        type,
+					        type == AcroFields.FIELD_TYPE_CHECKBOX || type == AcroFields.FIELD_TYPE_RADIOBUTTON ? form.getAppearanceStates( name ) : null
+					    )
+					);
+				}
+				if ( fields.isEmpty() ) {
+					throw new BoxRuntimeException( "The template has no form fields" );
+				}
+				return new FormTemplate( bytes, fields );
+			} finally {
+				reader.close();
+			}
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * Fills the template with values and writes the filled PDF
+	 *
+	 * @param data         The field values, by field name. Field names are matched without regard to case
+	 * @param outputStream The stream the filled PDF is written to
+	 * @param flatten      Whether the fields are flattened in to the page content, so they can no longer be edited
+	 * @param strict       Whether a value for a field the template does not declare is an error, rather than ignored
+	 *
+	 * @throws IOException
+	 */
+	public void fill( IStruct data, OutputStream outputStream, boolean flatten, boolean strict ) throws IOException {
+		Map<String, BaseField> appearanceCache = appearanceCaches.poll();
+		if ( appearanceCache == null ) {
+			appearanceCache = new HashMap<String, BaseField>();
+		}
+		PdfReader reader = new PdfReader( bytes );
+		try {
+			PdfStamper	stamper	= new PdfStamper( reader, outputStream );
+			AcroFields	form	= stamper.getAcroFields();
+			form.setFieldCacheMap( appearanceCache );
+			for ( Map.Entry<Key, Object> entry : data.entrySet() ) {
+				Field field = fields.get( entry.getKey().getName().toLowerCase() );
+				if ( field == null ) {
+					if ( strict ) {
+						throw new BoxRuntimeException( String.format( "The template has no field named [%s]", entry.getKey().getName() ) );
+					}
+					continue;
+				}
+				form.setField( field.name(), fieldValue( field, entry.getValue() ) );
+			}
+			stamper.setFormFlattening( flatten );
+			stamper.close();
+		} finally {
+			reader.close();
+			appearanceCaches.offer( appearanceCache );
+		}
+	}
+
+	/**
+	 * Converts a value to the string value of a field. Checkboxes and radio buttons accept one of their appearance
+	 * states, or a boolean which selects the first state other than Off.
+	 *
+	 * @param field The field
+	 * @param value The value
+	 *
+	 * @return the field value
+	 */
+	private static String fieldValue( Field field, Object value ) {
+		if ( value == null ) {
+			return "";
+		}
+		String stringValue = StringCaster.cast( value );
+		if ( field.states() == null || Arrays.asList( field.states() ).contains( stringValue ) ) {
+			return stringValue;
+		}
+		Boolean checked = BooleanCaster.cast( value, false );
+		if ( checked == null ) {
+			throw new BoxRuntimeException(
+			    String.format( "The value [%s] is not valid for the field [%s]. Valid values are %s or a boolean", stringValue, field.name(),
+			        String.join( ", ", field.states() ) ) );
+		}
+		if ( !checked ) {
+			return "Off";
+		}
+		return Arrays.stream( field.states() ).filter( state -> !state.equals( "Off" ) ).findFirst().orElse( stringValue );
+	}
+
+	/**
+	 * Retrieves a cached template
+	 *
+	 * @param key The template key
+	 *
+	 * @return The template or null if it is not cached
+	 */
+	private static synchronized FormTemplate get( String key ) {
+		return templates.get( key );
+	}
+
+	/**
+	 * Stores a template, evicting the least recently used templates when the cache is full
+	 *
+	 * @param key      The template key
+	 * @param template The template
+	 */
+	private static synchronized void put( String key, FormTemplate template ) {
+		if ( template.bytes.length > MAX_BYTES ) {
+			return;
+		}
+		FormTemplate previous = templates.put( key, template );
+		if ( previous != null ) {
+			currentBytes -= previous.bytes.length;
+		}
+		currentBytes += template.bytes.length;
+
+		Iterator<Map.Entry<String, FormTemplate>> entries = templates.entrySet().iterator();
+		while ( currentBytes > MAX_BYTES && entries.hasNext() ) {
+			currentBytes -= entries.next().getValue().bytes.length;
+			entries.remove();
+		}
+	}
+
+	/**
+	 * Removes all templates from the cache
+	 */
+	public static synchronized void clear() {
+		templates.clear();
+		currentBytes = 0;
+	}
+
+	/**
+	 * Returns the number of templates held in the cache
+	 *
+	 * @return
+	 */
+	public static synchronized int size() {
+		return templates.size();
+	}
+
+}
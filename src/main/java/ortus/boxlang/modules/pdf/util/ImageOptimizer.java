@@ -0,0 +1,265 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+/**
+ * Downscales and recompresses images to the resolution required by their laid-out size in the document.
+ * Optimized images are held in a size-bounded, least-recently-used cache keyed by a hash of the source image and the target size.
+ */
+public class ImageOptimizer {
+
+	/**
+	 * The maximum number of bytes of optimized images and their entries held in the cache
+	 */
+	public static final long							MAX_BYTES		= 32L * 1024L * 1024L;
+
+	/**
+	 * The bytes counted for each entry on top of its image, so that entries which hold no image, such as pass-through
+	 * markers, still count towards the limit and are evicted
+	 */
+	private static final int							ENTRY_OVERHEAD	= 256;
+
+	/**
+	 * Marker stored in the cache when the source image is kept as-is
+	 */
+	private static final byte[]							PASS_THROUGH	= new byte[ 0 ];
+
+	/**
+	 * The optimized images, in access order
+	 */
+	private static final LinkedHashMap<String, byte[]>	images			= new LinkedHashMap<String, byte[]>( 16, 0.75f, true );
+
+	/**
+	 * The number of bytes currently held in the cache
+	 */
+	private static long									currentBytes	= 0;
+
+	/**
+	 * Returns an image which is no larger than the target size, in pixels.
+	 * Images which are already small enough, or which cannot be decoded, are returned unchanged.
+	 *
+	 * @param source       The encoded source image
+	 * @param targetWidth  The maximum width in pixels
+	 * @param targetHeight The maximum height in pixels
+	 * @param jpegQuality  The JPEG compression quality, from 0 to 1
+	 *
+	 * @return the encoded optimized image
+	 */
+	public static byte[] optimize( byte[] source, int targetWidth, int targetHeight, float jpegQuality ) {
+		int[] dimensions = readDimensions( source );
+		if ( dimensions == null || ( dimensions[ 0 ] <= targetWidth && dimensions[ 1 ] <= targetHeight ) ) {
+			return source;
+		}
+
+		String	cacheKey	= PDFUtil.hashContent( source ) + ":" + targetWidth + "x" + targetHeight + ":" + jpegQuality;
+		byte[]	optimized	= get( cacheKey );
+		if ( optimized == null ) {
+			try {
+				optimized = resample( source, targetWidth, targetHeight, jpegQuality );
+			} catch ( IOException e ) {
+				optimized = null;
+			}
+			// keep the source when it cannot be decoded or the result would be larger
+			if ( optimized == null || optimized.length >= source.length ) {
+				optimized = PASS_THROUGH;
+			}
+			put( cacheKey, optimized );
+		}
+		return optimized == PASS_THROUGH ? source : optimized;
+	}
+
+	/**
+	 * Reads the pixel dimensions of an image from its header, without decoding the image
+	 *
+	 * @param source The encoded image
+	 *
+	 * @return the width and height, or null if the format is not supported
+	 */
+	private static int[] readDimensions( byte[] source ) {
+		try ( ImageInputStream input = ImageIO.createImageInputStream( new ByteArrayInputStream( source ) ) ) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders( input );
+			if ( !readers.hasNext() ) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput( input, true, true );
+				return new int[] { reader.getWidth( 0 ), reader.getHeight( 0 ) };
+			} finally {
+				reader.dispose();
+			}
+		} catch ( IOException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * Decodes, downscales and re-encodes an image. Opaque images are encoded as JPEG and images with transparency as PNG.
+	 *
+	 * @param source       The encoded source image
+	 * @param targetWidth  The maximum width in pixels
+	 * @param targetHeight The maximum height in pixels
+	 * @param jpegQuality  The JPEG compression quality, from 0 to 1
+	 *
+	 * @return the encoded image, or null if the source could not be decoded
+	 *
+	 * @throws IOException
+	 */
+	private static byte[] resample( byte[] source, int targetWidth, int targetHeight, float jpegQuality ) throws IOException {
+		BufferedImage image = ImageIO.read( new ByteArrayInputStream( source ) );
+		if ( image == null ) {
+			return null;
+		}
+
+		boolean	hasAlpha	= image.getColorModel().hasAlpha();
+		double	ratio		= Math.min( ( double ) targetWidth / image.getWidth(), ( double ) targetHeight / image.getHeight() );
+		int		width		= Math.max( 1, ( int ) Math.round( image.getWidth() * ratio ) );
+		int		height		= Math.max( 1, ( int ) Math.round( image.getHeight() * ratio ) );
+
+		// halve the image in steps so that large reductions keep their detail
+		int		stepWidth	= image.getWidth();
+		int		stepHeight	= image.getHeight();
+		do {
+			stepWidth	= Math.max( width, stepWidth / 2 );
+			stepHeight	= Math.max( height, stepHeight / 2 );
+			BufferedImage	scaled		= new BufferedImage( stepWidth, stepHeight, hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB );
+			Graphics2D		graphics	= scaled.createGraphics();
+			graphics.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+			graphics.setRenderingHint( RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY );
+			graphics.drawImage( image, 0, 0, stepWidth, stepHeight, null );
+			graphics.dispose();
+			image = scaled;
+		} while ( stepWidth > width || stepHeight > height );
+
+		try ( ByteArrayOutputStream outputStream = new ByteArrayOutputStream() ) {
+			if ( hasAlpha ) {
+				ImageIO.write( image, "png", outputStream );
+			} else {
+				writeJpeg( image, jpegQuality, outputStream );
+			}
+			return outputStream.toByteArray();
+		}
+	}
+
+	/**
+	 * Encodes an opaque image as JPEG
+	 *
+	 * @param image        The image
+	 * @param jpegQuality  The JPEG compression quality, from 0 to 1
+	 * @param outputStream The stream the encoded image is written to
+	 *
+	 * @throws IOException
+	 */
+	public static void writeJpeg( BufferedImage image, float jpegQuality, OutputStream outputStream ) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName( "jpeg" ).next();
+		try ( ImageOutputStream output = ImageIO.createImageOutputStream( outputStream ) ) {
+			ImageWriteParam params = writer.getDefaultWriteParam();
+			params.setCompressionMode( ImageWriteParam.MODE_EXPLICIT );
+			params.setCompressionQuality( jpegQuality );
+			writer.setOutput( output );
+			writer.write( null, new IIOImage( image, null, null ), params );
+		} finally {
+			writer.dispose();
+		}
+	}
+
+	/**
+	 * Retrieves an optimized image
+	 *
+	 * @param key The image cache key
+	 *
+	 * @return The optimized image or null if it is not cached
+	 */
+	private static synchronized byte[] get( String key ) {
+		return images.get( key );
+	}
+
+	/**
+	 * Stores an optimized image, evicting the least recently used images when the cache is full
+	 *
+	 * @param key   The image cache key
+	 * @param image The optimized image
+	 */
+	private static synchronized void put( String key, byte[] image ) {
+		if ( cost( key, image ) > MAX_BYTES ) {
+			return;
+		}
+		byte[] previous = images.put( key, image );
+		if ( previous != null ) {
+			currentBytes -= cost( key, previous );
+		}
+		currentBytes += cost( key, image );
+
+		Iterator<Map.Entry<String, byte[]>> entries = images.entrySet().iterator();
+		while ( currentBytes > MAX_BYTES && entries.hasNext() ) {
+			Map.Entry<String, byte[]> entry = entries.next();
+			currentBytes -= cost( entry.getKey(), entry.getValue() );
+			entries.remove();
+		}
+	}
+
+	/**
+	 * The bytes counted for a cache entry
+	 *
+	 * @param key   The image cache key
+	 * @param image The optimized image
+	 *
+	 * @return the image size plus the key and a fixed overhead
+	 */
+	private static long cost( String key, byte[] image ) {
+		return image.length + 2L * key.length() + ENTRY_OVERHEAD;
+	}
+
+	/**
+	 * Removes all optimized images from the cache
+	 */
+	public static synchronized void clear() {
+		images.clear();
+		currentBytes = 0;
+	}
+
+	/**
+	 * Returns the number of images held in the cache
+	 *
+	 * @return
+	 */
+	public static synchronized int size() {
+		return images.size();
+	}
+
+}
@@ -0,0 +1,130 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.lowagie.text.Image;
+import com.lowagie.text.Rectangle;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Reads image sources in to PDF images which are placed directly on their own pages, without HTML layout.
+ * Formats which OpenPDF reads natively, such as JPEG and PNG, are embedded without being decoded. Other formats which
+ * the JVM can decode, including every page of a multi-page TIFF, are decoded and embedded as raw images, with bilevel
+ * scans encoded as CCITT G4.
+ */
+public class ImagePages {
+
+	/**
+	 * The resolution at which images without resolution metadata are sized, matching a CSS pixel
+	 */
+	public static final float DEFAULT_DPI = 96f;
+
+	/**
+	 * Reads the pages of an image source
+	 *
+	 * @param source The encoded image
+	 *
+	 * @return one image per page of the source
+	 */
+	public static List<Image> read( byte[] source ) {
+		try {
+			// TIFF is always decoded, as OpenPDF does not read it natively and it may hold several pages
+			if ( !isTiff( source ) ) {
+				try {
+					return List.of( Image.getInstance( source ) );
+				} catch ( IOException | RuntimeException e ) {
+					// not a format OpenPDF reads natively, so decode it below
+				}
+			}
+			return decode( source );
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "The image source could not be read: " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * Returns the natural size of an image in points, using its resolution metadata when present
+	 *
+	 * @param image The image
+	 *
+	 * @return the width and height of the image at its natural size
+	 */
+	public static Rectangle naturalSize( Image image ) {
+		float	dpiX	= image.getDpiX() > 0 ? image.getDpiX() : DEFAULT_DPI;
+		float	dpiY	= image.getDpiY() > 0 ? image.getDpiY() : DEFAULT_DPI;
+		return new Rectangle( image.getPlainWidth() * 72f / dpiX, image.getPlainHeight() * 72f / dpiY );
+	}
+
+	/**
+	 * Determines whether a source is a TIFF image from its byte order mark and magic number
+	 *
+	 * @param source The encoded image
+	 *
+	 * @return true if the source is a TIFF image
+	 */
+	private static boolean isTiff( byte[] source ) {
+		return source.length > 4
+		    && ( ( source[ 0 ] == 'I' && source[ 1 ] == 'I' && source[ 2 ] == 42 && source[ 3 ] == 0 )
+		        || ( source[ 0 ] == 'M' && source[ 1 ] == 'M' && source[ 2 ] == 0 && source[ 3 ] == 42 ) );
+	}
+
+	/**
+	 * Decodes every image in a source
+	 *
+	 * @param source The encoded image
+	 *
+	 * @return the decoded images
+	 *
+	 * @throws IOException
+	 */
+	private static List<Image> decode( byte[] source ) throws IOException {
+		try ( ImageInputStream input = ImageIO.createImageInputStream( new ByteArrayInputStream( source ) ) ) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders( input );
+			if ( !readers.hasNext() ) {
+				throw new IOException( "The image format is not supported" );
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput( input, false, true );
+				List<Image>	pages		= new ArrayList<Image>();
+				int			pageCount	= reader.getNumImages( true );
+				for ( int i = 0; i < pageCount; i++ ) {
+					BufferedImage	decoded		= reader.read( i );
+					boolean			bilevel		= decoded.getColorModel().getPixelSize() == 1;
+					pages.add( Image.getInstance( decoded, null, bilevel ) );
+				}
+				return pages;
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+}
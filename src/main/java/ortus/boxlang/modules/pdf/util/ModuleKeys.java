@@ -24,50 +24,162 @@ public class ModuleKeys {
 	// Static instances of common keys
 	public static final Key	_0							= Key.of( 0 );
 
+	public static final Key	author						= Key.of( "author" );
+	public static final Key	append						= Key.of( "append" );
+	public static final Key	action						= Key.of( "action" );
+	public static final Key	attempts					= Key.of( "attempts" );
+	public static final Key	algorithm					= Key.of( "algorithm" );
+	public static final Key	alias						= Key.of( "alias" );
 	public static final Key	authPassword				= Key.of( "authPassword" );
 	public static final Key	authUser					= Key.of( "authUser" );
 	public static final Key	backgroundVisible			= Key.of( "backgroundVisible" );
 	public static final Key	bookmark					= Key.of( "bookmark" );
+	public static final Key	bookmarks					= Key.of( "bookmarks" );
 	public static final Key	bxPDF						= Key.of( "bxPDF" );
+	public static final Key	bxpdfAttributes				= Key.of( "bxpdfAttributes" );
+	public static final Key	bxpdfContent				= Key.of( "bxpdfContent" );
+	public static final Key	bxpdfTarget					= Key.of( "bxpdfTarget" );
+	public static final Key	bxpdfTemplate				= Key.of( "bxpdfTemplate" );
+	public static final Key	bytes						= Key.of( "bytes" );
+	public static final Key	cacheSections				= Key.of( "cacheSections" );
+	public static final Key	chunkSize					= Key.of( "chunkSize" );
+	public static final Key	color						= Key.of( "color" );
+	public static final Key	compression					= Key.of( "compression" );
+	public static final Key	concurrency					= Key.of( "concurrency" );
+	public static final Key	contact						= Key.of( "contact" );
+	public static final Key	created						= Key.of( "created" );
+	public static final Key	creator						= Key.of( "creator" );
 	public static final Key	custom						= Key.of( "custom" );
+	public static final Key	data						= Key.of( "data" );
+	public static final Key	destination					= Key.of( "destination" );
+	public static final Key	digestAlgorithm				= Key.of( "digestAlgorithm" );
+	public static final Key	direction					= Key.of( "direction" );
 	public static final Key	disposition					= Key.of( "disposition" );
 	public static final Key	Document					= Key.of( "Document" );
 	public static final Key	documentItems				= Key.of( "documentItems" );
 	public static final Key	DocumentSection				= Key.of( "DocumentSection" );
 	public static final Key	documentSections			= Key.of( "documentSections" );
+	public static final Key	element						= Key.of( "element" );
+	public static final Key	embedded					= Key.of( "embedded" );
+	public static final Key	encrypted					= Key.of( "encrypted" );
 	public static final Key	encryption					= Key.of( "encryption" );
+	public static final Key	endPage						= Key.of( "endPage" );
+	public static final Key	failed						= Key.of( "failed" );
+	public static final Key	fieldName					= Key.of( "fieldName" );
 	public static final Key	filename					= Key.of( "filename" );
+	public static final Key	files						= Key.of( "files" );
+	public static final Key	fileSize					= Key.of( "fileSize" );
+	public static final Key	flatten						= Key.of( "flatten" );
 	public static final Key	fontEmbed					= Key.of( "fontEmbed" );
 	public static final Key	fontDirectory				= Key.of( "fontDirectory" );
+	public static final Key	fontSize					= Key.of( "fontSize" );
+	public static final Key	fontSubset					= Key.of( "fontSubset" );
 	public static final Key	footer						= Key.of( "footer" );
 	public static final Key	formfields					= Key.of( "formfields" );
 	public static final Key	formsType					= Key.of( "formsType" );
+	public static final Key	fullCompression				= Key.of( "fullCompression" );
+	public static final Key	height						= Key.of( "height" );
 	public static final Key	htmlBookmark				= Key.of( "htmlBookmark" );
+	public static final Key	image						= Key.of( "image" );
+	public static final Key	imageMaxDpi					= Key.of( "imageMaxDpi" );
+	public static final Key	info						= Key.of( "info" );
 	public static final Key	isTestMode					= Key.of( "isTestMode" );
+	public static final Key	jpegQuality					= Key.of( "jpegQuality" );
+	public static final Key	keyPassword					= Key.of( "keyPassword" );
+	public static final Key	keystore					= Key.of( "keystore" );
+	public static final Key	keystorePassword			= Key.of( "keystorePassword" );
+	public static final Key	keystoreType				= Key.of( "keystoreType" );
+	public static final Key	keywords					= Key.of( "keywords" );
+	public static final Key	lastError					= Key.of( "lastError" );
+	public static final Key	linearize					= Key.of( "linearize" );
 	public static final Key	localUrl					= Key.of( "localUrl" );
+	public static final Key	location					= Key.of( "location" );
+	public static final Key	mailMerge					= Key.of( "mailMerge" );
 	public static final Key	marginBottom				= Key.of( "marginBottom" );
 	public static final Key	marginLeft					= Key.of( "marginLeft" );
 	public static final Key	marginRight					= Key.of( "marginRight" );
 	public static final Key	marginTop					= Key.of( "marginTop" );
+	public static final Key	maxAttempts					= Key.of( "maxAttempts" );
 	public static final Key	mimeType					= Key.of( "mimeType" );
+	public static final Key	opacity						= Key.of( "opacity" );
 	public static final Key	openpassword				= Key.of( "openpassword" );
 	public static final Key	orientation					= Key.of( "orientation" );
+	public static final Key	overflow					= Key.of( "overflow" );
+	public static final Key	overflows					= Key.of( "overflows" );
 	public static final Key	ownerPassword				= Key.of( "ownerPassword" );
+	public static final Key	page						= Key.of( "page" );
+	public static final Key	pageCount					= Key.of( "pageCount" );
 	public static final Key	pageHeight					= Key.of( "pageHeight" );
+	public static final Key	pages						= Key.of( "pages" );
+	public static final Key	pageSize					= Key.of( "pageSize" );
+	public static final Key	pagesPerFile				= Key.of( "pagesPerFile" );
 	public static final Key	pageType					= Key.of( "pageType" );
 	public static final Key	pageWidth					= Key.of( "pageWidth" );
+	public static final Key	pdf							= Key.of( "pdf" );
 	public static final Key	pdfa						= Key.of( "pdfa" );
+	public static final Key	pdfPage						= Key.of( "pdfPage" );
+	public static final Key	pending						= Key.of( "pending" );
 	public static final Key	permissions					= Key.of( "permissions" );
 	public static final Key	permissionspassword			= Key.of( "permissionspassword" );
+	public static final Key	prefix						= Key.of( "prefix" );
+	public static final Key	preflightVariable			= Key.of( "preflightVariable" );
+	public static final Key	previewDpi					= Key.of( "previewDpi" );
+	public static final Key	previewFormat				= Key.of( "previewFormat" );
+	public static final Key	previewOnly					= Key.of( "previewOnly" );
+	public static final Key	previewPages				= Key.of( "previewPages" );
+	public static final Key	previewVariable				= Key.of( "previewVariable" );
+	public static final Key	process						= Key.of( "process" );
+	public static final Key	processed					= Key.of( "processed" );
+	public static final Key	producer					= Key.of( "producer" );
+	public static final Key	protection					= Key.of( "protection" );
 	public static final Key	proxyHost					= Key.of( "proxyHost" );
+	public static final Key	quarantined					= Key.of( "quarantined" );
+	public static final Key	rate						= Key.of( "rate" );
+	public static final Key	reason						= Key.of( "reason" );
+	public static final Key	renderHosts					= Key.of( "renderHosts" );
+	public static final Key	renderSecret				= Key.of( "renderSecret" );
+	public static final Key	renderTimeout				= Key.of( "renderTimeout" );
+	public static final Key	renderWorkerJobs			= Key.of( "renderWorkerJobs" );
+	public static final Key	renderWorkerMemory			= Key.of( "renderWorkerMemory" );
+	public static final Key	renderWorkers				= Key.of( "renderWorkers" );
+	public static final Key	retried						= Key.of( "retried" );
+	public static final Key	retryDelay					= Key.of( "retryDelay" );
+	public static final Key	rotation					= Key.of( "rotation" );
+	public static final Key	running						= Key.of( "running" );
 	public static final Key	saveAsName					= Key.of( "saveAsName" );
+	public static final Key	sections					= Key.of( "sections" );
+	public static final Key	signature					= Key.of( "signature" );
+	public static final Key	source						= Key.of( "source" );
+	public static final Key	spoolDirectory				= Key.of( "spoolDirectory" );
 	public static final Key	src							= Key.of( "src" );
 	public static final Key	srcfile						= Key.of( "srcfile" );
+	public static final Key	stamp						= Key.of( "stamp" );
+	public static final Key	startPage					= Key.of( "startPage" );
+	public static final Key	strict						= Key.of( "strict" );
+	public static final Key	subject						= Key.of( "subject" );
+	public static final Key	subset						= Key.of( "subset" );
 	public static final Key	tagged						= Key.of( "tagged" );
+	public static final Key	template					= Key.of( "template" );
+	public static final Key	text						= Key.of( "text" );
+	public static final Key	textFont					= Key.of( "textFont" );
+	public static final Key	textFontSize				= Key.of( "textFontSize" );
+	public static final Key	title						= Key.of( "title" );
+	public static final Key	tsaPassword					= Key.of( "tsaPassword" );
+	public static final Key	tsaUrl						= Key.of( "tsaUrl" );
+	public static final Key	tsaUsername					= Key.of( "tsaUsername" );
+	public static final Key	underlay					= Key.of( "underlay" );
 	public static final Key	unit						= Key.of( "unit" );
 	public static final Key	userPassword				= Key.of( "userPassword" );
+	public static final Key	working						= Key.of( "working" );
+	public static final Key	x							= Key.of( "x" );
+	public static final Key	y							= Key.of( "y" );
+	public static final Key	version						= Key.of( "version" );
+	public static final Key	width						= Key.of( "width" );
 	public static final Key	evalAtPrint					= Key.of( "evalAtPrint" );
 	public static final Key	name						= Key.of( "name" );
+	public static final Key	options						= Key.of( "options" );
+	public static final Key	smart						= Key.of( "smart" );
+	public static final Key	sources						= Key.of( "sources" );
 	public static final Key	userAgent					= Key.of( "userAgent" );
 
 	// bxdocument keys
@@ -0,0 +1,242 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.extend.ReplacedElement;
+import org.xhtmlrenderer.extend.UserAgentCallback;
+import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.pdf.ITextFSImage;
+import org.xhtmlrenderer.pdf.ITextImageElement;
+import org.xhtmlrenderer.pdf.ITextOutputDevice;
+import org.xhtmlrenderer.pdf.ITextReplacedElementFactory;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
+
+import com.lowagie.text.BadElementException;
+import com.lowagie.text.Image;
+
+/**
+ * A replaced element factory which writes each distinct image to the PDF once, however many times it is used, and
+ * optionally embeds images at no more than the resolution required by their laid-out size
+ */
+public class OptimizedImageReplacementFactory extends ITextReplacedElementFactory {
+
+	/**
+	 * A decoded source image and its encoded bytes
+	 */
+	private record SourceImage( String hash, byte[] bytes, Image image ) {
+	}
+
+	/**
+	 * The output device of the renderer
+	 */
+	private final ITextOutputDevice			outputDevice;
+
+	/**
+	 * The maximum resolution, in dots per inch, at which images are embedded, or null to embed images at their original resolution
+	 */
+	private final Double					maxDpi;
+
+	/**
+	 * The JPEG compression quality of downscaled images, from 0 to 1
+	 */
+	private final float						jpegQuality;
+
+	/**
+	 * The source images, keyed by their src attribute
+	 */
+	private final Map<String, SourceImage>	sources		= new HashMap<String, SourceImage>();
+
+	/**
+	 * The source images, keyed by the hash of their content
+	 */
+	private final Map<String, SourceImage>	contents	= new HashMap<String, SourceImage>();
+
+	/**
+	 * The images written to the PDF, keyed by the hash of their content and their target size. Elements which place the same
+	 * image share its serial id, so the image is written once and referenced from every placement.
+	 */
+	private final Map<String, Image>		images		= new HashMap<String, Image>();
+
+	/**
+	 * The encoded bytes of the images written to the PDF, keyed by their serial id, so that page previews can draw them
+	 */
+	private final Map<Long, byte[]>			encoded		= new HashMap<Long, byte[]>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param outputDevice The output device of the renderer
+	 * @param maxDpi       The maximum resolution, in dots per inch, at which images are embedded, or null to embed images at their original resolution
+	 * @param jpegQuality  The JPEG compression quality of downscaled images, from 0 to 1
+	 */
+	public OptimizedImageReplacementFactory( ITextOutputDevice outputDevice, Double maxDpi, float jpegQuality ) {
+		super( outputDevice );
+		this.outputDevice	= outputDevice;
+		this.maxDpi			= maxDpi;
+		this.jpegQuality	= jpegQuality;
+	}
+
+	@Override
+	public ReplacedElement createReplacedElement( LayoutContext layoutContext, BlockBox box, UserAgentCallback callback, int cssWidth, int cssHeight ) {
+		Element element = box.getElement();
+		if ( element == null || !element.getNodeName().equals( "img" ) ) {
+			return super.createReplacedElement( layoutContext, box, callback, cssWidth, cssHeight );
+		}
+
+		try {
+			SourceImage source = loadSource( element.getAttribute( "src" ), callback );
+			if ( source == null ) {
+				return super.createReplacedElement( layoutContext, box, callback, cssWidth, cssHeight );
+			}
+
+			int		dotsPerPixel	= layoutContext.getSharedContext().getDotsPerPixel();
+			int[]	size			= layoutSize(
+			    layoutContext,
+			    box,
+			    source.image().getPlainWidth() * dotsPerPixel,
+			    source.image().getPlainHeight() * dotsPerPixel,
+			    cssWidth,
+			    cssHeight
+			);
+
+			Image shared = source.image();
+			if ( maxDpi != null ) {
+				// the number of pixels needed to print the laid-out size at the maximum resolution
+				double	dotsPerInch		= outputDevice.getDotsPerPoint() * 72d;
+				int		targetWidth		= Math.max( 1, ( int ) Math.ceil( size[ 0 ] / dotsPerInch * maxDpi ) );
+				int		targetHeight	= Math.max( 1, ( int ) Math.ceil( size[ 1 ] / dotsPerInch * maxDpi ) );
+				String	imageKey		= source.hash() + ":" + targetWidth + "x" + targetHeight;
+				shared = images.get( imageKey );
+				if ( shared == null ) {
+					byte[] optimized = ImageOptimizer.optimize( source.bytes(), targetWidth, targetHeight, jpegQuality );
+					shared = optimized == source.bytes() ? source.image() : Image.getInstance( optimized );
+					images.put( imageKey, shared );
+					encoded.put( shared.getMySerialId(), optimized );
+				}
+			}
+
+			// the copy keeps the serial id of the shared image, so only its placement differs
+			Image placed = Image.getInstance( shared );
+			placed.scaleAbsolute( size[ 0 ], size[ 1 ] );
+			return new ITextImageElement( new ITextFSImage( placed ) );
+		} catch ( IOException | BadElementException e ) {
+			return super.createReplacedElement( layoutContext, box, callback, cssWidth, cssHeight );
+		}
+	}
+
+	/**
+	 * Returns the encoded bytes of an image placed by this factory
+	 *
+	 * @param image The placed image
+	 *
+	 * @return the encoded image, or null if the image was not placed by this factory
+	 */
+	public byte[] getEncodedImage( Image image ) {
+		return encoded.get( image.getMySerialId() );
+	}
+
+	/**
+	 * Loads and decodes the image of a src attribute, once for each distinct src and once for each distinct image content
+	 *
+	 * @param src      The src attribute of the image
+	 * @param callback The user agent used to load images which are not data URIs
+	 *
+	 * @return the source image, or null if it could not be loaded
+	 *
+	 * @throws IOException
+	 * @throws BadElementException
+	 */
+	private SourceImage loadSource( String src, UserAgentCallback callback ) throws IOException, BadElementException {
+		SourceImage source = sources.get( src );
+		if ( source != null ) {
+			return source;
+		}
+
+		byte[] bytes = src.startsWith( "data:image/" )
+		    ? Base64.getDecoder().decode( src.substring( src.indexOf( "base64," ) + "base64,".length() ).trim() )
+		    : callback.getBinaryResource( src );
+		if ( bytes == null ) {
+			return null;
+		}
+
+		String hash = PDFUtil.hashContent( bytes );
+		source = contents.get( hash );
+		if ( source == null ) {
+			source = new SourceImage( hash, bytes, Image.getInstance( bytes ) );
+			contents.put( hash, source );
+			encoded.put( source.image().getMySerialId(), bytes );
+		}
+		sources.put( src, source );
+		return source;
+	}
+
+	/**
+	 * Calculates the laid-out size of an image, in dots, from its natural size, its CSS size and its maximum CSS size
+	 *
+	 * @param layoutContext The layout context
+	 * @param box           The box of the image
+	 * @param naturalWidth  The natural width of the image
+	 * @param naturalHeight The natural height of the image
+	 * @param cssWidth      The CSS width, or -1 if it is not set
+	 * @param cssHeight     The CSS height, or -1 if it is not set
+	 *
+	 * @return the width and height
+	 */
+	private static int[] layoutSize( LayoutContext layoutContext, BlockBox box, float naturalWidth, float naturalHeight, int cssWidth, int cssHeight ) {
+		double	width	= naturalWidth;
+		double	height	= naturalHeight;
+		if ( cssWidth != -1 && cssHeight != -1 ) {
+			width	= cssWidth;
+			height	= cssHeight;
+		} else if ( cssWidth != -1 ) {
+			height	= naturalHeight * cssWidth / naturalWidth;
+			width	= cssWidth;
+		} else if ( cssHeight != -1 ) {
+			width	= naturalWidth * cssHeight / naturalHeight;
+			height	= cssHeight;
+		}
+
+		CalculatedStyle	style			= box.getStyle();
+		Box				containingBlock	= box.getContainingBlock();
+		int				containerWidth	= containingBlock != null ? containingBlock.getContentWidth() : 0;
+		if ( style != null && !style.isMaxWidthNone() ) {
+			int maxWidth = style.getMaxWidth( layoutContext, containerWidth );
+			if ( maxWidth > 0 && width > maxWidth ) {
+				height	= height * maxWidth / width;
+				width	= maxWidth;
+			}
+		}
+		if ( style != null && !style.isMaxHeightNone() ) {
+			int maxHeight = style.getMaxHeight( layoutContext, 0 );
+			if ( maxHeight > 0 && height > maxHeight ) {
+				width	= width * maxHeight / height;
+				height	= maxHeight;
+			}
+		}
+		return new int[] { Math.max( 1, ( int ) Math.round( width ) ), Math.max( 1, ( int ) Math.round( height ) ) };
+	}
+
+}
@@ -0,0 +1,809 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import com.lowagie.text.pdf.PRIndirectReference;
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Rewrites a PDF in linearized form, so that viewers can display the first page before the rest of the file has been
+ * downloaded. The objects are reordered in to the first page, the other pages in order and the objects shared between
+ * pages, and the hint tables which locate each page are written ahead of the first page.
+ * <p>
+ * The source is read partially, so only the cross-reference table and the object numbers of each part are held in
+ * memory. The objects are read twice: once to measure them and once to write them at the offsets recorded in the
+ * linearization dictionary and hint tables.
+ */
+public class PDFLinearizer {
+
+	/**
+	 * The catalog entries whose objects are needed to open the document, which are written ahead of the first page
+	 */
+	private static final List<PdfName>	OPEN_DOCUMENT_KEYS		= List.of(
+	    PdfName.VIEWERPREFERENCES,
+	    PdfName.THREADS,
+	    PdfName.OPENACTION,
+	    PdfName.ACROFORM
+	);
+
+	/**
+	 * The reserved length of the linearization dictionary and the first-page trailer, whose offsets are only known once
+	 * the rest of the file has been measured
+	 */
+	private static final int			RESERVED_NUMBER_WIDTH	= 10;
+
+	/**
+	 * The reader over the source PDF
+	 */
+	private final PdfReader				reader;
+
+	/**
+	 * The new object number of each source object, or 0 for objects which are not written
+	 */
+	private final int[]					newNumbers;
+
+	/**
+	 * The written length of each source object, in bytes
+	 */
+	private final long[]				lengths;
+
+	/**
+	 * The catalog and the objects needed to open the document
+	 */
+	private final List<Integer>			openDocumentObjects		= new ArrayList<Integer>();
+
+	/**
+	 * The objects of the first page, including any it shares with later pages
+	 */
+	private final List<Integer>			firstPageObjects		= new ArrayList<Integer>();
+
+	/**
+	 * The objects used by a single page other than the first, grouped by page in page order
+	 */
+	private final List<Integer>			pageObjects				= new ArrayList<Integer>();
+
+	/**
+	 * The objects shared between pages other than the first
+	 */
+	private final List<Integer>			sharedObjects			= new ArrayList<Integer>();
+
+	/**
+	 * The remaining objects, such as the page tree and the document information
+	 */
+	private final List<Integer>			otherObjects			= new ArrayList<Integer>();
+
+	/**
+	 * The number of objects of each page
+	 */
+	private final int[]					pageObjectCounts;
+
+	/**
+	 * The shared object hint table identifiers referenced by each page
+	 */
+	private final List<List<Integer>>	pageSharedIdentifiers	= new ArrayList<List<Integer>>();
+
+	/**
+	 * The object number of the linearization dictionary, which is also the first object number of the first-page
+	 * cross-reference section
+	 */
+	private int							linearizationNumber;
+
+	/**
+	 * The object number of the primary hint stream, which is the last object number of the document
+	 */
+	private int							hintNumber;
+
+	/**
+	 * The offset of the shared object hint table within the hint stream, set when the hint tables are built
+	 */
+	private int							sharedTableOffset;
+
+	/**
+	 * Constructor
+	 *
+	 * @param reader A reader over the source PDF
+	 */
+	private PDFLinearizer( PdfReader reader ) {
+		this.reader				= reader;
+		this.newNumbers			= new int[ reader.getXrefSize() ];
+		this.lengths			= new long[ reader.getXrefSize() ];
+		this.pageObjectCounts	= new int[ reader.getNumberOfPages() ];
+	}
+
+	/**
+	 * Writes a linearized copy of a PDF
+	 *
+	 * @param source       The source PDF, which must not be encrypted or use cross-reference streams
+	 * @param outputStream The stream the linearized PDF is written to
+	 *
+	 * @throws IOException
+	 */
+	public static void linearize( RandomAccessFileOrArray source, OutputStream outputStream ) throws IOException {
+		PdfReader reader = new PdfReader( source, null );
+		try {
+			if ( reader.isEncrypted() ) {
+				throw new BoxRuntimeException( "Encrypted PDF documents cannot be linearized" );
+			}
+			if ( reader.isNewXrefType() ) {
+				throw new BoxRuntimeException( "PDF documents with compressed object streams cannot be linearized" );
+			}
+			PDFLinearizer linearizer = new PDFLinearizer( reader );
+			linearizer.assignParts();
+			linearizer.assignNumbers();
+			linearizer.write( outputStream );
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Assigns each object reachable from the catalog to the part of the file it is written in
+	 */
+	private void assignParts() {
+		PRIndirectReference	catalogReference	= ( PRIndirectReference ) reader.getTrailer().get( PdfName.ROOT );
+		PdfDictionary		catalog				= reader.getCatalog();
+		BitSet				placed				= new BitSet();
+
+		// The catalog and the objects needed to open the document, including the outlines if they are shown on opening
+		openDocumentObjects.add( catalogReference.getNumber() );
+		placed.set( catalogReference.getNumber() );
+		List<PdfName> openKeys = new ArrayList<PdfName>( OPEN_DOCUMENT_KEYS );
+		if ( PdfName.USEOUTLINES.equals( catalog.get( PdfName.PAGEMODE ) ) ) {
+			openKeys.add( PdfName.OUTLINES );
+		}
+		for ( PdfName key : openKeys ) {
+			addAll( openDocumentObjects, collect( 0, catalog.get( key ), true, placed ), placed );
+		}
+
+		// The objects of every page, counting the pages which use each object
+		int					pageCount	= reader.getNumberOfPages();
+		List<List<Integer>>	pages		= new ArrayList<List<Integer>>( pageCount );
+		int[]				users		= new int[ newNumbers.length ];
+		for ( int page = 1; page <= pageCount; page++ ) {
+			PRIndirectReference	pageReference	= reader.getPageOrigRef( page );
+			List<Integer>		objects			= collect( pageReference.getNumber(), PdfReader.getPdfObjectRelease( pageReference ), true, placed );
+			for ( int number : objects ) {
+				users[ number ]++;
+			}
+			pages.add( objects );
+		}
+
+		// The first page holds all of its objects, and objects which later pages share with it are not repeated
+		int[] sharedIdentifiers = new int[ newNumbers.length ];
+		for ( int number : pages.get( 0 ) ) {
+			sharedIdentifiers[ number ] = firstPageObjects.size();
+			firstPageObjects.add( number );
+			placed.set( number );
+		}
+		pageObjectCounts[ 0 ] = firstPageObjects.size();
+		pageSharedIdentifiers.add( List.of() );
+
+		List<Integer> laterShared = new ArrayList<Integer>();
+		for ( int page = 1; page < pageCount; page++ ) {
+			List<Integer> identifiers = new ArrayList<Integer>();
+			for ( int number : pages.get( page ) ) {
+				if ( users[ number ] == 1 ) {
+					pageObjects.add( number );
+					pageObjectCounts[ page ]++;
+					continue;
+				}
+				if ( !placed.get( number ) ) {
+					sharedIdentifiers[ number ] = firstPageObjects.size() + laterShared.size();
+					laterShared.add( number );
+					placed.set( number );
+				}
+				identifiers.add( sharedIdentifiers[ number ] );
+			}
+			pageSharedIdentifiers.add( identifiers );
+		}
+		for ( int number : pageObjects ) {
+			placed.set( number );
+		}
+		sharedObjects.addAll( laterShared );
+
+		// Everything else reachable from the catalog and the trailer, such as the page tree and the document information
+		for ( PdfName key : catalog.getKeys() ) {
+			addAll( otherObjects, collect( 0, catalog.get( key ), false, placed ), placed );
+		}
+		addAll( otherObjects, collect( 0, reader.getTrailer().get( PdfName.INFO ), false, placed ), placed );
+	}
+
+	/**
+	 * Adds objects to a part and marks them as placed
+	 *
+	 * @param part    The part
+	 * @param objects The object numbers
+	 * @param placed  The objects which are already placed
+	 */
+	private static void addAll( List<Integer> part, List<Integer> objects, BitSet placed ) {
+		for ( int number : objects ) {
+			part.add( number );
+			placed.set( number );
+		}
+	}
+
+	/**
+	 * Collects the objects reachable from an object, in depth-first order
+	 *
+	 * @param rootNumber  The object number of the starting object, which is included first, or 0 for a direct object
+	 * @param start       The starting object
+	 * @param stopAtPages Whether page objects and page tree nodes are not followed, so that the objects of a page do not
+	 *                    include other pages
+	 * @param exclude     Objects which are already placed, which are not followed
+	 *
+	 * @return the object numbers
+	 */
+	private List<Integer> collect( int rootNumber, PdfObject start, boolean stopAtPages, BitSet exclude ) {
+		List<Integer> objects = new ArrayList<Integer>();
+		if ( start == null ) {
+			return objects;
+		}
+		BitSet seen = new BitSet();
+		if ( rootNumber > 0 ) {
+			objects.add( rootNumber );
+			seen.set( rootNumber );
+		}
+
+		Deque<PdfObject> pending = new ArrayDeque<PdfObject>();
+		pending.push( start );
+		while ( !pending.isEmpty() ) {
+			PdfObject object = pending.pop();
+			if ( object instanceof PRIndirectReference reference ) {
+				int number = reference.getNumber();
+				if ( number <= 0 || number >= newNumbers.length || seen.get( number ) || exclude.get( number ) ) {
+					continue;
+				}
+				seen.set( number );
+				object = reader.getPdfObjectRelease( number );
+				if ( object == null || ( stopAtPages && isPageNode( object ) ) ) {
+					continue;
+				}
+				objects.add( number );
+			}
+
+			// children are pushed in reverse so that they are visited in order
+			List<PdfObject> children = new ArrayList<PdfObject>();
+			if ( object instanceof PdfDictionary dictionary ) {
+				for ( PdfName key : dictionary.getKeys() ) {
+					// stream lengths are written directly
+					if ( !( object instanceof PRStream && PdfName.LENGTH.equals( key ) ) ) {
+						children.add( dictionary.get( key ) );
+					}
+				}
+			} else if ( object instanceof PdfArray array ) {
+				children.addAll( array.getElements() );
+			}
+			for ( int i = children.size() - 1; i >= 0; i-- ) {
+				if ( children.get( i ) != null && ( children.get( i ).isIndirect() || children.get( i ).isDictionary() || children.get( i ).isArray() ) ) {
+					pending.push( children.get( i ) );
+				}
+			}
+		}
+		return objects;
+	}
+
+	/**
+	 * Whether an object is a page or a page tree node
+	 *
+	 * @param object The object
+	 *
+	 * @return true for page dictionaries
+	 */
+	private static boolean isPageNode( PdfObject object ) {
+		if ( object instanceof PdfDictionary dictionary ) {
+			PdfObject type = dictionary.get( PdfName.TYPE );
+			return PdfName.PAGE.equals( type ) || PdfName.PAGES.equals( type );
+		}
+		return false;
+	}
+
+	/**
+	 * Numbers the objects. The objects after the first page are numbered from 1 in file order and are listed by the main
+	 * cross-reference table, and the linearization dictionary, the objects needed to open the document, the first page
+	 * and the hint stream follow them and are listed by the first-page cross-reference table.
+	 */
+	private void assignNumbers() {
+		int nextNumber = 1;
+		for ( List<Integer> part : List.of( pageObjects, sharedObjects, otherObjects ) ) {
+			for ( int number : part ) {
+				newNumbers[ number ] = nextNumber++;
+			}
+		}
+		linearizationNumber = nextNumber++;
+		for ( List<Integer> part : List.of( openDocumentObjects, firstPageObjects ) ) {
+			for ( int number : part ) {
+				newNumbers[ number ] = nextNumber++;
+			}
+		}
+		hintNumber = nextNumber;
+	}
+
+	/**
+	 * Measures and writes the linearized file
+	 *
+	 * @param outputStream The stream the file is written to
+	 *
+	 * @throws IOException
+	 */
+	private void write( OutputStream outputStream ) throws IOException {
+		for ( List<Integer> part : List.of( openDocumentObjects, firstPageObjects, pageObjects, sharedObjects, otherObjects ) ) {
+			for ( int number : part ) {
+				CountingOutputStream counter = new CountingOutputStream( NullOutputStream.INSTANCE );
+				writeObject( counter, number );
+				lengths[ number ] = counter.getByteCount();
+			}
+		}
+
+		int		objectCount		= hintNumber + 1;
+		byte[]	header			= ( "%PDF-1." + reader.getPdfVersion() + "\n%\u00e2\u00e3\u00cf\u00d3\n" ).getBytes( StandardCharsets.ISO_8859_1 );
+		long	firstXref		= header.length + reserved( linearizationDictionary( 0, 0, 0, 0, 0 ) );
+		long	firstXrefLength	= ascii( "xref\n" + linearizationNumber + " " + ( objectCount - linearizationNumber ) + "\n" ).length
+		    + 20L * ( objectCount - linearizationNumber );
+		long	hintOffset		= firstXref + firstXrefLength + reserved( firstPageTrailer( 0 ) ) + sum( openDocumentObjects );
+
+		// Hint table offsets are measured as if the hint stream were not present
+		byte[]	hints			= hintTables( hintOffset );
+		byte[]	hintStart		= ascii( hintNumber + " 0 obj\n<< /Length " + hints.length + " /S " + sharedTableOffset + " >>\nstream\n" );
+		byte[]	hintEnd			= ascii( "\nendstream\nendobj\n" );
+		long	hintLength		= hintStart.length + hints.length + hintEnd.length;
+
+		long	firstPageEnd	= hintOffset + hintLength + sum( firstPageObjects );
+		long	mainXref		= firstPageEnd + sum( pageObjects ) + sum( sharedObjects ) + sum( otherObjects );
+		byte[]	mainXrefStart	= ascii( "xref\n0 " + linearizationNumber + "\n" );
+		byte[]	mainTrailer		= ascii( "trailer\n<< /Size " + linearizationNumber + " >>\nstartxref\n" + firstXref + "\n%%EOF\n" );
+		long	fileLength		= mainXref + mainXrefStart.length + 20L * linearizationNumber + mainTrailer.length;
+
+		CountingOutputStream out = new CountingOutputStream( new BufferedOutputStream( outputStream ) );
+		out.write( header );
+		writeReserved(
+		    out,
+		    linearizationDictionary( fileLength, hintOffset, hintLength, firstPageEnd, mainXref + mainXrefStart.length - 1 ),
+		    linearizationDictionary( 0, 0, 0, 0, 0 )
+		);
+
+		// The first-page cross-reference table lists the linearization dictionary, the open document objects, the first page and the hint stream
+		long[]	firstOffsets	= new long[ objectCount - linearizationNumber ];
+		long	offset			= hintOffset - sum( openDocumentObjects );
+		firstOffsets[ 0 ] = header.length;
+		for ( int number : openDocumentObjects ) {
+			firstOffsets[ newNumbers[ number ] - linearizationNumber ] = offset;
+			offset += lengths[ number ];
+		}
+		firstOffsets[ hintNumber - linearizationNumber ] = offset;
+		offset += hintLength;
+		for ( int number : firstPageObjects ) {
+			firstOffsets[ newNumbers[ number ] - linearizationNumber ] = offset;
+			offset += lengths[ number ];
+		}
+		out.write( ascii( "xref\n" + linearizationNumber + " " + firstOffsets.length + "\n" ) );
+		for ( long entry : firstOffsets ) {
+			out.write( xrefEntry( entry ) );
+		}
+		writeReserved( out, firstPageTrailer( mainXref ), firstPageTrailer( 0 ) );
+
+		for ( int number : openDocumentObjects ) {
+			writeObject( out, number );
+		}
+		out.write( hintStart );
+		out.write( hints );
+		out.write( hintEnd );
+
+		// The main cross-reference table lists every object after the first page
+		long[] mainOffsets = new long[ linearizationNumber ];
+		for ( List<Integer> part : List.of( firstPageObjects, pageObjects, sharedObjects, otherObjects ) ) {
+			for ( int number : part ) {
+				if ( newNumbers[ number ] < linearizationNumber ) {
+					mainOffsets[ newNumbers[ number ] ] = out.getByteCount();
+				}
+				writeObject( out, number );
+			}
+		}
+		if ( out.getByteCount() != mainXref ) {
+			throw new BoxRuntimeException( "The linearized PDF objects were not written at their measured offsets" );
+		}
+		out.write( mainXrefStart );
+		out.write( ascii( "0000000000 65535 f \n" ) );
+		for ( int number = 1; number < linearizationNumber; number++ ) {
+			out.write( xrefEntry( mainOffsets[ number ] ) );
+		}
+		out.write( mainTrailer );
+		out.flush();
+	}
+
+	/**
+	 * Builds the page offset and shared object hint tables. Every object of the first page is an entry of the shared
+	 * object table, followed by the objects shared between later pages, and each shared object is a group of its own.
+	 *
+	 * @param firstPageOffset The offset of the first page, as if the hint stream were not present
+	 *
+	 * @return the hint stream data
+	 */
+	private byte[] hintTables( long firstPageOffset ) {
+		int		pageCount	= pageObjectCounts.length;
+		long[]	pageLengths	= new long[ pageCount ];
+		pageLengths[ 0 ] = sum( firstPageObjects );
+		int objectIndex = 0;
+		for ( int page = 1; page < pageCount; page++ ) {
+			for ( int i = 0; i < pageObjectCounts[ page ]; i++ ) {
+				pageLengths[ page ] += lengths[ pageObjects.get( objectIndex++ ) ];
+			}
+		}
+
+		int		minObjects		= Integer.MAX_VALUE;
+		int		maxObjects		= 0;
+		long	minLength		= Long.MAX_VALUE;
+		long	maxLength		= 0;
+		int		maxShared		= 0;
+		int		maxIdentifier	= 0;
+		for ( int page = 0; page < pageCount; page++ ) {
+			minObjects	= Math.min( minObjects, pageObjectCounts[ page ] );
+			maxObjects	= Math.max( maxObjects, pageObjectCounts[ page ] );
+			minLength	= Math.min( minLength, pageLengths[ page ] );
+			maxLength	= Math.max( maxLength, pageLengths[ page ] );
+			maxShared	= Math.max( maxShared, pageSharedIdentifiers.get( page ).size() );
+			for ( int identifier : pageSharedIdentifiers.get( page ) ) {
+				maxIdentifier = Math.max( maxIdentifier, identifier );
+			}
+		}
+		int			objectBits		= bits( maxObjects - minObjects );
+		int			lengthBits		= bits( maxLength - minLength );
+		int			sharedBits		= bits( maxShared );
+		int			identifierBits	= bits( maxIdentifier );
+
+		// Page offset hint table. Content stream offsets and lengths are not used by viewers, so each page is described
+		// as a single content stream which spans the page.
+		BitWriter	hints			= new BitWriter();
+		hints.write( minObjects, 32 );
+		hints.write( firstPageOffset, 32 );
+		hints.write( objectBits, 16 );
+		hints.write( minLength, 32 );
+		hints.write( lengthBits, 16 );
+		hints.write( 0, 32 );
+		hints.write( 0, 16 );
+		hints.write( minLength, 32 );
+		hints.write( lengthBits, 16 );
+		hints.write( sharedBits, 16 );
+		hints.write( identifierBits, 16 );
+		hints.write( 0, 16 );
+		hints.write( 4, 16 );
+		for ( int page = 0; page < pageCount; page++ ) {
+			hints.write( pageObjectCounts[ page ] - minObjects, objectBits );
+		}
+		hints.align();
+		for ( int page = 0; page < pageCount; page++ ) {
+			hints.write( pageLengths[ page ] - minLength, lengthBits );
+		}
+		hints.align();
+		for ( int page = 0; page < pageCount; page++ ) {
+			hints.write( pageSharedIdentifiers.get( page ).size(), sharedBits );
+		}
+		hints.align();
+		for ( int page = 0; page < pageCount; page++ ) {
+			for ( int identifier : pageSharedIdentifiers.get( page ) ) {
+				hints.write( identifier, identifierBits );
+			}
+		}
+		hints.align();
+		for ( int page = 0; page < pageCount; page++ ) {
+			hints.write( pageLengths[ page ] - minLength, lengthBits );
+		}
+		hints.align();
+
+		// Shared object hint table
+		sharedTableOffset = hints.size();
+		List<Integer> entries = new ArrayList<Integer>( firstPageObjects );
+		entries.addAll( sharedObjects );
+		long	minGroup	= Long.MAX_VALUE;
+		long	maxGroup	= 0;
+		for ( int number : entries ) {
+			minGroup	= Math.min( minGroup, lengths[ number ] );
+			maxGroup	= Math.max( maxGroup, lengths[ number ] );
+		}
+		int groupBits = bits( maxGroup - minGroup );
+		hints.write( sharedObjects.isEmpty() ? 0 : newNumbers[ sharedObjects.get( 0 ) ], 32 );
+		hints.write( sharedObjects.isEmpty() ? 0 : firstPageOffset + sum( firstPageObjects ) + sum( pageObjects ), 32 );
+		hints.write( firstPageObjects.size(), 32 );
+		hints.write( entries.size(), 32 );
+		hints.write( 0, 16 );
+		hints.write( minGroup, 32 );
+		hints.write( groupBits, 16 );
+		for ( int number : entries ) {
+			hints.write( lengths[ number ] - minGroup, groupBits );
+		}
+		hints.align();
+		for ( int i = 0; i < entries.size(); i++ ) {
+			hints.write( 0, 1 );
+		}
+		hints.align();
+		return hints.toByteArray();
+	}
+
+	/**
+	 * Writes a single object with its new object number and references
+	 *
+	 * @param outputStream The stream the object is written to
+	 * @param number       The source object number
+	 *
+	 * @throws IOException
+	 */
+	private void writeObject( OutputStream outputStream, int number ) throws IOException {
+		PdfObject object = reader.getPdfObjectRelease( number );
+		outputStream.write( ascii( newNumbers[ number ] + " 0 obj\n" ) );
+		if ( object instanceof PRStream stream ) {
+			byte[] data = PdfReader.getStreamBytesRaw( stream );
+			writeDictionary( outputStream, stream, data.length );
+			outputStream.write( ascii( "\nstream\n" ) );
+			outputStream.write( data );
+			outputStream.write( ascii( "\nendstream" ) );
+		} else {
+			writeValue( outputStream, object );
+		}
+		outputStream.write( ascii( "\nendobj\n" ) );
+	}
+
+	/**
+	 * Writes a direct value, renumbering its references. References to objects which are not written become null.
+	 *
+	 * @param outputStream The stream the value is written to
+	 * @param value        The value
+	 *
+	 * @throws IOException
+	 */
+	private void writeValue( OutputStream outputStream, PdfObject value ) throws IOException {
+		if ( value == null ) {
+			outputStream.write( ascii( "null" ) );
+		} else if ( value instanceof PRIndirectReference reference ) {
+			int number = reference.getNumber() > 0 && reference.getNumber() < newNumbers.length ? newNumbers[ reference.getNumber() ] : 0;
+			outputStream.write( ascii( number > 0 ? number + " 0 R" : "null" ) );
+		} else if ( value instanceof PdfDictionary dictionary ) {
+			writeDictionary( outputStream, dictionary, -1 );
+		} else if ( value instanceof PdfArray array ) {
+			outputStream.write( '[' );
+			for ( int i = 0; i < array.size(); i++ ) {
+				if ( i > 0 ) {
+					outputStream.write( ' ' );
+				}
+				writeValue( outputStream, array.getPdfObject( i ) );
+			}
+			outputStream.write( ']' );
+		} else {
+			value.toPdf( null, outputStream );
+		}
+	}
+
+	/**
+	 * Writes a dictionary, renumbering its references
+	 *
+	 * @param outputStream The stream the dictionary is written to
+	 * @param dictionary   The dictionary
+	 * @param streamLength The length of the stream data of a stream dictionary, or -1
+	 *
+	 * @throws IOException
+	 */
+	private void writeDictionary( OutputStream outputStream, PdfDictionary dictionary, long streamLength ) throws IOException {
+		outputStream.write( ascii( "<<" ) );
+		for ( PdfName key : dictionary.getKeys() ) {
+			if ( streamLength >= 0 && PdfName.LENGTH.equals( key ) ) {
+				continue;
+			}
+			key.toPdf( null, outputStream );
+			outputStream.write( ' ' );
+			writeValue( outputStream, dictionary.get( key ) );
+		}
+		if ( streamLength >= 0 ) {
+			outputStream.write( ascii( "/Length " + streamLength ) );
+		}
+		outputStream.write( ascii( ">>" ) );
+	}
+
+	/**
+	 * The linearization parameter dictionary
+	 *
+	 * @param fileLength   The length of the file
+	 * @param hintOffset   The offset of the primary hint stream
+	 * @param hintLength   The length of the primary hint stream
+	 * @param firstPageEnd The offset of the end of the first page
+	 * @param mainXref     The offset of the white-space before the first entry of the main cross-reference table
+	 *
+	 * @return the dictionary object, without padding
+	 */
+	private String linearizationDictionary( long fileLength, long hintOffset, long hintLength, long firstPageEnd, long mainXref ) {
+		return linearizationNumber + " 0 obj\n<< /Linearized 1 /L " + fileLength
+		    + " /H [ " + hintOffset + " " + hintLength + " ]"
+		    + " /O " + newNumbers[ reader.getPageOrigRef( 1 ).getNumber() ]
+		    + " /E " + firstPageEnd
+		    + " /N " + reader.getNumberOfPages()
+		    + " /T " + mainXref + " >>";
+	}
+
+	/**
+	 * The trailer of the first-page cross-reference table, which refers to the main cross-reference table
+	 *
+	 * @param mainXref The offset of the main cross-reference table
+	 *
+	 * @return the trailer, without padding
+	 *
+	 * @throws IOException
+	 */
+	private String firstPageTrailer( long mainXref ) throws IOException {
+		StringBuilder trailer = new StringBuilder( "trailer\n<< /Size " ).append( hintNumber + 1 );
+		trailer.append( " /Root " ).append( newNumbers[ ( ( PRIndirectReference ) reader.getTrailer().get( PdfName.ROOT ) ).getNumber() ] ).append( " 0 R" );
+		if ( reader.getTrailer().get( PdfName.INFO ) instanceof PRIndirectReference info && newNumbers[ info.getNumber() ] > 0 ) {
+			trailer.append( " /Info " ).append( newNumbers[ info.getNumber() ] ).append( " 0 R" );
+		}
+		if ( reader.getTrailer().get( PdfName.ID ) != null ) {
+			ByteArrayOutputStream id = new ByteArrayOutputStream();
+			writeValue( id, reader.getTrailer().get( PdfName.ID ) );
+			trailer.append( " /ID " ).append( id.toString( StandardCharsets.ISO_8859_1 ) );
+		}
+		return trailer.append( " /Prev " ).append( mainXref ).append( " >>" ).toString();
+	}
+
+	/**
+	 * The length of a section whose numbers are only known later, padded so each number may grow to the reserved width
+	 *
+	 * @param template The section written with zero for each number
+	 *
+	 * @return the reserved length, including the end of the object or trailer
+	 */
+	private long reserved( String template ) {
+		return ascii( template ).length + 5L * RESERVED_NUMBER_WIDTH + ascii( template.startsWith( "trailer" ) ? "\nstartxref\n0\n%%EOF\n" : "\nendobj\n" ).length;
+	}
+
+	/**
+	 * Writes a section whose length was reserved, padding it with spaces
+	 *
+	 * @param outputStream The stream the section is written to
+	 * @param section      The section
+	 * @param template     The section written with zero for each number
+	 *
+	 * @throws IOException
+	 */
+	private void writeReserved( OutputStream outputStream, String section, String template ) throws IOException {
+		String	end		= template.startsWith( "trailer" ) ? "\nstartxref\n0\n%%EOF\n" : "\nendobj\n";
+		long	padding	= reserved( template ) - section.length() - end.length();
+		outputStream.write( ascii( section + " ".repeat( ( int ) padding ) + end ) );
+	}
+
+	/**
+	 * The total written length of a part
+	 *
+	 * @param part The source object numbers of the part
+	 *
+	 * @return the length in bytes
+	 */
+	private long sum( List<Integer> part ) {
+		long total = 0;
+		for ( int number : part ) {
+			total += lengths[ number ];
+		}
+		return total;
+	}
+
+	/**
+	 * A cross-reference table entry for an object in use
+	 *
+	 * @param offset The offset of the object
+	 *
+	 * @return the 20 byte entry
+	 */
+	private static byte[] xrefEntry( long offset ) {
+		return ascii( String.format( "%010d 00000 n \n", offset ) );
+	}
+
+	/**
+	 * The number of bits needed to represent a value
+	 *
+	 * @param value A non-negative value
+	 *
+	 * @return the number of bits, which is 0 for 0
+	 */
+	private static int bits( long value ) {
+		return 64 - Long.numberOfLeadingZeros( value );
+	}
+
+	/**
+	 * Encodes PDF syntax
+	 *
+	 * @param text The text
+	 *
+	 * @return the ISO-8859-1 bytes
+	 */
+	private static byte[] ascii( String text ) {
+		return text.getBytes( StandardCharsets.ISO_8859_1 );
+	}
+
+	/**
+	 * Writes the big-endian bit fields of the hint tables
+	 */
+	private static class BitWriter {
+
+		private final ByteArrayOutputStream	bytes	= new ByteArrayOutputStream();
+		private int							current	= 0;
+		private int							used	= 0;
+
+		/**
+		 * Writes the low bits of a value
+		 *
+		 * @param value The value
+		 * @param count The number of bits
+		 */
+		void write( long value, int count ) {
+			for ( int bit = count - 1; bit >= 0; bit-- ) {
+				current = ( current << 1 ) | ( int ) ( ( value >>> bit ) & 1 );
+				if ( ++used == 8 ) {
+					bytes.write( current );
+					current	= 0;
+					used	= 0;
+				}
+			}
+		}
+
+		/**
+		 * Pads the last byte with zero bits, as each item of the hint tables starts on a byte boundary
+		 */
+		void align() {
+			if ( used > 0 ) {
+				write( 0, 8 - used );
+			}
+		}
+
+		/**
+		 * The number of whole bytes written
+		 *
+		 * @return the size in bytes
+		 */
+		int size() {
+			return bytes.size();
+		}
+
+		/**
+		 * Returns the written bytes, padding the last byte
+		 *
+		 * @return the bytes
+		 */
+		byte[] toByteArray() {
+			align();
+			return bytes.toByteArray();
+		}
+
+	}
+
+}
@@ -0,0 +1,244 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+
+import ortus.boxlang.modules.pdf.types.PDF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+/**
+ * Utilities for reading existing PDF documents and writing the results of PDF operations
+ */
+public class PDFReaderUtil {
+
+	/**
+	 * Opens a reader for a PDF source. File sources are memory-mapped and read partially, so only the cross-reference table is loaded up front
+	 * and page objects are read from the file as they are requested.
+	 *
+	 * @param context The context used to expand relative paths
+	 * @param source  A byte array, a file path or a PDF object produced by the document component
+	 *
+	 * @return the opened reader
+	 */
+	public static PdfReader openReader( IBoxContext context, Object source ) {
+		return openReader( context, source, true );
+	}
+
+	/**
+	 * Opens a reader for a PDF source. File sources are read partially, so only the cross-reference table is loaded up front
+	 * and page objects are read from the file as they are requested.
+	 *
+	 * @param context The context used to expand relative paths
+	 * @param source  A byte array, a file path or a PDF object produced by the document component
+	 * @param mapped  Whether file sources are memory-mapped. Files which will be appended to while they are read should not be mapped
+	 *
+	 * @return the opened reader
+	 */
+	public static PdfReader openReader( IBoxContext context, Object source, boolean mapped ) {
+		try {
+			if ( source instanceof byte[] bytes ) {
+				return new PdfReader( bytes );
+			} else if ( source instanceof PDF pdf ) {
+				return new PdfReader( pdf.toBinary() );
+			} else if ( source instanceof String path ) {
+				return new PdfReader( new RandomAccessFileOrArray( resolvePath( context, path ), false, !mapped ), null );
+			}
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+		throw new BoxRuntimeException(
+		    String.format( "The PDF source of type [%s] is not supported. Sources must be a binary, a file path or a PDF object",
+		        source == null ? "null" : source.getClass().getSimpleName() )
+		);
+	}
+
+	/**
+	 * Creates a supplier of independent readers for a PDF source, for reading one document from several threads at once. The source is
+	 * resolved once, and every reader is opened for partial reading, so each only loads the cross-reference table and the page objects it
+	 * reads. File sources are memory-mapped, and the readers of binary sources share the one byte array.
+	 *
+	 * @param context The context used to expand relative paths
+	 * @param source  A byte array, a file path or a PDF object produced by the document component
+	 *
+	 * @return a supplier which opens a new reader on each call
+	 */
+	public static Supplier<PdfReader> readerSupplier( IBoxContext context, Object source ) {
+		if ( source instanceof String path ) {
+			String absolutePath = resolvePath( context, path );
+			return () -> {
+				try {
+					return new PdfReader( new RandomAccessFileOrArray( absolutePath, false, false ), null );
+				} catch ( IOException e ) {
+					throw new BoxIOException( e );
+				}
+			};
+		}
+		byte[] bytes;
+		if ( source instanceof byte[] binary ) {
+			bytes = binary;
+		} else if ( source instanceof PDF pdf ) {
+			bytes = pdf.toBinary();
+		} else {
+			throw new BoxRuntimeException(
+			    String.format( "The PDF source of type [%s] is not supported. Sources must be a binary, a file path or a PDF object",
+			        source == null ? "null" : source.getClass().getSimpleName() )
+			);
+		}
+		return () -> {
+			try {
+				return new PdfReader( new RandomAccessFileOrArray( bytes ), null );
+			} catch ( IOException e ) {
+				throw new BoxIOException( e );
+			}
+		};
+	}
+
+	/**
+	 * Expands a relative path to an absolute path and ensures the file exists
+	 *
+	 * @param context The context used to expand relative paths
+	 * @param path    The path to expand
+	 *
+	 * @return the absolute path
+	 */
+	public static String resolvePath( IBoxContext context, String path ) {
+		String absolutePath = FileSystemUtil.expandPath( context, path ).absolutePath().toString();
+		if ( !FileSystemUtil.exists( absolutePath ) ) {
+			throw new BoxRuntimeException( String.format( "The PDF file [%s] does not exist", absolutePath ) );
+		}
+		return absolutePath;
+	}
+
+	/**
+	 * Expands a destination path to an absolute path
+	 *
+	 * @param context     The context used to expand relative paths
+	 * @param destination The destination path
+	 *
+	 * @return the absolute path
+	 */
+	public static String resolveDestination( IBoxContext context, String destination ) {
+		return FileSystemUtil.expandPath( context, destination ).absolutePath().toString();
+	}
+
+	/**
+	 * Returns a display name for a PDF source, used for bookmarks and messages
+	 *
+	 * @param source The PDF source
+	 * @param index  The position of the source in a list of sources
+	 *
+	 * @return the display name
+	 */
+	public static String describe( Object source, int index ) {
+		if ( source instanceof String path ) {
+			String fileName = Path.of( path ).getFileName().toString();
+			return fileName.toLowerCase().endsWith( ".pdf" ) ? fileName.substring( 0, fileName.length() - 4 ) : fileName;
+		}
+		return "Document " + ( index + 1 );
+	}
+
+	/**
+	 * Opens an output stream to a destination file
+	 *
+	 * @param context     The context used to expand relative paths
+	 * @param destination The destination file path
+	 * @param overwrite   Whether an existing file may be overwritten
+	 *
+	 * @return the output stream
+	 */
+	public static OutputStream openOutput( IBoxContext context, String destination, boolean overwrite ) {
+		Path destinationPath = FileSystemUtil.expandPath( context, destination ).absolutePath();
+		try {
+			if ( overwrite ) {
+				return Files.newOutputStream( destinationPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE );
+			}
+			return Files.newOutputStream( destinationPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE );
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * Opens an output stream which applies an incremental update to an existing file. Writers in append mode first
+	 * repeat the original file, so those bytes are discarded and only the bytes which follow are appended to the file.
+	 *
+	 * @param path The absolute path of the file to update
+	 *
+	 * @return the output stream
+	 */
+	public static OutputStream openIncrementalOutput( String path ) {
+		try {
+			Path filePath = Path.of( path );
+			return new IncrementalOutputStream(
+			    Files.newOutputStream( filePath, StandardOpenOption.APPEND, StandardOpenOption.WRITE ),
+			    Files.size( filePath )
+			);
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * An output stream which skips a number of leading bytes before writing to the underlying stream
+	 */
+	private static class IncrementalOutputStream extends FilterOutputStream {
+
+		private long skipBytes;
+
+		IncrementalOutputStream( OutputStream out, long skipBytes ) {
+			super( out );
+			this.skipBytes = skipBytes;
+		}
+
+		@Override
+		public void write( int b ) throws IOException {
+			if ( skipBytes > 0 ) {
+				skipBytes--;
+				return;
+			}
+			out.write( b );
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) throws IOException {
+			if ( skipBytes > 0 ) {
+				int skipped = ( int ) Math.min( skipBytes, len );
+				skipBytes	-= skipped;
+				off			+= skipped;
+				len			-= skipped;
+			}
+			if ( len > 0 ) {
+				out.write( b, off, len );
+			}
+		}
+	}
+
+}
@@ -0,0 +1,295 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfDate;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfPKCS7;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfSignature;
+import com.lowagie.text.pdf.PdfSignatureAppearance;
+import com.lowagie.text.pdf.PdfStamper;
+import com.lowagie.text.pdf.PdfString;
+import com.lowagie.text.pdf.TSAClient;
+import com.lowagie.text.pdf.TSAClientBouncyCastle;
+
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Applies CMS signatures to PDF documents with the private key and certificate chain of a keystore entry. Signers are
+ * cached by their keystore settings, so the keystore is read and the key decrypted once, however many documents are
+ * signed. A signer is reloaded when its keystore file changes. Signers may be used from several threads at once.
+ * <p>
+ * The signature settings are passed as a struct, which is shared by the <code>pdfSign()</code> BIF and the
+ * <code>signature</code> attribute of the <code>document</code> component:
+ * <ul>
+ * <li>keystore - The path of the keystore file. Required</li>
+ * <li>keystorePassword - The password of the keystore</li>
+ * <li>keystoreType - The type of the keystore. Default is PKCS12</li>
+ * <li>alias - The alias of the key entry. Default is the first key entry</li>
+ * <li>keyPassword - The password of the key entry. Default is the keystorePassword</li>
+ * <li>reason, location and contact - The reason for signing, the location of signing and the contact details of the
+ * signer</li>
+ * <li>fieldName - The name of the signature field. Default is Signature followed by a number</li>
+ * <li>digestAlgorithm - The digest algorithm. Default is SHA-256</li>
+ * <li>tsaUrl, tsaUsername and tsaPassword - The URL and credentials of an RFC 3161 timestamp authority</li>
+ * </ul>
+ */
+public class PDFSigner {
+
+	/**
+	 * The cached signers, by their keystore path and alias, so that there is one entry for each key entry which is used
+	 */
+	private static final Map<String, CachedSigner>	signers				= new ConcurrentHashMap<String, CachedSigner>();
+
+	/**
+	 * The space reserved for the signature in addition to the certificate chain and timestamp, in bytes
+	 */
+	private static final int						SIGNATURE_OVERHEAD	= 4096;
+
+	private final PrivateKey						privateKey;
+	private final Certificate[]						certificateChain;
+	private final String							signerName;
+	private final int								signatureSize;
+
+	/**
+	 * A cached signer
+	 *
+	 * @param stamp  A hash of the keystore modification time and size, its type and the passwords the signer was loaded
+	 *               with
+	 * @param signer The signer
+	 */
+	private record CachedSigner( String stamp, PDFSigner signer ) {
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param privateKey       The private key of the signer
+	 * @param certificateChain The certificate chain of the signer, starting with the signing certificate
+	 */
+	private PDFSigner( PrivateKey privateKey, Certificate[] certificateChain ) throws GeneralSecurityException {
+		this.privateKey			= privateKey;
+		this.certificateChain	= certificateChain;
+		this.signerName			= PdfPKCS7.getSubjectFields( ( X509Certificate ) certificateChain[ 0 ] ).getField( "CN" );
+		int chainSize = 0;
+		for ( Certificate certificate : certificateChain ) {
+			chainSize += certificate.getEncoded().length;
+		}
+		this.signatureSize = SIGNATURE_OVERHEAD + chainSize;
+	}
+
+	/**
+	 * Returns the signer of a keystore entry, loading the keystore the first time it is used or after it has changed
+	 *
+	 * @param signature The signature settings, whose keystore path is absolute
+	 *
+	 * @return the signer
+	 */
+	public static PDFSigner of( IStruct signature ) {
+		String	keystore			= signature.getAsString( ModuleKeys.keystore );
+		String	keystoreType		= StringCaster.cast( signature.getOrDefault( ModuleKeys.keystoreType, "PKCS12" ) );
+		String	keystorePassword	= signature.getAsString( ModuleKeys.keystorePassword );
+		String	alias				= signature.getAsString( ModuleKeys.alias );
+		String	keyPassword			= signature.get( ModuleKeys.keyPassword ) != null ? signature.getAsString( ModuleKeys.keyPassword ) : keystorePassword;
+		if ( keystore == null ) {
+			throw new BoxRuntimeException( "The signature must contain the keystore key" );
+		}
+
+		Path keystorePath = Path.of( keystore );
+		try {
+			// the entry of a keystore which has been replaced, or which is read with other settings, is loaded again and
+			// replaces the cached signer
+			String	cacheKey	= keystorePath.toString() + "|" + alias;
+			String	stamp		= PDFUtil.hashContent(
+			    keystoreType,
+			    keystorePassword,
+			    keyPassword,
+			    String.valueOf( Files.getLastModifiedTime( keystorePath ).toMillis() ),
+			    String.valueOf( Files.size( keystorePath ) )
+			);
+			return signers.compute( cacheKey, ( key, cached ) -> cached != null && cached.stamp().equals( stamp )
+			    ? cached
+			    : new CachedSigner( stamp, load( keystorePath, keystoreType, keystorePassword, alias, keyPassword ) ) ).signer();
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * Removes every cached signer, so that their keys are released and keystores are read again when next used
+	 */
+	public static void clear() {
+		signers.clear();
+	}
+
+	/**
+	 * Returns the number of signers held in the cache
+	 *
+	 * @return
+	 */
+	public static int size() {
+		return signers.size();
+	}
+
+	/**
+	 * Reads a key entry from a keystore
+	 *
+	 * @param keystorePath     The path of the keystore file
+	 * @param keystoreType     The type of the keystore
+	 * @param keystorePassword The password of the keystore
+	 * @param alias            The alias of the key entry, or null for the first key entry
+	 * @param keyPassword      The password of the key entry
+	 *
+	 * @return the signer of the key entry
+	 */
+	private static PDFSigner load( Path keystorePath, String keystoreType, String keystorePassword, String alias, String keyPassword ) {
+		try ( InputStream inputStream = Files.newInputStream( keystorePath ) ) {
+			KeyStore keyStore = KeyStore.getInstance( keystoreType );
+			keyStore.load( inputStream, keystorePassword != null ? keystorePassword.toCharArray() : null );
+			String entryAlias = alias;
+			if ( entryAlias == null ) {
+				entryAlias = Collections.list( keyStore.aliases() ).stream()
+				    .filter( name -> {
+					    try {
+						    return keyStore.isKeyEntry( name );
+					    } catch ( GeneralSecurityException e ) {
+						    return false;
+					    }
+				    } )
+				    .findFirst()
+				    .orElseThrow( () -> new BoxRuntimeException( String.format( "The keystore [%s] contains no key entries", keystorePath ) ) );
+			}
+			if ( !keyStore.isKeyEntry( entryAlias ) ) {
+				throw new BoxRuntimeException( String.format( "The keystore [%s] contains no key entry with the alias [%s]", keystorePath, entryAlias ) );
+			}
+			PrivateKey		privateKey			= ( PrivateKey ) keyStore.getKey( entryAlias, keyPassword != null ? keyPassword.toCharArray() : null );
+			Certificate[]	certificateChain	= keyStore.getCertificateChain( entryAlias );
+			if ( certificateChain == null || certificateChain.length == 0 ) {
+				throw new BoxRuntimeException( String.format( "The key entry [%s] of the keystore [%s] has no certificate chain", entryAlias, keystorePath ) );
+			}
+			return new PDFSigner( privateKey, certificateChain );
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		} catch ( GeneralSecurityException e ) {
+			throw new BoxRuntimeException( String.format( "The keystore [%s] could not be read", keystorePath ), e );
+		}
+	}
+
+	/**
+	 * Signs a PDF. The byte ranges around the signature are digested as they are written, and the signature is then
+	 * written in to the space reserved for it.
+	 *
+	 * @param reader       The reader of the PDF to sign. Encrypted documents must be opened with their owner password
+	 * @param outputStream The stream the signed PDF is written to
+	 * @param signature    The signature settings
+	 * @param append       Whether the signature is appended as an incremental update, which keeps earlier signatures valid
+	 *
+	 * @throws IOException
+	 */
+	public void sign( PdfReader reader, OutputStream outputStream, IStruct signature, boolean append ) throws IOException {
+		String		digestAlgorithm	= StringCaster.cast( signature.getOrDefault( ModuleKeys.digestAlgorithm, "SHA-256" ) );
+		TSAClient	tsaClient		= signature.get( ModuleKeys.tsaUrl ) != null
+		    ? new TSAClientBouncyCastle(
+		        signature.getAsString( ModuleKeys.tsaUrl ),
+		        signature.getAsString( ModuleKeys.tsaUsername ),
+		        signature.getAsString( ModuleKeys.tsaPassword )
+		    )
+		    : null;
+		int			contentSize		= signatureSize + ( tsaClient != null ? tsaClient.getTokenSizeEstimate() : 0 );
+		Calendar	signDate		= Calendar.getInstance();
+
+		PdfStamper				stamper		= PdfStamper.createSignature( reader, outputStream, '\0', null, append );
+		PdfSignatureAppearance	appearance	= stamper.getSignatureAppearance();
+		appearance.setSignDate( signDate );
+		if ( signature.get( ModuleKeys.fieldName ) != null ) {
+			// an invisible signature has an empty rectangle
+			appearance.setVisibleSignature( new Rectangle( 0, 0, 0, 0 ), 1, signature.getAsString( ModuleKeys.fieldName ) );
+		}
+
+		PdfSignature dictionary = new PdfSignature( PdfName.ADOBE_PPKLITE, PdfName.ADBE_PKCS7_DETACHED );
+		dictionary.setDate( new PdfDate( signDate ) );
+		dictionary.setName( signerName );
+		if ( signature.get( ModuleKeys.reason ) != null ) {
+			dictionary.setReason( signature.getAsString( ModuleKeys.reason ) );
+		}
+		if ( signature.get( ModuleKeys.location ) != null ) {
+			dictionary.setLocation( signature.getAsString( ModuleKeys.location ) );
+		}
+		if ( signature.get( ModuleKeys.contact ) != null ) {
+			dictionary.setContact( signature.getAsString( ModuleKeys.contact ) );
+		}
+		appearance.setCryptoDictionary( dictionary );
+
+		HashMap<PdfName, Integer> exclusions = new HashMap<PdfName, Integer>();
+		exclusions.put( PdfName.CONTENTS, contentSize * 2 + 2 );
+		appearance.preClose( exclusions );
+
+		byte[] encoded;
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance( digestAlgorithm );
+			try ( InputStream rangeStream = appearance.getRangeStream() ) {
+				byte[]	buffer	= new byte[ 8192 ];
+				int		read;
+				while ( ( read = rangeStream.read( buffer ) ) > 0 ) {
+					messageDigest.update( buffer, 0, read );
+				}
+			}
+			byte[]		hash		= messageDigest.digest();
+			PdfPKCS7	pkcs7		= new PdfPKCS7( privateKey, certificateChain, null, digestAlgorithm, null, false );
+			byte[]		attributes	= pkcs7.getAuthenticatedAttributeBytes( hash, signDate, null );
+			pkcs7.update( attributes, 0, attributes.length );
+			encoded = pkcs7.getEncodedPKCS7( hash, signDate, tsaClient, null );
+		} catch ( GeneralSecurityException e ) {
+			throw new BoxRuntimeException( "The PDF could not be signed", e );
+		}
+		if ( encoded.length > contentSize ) {
+			throw new BoxRuntimeException(
+			    String.format( "The signature of %d bytes is larger than the %d bytes reserved for it", encoded.length, contentSize ) );
+		}
+
+		byte[] contents = new byte[ contentSize ];
+		System.arraycopy( encoded, 0, contents, 0, encoded.length );
+		PdfDictionary update = new PdfDictionary();
+		update.put( PdfName.CONTENTS, new PdfString( contents ).setHexWriting( true ) );
+		appearance.close( update );
+	}
+
+}
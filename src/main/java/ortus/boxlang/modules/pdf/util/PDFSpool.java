@@ -0,0 +1,663 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.dynamic.casters.LongCaster;
+import ortus.boxlang.runtime.dynamic.casters.StructCaster;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * A durable queue of deferred PDF render jobs, kept as files in a spool directory so that jobs survive restarts, and
+ * worked off at a controlled concurrency and rate.
+ *
+ * Each job is a file which moves between the subdirectories of the spool, and every move is atomic:
+ * <ul>
+ * <li>pending - jobs waiting to run. The file name starts with the time at which the job may next run, so the names sort
+ * in the order the jobs are run</li>
+ * <li>working - jobs being rendered. Jobs left here by a restart are counted as a failed attempt and returned to pending
+ * when processing starts again, so a job which brings down the runtime is eventually quarantined</li>
+ * <li>failed - quarantined jobs, which failed every attempt, holding the error of their last attempt</li>
+ * </ul>
+ * A job writes its PDF to a temporary file beside its destination and moves it in to place once it is complete, so a
+ * destination never holds a partial document. Only one runtime may process a spool directory at a time, though any
+ * number may enqueue jobs in to it.
+ */
+public class PDFSpool {
+
+	/**
+	 * The first bytes of every job file, "BXPQ", followed by the file format version
+	 */
+	private static final int					MAGIC				= 0x42585051;
+	private static final int					VERSION				= 1;
+
+	/**
+	 * The time between scans of the pending directory for jobs enqueued by other runtimes
+	 */
+	private static final long					RESCAN_MILLIS		= 10_000L;
+
+	/**
+	 * The subdirectories of the spool
+	 */
+	private static final String					PENDING				= "pending";
+	private static final String					WORKING				= "working";
+	private static final String					FAILED				= "failed";
+
+	/**
+	 * The markup which renders a job with the document component. The job settings are placed in the variables scope
+	 * alongside the job data.
+	 */
+	private static final String					RENDER_SOURCE		= "<bx:document attributeCollection=\"#bxpdfAttributes#\" filename=\"#bxpdfTarget#\" overwrite=\"true\">"
+	    + "<bx:if len( bxpdfTemplate )><bx:include template=\"#bxpdfTemplate#\"><bx:else><bx:output>#bxpdfContent#</bx:output></bx:if>"
+	    + "</bx:document>";
+
+	/**
+	 * The logger instance
+	 */
+	private static final Logger					logger				= BoxRuntime.getInstance().getLoggingService().getLogger( PDFSpool.class.getSimpleName() );
+
+	/**
+	 * The spools, keyed by their absolute directory
+	 */
+	private static final Map<Path, PDFSpool>	spools				= new ConcurrentHashMap<Path, PDFSpool>();
+
+	/**
+	 * The directories of the spool
+	 */
+	private final Path							directory;
+	private final Path							pendingDirectory;
+	private final Path							workingDirectory;
+	private final Path							failedDirectory;
+
+	/**
+	 * The names of the pending job files, in the order they are run
+	 */
+	private final TreeSet<String>				pendingJobs			= new TreeSet<String>();
+	private long								lastScan			= 0;
+
+	/**
+	 * The processing settings and state, while the spool is processed
+	 */
+	private volatile boolean					running				= false;
+	private boolean								recovered			= false;
+	private Thread								dispatcher			= null;
+	private ExecutorService						executor			= null;
+	private int									concurrency			= 1;
+	private int									rate				= 0;
+	private int									maxAttempts			= 3;
+	private int									retryDelay			= 30;
+
+	/**
+	 * The number of jobs completed, retried and quarantined since processing started
+	 */
+	private final AtomicLong					processed			= new AtomicLong();
+	private final AtomicLong					retried				= new AtomicLong();
+	private final AtomicLong					quarantined			= new AtomicLong();
+	private final AtomicInteger					active				= new AtomicInteger();
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory The absolute spool directory
+	 */
+	private PDFSpool( Path directory ) {
+		this.directory			= directory;
+		this.pendingDirectory	= directory.resolve( PENDING );
+		this.workingDirectory	= directory.resolve( WORKING );
+		this.failedDirectory	= directory.resolve( FAILED );
+		try {
+			Files.createDirectories( pendingDirectory );
+			Files.createDirectories( workingDirectory );
+			Files.createDirectories( failedDirectory );
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * Returns the spool of a directory, creating its subdirectories on first use
+	 *
+	 * @param directory The spool directory
+	 *
+	 * @return the shared spool
+	 */
+	public static PDFSpool of( Path directory ) {
+		return spools.computeIfAbsent( directory.toAbsolutePath().normalize(), PDFSpool::new );
+	}
+
+	/**
+	 * The default spool directory, within the runtime home so that it survives restarts
+	 *
+	 * @return the directory
+	 */
+	public static Path defaultDirectory() {
+		return BoxRuntime.getInstance().getRuntimeHome().resolve( "bx-pdf" ).resolve( "spool" );
+	}
+
+	/**
+	 * Adds a job to the pending jobs of the spool. The job is written to a temporary file and moved in to place, so it
+	 * is never picked up half-written.
+	 *
+	 * @param job A struct of the content or template, data, attributes and destination of the job
+	 *
+	 * @return the id of the job
+	 */
+	public String enqueue( IStruct job ) {
+		String id = UUID.randomUUID().toString();
+		job.put( Key.id, id );
+		job.put( ModuleKeys.attempts, 0 );
+		job.put( ModuleKeys.created, System.currentTimeMillis() );
+		String name = jobName( System.currentTimeMillis(), id );
+		writeJob( pendingDirectory.resolve( name ), job );
+		synchronized ( this ) {
+			pendingJobs.add( name );
+			notifyAll();
+		}
+		return id;
+	}
+
+	/**
+	 * Starts processing the spool, or changes the processing settings when it is already processed. Jobs which were
+	 * being rendered when processing last stopped are returned to the pending jobs first.
+	 *
+	 * @param concurrency The number of jobs rendered at once
+	 * @param rate        The maximum number of jobs started per minute, or 0 for no limit
+	 * @param maxAttempts The number of attempts after which a failing job is quarantined
+	 * @param retryDelay  The delay, in seconds, before a failed job is retried, which doubles with each attempt
+	 */
+	public synchronized void start( int concurrency, int rate, int maxAttempts, int retryDelay ) {
+		if ( concurrency < 1 || maxAttempts < 1 || rate < 0 || retryDelay < 0 ) {
+			throw new BoxRuntimeException( "The spool concurrency and maxAttempts must be greater than zero, and the rate and retryDelay may not be negative" );
+		}
+		if ( running && concurrency != this.concurrency ) {
+			stop();
+		}
+		this.rate			= rate;
+		this.maxAttempts	= maxAttempts;
+		this.retryDelay		= retryDelay;
+		if ( running ) {
+			return;
+		}
+		this.concurrency = concurrency;
+		// only jobs left by a previous runtime are recovered, not those still finishing after a stop
+		if ( !recovered ) {
+			recoverInterruptedJobs();
+			recovered = true;
+		}
+		scan();
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor	= Executors.newFixedThreadPool( concurrency, runnable -> {
+						Thread thread = new Thread( runnable, "bx-pdf-spool-" + threadNumber.incrementAndGet() );
+						thread.setDaemon( true );
+						return thread;
+					} );
+		running		= true;
+		dispatcher	= new Thread( this::dispatch, "bx-pdf-spool-dispatcher" );
+		dispatcher.setDaemon( true );
+		dispatcher.start();
+	}
+
+	/**
+	 * Starts processing the spool with the given settings, unless it is already processed
+	 *
+	 * @param concurrency The number of jobs rendered at once
+	 * @param rate        The maximum number of jobs started per minute, or 0 for no limit
+	 * @param maxAttempts The number of attempts after which a failing job is quarantined
+	 * @param retryDelay  The delay, in seconds, before a failed job is retried, which doubles with each attempt
+	 */
+	public synchronized void ensureStarted( int concurrency, int rate, int maxAttempts, int retryDelay ) {
+		if ( !running ) {
+			start( concurrency, rate, maxAttempts, retryDelay );
+		}
+	}
+
+	/**
+	 * Stops processing the spool. Jobs being rendered are finished, and pending jobs stay in the spool.
+	 */
+	public synchronized void stop() {
+		if ( !running ) {
+			return;
+		}
+		running = false;
+		dispatcher.interrupt();
+		executor.shutdown();
+		dispatcher	= null;
+		executor	= null;
+	}
+
+	/**
+	 * Returns quarantined jobs to the pending jobs, with their attempts reset
+	 *
+	 * @return the number of jobs returned
+	 */
+	public int retryFailed() {
+		int count = 0;
+		try ( DirectoryStream<Path> failedJobs = Files.newDirectoryStream( failedDirectory, "*.job" ) ) {
+			for ( Path failedJob : failedJobs ) {
+				IStruct job = readJob( failedJob );
+				job.put( ModuleKeys.attempts, 0 );
+				String name = jobName( System.currentTimeMillis(), job.getAsString( Key.id ) );
+				writeJob( pendingDirectory.resolve( name ), job );
+				Files.delete( failedJob );
+				synchronized ( this ) {
+					pendingJobs.add( name );
+					notifyAll();
+				}
+				count++;
+			}
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+		return count;
+	}
+
+	/**
+	 * Reports the state of the spool
+	 *
+	 * @return a struct of the spool directory, whether it is running, its settings, the number of pending, working and
+	 *         failed jobs in the spool, and the number of jobs processed, retried and quarantined since processing started
+	 */
+	public IStruct status() {
+		return Struct.linkedOf(
+		    ModuleKeys.spoolDirectory, directory.toString(),
+		    ModuleKeys.running, running,
+		    ModuleKeys.concurrency, concurrency,
+		    ModuleKeys.rate, rate,
+		    ModuleKeys.pending, countJobs( pendingDirectory ),
+		    ModuleKeys.working, active.get(),
+		    ModuleKeys.failed, countJobs( failedDirectory ),
+		    ModuleKeys.processed, processed.get(),
+		    ModuleKeys.retried, retried.get(),
+		    ModuleKeys.quarantined, quarantined.get()
+		);
+	}
+
+	/**
+	 * Claims and starts pending jobs as render slots become free, no faster than the rate allows. A job is only claimed
+	 * once it can be started, and a claimed job which cannot be started because processing stopped is returned to the
+	 * pending jobs.
+	 */
+	private void dispatch() {
+		Semaphore	slots		= new Semaphore( concurrency );
+		long		lastStart	= 0;
+		try {
+			while ( running ) {
+				slots.acquire();
+				if ( rate > 0 ) {
+					long wait = lastStart + 60_000L / rate - System.currentTimeMillis();
+					if ( wait > 0 ) {
+						Thread.sleep( wait );
+					}
+				}
+				Path claimed = null;
+				while ( running && claimed == null ) {
+					String name = nextReadyJob();
+					if ( name == null ) {
+						continue;
+					}
+					try {
+						claimed = Files.move( pendingDirectory.resolve( name ), workingDirectory.resolve( name ), StandardCopyOption.ATOMIC_MOVE );
+					} catch ( IOException e ) {
+						// the job was claimed or removed by someone else
+					}
+				}
+				if ( claimed == null ) {
+					slots.release();
+					break;
+				}
+
+				// a stop, or a stop and a restart, may have happened since the job was claimed, so the job is only handed to
+				// the executor of the processing this dispatcher belongs to
+				ExecutorService jobExecutor;
+				synchronized ( this ) {
+					jobExecutor = running && dispatcher == Thread.currentThread() ? executor : null;
+					if ( jobExecutor != null ) {
+						active.incrementAndGet();
+					}
+				}
+				Path job = claimed;
+				try {
+					if ( jobExecutor == null ) {
+						throw new RejectedExecutionException( "Processing was stopped" );
+					}
+					jobExecutor.execute( () -> {
+						try {
+							process( job );
+						} finally {
+							active.decrementAndGet();
+							slots.release();
+						}
+					} );
+				} catch ( RejectedExecutionException e ) {
+					if ( jobExecutor != null ) {
+						active.decrementAndGet();
+					}
+					unclaim( job );
+					break;
+				}
+				lastStart = System.currentTimeMillis();
+			}
+		} catch ( InterruptedException e ) {
+			// processing was stopped
+		}
+	}
+
+	/**
+	 * Returns a claimed job which was not started to the pending jobs
+	 *
+	 * @param workingFile The job file in the working directory
+	 */
+	private void unclaim( Path workingFile ) {
+		String name = workingFile.getFileName().toString();
+		try {
+			Files.move( workingFile, pendingDirectory.resolve( name ), StandardCopyOption.ATOMIC_MOVE );
+		} catch ( IOException e ) {
+			// the job stays in the working directory and is recovered when a runtime next starts processing
+			logger.error( "Unable to return PDF spool job " + workingFile + " to the pending jobs", e );
+			return;
+		}
+		synchronized ( this ) {
+			pendingJobs.add( name );
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits for the next pending job whose time has come
+	 *
+	 * @return the file name of the job, or null when the wait was cut short and should be repeated
+	 *
+	 * @throws InterruptedException when processing is stopped
+	 */
+	private synchronized String nextReadyJob() throws InterruptedException {
+		if ( pendingJobs.isEmpty() || System.currentTimeMillis() - lastScan > RESCAN_MILLIS ) {
+			scan();
+		}
+		if ( pendingJobs.isEmpty() ) {
+			wait( RESCAN_MILLIS );
+			return null;
+		}
+		String	name	= pendingJobs.first();
+		long	wait	= readyTime( name ) - System.currentTimeMillis();
+		if ( wait > 0 ) {
+			wait( Math.min( wait, RESCAN_MILLIS ) );
+			return null;
+		}
+		pendingJobs.remove( name );
+		return name;
+	}
+
+	/**
+	 * Renders a claimed job. A job which fails is retried after a delay, or quarantined once it has used its attempts.
+	 *
+	 * @param workingFile The job file in the working directory
+	 */
+	private void process( Path workingFile ) {
+		IStruct job;
+		try {
+			job = readJob( workingFile );
+		} catch ( RuntimeException e ) {
+			// an unreadable job can never succeed
+			logger.error( "Quarantining unreadable PDF spool job " + workingFile.getFileName(), e );
+			moveQuietly( workingFile, failedDirectory.resolve( workingFile.getFileName() ) );
+			quarantined.incrementAndGet();
+			return;
+		}
+		job.put( ModuleKeys.attempts, IntegerCaster.cast( job.get( ModuleKeys.attempts ) ) + 1 );
+		try {
+			render( job );
+			Files.delete( workingFile );
+			processed.incrementAndGet();
+		} catch ( Exception e ) {
+			logger.warn( String.format( "PDF spool job %s failed attempt %s", job.getAsString( Key.id ), job.get( ModuleKeys.attempts ) ), e );
+			fail( workingFile, job, e.getMessage() != null ? e.getMessage() : e.getClass().getName() );
+		}
+	}
+
+	/**
+	 * Renders the PDF of a job to a temporary file, which is moved to the destination once it is complete
+	 *
+	 * @param job The job
+	 *
+	 * @throws IOException
+	 */
+	private void render( IStruct job ) throws IOException {
+		BoxRuntime	runtime		= BoxRuntime.getInstance();
+		Path		destination	= Path.of( job.getAsString( ModuleKeys.destination ) );
+		Path		target		= destination.resolveSibling( destination.getFileName() + "." + job.getAsString( Key.id ) + ".part" );
+		Files.createDirectories( destination.toAbsolutePath().getParent() );
+
+		IBoxContext	context		= new ScriptingRequestBoxContext( runtime.getRuntimeContext() );
+		IScope		variables	= context.getScopeNearby( VariablesScope.name );
+		IStruct		data		= job.get( ModuleKeys.data ) != null ? StructCaster.cast( job.get( ModuleKeys.data ) ) : Struct.of();
+		variables.putAll( data );
+		variables.put( ModuleKeys.bxpdfAttributes, job.get( Key.attributes ) != null ? job.get( Key.attributes ) : Struct.of() );
+		variables.put( ModuleKeys.bxpdfTarget, target.toString() );
+		variables.put( ModuleKeys.bxpdfTemplate, job.get( ModuleKeys.template ) != null ? job.getAsString( ModuleKeys.template ) : "" );
+		variables.put( ModuleKeys.bxpdfContent, job.get( Key.content ) != null ? job.getAsString( Key.content ) : "" );
+		try {
+			runtime.executeSource( RENDER_SOURCE, context, BoxSourceType.BOXTEMPLATE );
+			if ( !Files.exists( target ) ) {
+				throw new BoxRuntimeException( "The job did not produce a PDF" );
+			}
+			Files.move( target, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+		} finally {
+			Files.deleteIfExists( target );
+		}
+	}
+
+	/**
+	 * Returns a failed job to the pending jobs to be retried after its backoff delay, or quarantines it once it has used
+	 * its attempts
+	 *
+	 * @param workingFile The job file in the working directory
+	 * @param job         The job, with its attempts counted
+	 * @param error       The error of the attempt
+	 */
+	private void fail( Path workingFile, IStruct job, String error ) {
+		int attempts = IntegerCaster.cast( job.get( ModuleKeys.attempts ) );
+		job.put( ModuleKeys.lastError, error );
+		try {
+			if ( attempts >= maxAttempts ) {
+				writeJob( failedDirectory.resolve( job.getAsString( Key.id ) + ".job" ), job );
+				quarantined.incrementAndGet();
+			} else {
+				long	delay	= retryDelay * 1000L * ( 1L << Math.min( attempts - 1, 20 ) );
+				String	name	= jobName( System.currentTimeMillis() + delay, job.getAsString( Key.id ) );
+				writeJob( pendingDirectory.resolve( name ), job );
+				retried.incrementAndGet();
+				synchronized ( this ) {
+					pendingJobs.add( name );
+					notifyAll();
+				}
+			}
+			Files.delete( workingFile );
+		} catch ( IOException | RuntimeException e ) {
+			// the job stays in the working directory and is recovered when processing next starts
+			logger.error( "Unable to reschedule PDF spool job " + job.getAsString( Key.id ), e );
+		}
+	}
+
+	/**
+	 * Returns the jobs left in the working directory by a restart to the pending jobs, counting the interrupted run as
+	 * a failed attempt
+	 */
+	private void recoverInterruptedJobs() {
+		try ( DirectoryStream<Path> interruptedJobs = Files.newDirectoryStream( workingDirectory, "*.job" ) ) {
+			for ( Path interruptedJob : interruptedJobs ) {
+				try {
+					IStruct job = readJob( interruptedJob );
+					job.put( ModuleKeys.attempts, IntegerCaster.cast( job.get( ModuleKeys.attempts ) ) + 1 );
+					fail( interruptedJob, job, "The job was interrupted by a restart" );
+				} catch ( RuntimeException e ) {
+					moveQuietly( interruptedJob, failedDirectory.resolve( interruptedJob.getFileName() ) );
+				}
+			}
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * Reads the names of the pending job files, picking up jobs enqueued by other runtimes
+	 */
+	private synchronized void scan() {
+		try ( DirectoryStream<Path> jobs = Files.newDirectoryStream( pendingDirectory, "*.job" ) ) {
+			pendingJobs.clear();
+			for ( Path job : jobs ) {
+				pendingJobs.add( job.getFileName().toString() );
+			}
+		} catch ( IOException e ) {
+			logger.error( "Unable to scan the PDF spool directory " + pendingDirectory, e );
+		}
+		lastScan = System.currentTimeMillis();
+	}
+
+	/**
+	 * Counts the job files of a directory
+	 *
+	 * @param jobDirectory The directory
+	 *
+	 * @return the number of jobs
+	 */
+	private static long countJobs( Path jobDirectory ) {
+		try ( DirectoryStream<Path> jobs = Files.newDirectoryStream( jobDirectory, "*.job" ) ) {
+			long count = 0;
+			for ( Path job : jobs ) {
+				count++;
+			}
+			return count;
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * The file name of a pending job, which starts with the zero-padded time at which it may run so that the names sort
+	 * in the order the jobs are run
+	 *
+	 * @param readyTime The time at which the job may run, in epoch milliseconds
+	 * @param id        The id of the job
+	 *
+	 * @return the file name
+	 */
+	private static String jobName( long readyTime, String id ) {
+		return String.format( "%015d-%s.job", readyTime, id );
+	}
+
+	/**
+	 * The time at which a pending job may run
+	 *
+	 * @param name The file name of the job
+	 *
+	 * @return the time in epoch milliseconds
+	 */
+	private static long readyTime( String name ) {
+		try {
+			return LongCaster.cast( name.substring( 0, name.indexOf( '-' ) ) );
+		} catch ( RuntimeException e ) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Writes a job file through a temporary file, which is moved in to place
+	 *
+	 * @param file The job file
+	 * @param job  The job
+	 */
+	private static void writeJob( Path file, IStruct job ) {
+		Path partial = file.resolveSibling( file.getFileName() + ".partial" );
+		try {
+			try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( partial ) ) ) ) {
+				out.writeInt( MAGIC );
+				out.writeInt( VERSION );
+				RenderProtocol.writeValue( out, job );
+			}
+			Files.move( partial, file, StandardCopyOption.ATOMIC_MOVE );
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * Reads a job file
+	 *
+	 * @param file The job file
+	 *
+	 * @return the job
+	 */
+	private static IStruct readJob( Path file ) {
+		try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ) ) ) ) {
+			if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+				throw new BoxRuntimeException( "The file " + file + " is not a PDF spool job" );
+			}
+			return StructCaster.cast( RenderProtocol.readValue( in ) );
+		} catch ( IOException e ) {
+			throw new BoxIOException( e );
+		}
+	}
+
+	/**
+	 * Moves a file, logging rather than throwing any failure
+	 *
+	 * @param source The file
+	 * @param target The new location
+	 */
+	private static void moveQuietly( Path source, Path target ) {
+		try {
+			Files.move( source, target, StandardCopyOption.REPLACE_EXISTING );
+		} catch ( IOException e ) {
+			logger.error( "Unable to move PDF spool job " + source, e );
+		}
+	}
+
+}
@@ -19,7 +19,20 @@ package ortus.boxlang.modules.pdf.util;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
@@ -34,14 +47,18 @@ import org.jsoup.helper.W3CDom;
 import org.jsoup.parser.Parser;
 import org.w3c.dom.Document;
 
+import com.lowagie.text.pdf.PdfWriter;
+
 import ortus.boxlang.modules.pdf.types.PDF;
 import ortus.boxlang.runtime.context.IBoxContext;
 import ortus.boxlang.runtime.dynamic.casters.StringCaster;
 import ortus.boxlang.runtime.dynamic.casters.StructCaster;
 import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Array;
 import ortus.boxlang.runtime.types.IStruct;
 import ortus.boxlang.runtime.types.Struct;
 import ortus.boxlang.runtime.types.exceptions.BoxIOException;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
 import ortus.boxlang.runtime.util.FileSystemUtil;
 
 public class PDFUtil {
@@ -101,20 +118,60 @@ public class PDFUtil {
 																						put( "tabloid", new double[] { 431.8, 279.4 } );
 																					}
 																				};
+	/**
+	 * Encryption algorithm map, from the algorithm names to the PdfWriter encryption types
+	 */
+	public static final HashMap<String, Integer>	ENCRYPTION_TYPES			= new HashMap<String, Integer>() {
+
+																					{
+																						put( "none", PdfWriter.ENCRYPTION_NONE );
+																						put( "40-bit", PdfWriter.STANDARD_ENCRYPTION_40 );
+																						put( "128-bit", PdfWriter.STANDARD_ENCRYPTION_128 );
+																						put( "aes-128", PdfWriter.ENCRYPTION_AES_128 );
+																						put( "aes-256", PdfWriter.ENCRYPTION_AES_256_V3 );
+																					}
+																				};
+	/**
+	 * Permission map, from the permission names to the PdfWriter permission flags
+	 */
+	public static final HashMap<String, Integer>	PERMISSIONS					= new HashMap<String, Integer>() {
+
+																					{
+																						put( "allowprinting", PdfWriter.ALLOW_PRINTING );
+																						put( "allowdegradedprinting", PdfWriter.ALLOW_DEGRADED_PRINTING );
+																						put( "allowmodifycontents", PdfWriter.ALLOW_MODIFY_CONTENTS );
+																						put( "allowcopy", PdfWriter.ALLOW_COPY );
+																						put( "allowmodifyannotations", PdfWriter.ALLOW_MODIFY_ANNOTATIONS );
+																						put( "allowfillin", PdfWriter.ALLOW_FILL_IN );
+																						put( "allowscreenreaders", PdfWriter.ALLOW_SCREENREADERS );
+																						put( "allowassembly", PdfWriter.ALLOW_ASSEMBLY );
+																					}
+																				};
 
 	/**
 	 * Local variable struct used for placeholders
 	 **/
 	public static final String						DOCUMENT_LOCAL_VARIABLE		= "bxdocument";
 	/**
-	 * Local variable struct used for placeholders
+	 * Local variable struct used for placeholders. Documents are given their own copy of it by
+	 * {@link #newDocumentLocalPlaceholders()}, so this instance is never exposed to templates.
+	 */
+	public static final IStruct						DOCUMENT_LOCAL_PLACEHOLDERS	= newDocumentLocalPlaceholders();
+
+	/**
+	 * Creates the local variable struct of placeholders for a single document. Each document is given its own struct,
+	 * so that a template which modifies it does not affect documents rendered on other threads.
+	 *
+	 * @return a new struct of the page counter placeholders
 	 */
-	public static final IStruct						DOCUMENT_LOCAL_PLACEHOLDERS	= Struct.of(
-	    ModuleKeys.currentpagenumber, "<span class='currentpagenumber'/>",
-	    ModuleKeys.totalpages, "<span class='totalpages'/>",
-	    ModuleKeys.currentsectionpagenumber, "<span class='currentsectionpagenumber'/>",
-	    ModuleKeys.totalsectionpagecount, "<span class='totalsectionpagecount'/>"
-	);
+	public static IStruct newDocumentLocalPlaceholders() {
+		return Struct.of(
+		    ModuleKeys.currentpagenumber, "<span class='currentpagenumber'/>",
+		    ModuleKeys.totalpages, "<span class='totalpages'/>",
+		    ModuleKeys.currentsectionpagenumber, "<span class='currentsectionpagenumber'/>",
+		    ModuleKeys.totalsectionpagecount, "<span class='totalsectionpagecount'/>"
+		);
+	}
 
 	/**
 	 * Generate a PDF from a byte array
@@ -140,6 +197,30 @@ public class PDFUtil {
 		return pdf.generate();
 	}
 
+	/**
+	 * Generate a PDF from a plain text file, which is streamed as the PDF is written
+	 *
+	 * @param textFile
+	 * @param context
+	 * @param attributes
+	 * @param executionState
+	 *
+	 * @return
+	 */
+	public static PDF generatePDF( Path textFile, IBoxContext context, IStruct attributes, IStruct executionState ) {
+		PDF pdf = new PDF( attributes, executionState );
+
+		pdf.addDocumentItem(
+		    textFile,
+		    null,
+		    null,
+		    attributes,
+		    executionState
+		);
+
+		return pdf.generate();
+	}
+
 	/**
 	 * Generate a PDF from a string buffer
 	 *
@@ -154,8 +235,9 @@ public class PDFUtil {
 
 		PDF pdf = new PDF( attributes, executionState );
 
-		if ( buffer.toString().trim().length() > 0 ) {
-			pdf.addDocumentItem( buffer.toString() );
+		// The captured body is handed to the PDF as-is, as it is only read once the document is generated
+		if ( !isBlank( buffer ) ) {
+			pdf.addDocumentItem( buffer );
 		}
 
 		executionState.getAsArray( ModuleKeys.documentSections )
@@ -164,10 +246,10 @@ public class PDFUtil {
 		    .forEach( section -> {
 			    IStruct sectionState	= section.getAsStruct( Key.executionState );
 			    IStruct sectionAttributes = section.getAsStruct( Key.attributes );
-			    IStruct sectionHeader	= extractHeaderFromState( sectionState );
-			    IStruct sectionFooter	= extractFooterFromState( sectionState );
+			    String sectionHeader	= extractSectionItem( executionState, sectionState, sectionAttributes, "header", Key.header );
+			    String sectionFooter	= extractSectionItem( executionState, sectionState, sectionAttributes, "footer", ModuleKeys.footer );
 
-			    Object sourceContent	= sectionAttributes.getAsString( Key.result );
+			    Object sourceContent	= sectionAttributes.get( Key.result );
 
 			    if ( sectionAttributes.containsKey( ModuleKeys.src ) ) {
 				    sectionAttributes.put( ModuleKeys.srcfile, sectionAttributes.getAsString( ModuleKeys.src ) );
@@ -178,27 +260,38 @@ public class PDFUtil {
 				    if ( !srcFile.substring( 0, 4 ).equalsIgnoreCase( "http" ) ) {
 					    srcFile = FileSystemUtil.expandPath( context, srcFile ).absolutePath().toString();
 				    }
-				    sourceContent = FileSystemUtil.read( srcFile );
 				    if ( !sectionAttributes.containsKey( ModuleKeys.mimeType ) ) {
 					    sectionAttributes.put( ModuleKeys.mimeType, FileSystemUtil.getMimeType( srcFile ) );
 				    }
+				    // plain text files are streamed as the document is written rather than read in to memory
+				    sourceContent = "text/plain".equalsIgnoreCase( sectionAttributes.getAsString( ModuleKeys.mimeType ) )
+				        ? Path.of( srcFile )
+				        : FileSystemUtil.read( srcFile );
 			    }
 
 			    boolean isBinarySource = sourceContent instanceof byte[];
 
-			    if ( isBinarySource ) {
+			    if ( sourceContent instanceof Path textFile ) {
+				    pdf.addDocumentItem(
+				        textFile,
+				        sectionHeader,
+				        sectionFooter,
+				        sectionAttributes,
+				        sectionState
+				    );
+			    } else if ( isBinarySource ) {
 				    pdf.addDocumentItem(
 				        ( byte[] ) sourceContent,
-				        sectionHeader != null ? sectionHeader.getAsStruct( Key.attributes ).getAsString( Key.result ) : null,
-				        sectionFooter != null ? sectionFooter.getAsStruct( Key.attributes ).getAsString( Key.result ) : null,
+				        sectionHeader,
+				        sectionFooter,
 				        sectionAttributes,
 				        sectionState
 				    );
 			    } else {
 				    pdf.addDocumentItem(
-				        StringCaster.cast( sourceContent ),
-				        sectionHeader != null ? sectionHeader.getAsStruct( Key.attributes ).getAsString( Key.result ) : null,
-				        sectionFooter != null ? sectionFooter.getAsStruct( Key.attributes ).getAsString( Key.result ) : null,
+				        sourceContent instanceof CharSequence sequence ? sequence : StringCaster.cast( sourceContent ),
+				        sectionHeader,
+				        sectionFooter,
 				        sectionAttributes,
 				        sectionState
 				    );
@@ -210,13 +303,14 @@ public class PDFUtil {
 	}
 
 	/**
-	 * Parses and santizes an html 5 string in to a DOM document
+	 * Parses and santizes an html 5 string in to a DOM document. Each call uses its own parser and DOM converter, so
+	 * documents may be parsed concurrently.
 	 *
 	 * @param content
 	 *
 	 * @return
 	 */
-	public synchronized static org.w3c.dom.Document parseContent( String content ) {
+	public static org.w3c.dom.Document parseContent( String content ) {
 		org.jsoup.nodes.Document doc;
 		try {
 			doc = Jsoup.parse( content, "", Parser.xmlParser() );
@@ -225,11 +319,10 @@ public class PDFUtil {
 			doc = Jsoup.parse( content, "", Parser.htmlParser() );
 		}
 
-		// Should reuse W3CDom instance if converting multiple documents.
 		return new W3CDom().fromJsoup( doc );
 	}
 
-	public synchronized static org.w3c.dom.Document parseRemoteFile( String url ) {
+	public static org.w3c.dom.Document parseRemoteFile( String url ) {
 		try {
 			return new W3CDom().fromJsoup( Jsoup.connect( url ).get() );
 		} catch ( IOException e ) {
@@ -238,37 +331,297 @@ public class PDFUtil {
 	}
 
 	/**
-	 * Extract the header from a component execution state
+	 * Extract the header from a component execution state. Named headers are shared by the sections which reference
+	 * them, and are not the header of the component.
 	 *
 	 * @param executionState
 	 *
 	 * @return The found header struct or else null
 	 */
 	public static IStruct extractHeaderFromState( IStruct executionState ) {
-		return executionState.getAsArray( ModuleKeys.documentItems )
-		    .stream()
-		    .map( StructCaster::cast )
-		    .filter( item -> item.getAsString( Key.type ).toLowerCase() == "header" )
-		    .findFirst()
-		    .orElse( null );
+		return extractItemFromState( executionState, "header", null );
 	}
 
 	/**
-	 * Extract the footer from a component execution state
+	 * Extract the footer from a component execution state. Named footers are shared by the sections which reference
+	 * them, and are not the footer of the component.
 	 *
 	 * @param executionState
 	 *
 	 * @return The found footer struct or else null
 	 */
 	public static IStruct extractFooterFromState( IStruct executionState ) {
+		return extractItemFromState( executionState, "footer", null );
+	}
+
+	/**
+	 * Extract a document item of a type and name from a component execution state
+	 *
+	 * @param executionState
+	 * @param type           The item type
+	 * @param name           The item name, or null for an unnamed item
+	 *
+	 * @return The found item struct or else null
+	 */
+	public static IStruct extractItemFromState( IStruct executionState, String type, String name ) {
 		return executionState.getAsArray( ModuleKeys.documentItems )
 		    .stream()
 		    .map( StructCaster::cast )
-		    .filter( item -> item.getAsString( Key.type ).toLowerCase() == "footer" )
+		    .filter( item -> item.getAsString( Key.type ).equalsIgnoreCase( type ) )
+		    .filter( item -> name == null ? item.get( Key._NAME ) == null : name.equalsIgnoreCase( item.getAsString( Key._NAME ) ) )
 		    .findFirst()
 		    .orElse( null );
 	}
 
+	/**
+	 * Resolves the header or footer markup of a section, which is the item within the section, or else the shared item
+	 * of the document which the section references by name
+	 *
+	 * @param documentState     The execution state of the document
+	 * @param sectionState      The execution state of the section
+	 * @param sectionAttributes The attributes of the section
+	 * @param type              The item type
+	 * @param reference         The section attribute which names a shared item
+	 *
+	 * @return The item markup, or null to use the header or footer of the document
+	 */
+	private static String extractSectionItem( IStruct documentState, IStruct sectionState, IStruct sectionAttributes, String type, Key reference ) {
+		IStruct item = extractItemFromState( sectionState, type, null );
+		if ( item == null && sectionAttributes.get( reference ) != null ) {
+			String name = sectionAttributes.getAsString( reference );
+			item = extractItemFromState( documentState, type, name );
+			if ( item == null ) {
+				throw new BoxRuntimeException( String.format( "The document does not declare a %s named [%s]", type, name ) );
+			}
+		}
+		// shared items are the same string for every section, so repeated headers and footers are cheap to compare
+		return item != null ? item.getAsString( Key.result ) : null;
+	}
+
+	/**
+	 * Determines whether a markup fragment references the document-wide page number placeholders
+	 *
+	 * @param content
+	 *
+	 * @return true if the current page number or total page count of the document is used
+	 */
+	public static boolean usesDocumentPageCounters( CharSequence content ) {
+		if ( content == null ) {
+			return false;
+		}
+		return contains( content, DOCUMENT_LOCAL_PLACEHOLDERS.getAsString( ModuleKeys.currentpagenumber ) )
+		    || contains( content, DOCUMENT_LOCAL_PLACEHOLDERS.getAsString( ModuleKeys.totalpages ) );
+	}
+
+	/**
+	 * Determines whether a character sequence contains a search string, without copying the sequence. Strings and string
+	 * builders are searched with their own indexOf.
+	 *
+	 * @param content The character sequence to search
+	 * @param search  The string to find
+	 *
+	 * @return true if the search string occurs in the content
+	 */
+	public static boolean contains( CharSequence content, String search ) {
+		if ( content instanceof String string ) {
+			return string.contains( search );
+		} else if ( content instanceof StringBuilder builder ) {
+			return builder.indexOf( search ) >= 0;
+		} else if ( content instanceof StringBuffer buffer ) {
+			return buffer.indexOf( search ) >= 0;
+		}
+		// other sequences have no indexOf, so they are searched character by character
+		int last = content.length() - search.length();
+		outer: for ( int i = 0; i <= last; i++ ) {
+			for ( int j = 0; j < search.length(); j++ ) {
+				if ( content.charAt( i + j ) != search.charAt( j ) ) {
+					continue outer;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Determines whether a character sequence is empty or consists only of whitespace, without copying the sequence
+	 *
+	 * @param content The character sequence to check
+	 *
+	 * @return true if the content has no visible characters
+	 */
+	public static boolean isBlank( CharSequence content ) {
+		for ( int i = 0; i < content.length(); i++ ) {
+			if ( !Character.isWhitespace( content.charAt( i ) ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a page list such as <code>1-5,8,10-</code> in to a list of page numbers. An open-ended range runs to the last page.
+	 *
+	 * @param pages     The page list. A null or empty value, or "all", selects every page
+	 * @param pageCount The number of pages in the document
+	 *
+	 * @return the selected page numbers, in the order they were listed
+	 */
+	public static List<Integer> parsePageList( String pages, int pageCount ) {
+		List<Integer> pageNumbers = new ArrayList<Integer>();
+		if ( pages == null || pages.isBlank() || pages.trim().equalsIgnoreCase( "all" ) ) {
+			for ( int i = 1; i <= pageCount; i++ ) {
+				pageNumbers.add( i );
+			}
+			return pageNumbers;
+		}
+		for ( String range : pages.split( "," ) ) {
+			String[] bounds = range.trim().split( "-", -1 );
+			try {
+				int	start	= Integer.parseInt( bounds[ 0 ].trim() );
+				int	end		= bounds.length == 1 ? start
+				    : bounds[ 1 ].isBlank() ? pageCount : Integer.parseInt( bounds[ 1 ].trim() );
+				if ( bounds.length > 2 || start < 1 || end > pageCount || start > end ) {
+					throw new BoxRuntimeException(
+					    String.format( "The page range [%s] is not valid for a document with %d pages", range.trim(), pageCount ) );
+				}
+				for ( int i = start; i <= end; i++ ) {
+					pageNumbers.add( i );
+				}
+			} catch ( NumberFormatException e ) {
+				throw new BoxRuntimeException( String.format( "The page range [%s] is not valid", range.trim() ), e );
+			}
+		}
+		return pageNumbers;
+	}
+
+	/**
+	 * Parses an encryption algorithm name in to a PdfWriter encryption type
+	 *
+	 * @param algorithm The algorithm name, one of none, 40-bit, 128-bit, aes-128 or aes-256
+	 *
+	 * @return the encryption type, which is PdfWriter.ENCRYPTION_NONE for none
+	 */
+	public static int parseEncryptionType( String algorithm ) {
+		Integer encryptionType = ENCRYPTION_TYPES.get( algorithm.trim().toLowerCase() );
+		if ( encryptionType == null ) {
+			throw new BoxRuntimeException(
+			    String.format( "The encryption [%s] is not valid. Valid values are %s", algorithm, String.join( ", ", ENCRYPTION_TYPES.keySet() ) ) );
+		}
+		return encryptionType;
+	}
+
+	/**
+	 * Parses a permission list such as <code>AllowPrinting,AllowCopy</code> in to the PdfWriter permission flags
+	 *
+	 * @param permissions The comma-delimited permission names, or "all" or "none"
+	 *
+	 * @return the combined permission flags
+	 */
+	public static int parsePermissions( String permissions ) {
+		int flags = 0;
+		for ( String permission : permissions.split( "," ) ) {
+			String name = permission.trim().toLowerCase();
+			if ( name.isEmpty() || name.equals( "none" ) ) {
+				continue;
+			}
+			if ( name.equals( "all" ) ) {
+				for ( int flag : PERMISSIONS.values() ) {
+					flags |= flag;
+				}
+				continue;
+			}
+			Integer flag = PERMISSIONS.get( name );
+			if ( flag == null ) {
+				throw new BoxRuntimeException( String.format( "The permission [%s] is not valid", permission.trim() ) );
+			}
+			flags |= flag;
+		}
+		return flags;
+	}
+
+	/**
+	 * Runs a task for each item of a batch on a pool of threads, so that the documents of a batch are processed in
+	 * parallel
+	 *
+	 * @param size        The number of items in the batch
+	 * @param concurrency The number of items processed at the same time
+	 * @param threadName  The prefix of the names of the threads
+	 * @param task        The task, which is given the index of an item and returns its result
+	 *
+	 * @return the results, in the order of the items
+	 */
+	public static Array runBatch( int size, int concurrency, String threadName, IntFunction<Object> task ) {
+		if ( concurrency < 1 ) {
+			throw new BoxRuntimeException( "The concurrency option must be greater than zero" );
+		}
+		AtomicInteger	threadNumber	= new AtomicInteger();
+		ExecutorService	executor		= Executors.newFixedThreadPool( Math.max( Math.min( concurrency, size ), 1 ), runnable -> {
+											Thread thread = new Thread( runnable, threadName + "-" + threadNumber.incrementAndGet() );
+											thread.setDaemon( true );
+											return thread;
+										} );
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for ( int i = 0; i < size; i++ ) {
+				int index = i;
+				futures.add( executor.submit( () -> task.apply( index ) ) );
+			}
+			Array results = new Array();
+			for ( int i = 0; i < size; i++ ) {
+				try {
+					results.add( futures.get( i ).get() );
+				} catch ( ExecutionException e ) {
+					throw new BoxRuntimeException( String.format( "Item %d of the batch failed: %s", i + 1, e.getCause().getMessage() ), e.getCause() );
+				}
+			}
+			return results;
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new BoxRuntimeException( "The batch was interrupted", e );
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Creates a SHA-256 hash of binary content
+	 *
+	 * @param content
+	 *
+	 * @return the hex encoded hash
+	 */
+	public static String hashContent( byte[] content ) {
+		try {
+			return HexFormat.of().formatHex( MessageDigest.getInstance( "SHA-256" ).digest( content ) );
+		} catch ( NoSuchAlgorithmException e ) {
+			throw new BoxRuntimeException( "The SHA-256 algorithm is not available", e );
+		}
+	}
+
+	/**
+	 * Creates a SHA-256 hash of one or more string values
+	 *
+	 * @param values
+	 *
+	 * @return the hex encoded hash
+	 */
+	public static String hashContent( String... values ) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+			for ( String value : values ) {
+				if ( value != null ) {
+					digest.update( value.getBytes( StandardCharsets.UTF_8 ) );
+				}
+				// separate the values so that adjacent values cannot collide
+				digest.update( ( byte ) 0 );
+			}
+			return HexFormat.of().formatHex( digest.digest() );
+		} catch ( NoSuchAlgorithmException e ) {
+			throw new BoxRuntimeException( "The SHA-256 algorithm is not available", e );
+		}
+	}
+
 	/**
 	 * Utility methods to view the generated HTML to be parsed
 	 *
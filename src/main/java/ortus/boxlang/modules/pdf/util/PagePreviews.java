@@ -0,0 +1,581 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.parser.FSCMYKColor;
+import org.xhtmlrenderer.css.parser.FSColor;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.extend.FSGlyphVector;
+import org.xhtmlrenderer.extend.FSImage;
+import org.xhtmlrenderer.extend.FontContext;
+import org.xhtmlrenderer.extend.OutputDevice;
+import org.xhtmlrenderer.extend.TextRenderer;
+import org.xhtmlrenderer.layout.Layer;
+import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.pdf.FontDescription;
+import org.xhtmlrenderer.pdf.ITextFSFont;
+import org.xhtmlrenderer.pdf.ITextFSImage;
+import org.xhtmlrenderer.pdf.ITextFontContext;
+import org.xhtmlrenderer.pdf.ITextImageElement;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.FSFont;
+import org.xhtmlrenderer.render.FSFontMetrics;
+import org.xhtmlrenderer.render.JustificationInfo;
+import org.xhtmlrenderer.render.PageBox;
+import org.xhtmlrenderer.render.RenderingContext;
+import org.xhtmlrenderer.swing.Java2DOutputDevice;
+
+import com.lowagie.text.Image;
+import com.lowagie.text.pdf.BaseFont;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Rasterizes the pages of a laid-out document to PNG or JPEG images. The pages are painted from the layout of the
+ * renderer which writes the PDF, so the document is not laid out again: text is drawn with the Java2D equivalent of
+ * each PDF font at the positions measured for the PDF, and images are drawn from the data embedded in the PDF.
+ */
+public class PagePreviews {
+
+	/**
+	 * The supported image formats
+	 */
+	public static final Set<String>		FORMATS			= Set.of( "png", "jpg" );
+
+	/**
+	 * The default resolution of the previews, in dots per inch
+	 */
+	public static final float			DEFAULT_DPI		= 96f;
+
+	/**
+	 * The JPEG compression quality of JPEG previews
+	 */
+	private static final float			JPEG_QUALITY	= 0.85f;
+
+	/**
+	 * The renderer whose layout is painted
+	 */
+	private final ITextRenderer			renderer;
+
+	/**
+	 * The resolution of the previews, in dots per inch
+	 */
+	private final float					dpi;
+
+	/**
+	 * The image format of the previews
+	 */
+	private final String				format;
+
+	/**
+	 * The font files loaded in to the renderer, which are matched to PDF fonts by their postscript name
+	 */
+	private final List<String>			fontFiles;
+
+	/**
+	 * The Java2D fonts of the PDF fonts, and the fonts of the font files keyed by their postscript name
+	 */
+	private final Map<BaseFont, Font>	fonts			= new HashMap<BaseFont, Font>();
+	private Map<String, Font>			fileFonts		= null;
+
+	/**
+	 * The decoded images of the document, keyed by their serial id
+	 */
+	private final Map<Long, Object>		images			= new HashMap<Long, Object>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param renderer  The renderer, once the document has been laid out
+	 * @param dpi       The resolution of the previews, in dots per inch
+	 * @param format    The image format of the previews, png or jpg
+	 * @param fontFiles The font files loaded in to the renderer
+	 */
+	public PagePreviews( ITextRenderer renderer, float dpi, String format, List<String> fontFiles ) {
+		this.renderer	= renderer;
+		this.dpi		= dpi;
+		this.format		= format;
+		this.fontFiles	= fontFiles;
+	}
+
+	/**
+	 * Determines whether a page is selected by a page list such as <code>1-5,8,10-</code>. Unlike
+	 * {@link PDFUtil#parsePageList(String, int)} the page count need not be known, so previews can be taken as pages are
+	 * laid out, and listed pages beyond the end of the document are ignored.
+	 *
+	 * @param pages      The page list. A null or empty value, or "all", selects every page
+	 * @param pageNumber The page number
+	 *
+	 * @return true if the page is listed
+	 */
+	public static boolean isListedPage( String pages, int pageNumber ) {
+		if ( pages == null || pages.isBlank() || pages.trim().equalsIgnoreCase( "all" ) ) {
+			return true;
+		}
+		for ( String range : pages.split( "," ) ) {
+			int[] bounds = parseRange( range );
+			if ( pageNumber >= bounds[ 0 ] && pageNumber <= bounds[ 1 ] ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the highest page number of a page list, so that layout can stop once the listed pages are laid out
+	 *
+	 * @param pages The page list
+	 *
+	 * @return the highest page number, or Integer.MAX_VALUE if the list runs to the last page
+	 */
+	public static int lastListedPage( String pages ) {
+		if ( pages == null || pages.isBlank() || pages.trim().equalsIgnoreCase( "all" ) ) {
+			return Integer.MAX_VALUE;
+		}
+		return Arrays.stream( pages.split( "," ) ).mapToInt( range -> parseRange( range )[ 1 ] ).max().orElse( Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Parses a single range of a page list
+	 *
+	 * @param range A page number, a range such as <code>2-5</code>, or an open-ended range such as <code>10-</code>
+	 *
+	 * @return the first and last page of the range
+	 */
+	private static int[] parseRange( String range ) {
+		String[] bounds = range.trim().split( "-", -1 );
+		try {
+			int	start	= Integer.parseInt( bounds[ 0 ].trim() );
+			int	end		= bounds.length == 1 ? start : bounds[ 1 ].isBlank() ? Integer.MAX_VALUE : Integer.parseInt( bounds[ 1 ].trim() );
+			if ( bounds.length > 2 || start < 1 || start > end ) {
+				throw new BoxRuntimeException( String.format( "The page range [%s] is not valid", range.trim() ) );
+			}
+			return new int[] { start, end };
+		} catch ( NumberFormatException e ) {
+			throw new BoxRuntimeException( String.format( "The page range [%s] is not valid", range.trim() ), e );
+		}
+	}
+
+	/**
+	 * Rasterizes the listed pages of the current layout of the renderer
+	 *
+	 * @param pages     The page list
+	 * @param firstPage The page number of the first page of the layout, when the document is laid out in chunks
+	 * @param previews  The list to which the images are added
+	 */
+	public void renderListed( String pages, int firstPage, List<byte[]> previews ) {
+		int pageCount = renderer.getRootBox().getLayer().getPages().size();
+		for ( int i = 0; i < pageCount; i++ ) {
+			if ( isListedPage( pages, firstPage + i ) ) {
+				previews.add( render( i ) );
+			}
+		}
+	}
+
+	/**
+	 * Rasterizes a page of the current layout of the renderer
+	 *
+	 * @param pageIndex The zero-based index of the page in the layout
+	 *
+	 * @return the encoded image
+	 */
+	public byte[] render( int pageIndex ) {
+		BufferedImage image = paint( pageIndex );
+		try ( ByteArrayOutputStream outputStream = new ByteArrayOutputStream() ) {
+			if ( format.equals( "jpg" ) ) {
+				ImageOptimizer.writeJpeg( image, JPEG_QUALITY, outputStream );
+			} else {
+				ImageIO.write( image, "png", outputStream );
+			}
+			return outputStream.toByteArray();
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "The page preview could not be encoded: " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * Paints a page of the layout in the same way the renderer paints it to the PDF
+	 *
+	 * @param pageIndex The zero-based index of the page in the layout
+	 *
+	 * @return the page image
+	 */
+	private BufferedImage paint( int pageIndex ) {
+		SharedContext	sharedContext	= renderer.getSharedContext();
+		BlockBox		root			= renderer.getRootBox();
+		List<PageBox>	pages			= root.getLayer().getPages();
+		PageBox			page			= pages.get( pageIndex );
+
+		// the layout is measured in dots, so the page is scaled from dots to pixels at the preview resolution
+		double				scale	= dpi / 72d / renderer.getOutputDevice().getDotsPerPoint();
+		RenderingContext	sizing	= sharedContext.newRenderingContextInstance( null, new ITextFontContext(), root.getLayer(), 0 );
+		int					width	= Math.max( 1, ( int ) Math.round( page.getWidth( sizing ) * scale ) );
+		int					height	= Math.max( 1, ( int ) Math.round( page.getHeight( sizing ) * scale ) );
+
+		BufferedImage	image		= new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+		Graphics2D		graphics	= image.createGraphics();
+		try {
+			graphics.setColor( Color.WHITE );
+			graphics.fillRect( 0, 0, width, height );
+			graphics.setRenderingHint( RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON );
+			graphics.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON );
+			graphics.setRenderingHint( RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON );
+			graphics.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+			graphics.scale( scale, scale );
+
+			// the PDF text renderer only draws to a PDF, so the page is painted with a context which draws text through Java2D
+			PreviewOutputDevice	outputDevice	= new PreviewOutputDevice( graphics );
+			RenderingContext	c				= new PreviewRenderingContext( sharedContext, outputDevice, root.getLayer() );
+			c.setPageCount( pages.size() );
+			root.getLayer().assignPagePaintingPositions( c, Layer.PagedMode.PAGED_MODE_PRINT );
+			c.setPage( pageIndex, page );
+
+			page.paintBackground( c, 0, Layer.PagedMode.PAGED_MODE_PRINT );
+			page.paintMarginAreas( c, 0, Layer.PagedMode.PAGED_MODE_PRINT );
+			page.paintBorder( c, 0, Layer.PagedMode.PAGED_MODE_PRINT );
+
+			Rectangle content = page.getPrintClippingBounds( c );
+			outputDevice.clip( content );
+			int	top		= -page.getPaintingTop() + page.getMarginBorderPadding( c, CalculatedStyle.Edge.TOP );
+			int	left	= page.getMarginBorderPadding( c, CalculatedStyle.Edge.LEFT );
+			outputDevice.translate( left, top );
+			root.getLayer().paint( c );
+		} finally {
+			graphics.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Returns the Java2D font of a PDF font. Fonts from the font files are matched by their postscript name, and the
+	 * standard PDF fonts are mapped to the logical Java2D fonts.
+	 *
+	 * @param font The PDF font
+	 *
+	 * @return the Java2D font, at the size of the PDF font
+	 */
+	private Font toAWTFont( ITextFSFont font ) {
+		FontDescription	description	= font.getFontDescription();
+		Font			awtFont		= fonts.computeIfAbsent( description.getFont(), baseFont -> {
+										String	postscriptName	= baseFont.getPostscriptFontName();
+										Font	fileFont		= getFileFonts().get( postscriptName.toLowerCase() );
+										if ( fileFont != null ) {
+											return fileFont;
+										}
+										int		style			= ( description.getWeight() >= 600 || postscriptName.contains( "Bold" ) ? Font.BOLD : Font.PLAIN )
+										    | ( description.getStyle() == IdentValue.ITALIC || description.getStyle() == IdentValue.OBLIQUE
+										        || postscriptName.contains( "Italic" ) || postscriptName.contains( "Oblique" ) ? Font.ITALIC : Font.PLAIN );
+										return new Font( toAWTFamily( baseFont ), style, 1 );
+									} );
+		return awtFont.deriveFont( font.getSize2D() );
+	}
+
+	/**
+	 * Returns the Java2D family of a PDF font which is not loaded from a font file
+	 *
+	 * @param baseFont The PDF font
+	 *
+	 * @return the installed family of the same name, or the closest logical font
+	 */
+	private static String toAWTFamily( BaseFont baseFont ) {
+		String[][]	familyNames	= baseFont.getFamilyFontName();
+		String		family		= familyNames.length > 0 ? familyNames[ 0 ][ 3 ] : baseFont.getPostscriptFontName();
+		String		name		= baseFont.getPostscriptFontName();
+		if ( name.startsWith( "Courier" ) ) {
+			return Font.MONOSPACED;
+		} else if ( name.startsWith( "Helvetica" ) ) {
+			return Font.SANS_SERIF;
+		} else if ( name.startsWith( "Times" ) || name.equals( "Symbol" ) || name.equals( "ZapfDingbats" ) ) {
+			return Font.SERIF;
+		}
+		return Arrays.asList( GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames() ).contains( family )
+		    ? family
+		    : Font.SERIF;
+	}
+
+	/**
+	 * Loads the TrueType and OpenType font files, keyed by their lower-cased postscript name
+	 *
+	 * @return the fonts
+	 */
+	private Map<String, Font> getFileFonts() {
+		if ( fileFonts == null ) {
+			fileFonts = new HashMap<String, Font>();
+			for ( String fontFile : fontFiles ) {
+				String extension = fontFile.toLowerCase();
+				if ( !extension.endsWith( ".ttf" ) && !extension.endsWith( ".otf" ) ) {
+					continue;
+				}
+				try {
+					Font font = Font.createFont( Font.TRUETYPE_FONT, new File( fontFile ) );
+					fileFonts.putIfAbsent( font.getPSName().toLowerCase(), font );
+				} catch ( FontFormatException | IOException e ) {
+					// the font is drawn with a logical font instead
+				}
+			}
+		}
+		return fileFonts;
+	}
+
+	/**
+	 * Decodes an image embedded in the PDF
+	 *
+	 * @param image The PDF image
+	 *
+	 * @return the decoded image, or null if it cannot be decoded
+	 */
+	private BufferedImage toAWTImage( Image image ) {
+		Object decoded = images.computeIfAbsent( image.getMySerialId(), serialId -> {
+			byte[] bytes = null;
+			if ( renderer.getSharedContext().getReplacedElementFactory() instanceof OptimizedImageReplacementFactory factory ) {
+				bytes = factory.getEncodedImage( image );
+			}
+			if ( bytes == null ) {
+				bytes = image.getOriginalData() != null ? image.getOriginalData() : image.getRawData();
+			}
+			try {
+				BufferedImage awtImage = bytes != null ? ImageIO.read( new ByteArrayInputStream( bytes ) ) : null;
+				return awtImage != null ? awtImage : Boolean.FALSE;
+			} catch ( IOException e ) {
+				return Boolean.FALSE;
+			}
+		} );
+		return decoded instanceof BufferedImage awtImage ? awtImage : null;
+	}
+
+	/**
+	 * A Java2D output device which draws the fonts, images and colors of the PDF layout
+	 */
+	private class PreviewOutputDevice extends Java2DOutputDevice {
+
+		/**
+		 * The PDF font of the text being drawn, whose widths the text is fitted to
+		 */
+		private ITextFSFont pdfFont = null;
+
+		PreviewOutputDevice( Graphics2D graphics ) {
+			super( graphics );
+		}
+
+		@Override
+		public void setFont( FSFont font ) {
+			if ( font instanceof ITextFSFont textFont ) {
+				pdfFont = textFont;
+				getGraphics().setFont( toAWTFont( textFont ) );
+			} else {
+				pdfFont = null;
+				super.setFont( font );
+			}
+		}
+
+		/**
+		 * Draws text at the width the PDF font gives it, so that the Java2D font fits the positions of the layout
+		 *
+		 * @param string The text
+		 * @param x      The x position of the baseline
+		 * @param y      The y position of the baseline
+		 * @param info   The spacing added to justify the text, or null
+		 */
+		void drawString( String string, float x, float y, JustificationInfo info ) {
+			Graphics2D graphics = getGraphics();
+			if ( pdfFont == null ) {
+				graphics.drawString( string, x, y );
+				return;
+			}
+			BaseFont	baseFont	= pdfFont.getFontDescription().getFont();
+			float		size		= pdfFont.getSize2D();
+			if ( info == null ) {
+				drawFitted( graphics, string, x, y, baseFont.getWidthPoint( string, size ) );
+				return;
+			}
+			float position = x;
+			for ( int i = 0; i < string.length(); i++ ) {
+				String	character	= String.valueOf( string.charAt( i ) );
+				float	width		= baseFont.getWidthPoint( character, size );
+				drawFitted( graphics, character, position, y, width );
+				position += width + info.nonSpaceAdjust() + ( string.charAt( i ) == ' ' ? info.spaceAdjust() : 0f );
+			}
+		}
+
+		/**
+		 * Draws text scaled horizontally to a width
+		 */
+		private static void drawFitted( Graphics2D graphics, String string, float x, float y, float width ) {
+			float drawnWidth = ( float ) graphics.getFont().getStringBounds( string, graphics.getFontRenderContext() ).getWidth();
+			if ( drawnWidth <= 0f || width <= 0f ) {
+				graphics.drawString( string, x, y );
+				return;
+			}
+			AffineTransform transform = graphics.getTransform();
+			graphics.translate( x, y );
+			graphics.scale( width / drawnWidth, 1d );
+			graphics.drawString( string, 0f, 0f );
+			graphics.setTransform( transform );
+		}
+
+		@Override
+		public void setColor( FSColor color ) {
+			if ( color instanceof FSCMYKColor cmyk ) {
+				float black = 1f - cmyk.getBlack();
+				getGraphics().setColor( new Color( ( 1f - cmyk.getCyan() ) * black, ( 1f - cmyk.getMagenta() ) * black, ( 1f - cmyk.getYellow() ) * black ) );
+			} else {
+				super.setColor( color );
+			}
+		}
+
+		@Override
+		public void drawImage( FSImage image, int x, int y ) {
+			if ( image instanceof ITextFSImage pdfImage ) {
+				BufferedImage awtImage = toAWTImage( pdfImage.getImage() );
+				if ( awtImage != null ) {
+					getGraphics().drawImage( awtImage, x, y, image.getWidth(), image.getHeight(), null );
+				}
+			} else {
+				super.drawImage( image, x, y );
+			}
+		}
+
+		@Override
+		public void paintReplacedElement( RenderingContext c, BlockBox box ) {
+			if ( box.getReplacedElement() instanceof ITextImageElement element && element.getImage() instanceof ITextFSImage pdfImage ) {
+				BufferedImage awtImage = toAWTImage( pdfImage.getImage() );
+				if ( awtImage != null ) {
+					Rectangle area = box.getContentAreaEdge( box.getAbsX(), box.getAbsY(), c );
+					getGraphics().drawImage( awtImage, area.x, area.y, area.width, area.height, null );
+				}
+			} else {
+				super.paintReplacedElement( c, box );
+			}
+		}
+	}
+
+	/**
+	 * A rendering context which paints text with a {@link PreviewTextRenderer}, leaving the text renderer of the shared
+	 * context to the PDF
+	 */
+	private static class PreviewRenderingContext extends RenderingContext {
+
+		private final TextRenderer textRenderer;
+
+		PreviewRenderingContext( SharedContext sharedContext, PreviewOutputDevice outputDevice, Layer rootLayer ) {
+			super( sharedContext, outputDevice, new ITextFontContext(), rootLayer, 0 );
+			this.textRenderer = new PreviewTextRenderer( sharedContext.getTextRenderer() );
+		}
+
+		@Override
+		public TextRenderer getTextRenderer() {
+			return textRenderer;
+		}
+	}
+
+	/**
+	 * A text renderer which draws text through Java2D, and measures it with the PDF text renderer the layout was measured with
+	 */
+	private static class PreviewTextRenderer implements TextRenderer {
+
+		private final TextRenderer layoutRenderer;
+
+		PreviewTextRenderer( TextRenderer layoutRenderer ) {
+			this.layoutRenderer = layoutRenderer;
+		}
+
+		@Override
+		public void setup( FontContext context ) {
+			layoutRenderer.setup( context );
+		}
+
+		@Override
+		public void drawString( OutputDevice outputDevice, String string, float x, float y ) {
+			( ( PreviewOutputDevice ) outputDevice ).drawString( string, x, y, null );
+		}
+
+		@Override
+		public void drawString( OutputDevice outputDevice, String string, float x, float y, JustificationInfo info ) {
+			( ( PreviewOutputDevice ) outputDevice ).drawString( string, x, y, info );
+		}
+
+		@Override
+		public void drawGlyphVector( OutputDevice outputDevice, FSGlyphVector vector, float x, float y ) {
+			// glyph vectors are only used for interactive text selection
+		}
+
+		@Override
+		public FSGlyphVector getGlyphVector( OutputDevice outputDevice, FSFont font, String string ) {
+			return layoutRenderer.getGlyphVector( outputDevice, font, string );
+		}
+
+		@Override
+		public float[] getGlyphPositions( OutputDevice outputDevice, FSFont font, FSGlyphVector fsGlyphVector ) {
+			return layoutRenderer.getGlyphPositions( outputDevice, font, fsGlyphVector );
+		}
+
+		@Override
+		public Rectangle getGlyphBounds( OutputDevice outputDevice, FSFont font, FSGlyphVector fsGlyphVector, int index, float x, float y ) {
+			return layoutRenderer.getGlyphBounds( outputDevice, font, fsGlyphVector, index, x, y );
+		}
+
+		@Override
+		public FSFontMetrics getFSFontMetrics( FontContext context, FSFont font, String string ) {
+			return layoutRenderer.getFSFontMetrics( context, font, string );
+		}
+
+		@Override
+		public int getWidth( FontContext context, FSFont font, String string ) {
+			return layoutRenderer.getWidth( context, font, string );
+		}
+
+		@Override
+		public void setFontScale( float scale ) {
+			layoutRenderer.setFontScale( scale );
+		}
+
+		@Override
+		public float getFontScale() {
+			return layoutRenderer.getFontScale();
+		}
+
+		@Override
+		public void setSmoothingThreshold( float fontsize ) {
+			layoutRenderer.setSmoothingThreshold( fontsize );
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.input.CharSequenceReader;
+
+import com.lowagie.text.pdf.BaseFont;
+
+/**
+ * Wraps plain text in to lines which fit the width of a page. The text is read one source line at a time as wrapped
+ * lines are requested, so memory use depends on the length of the longest line rather than the size of the source.
+ */
+public class PlainTextLayout implements Closeable {
+
+	/**
+	 * The number of columns between tab stops
+	 */
+	private static final int		TAB_SIZE	= 8;
+
+	/**
+	 * The reader over the text
+	 */
+	private final BufferedReader	reader;
+
+	/**
+	 * The font the text is set in
+	 */
+	private final BaseFont			font;
+
+	/**
+	 * The font size, in points
+	 */
+	private final float				fontSize;
+
+	/**
+	 * The width available to each line, in points
+	 */
+	private final float				lineWidth;
+
+	/**
+	 * The source line being wrapped, or null when the next source line should be read
+	 */
+	private String					sourceLine	= null;
+
+	/**
+	 * The position in the source line from which the next wrapped line starts
+	 */
+	private int						position	= 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param source    The text, as a path to a UTF-8 encoded file or a character sequence
+	 * @param font      The font the text is set in
+	 * @param fontSize  The font size, in points
+	 * @param lineWidth The width available to each line, in points
+	 *
+	 * @throws IOException
+	 */
+	public PlainTextLayout( Object source, BaseFont font, float fontSize, float lineWidth ) throws IOException {
+		this.reader		= open( source );
+		this.font		= font;
+		this.fontSize	= fontSize;
+		this.lineWidth	= lineWidth;
+	}
+
+	/**
+	 * Opens a reader over a plain text source. Malformed input is replaced rather than failing the document.
+	 *
+	 * @param source The path or character sequence
+	 *
+	 * @return a buffered reader over the text
+	 *
+	 * @throws IOException
+	 */
+	private static BufferedReader open( Object source ) throws IOException {
+		if ( source instanceof Path path ) {
+			return new BufferedReader(
+			    new InputStreamReader(
+			        Files.newInputStream( path ),
+			        StandardCharsets.UTF_8.newDecoder()
+			            .onMalformedInput( CodingErrorAction.REPLACE )
+			            .onUnmappableCharacter( CodingErrorAction.REPLACE )
+			    )
+			);
+		}
+		return new BufferedReader( new CharSequenceReader( ( CharSequence ) source ) );
+	}
+
+	/**
+	 * Returns the next line which fits the line width. Lines are broken after the last space which fits, or at the last
+	 * character which fits when there is no space. Tabs are expanded to spaces and other control characters are dropped.
+	 *
+	 * @return the next wrapped line, or null at the end of the text
+	 *
+	 * @throws IOException
+	 */
+	public String nextLine() throws IOException {
+		if ( sourceLine == null ) {
+			sourceLine	= reader.readLine();
+			position	= 0;
+			if ( sourceLine == null ) {
+				return null;
+			}
+		}
+
+		StringBuilder	line		= new StringBuilder();
+		float			width		= 0f;
+		int				breakLength	= -1;
+		int				breakIndex	= -1;
+		int				index		= position;
+		while ( index < sourceLine.length() ) {
+			char c = sourceLine.charAt( index );
+			if ( c == '\t' ) {
+				int spaces = TAB_SIZE - ( line.length() % TAB_SIZE );
+				line.append( " ".repeat( spaces ) );
+				width += font.getWidthPoint( ' ', fontSize ) * spaces;
+			} else if ( !Character.isISOControl( c ) ) {
+				float charWidth = font.getWidthPoint( c, fontSize );
+				if ( width + charWidth > lineWidth && line.length() > 0 ) {
+					// a space which does not fit ends the line by itself
+					if ( c == ' ' ) {
+						index++;
+						breakLength	= line.length();
+						breakIndex	= index;
+					}
+					break;
+				}
+				line.append( c );
+				width += charWidth;
+			}
+			index++;
+			if ( c == ' ' || c == '\t' ) {
+				breakLength	= line.length();
+				breakIndex	= index;
+			}
+		}
+
+		if ( index >= sourceLine.length() ) {
+			sourceLine = null;
+		} else if ( breakIndex > position ) {
+			// carry the partial word over to the next line
+			line.setLength( breakLength );
+			index = breakIndex;
+		}
+		position = index;
+		return line.toString();
+	}
+
+	/**
+	 * Counts the wrapped lines remaining in the text
+	 *
+	 * @return the number of lines
+	 *
+	 * @throws IOException
+	 */
+	public long countLines() throws IOException {
+		long count = 0;
+		while ( nextLine() != null ) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
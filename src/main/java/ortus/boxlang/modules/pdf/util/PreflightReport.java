@@ -0,0 +1,255 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.util.List;
+
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.pdf.ITextFontContext;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.render.PageBox;
+
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+/**
+ * Collects the page count, the page ranges of the document sections and any content which overflows the page from the
+ * layout of a document, without writing the PDF. A document which is laid out in chunks is added one layout at a time.
+ */
+public class PreflightReport {
+
+	/**
+	 * The element ids of the document sections, in order
+	 */
+	private final List<String>	sectionIds;
+
+	/**
+	 * The names of the document sections, in order, which may be null
+	 */
+	private final List<String>	sectionNames;
+
+	/**
+	 * The first page of each section, or 0 while the section has not been laid out
+	 */
+	private final int[]			sectionStarts;
+
+	/**
+	 * The index of the first section which has not been laid out
+	 */
+	private int					nextSection	= 0;
+
+	/**
+	 * The content which does not fit the page
+	 */
+	private final Array			overflows	= new Array();
+
+	/**
+	 * The number of pages laid out so far
+	 */
+	private int					pageCount	= 0;
+
+	/**
+	 * The size of the first page, in points
+	 */
+	private Double				pageWidth	= null;
+	private Double				pageHeight	= null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param sectionIds   The element ids of the document sections, in order
+	 * @param sectionNames The names of the document sections, in order
+	 */
+	public PreflightReport( List<String> sectionIds, List<String> sectionNames ) {
+		this.sectionIds		= sectionIds;
+		this.sectionNames	= sectionNames;
+		this.sectionStarts	= new int[ sectionIds.size() ];
+	}
+
+	/**
+	 * Adds the layout of a renderer to the report. The pages of the layout follow the pages already added.
+	 *
+	 * @param renderer The renderer whose document has been laid out
+	 */
+	public void addLayout( ITextRenderer renderer ) {
+		BlockBox		root			= renderer.getRootBox();
+		List<PageBox>	pages			= root.getLayer().getPages();
+		LayoutContext	c				= renderer.getSharedContext().newLayoutContextInstance( new ITextFontContext() );
+		float			dotsPerPoint	= renderer.getOutputDevice().getDotsPerPoint();
+
+		if ( pageWidth == null && !pages.isEmpty() ) {
+			pageWidth	= ( double ) Math.round( pages.get( 0 ).getWidth( c ) / dotsPerPoint );
+			pageHeight	= ( double ) Math.round( pages.get( 0 ).getHeight( c ) / dotsPerPoint );
+		}
+
+		// the sections of a layout follow those already placed, so the search stops at the first section past them
+		boolean placed = false;
+		for ( int i = nextSection; i < sectionIds.size(); i++ ) {
+			Box section = renderer.getSharedContext().getBoxById( sectionIds.get( i ) );
+			if ( section == null ) {
+				if ( placed ) {
+					break;
+				}
+				continue;
+			}
+			sectionStarts[ i ]	= pageCount + pageOf( pages, section );
+			nextSection			= i + 1;
+			placed				= true;
+		}
+
+		if ( !pages.isEmpty() ) {
+			findOverflows( root, pages, pages.get( 0 ).getContentWidth( c ), pages.get( 0 ).getContentHeight( c ), dotsPerPoint );
+		}
+
+		pageCount += pages.size();
+	}
+
+	/**
+	 * The number of pages laid out so far
+	 *
+	 * @return the page count
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * Returns the report as a struct. Each section runs to the page before the next section, since every section
+	 * starts on a new page.
+	 *
+	 * @return a struct of the page count, page size, sections and overflows
+	 */
+	public IStruct toStruct() {
+		Array sections = new Array();
+		for ( int i = 0; i < sectionStarts.length; i++ ) {
+			int endPage = pageCount;
+			for ( int next = i + 1; next < sectionStarts.length; next++ ) {
+				if ( sectionStarts[ next ] > 0 ) {
+					endPage = sectionStarts[ next ] - 1;
+					break;
+				}
+			}
+			sections.append(
+			    Struct.linkedOf(
+			        Key._NAME, sectionNames.get( i ),
+			        ModuleKeys.startPage, sectionStarts[ i ] > 0 ? sectionStarts[ i ] : null,
+			        ModuleKeys.endPage, sectionStarts[ i ] > 0 ? endPage : null
+			    )
+			);
+		}
+		return Struct.linkedOf(
+		    ModuleKeys.pageCount, pageCount,
+		    ModuleKeys.pageWidth, pageWidth,
+		    ModuleKeys.pageHeight, pageHeight,
+		    ModuleKeys.sections, sections,
+		    ModuleKeys.overflows, overflows
+		);
+	}
+
+	/**
+	 * Records the boxes which extend past the right edge of the page content area, and replaced elements such as images
+	 * which are taller than the page. Only the outermost overflowing box is recorded, not each of its descendants.
+	 *
+	 * @param box           The box to check
+	 * @param pages         The pages of the layout
+	 * @param contentWidth  The width of the page content area, in dots
+	 * @param contentHeight The height of the page content area, in dots
+	 * @param dotsPerPoint  The layout resolution
+	 */
+	private void findOverflows( Box box, List<PageBox> pages, int contentWidth, int contentHeight, float dotsPerPoint ) {
+		int overflow = box.getAbsX() + box.getWidth() - contentWidth;
+		if ( overflow >= dotsPerPoint ) {
+			addOverflow( box, pages, "horizontal", overflow / dotsPerPoint );
+			return;
+		}
+		if ( box instanceof BlockBox block && block.isReplaced() && box.getHeight() - contentHeight >= dotsPerPoint ) {
+			addOverflow( box, pages, "vertical", ( box.getHeight() - contentHeight ) / dotsPerPoint );
+			return;
+		}
+		for ( int i = 0; i < box.getChildCount(); i++ ) {
+			findOverflows( box.getChild( i ), pages, contentWidth, contentHeight, dotsPerPoint );
+		}
+	}
+
+	/**
+	 * Records a box which overflows the page
+	 *
+	 * @param box       The overflowing box
+	 * @param pages     The pages of the layout
+	 * @param direction Either horizontal or vertical
+	 * @param overflow  The distance by which the box overflows, in points
+	 */
+	private void addOverflow( Box box, List<PageBox> pages, String direction, float overflow ) {
+		overflows.append(
+		    Struct.linkedOf(
+		        ModuleKeys.page, pageCount + pageOf( pages, box ),
+		        ModuleKeys.element, describe( box ),
+		        ModuleKeys.direction, direction,
+		        ModuleKeys.overflow, ( double ) Math.round( overflow )
+		    )
+		);
+	}
+
+	/**
+	 * Finds the page of the layout on which a box starts
+	 *
+	 * @param pages The pages of the layout
+	 * @param box   The box
+	 *
+	 * @return the one-based page number within the layout
+	 */
+	private static int pageOf( List<PageBox> pages, Box box ) {
+		for ( int pageIndex = 0; pageIndex < pages.size(); pageIndex++ ) {
+			if ( box.getAbsY() < pages.get( pageIndex ).getBottom() ) {
+				return pageIndex + 1;
+			}
+		}
+		return pages.size();
+	}
+
+	/**
+	 * Describes the element of a box, or of its nearest ancestor for anonymous boxes such as lines of text, as its tag
+	 * name with its id or first class name
+	 *
+	 * @param box The box
+	 *
+	 * @return a selector-like description of the element
+	 */
+	private static String describe( Box box ) {
+		while ( box != null && box.getElement() == null ) {
+			box = box.getParent();
+		}
+		if ( box == null ) {
+			return "";
+		}
+		Element	element		= box.getElement();
+		String	description	= element.getTagName();
+		if ( !element.getAttribute( "id" ).isEmpty() ) {
+			description += "#" + element.getAttribute( "id" );
+		} else if ( !element.getAttribute( "class" ).isBlank() ) {
+			description += "." + element.getAttribute( "class" ).trim().split( "\\s+" )[ 0 ];
+		}
+		return description;
+	}
+
+}
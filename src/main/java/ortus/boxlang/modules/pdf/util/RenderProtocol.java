@@ -0,0 +1,516 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+/**
+ * The socket protocol between documents and their render workers. Each connection carries a single job. The worker
+ * first sends a random challenge, which the client answers with an HMAC of the challenge keyed by the shared render
+ * secret, so that only clients which know the secret can send jobs and the secret itself is never sent. The worker then
+ * reads a {@link Job} and answers with a {@link Result}, or with the message of the error which failed the job.
+ * Everything a worker needs is in the job, so that workers may run on other hosts without access to the files of the
+ * document. The connection is not encrypted.
+ */
+public class RenderProtocol {
+
+	/**
+	 * The first bytes of every request and response, "BXPD", followed by the protocol version
+	 */
+	public static final int	MAGIC				= 0x42585044;
+	public static final int	VERSION				= 2;
+
+	/**
+	 * The environment variable from which a render worker reads its secret
+	 */
+	public static final String	SECRET_VARIABLE	= "BX_PDF_RENDER_SECRET";
+
+	/**
+	 * The operations of a job: write the PDF with any previews, only rasterize the previews, or only preflight the
+	 * layout
+	 */
+	public static final int	OPERATION_WRITE		= 1;
+	public static final int	OPERATION_PREVIEWS	= 2;
+	public static final int	OPERATION_PREFLIGHT	= 3;
+
+	/**
+	 * The lengths of the challenge a worker opens a connection with, and of the HMAC-SHA256 answer of the client
+	 */
+	private static final int	CHALLENGE_SIZE		= 32;
+	private static final int	ANSWER_SIZE			= 32;
+	private static final SecureRandom	RANDOM		= new SecureRandom();
+
+	/**
+	 * The status of a response
+	 */
+	private static final int	STATUS_OK			= 0;
+	private static final int	STATUS_ERROR		= 1;
+
+	/**
+	 * The type tags of the encoded values
+	 */
+	private static final int	TAG_NULL			= 0;
+	private static final int	TAG_STRING			= 1;
+	private static final int	TAG_BOOLEAN			= 2;
+	private static final int	TAG_INTEGER			= 3;
+	private static final int	TAG_LONG			= 4;
+	private static final int	TAG_DOUBLE			= 5;
+	private static final int	TAG_STRUCT			= 6;
+	private static final int	TAG_ARRAY			= 7;
+
+	/**
+	 * A render job
+	 *
+	 * @param operation      One of the OPERATION constants
+	 * @param attributes     The document attributes, holding only simple values
+	 * @param markup         The assembled HTML markup of the document
+	 * @param imageSources   The data URIs of the images of the document, keyed by their source
+	 * @param sectionIds     The element ids of the sections of the document, in order
+	 * @param fonts          The font files of the document, keyed by file name
+	 * @param timeoutSeconds The time the worker may spend on the job before it stops itself
+	 */
+	public record Job(
+	    int operation,
+	    IStruct attributes,
+	    String markup,
+	    Map<String, String> imageSources,
+	    List<String> sectionIds,
+	    Map<String, byte[]> fonts,
+	    int timeoutSeconds ) {
+	}
+
+	/**
+	 * The result of a render job
+	 *
+	 * @param pdf       The PDF, or null when it was not written
+	 * @param previews  The encoded page previews, or null when they were not requested
+	 * @param preflight The preflight report, or null when it was not requested
+	 * @param recycling Whether the worker stops once the result is sent, so that a new worker takes its place
+	 */
+	public record Result(
+	    byte[] pdf,
+	    List<byte[]> previews,
+	    IStruct preflight,
+	    boolean recycling ) {
+	}
+
+	/**
+	 * Writes a job request
+	 *
+	 * @param out The stream to the worker
+	 * @param job The job
+	 *
+	 * @throws IOException
+	 */
+	public static void writeJob( DataOutputStream out, Job job ) throws IOException {
+		out.writeInt( MAGIC );
+		out.writeInt( VERSION );
+		out.writeInt( job.operation() );
+		out.writeInt( job.timeoutSeconds() );
+		writeValue( out, job.attributes() );
+		writeString( out, job.markup() );
+		out.writeInt( job.imageSources().size() );
+		for ( Map.Entry<String, String> imageSource : job.imageSources().entrySet() ) {
+			writeString( out, imageSource.getKey() );
+			writeString( out, imageSource.getValue() );
+		}
+		out.writeInt( job.sectionIds().size() );
+		for ( String sectionId : job.sectionIds() ) {
+			writeString( out, sectionId );
+		}
+		out.writeInt( job.fonts().size() );
+		for ( Map.Entry<String, byte[]> font : job.fonts().entrySet() ) {
+			writeString( out, font.getKey() );
+			writeBytes( out, font.getValue() );
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads a job request
+	 *
+	 * @param in The stream from the client
+	 *
+	 * @return the job
+	 *
+	 * @throws IOException when the request is not a render job of this protocol version
+	 */
+	public static Job readJob( DataInputStream in ) throws IOException {
+		readHeader( in );
+		int					operation		= in.readInt();
+		int					timeoutSeconds	= in.readInt();
+		IStruct				attributes		= ( IStruct ) readValue( in );
+		String				markup			= readString( in );
+		Map<String, String>	imageSources	= new LinkedHashMap<String, String>();
+		for ( int i = in.readInt(); i > 0; i-- ) {
+			imageSources.put( readString( in ), readString( in ) );
+		}
+		List<String> sectionIds = new ArrayList<String>();
+		for ( int i = in.readInt(); i > 0; i-- ) {
+			sectionIds.add( readString( in ) );
+		}
+		Map<String, byte[]> fonts = new LinkedHashMap<String, byte[]>();
+		for ( int i = in.readInt(); i > 0; i-- ) {
+			fonts.put( readString( in ), readBytes( in ) );
+		}
+		return new Job( operation, attributes, markup, imageSources, sectionIds, fonts, timeoutSeconds );
+	}
+
+	/**
+	 * Writes a successful response
+	 *
+	 * @param out    The stream to the client
+	 * @param result The result of the job
+	 *
+	 * @throws IOException
+	 */
+	public static void writeResult( DataOutputStream out, Result result ) throws IOException {
+		out.writeInt( MAGIC );
+		out.writeInt( VERSION );
+		out.writeInt( STATUS_OK );
+		out.writeBoolean( result.recycling() );
+		writeBytes( out, result.pdf() );
+		out.writeInt( result.previews() != null ? result.previews().size() : -1 );
+		if ( result.previews() != null ) {
+			for ( byte[] preview : result.previews() ) {
+				writeBytes( out, preview );
+			}
+		}
+		writeValue( out, result.preflight() );
+		out.flush();
+	}
+
+	/**
+	 * Writes the response of a failed job
+	 *
+	 * @param out       The stream to the client
+	 * @param message   The error message
+	 * @param recycling Whether the worker stops once the response is sent
+	 *
+	 * @throws IOException
+	 */
+	public static void writeError( DataOutputStream out, String message, boolean recycling ) throws IOException {
+		out.writeInt( MAGIC );
+		out.writeInt( VERSION );
+		out.writeInt( STATUS_ERROR );
+		out.writeBoolean( recycling );
+		writeString( out, message != null ? message : "Unknown error" );
+		out.flush();
+	}
+
+	/**
+	 * Reads a response
+	 *
+	 * @param in The stream from the worker
+	 *
+	 * @return the result of the job
+	 *
+	 * @throws IOException           when the response is not of this protocol version
+	 * @throws RenderFailedException when the worker failed the job
+	 */
+	public static Result readResult( DataInputStream in ) throws IOException {
+		readHeader( in );
+		int		status		= in.readInt();
+		boolean	recycling	= in.readBoolean();
+		if ( status == STATUS_ERROR ) {
+			throw new RenderFailedException( readString( in ), recycling );
+		}
+		byte[]			pdf			= readBytes( in );
+		int				count		= in.readInt();
+		List<byte[]>	previews	= count >= 0 ? new ArrayList<byte[]>() : null;
+		for ( int i = 0; i < count; i++ ) {
+			previews.add( readBytes( in ) );
+		}
+		return new Result( pdf, previews, ( IStruct ) readValue( in ), recycling );
+	}
+
+	/**
+	 * The error message of a job which the worker failed, such as invalid markup. The worker itself is still usable
+	 * unless it is recycling.
+	 */
+	public static class RenderFailedException extends IOException {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private final boolean		recycling;
+
+		/**
+		 * Constructor
+		 *
+		 * @param message   The error message of the worker
+		 * @param recycling Whether the worker stops once the response is sent
+		 */
+		public RenderFailedException( String message, boolean recycling ) {
+			super( message );
+			this.recycling = recycling;
+		}
+
+		/**
+		 * Whether the worker stops once the response is sent
+		 *
+		 * @return true if the worker is recycling
+		 */
+		public boolean isRecycling() {
+			return recycling;
+		}
+	}
+
+	/**
+	 * Writes the challenge which opens a connection
+	 *
+	 * @param out The stream to the client
+	 *
+	 * @return the random challenge, which the client must answer
+	 *
+	 * @throws IOException
+	 */
+	public static byte[] writeChallenge( DataOutputStream out ) throws IOException {
+		byte[] challenge = new byte[ CHALLENGE_SIZE ];
+		RANDOM.nextBytes( challenge );
+		out.writeInt( MAGIC );
+		out.writeInt( VERSION );
+		out.write( challenge );
+		out.flush();
+		return challenge;
+	}
+
+	/**
+	 * Reads the challenge of a worker and answers it with the shared secret
+	 *
+	 * @param in     The stream from the worker
+	 * @param out    The stream to the worker
+	 * @param secret The shared render secret, or null when the worker has none
+	 *
+	 * @throws IOException when the worker does not speak this protocol version
+	 */
+	public static void answerChallenge( DataInputStream in, DataOutputStream out, String secret ) throws IOException {
+		readHeader( in );
+		byte[] challenge = new byte[ CHALLENGE_SIZE ];
+		in.readFully( challenge );
+		out.write( sign( challenge, secret ) );
+	}
+
+	/**
+	 * Reads the answer of a client to a challenge and checks it against the shared secret
+	 *
+	 * @param in        The stream from the client
+	 * @param challenge The challenge sent to the client
+	 * @param secret    The shared render secret, or null when the worker has none
+	 *
+	 * @return whether the client knows the secret
+	 *
+	 * @throws IOException
+	 */
+	public static boolean verifyAnswer( DataInputStream in, byte[] challenge, String secret ) throws IOException {
+		byte[] answer = new byte[ ANSWER_SIZE ];
+		in.readFully( answer );
+		return MessageDigest.isEqual( answer, sign( challenge, secret ) );
+	}
+
+	/**
+	 * Signs a challenge with the shared secret. The key is prefixed so that a worker without a secret still has a key.
+	 *
+	 * @param challenge The challenge
+	 * @param secret    The shared render secret, or null
+	 *
+	 * @return the HMAC-SHA256 of the challenge
+	 */
+	private static byte[] sign( byte[] challenge, String secret ) {
+		try {
+			Mac mac = Mac.getInstance( "HmacSHA256" );
+			mac.init( new SecretKeySpec( ( "bx-pdf:" + ( secret != null ? secret : "" ) ).getBytes( StandardCharsets.UTF_8 ), "HmacSHA256" ) );
+			return mac.doFinal( challenge );
+		} catch ( GeneralSecurityException e ) {
+			throw new IllegalStateException( "The HmacSHA256 algorithm is not available", e );
+		}
+	}
+
+	/**
+	 * Reads and checks the magic number and version of a message
+	 *
+	 * @param in The stream
+	 *
+	 * @throws IOException when the message is not of this protocol version
+	 */
+	private static void readHeader( DataInputStream in ) throws IOException {
+		if ( in.readInt() != MAGIC ) {
+			throw new IOException( "The message is not a bx-pdf render message" );
+		}
+		int version = in.readInt();
+		if ( version != VERSION ) {
+			throw new IOException( String.format( "The render protocol version [%d] is not supported. The supported version is %d", version, VERSION ) );
+		}
+	}
+
+	/**
+	 * Writes a simple value: null, a string, boolean or number, or a struct or array of simple values. Any other value is
+	 * written as its string representation.
+	 *
+	 * @param out   The stream
+	 * @param value The value
+	 *
+	 * @throws IOException
+	 */
+	public static void writeValue( DataOutputStream out, Object value ) throws IOException {
+		if ( value == null ) {
+			out.writeByte( TAG_NULL );
+		} else if ( value instanceof Boolean booleanValue ) {
+			out.writeByte( TAG_BOOLEAN );
+			out.writeBoolean( booleanValue );
+		} else if ( value instanceof Integer integerValue ) {
+			out.writeByte( TAG_INTEGER );
+			out.writeInt( integerValue );
+		} else if ( value instanceof Long longValue ) {
+			out.writeByte( TAG_LONG );
+			out.writeLong( longValue );
+		} else if ( value instanceof Number number ) {
+			out.writeByte( TAG_DOUBLE );
+			out.writeDouble( number.doubleValue() );
+		} else if ( value instanceof IStruct struct ) {
+			out.writeByte( TAG_STRUCT );
+			out.writeInt( struct.size() );
+			for ( Map.Entry<Key, Object> entry : struct.entrySet() ) {
+				writeString( out, entry.getKey().getName() );
+				writeValue( out, entry.getValue() );
+			}
+		} else if ( value instanceof List<?> list ) {
+			out.writeByte( TAG_ARRAY );
+			out.writeInt( list.size() );
+			for ( Object item : list ) {
+				writeValue( out, item );
+			}
+		} else {
+			out.writeByte( TAG_STRING );
+			writeString( out, value.toString() );
+		}
+	}
+
+	/**
+	 * Reads a value written by {@link #writeValue(DataOutputStream, Object)}. Structs are read as ordered structs.
+	 *
+	 * @param in The stream
+	 *
+	 * @return the value
+	 *
+	 * @throws IOException
+	 */
+	public static Object readValue( DataInputStream in ) throws IOException {
+		int tag = in.readUnsignedByte();
+		return switch ( tag ) {
+			case TAG_NULL -> null;
+			case TAG_STRING -> readString( in );
+			case TAG_BOOLEAN -> in.readBoolean();
+			case TAG_INTEGER -> in.readInt();
+			case TAG_LONG -> in.readLong();
+			case TAG_DOUBLE -> in.readDouble();
+			case TAG_STRUCT -> {
+				IStruct struct = new Struct( Struct.TYPES.LINKED );
+				for ( int i = in.readInt(); i > 0; i-- ) {
+					struct.put( Key.of( readString( in ) ), readValue( in ) );
+				}
+				yield struct;
+			}
+			case TAG_ARRAY -> {
+				Array array = new Array();
+				for ( int i = in.readInt(); i > 0; i-- ) {
+					array.append( readValue( in ) );
+				}
+				yield array;
+			}
+			default -> throw new IOException( String.format( "The render message holds an unknown value type [%d]", tag ) );
+		};
+	}
+
+	/**
+	 * Writes a string of any length as UTF-8
+	 *
+	 * @param out   The stream
+	 * @param value The string
+	 *
+	 * @throws IOException
+	 */
+	private static void writeString( DataOutputStream out, String value ) throws IOException {
+		writeBytes( out, value.getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)}
+	 *
+	 * @param in The stream
+	 *
+	 * @return the string
+	 *
+	 * @throws IOException
+	 */
+	private static String readString( DataInputStream in ) throws IOException {
+		return new String( readBytes( in ), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Writes a length-prefixed byte array, which may be null
+	 *
+	 * @param out   The stream
+	 * @param bytes The bytes, or null
+	 *
+	 * @throws IOException
+	 */
+	private static void writeBytes( DataOutputStream out, byte[] bytes ) throws IOException {
+		out.writeInt( bytes != null ? bytes.length : -1 );
+		if ( bytes != null ) {
+			out.write( bytes );
+		}
+	}
+
+	/**
+	 * Reads a byte array written by {@link #writeBytes(DataOutputStream, byte[])}
+	 *
+	 * @param in The stream
+	 *
+	 * @return the bytes, or null
+	 *
+	 * @throws IOException
+	 */
+	private static byte[] readBytes( DataInputStream in ) throws IOException {
+		int length = in.readInt();
+		if ( length < 0 ) {
+			return null;
+		}
+		byte[] bytes = new byte[ length ];
+		in.readFully( bytes );
+		return bytes;
+	}
+
+}
@@ -0,0 +1,329 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import ortus.boxlang.modules.pdf.types.PDF;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+/**
+ * A render worker process, which lays out and writes documents sent to it over the {@link RenderProtocol}, one job at
+ * a time, so that a document which exhausts memory or never finishes its layout only takes down the worker. Workers
+ * are started as child processes by the {@link RenderWorkerPool}, or on other hosts with the secret which is shared with
+ * the renderSecret attribute of the documents:
+ *
+ * <pre>
+ * BX_PDF_RENDER_SECRET=&lt;secret&gt; java -cp &lt;module and BoxLang jars&gt; ortus.boxlang.modules.pdf.util.RenderWorker --bind 10.0.0.12 --port 9190
+ * </pre>
+ *
+ * The options are:
+ * <ul>
+ * <li>--port: the port to listen on. Default is 0, for any free port</li>
+ * <li>--bind: the address to listen on. Default is 127.0.0.1. Any other address requires a secret</li>
+ * <li>--secret-file: a file holding the secret which clients must prove they know before a job is read. By default the
+ * secret is read from the BX_PDF_RENDER_SECRET environment variable. Secrets are not taken on the command line, where
+ * other users of the host could read them</li>
+ * <li>--port-file: a file to which the port is written once the worker is listening</li>
+ * <li>--max-jobs: the number of jobs after which the worker exits. Default is 100</li>
+ * <li>--max-heap-ratio: the share of the maximum heap in use after garbage collection above which the worker exits
+ * after its job. Default is 0.75</li>
+ * <li>--watch-parent: exit when standard input is closed, which happens when the parent process exits</li>
+ * </ul>
+ * A worker which exits is expected to be restarted, by its pool or by a process supervisor on other hosts. The secret
+ * only keeps clients which do not know it from sending jobs. The connection is not encrypted and carries the document
+ * and its passwords, so workers must only be reachable over a trusted network.
+ */
+public class RenderWorker {
+
+	/**
+	 * The exit status of a worker which stopped itself because a job ran past its timeout
+	 */
+	public static final int	EXIT_TIMEOUT	= 3;
+
+	private final int		maxJobs;
+	private final double	maxHeapRatio;
+	private final String	secret;
+	private int				jobs			= 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxJobs      The number of jobs after which the worker exits
+	 * @param maxHeapRatio The share of the maximum heap in use after garbage collection above which the worker exits
+	 * @param secret       The secret which clients must prove they know, or null for a worker which only listens on the
+	 *                     loopback address
+	 */
+	public RenderWorker( int maxJobs, double maxHeapRatio, String secret ) {
+		this.maxJobs		= maxJobs;
+		this.maxHeapRatio	= maxHeapRatio;
+		this.secret			= secret;
+	}
+
+	/**
+	 * Starts a worker and serves jobs until it is recycled
+	 *
+	 * @param args The worker options
+	 *
+	 * @throws IOException
+	 */
+	public static void main( String[] args ) throws IOException {
+		int		port			= 0;
+		String	bind			= "127.0.0.1";
+		Path	portFile		= null;
+		int		maxJobs			= 100;
+		double	maxHeapRatio	= 0.75;
+		boolean	watchParent		= false;
+		String	secret			= System.getenv( RenderProtocol.SECRET_VARIABLE );
+		for ( int i = 0; i < args.length; i++ ) {
+			switch ( args[ i ] ) {
+				case "--port" -> port = Integer.parseInt( args[ ++i ] );
+				case "--bind" -> bind = args[ ++i ];
+				case "--port-file" -> portFile = Path.of( args[ ++i ] );
+				case "--max-jobs" -> maxJobs = Integer.parseInt( args[ ++i ] );
+				case "--max-heap-ratio" -> maxHeapRatio = Double.parseDouble( args[ ++i ] );
+				case "--watch-parent" -> watchParent = true;
+				case "--secret-file" -> secret = Files.readString( Path.of( args[ ++i ] ) ).trim();
+				default -> throw new IllegalArgumentException( "Unknown render worker option " + args[ i ] );
+			}
+		}
+		if ( secret != null && secret.isBlank() ) {
+			secret = null;
+		}
+		if ( secret == null && !InetAddress.getByName( bind ).isLoopbackAddress() ) {
+			throw new IllegalArgumentException(
+			    "A render worker which listens on an address other than the loopback address requires a secret, set with "
+			        + RenderProtocol.SECRET_VARIABLE + " or --secret-file" );
+		}
+
+		if ( watchParent ) {
+			Thread watcher = new Thread( () -> {
+				try {
+					while ( System.in.read() != -1 ) {
+						// the parent never writes to the worker, so this only returns once the parent has gone
+					}
+				} catch ( IOException e ) {
+					// a broken pipe also means the parent has gone
+				}
+				Runtime.getRuntime().halt( 0 );
+			}, "bx-pdf-render-worker-parent" );
+			watcher.setDaemon( true );
+			watcher.start();
+		}
+
+		BoxRuntime.getInstance( false );
+
+		try ( ServerSocket serverSocket = new ServerSocket( port, 50, InetAddress.getByName( bind ) ) ) {
+			if ( portFile != null ) {
+				// the port is written to a temporary file and moved in to place, so that it is never read half-written
+				Path partial = portFile.resolveSibling( portFile.getFileName() + ".partial" );
+				Files.writeString( partial, Integer.toString( serverSocket.getLocalPort() ) );
+				Files.move( partial, portFile );
+			}
+			System.out.println( "bx-pdf render worker listening on " + bind + ":" + serverSocket.getLocalPort() );
+			new RenderWorker( maxJobs, maxHeapRatio, secret ).serve( serverSocket );
+		}
+		System.exit( 0 );
+	}
+
+	/**
+	 * Serves jobs, one connection at a time, until the worker recycles
+	 *
+	 * @param serverSocket The listening socket
+	 *
+	 * @throws IOException
+	 */
+	public void serve( ServerSocket serverSocket ) throws IOException {
+		ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor( runnable -> {
+			Thread thread = new Thread( runnable, "bx-pdf-render-worker-watchdog" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		try {
+			boolean recycling = false;
+			while ( !recycling ) {
+				try ( Socket socket = serverSocket.accept() ) {
+					recycling = handle( socket, watchdog );
+				} catch ( IOException e ) {
+					// a client which disconnects mid-job does not stop the worker
+					System.err.println( "bx-pdf render worker connection failed: " + e.getMessage() );
+				}
+			}
+		} finally {
+			watchdog.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks that the client knows the secret, then reads, renders and answers a single job. A client which does not know
+	 * the secret is answered with an error before its job is read, and does not count as a job. A job which runs past its
+	 * timeout halts the worker, as a layout cannot be interrupted.
+	 *
+	 * @param socket   The connection of the job
+	 * @param watchdog The scheduler of the job timeouts
+	 *
+	 * @return true if the worker is recycling and accepts no further jobs
+	 *
+	 * @throws IOException
+	 */
+	private boolean handle( Socket socket, ScheduledExecutorService watchdog ) throws IOException {
+		DataInputStream			in			= new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+		DataOutputStream		out			= new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+		byte[]					challenge	= RenderProtocol.writeChallenge( out );
+		if ( !RenderProtocol.verifyAnswer( in, challenge, secret ) ) {
+			RenderProtocol.writeError( out, "The render secret is not valid", false );
+			return false;
+		}
+
+		RenderProtocol.Job		job			= RenderProtocol.readJob( in );
+		ScheduledFuture<?>		timeout		= job.timeoutSeconds() > 0
+		    ? watchdog.schedule( () -> Runtime.getRuntime().halt( EXIT_TIMEOUT ), job.timeoutSeconds(), TimeUnit.SECONDS )
+		    : null;
+		RenderProtocol.Result	result		= null;
+		String					error		= null;
+		try {
+			result = render( job );
+		} catch ( OutOfMemoryError e ) {
+			// the heap may be left in any state, so the worker answers and stops
+			error	= "The render worker ran out of memory";
+			jobs	= maxJobs;
+		} catch ( Exception e ) {
+			error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+		} finally {
+			if ( timeout != null ) {
+				timeout.cancel( false );
+			}
+		}
+		jobs++;
+		boolean recycling = jobs >= maxJobs || heapRatio() > maxHeapRatio;
+		if ( error != null ) {
+			RenderProtocol.writeError( out, error, recycling );
+		} else {
+			RenderProtocol.writeResult( out, new RenderProtocol.Result( result.pdf(), result.previews(), result.preflight(), recycling ) );
+		}
+		return recycling;
+	}
+
+	/**
+	 * Renders a job with the settings of its attributes
+	 *
+	 * @param job The job
+	 *
+	 * @return the result, without the recycling flag
+	 *
+	 * @throws IOException
+	 */
+	private RenderProtocol.Result render( RenderProtocol.Job job ) throws IOException {
+		Path fontDirectory = job.fonts().isEmpty() ? null : Files.createTempDirectory( "bx-pdf-fonts" );
+		try {
+			if ( fontDirectory != null ) {
+				for ( Map.Entry<String, byte[]> font : job.fonts().entrySet() ) {
+					Files.write( fontFile( fontDirectory, font.getKey() ), font.getValue() );
+				}
+			}
+			PDF pdf = new PDF( job.attributes(), Struct.of( ModuleKeys.documentItems, new Array() ) );
+			if ( fontDirectory != null ) {
+				pdf.addFontDirectory( fontDirectory.toString() );
+			}
+			pdf.generateFromMarkup( job.markup(), job.imageSources(), job.sectionIds() );
+
+			return switch ( job.operation() ) {
+				case RenderProtocol.OPERATION_WRITE -> {
+					List<byte[]>	previews	= job.attributes().get( ModuleKeys.previewVariable ) != null ? new ArrayList<byte[]>() : null;
+					byte[]			binary		= pdf.toBinary( previews );
+					yield new RenderProtocol.Result( binary, previews, null, false );
+				}
+				case RenderProtocol.OPERATION_PREVIEWS -> new RenderProtocol.Result( null, pdf.toPreviews(), null, false );
+				case RenderProtocol.OPERATION_PREFLIGHT -> new RenderProtocol.Result( null, null, pdf.preflight(), false );
+				default -> throw new IOException( String.format( "The render operation [%d] is not supported", job.operation() ) );
+			};
+		} finally {
+			if ( fontDirectory != null ) {
+				FileSystemUtil.deleteDirectory( fontDirectory.toString(), true );
+			}
+		}
+	}
+
+	/**
+	 * Resolves the path a font sent with a job is written to. The names come from the client, so only the file name is
+	 * used and a name which would still resolve outside the font directory is rejected.
+	 *
+	 * @param fontDirectory The temporary font directory of the job
+	 * @param name          The file name of the font
+	 *
+	 * @return the path of the font file
+	 *
+	 * @throws IOException when the name is not a plain file name
+	 */
+	private static Path fontFile( Path fontDirectory, String name ) throws IOException {
+		Path fileName;
+		try {
+			fileName = Path.of( name ).getFileName();
+		} catch ( InvalidPathException e ) {
+			fileName = null;
+		}
+		Path fontFile = fileName != null ? fontDirectory.resolve( fileName ).normalize() : null;
+		if ( fontFile == null || !fontDirectory.normalize().equals( fontFile.getParent() ) ) {
+			throw new IOException( String.format( "The font file name [%s] is not valid", name ) );
+		}
+		return fontFile;
+	}
+
+	/**
+	 * The share of the maximum heap which was still in use after the last garbage collection, which is the memory
+	 * retained between jobs rather than garbage not yet collected
+	 *
+	 * @return the ratio of retained to maximum heap, or 0 when it is not known
+	 */
+	private static double heapRatio() {
+		long	max			= Runtime.getRuntime().maxMemory();
+		long	retained	= 0;
+		for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			if ( pool.getType() == MemoryType.HEAP && usage != null ) {
+				retained += usage.getUsed();
+			}
+		}
+		return max > 0 && max != Long.MAX_VALUE ? ( double ) retained / max : 0;
+	}
+
+}
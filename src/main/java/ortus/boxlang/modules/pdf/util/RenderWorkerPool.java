@@ -0,0 +1,394 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * A pool of render workers, which lay out and write documents outside of the runtime JVM. The pool holds local worker
+ * processes, which are started as they are needed and replaced once they recycle or fail, and workers on other hosts,
+ * which are listed by address and kept running by the hosts themselves. Each worker renders one job at a time.
+ *
+ * Pools are shared by every document with the same worker settings.
+ */
+public class RenderWorkerPool {
+
+	/**
+	 * The time a local worker is given to start listening
+	 */
+	private static final long							STARTUP_TIMEOUT_MILLIS	= 60_000L;
+
+	/**
+	 * The time given to connect to a worker
+	 */
+	private static final int							CONNECT_TIMEOUT_MILLIS	= 5_000;
+
+	/**
+	 * The pools, keyed by their settings
+	 */
+	private static final Map<String, RenderWorkerPool>	pools					= new ConcurrentHashMap<String, RenderWorkerPool>();
+
+	/**
+	 * The local worker processes of every pool, which are stopped when the runtime JVM exits
+	 */
+	private static final Set<Process>					processes				= ConcurrentHashMap.newKeySet();
+
+	static {
+		Runtime.getRuntime().addShutdownHook( new Thread( () -> processes.forEach( Process::destroyForcibly ), "bx-pdf-render-workers-shutdown" ) );
+	}
+
+	/**
+	 * The workers which are ready for a job
+	 */
+	private final LinkedBlockingQueue<Worker>			idle					= new LinkedBlockingQueue<Worker>();
+
+	/**
+	 * The number of local workers which may run at once, and the number running or starting
+	 */
+	private final int									localWorkers;
+	private int											startedWorkers			= 0;
+
+	/**
+	 * The number of workers on other hosts
+	 */
+	private final int									remoteWorkers;
+
+	/**
+	 * The number of jobs after which a local worker is replaced, and the maximum heap of a local worker in megabytes
+	 */
+	private final int									maxJobs;
+	private final int									workerMemory;
+
+	/**
+	 * The secret shared with the workers on other hosts, and the random secret given to the local workers of the pool
+	 */
+	private final String								secret;
+	private final String								localSecret;
+
+	/**
+	 * A worker of the pool
+	 *
+	 * @param host    The host of the worker
+	 * @param port    The port of the worker
+	 * @param process The local worker process, or null for a worker on another host
+	 * @param secret  The secret which answers the challenge of the worker
+	 */
+	private record Worker( String host, int port, Process process, String secret ) {
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param localWorkers The number of local worker processes which may run at once
+	 * @param hosts        The host:port addresses of the workers on other hosts
+	 * @param maxJobs      The number of jobs after which a local worker is replaced
+	 * @param workerMemory The maximum heap of a local worker, in megabytes
+	 * @param secret       The secret shared with the workers on other hosts, or null
+	 */
+	private RenderWorkerPool( int localWorkers, List<String> hosts, int maxJobs, int workerMemory, String secret ) {
+		byte[] localSecretBytes = new byte[ 32 ];
+		new SecureRandom().nextBytes( localSecretBytes );
+		this.localWorkers	= localWorkers;
+		this.remoteWorkers	= hosts.size();
+		this.maxJobs		= maxJobs;
+		this.workerMemory	= workerMemory;
+		this.secret			= secret;
+		this.localSecret	= Base64.getEncoder().encodeToString( localSecretBytes );
+		for ( String host : hosts ) {
+			int separator = host.lastIndexOf( ':' );
+			if ( separator < 1 ) {
+				throw new BoxRuntimeException( String.format( "The render host [%s] must be given as host:port", host ) );
+			}
+			idle.add( new Worker( host.substring( 0, separator ), Integer.parseInt( host.substring( separator + 1 ) ), null, secret ) );
+		}
+	}
+
+	/**
+	 * Returns the pool with the given settings, creating it on first use
+	 *
+	 * @param localWorkers The number of local worker processes which may run at once
+	 * @param hosts        The host:port addresses of the workers on other hosts
+	 * @param maxJobs      The number of jobs after which a local worker is replaced
+	 * @param workerMemory The maximum heap of a local worker, in megabytes
+	 * @param secret       The secret shared with the workers on other hosts, or null
+	 *
+	 * @return the shared pool
+	 */
+	public static RenderWorkerPool of( int localWorkers, List<String> hosts, int maxJobs, int workerMemory, String secret ) {
+		if ( localWorkers < 0 || maxJobs < 1 || workerMemory < 1 ) {
+			throw new BoxRuntimeException( "The render worker count, jobs and memory must be greater than zero" );
+		}
+		if ( localWorkers == 0 && hosts.isEmpty() ) {
+			throw new BoxRuntimeException( "Remote rendering requires at least one render worker or render host" );
+		}
+		// the secret is hashed so that it is not kept in the keys
+		String key = localWorkers + "|" + String.join( ",", hosts ) + "|" + maxJobs + "|" + workerMemory + "|"
+		    + ( secret != null ? PDFUtil.hashContent( secret ) : "" );
+		return pools.computeIfAbsent( key, settings -> new RenderWorkerPool( localWorkers, hosts, maxJobs, workerMemory, secret ) );
+	}
+
+	/**
+	 * Stops the local workers of every pool and forgets the pools
+	 */
+	public static void shutdownAll() {
+		pools.clear();
+		processes.forEach( Process::destroyForcibly );
+		processes.clear();
+	}
+
+	/**
+	 * Renders a job on the next free worker, waiting for one if they are all busy. A worker which fails or runs past the
+	 * timeout is discarded and the job fails, rather than being retried on another worker, since the document itself is
+	 * the likely cause. A worker on another host which refuses the connection, such as while it restarts, is skipped.
+	 *
+	 * @param job The job
+	 *
+	 * @return the result of the job
+	 */
+	public RenderProtocol.Result render( RenderProtocol.Job job ) {
+		long	timeoutMillis	= job.timeoutSeconds() * 1000L;
+		int		refused			= 0;
+		while ( true ) {
+			Worker	worker	= acquire( timeoutMillis );
+			long	started	= System.currentTimeMillis();
+			try ( Socket socket = new Socket() ) {
+				socket.connect( new InetSocketAddress( worker.host(), worker.port() ), CONNECT_TIMEOUT_MILLIS );
+				// the worker halts itself at the timeout, so the connection is given a little longer to see it close
+				socket.setSoTimeout( timeoutMillis > 0 ? ( int ) Math.min( Integer.MAX_VALUE, timeoutMillis + 5_000L ) : 0 );
+				DataInputStream		in		= new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+				DataOutputStream	out		= new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+				RenderProtocol.answerChallenge( in, out, worker.secret() );
+				RenderProtocol.writeJob( out, job );
+				RenderProtocol.Result result = RenderProtocol.readResult( in );
+				release( worker, result.recycling() );
+				return result;
+			} catch ( RenderProtocol.RenderFailedException e ) {
+				release( worker, e.isRecycling() );
+				throw new BoxRuntimeException( "The render worker failed to render the document: " + e.getMessage(), e );
+			} catch ( ConnectException e ) {
+				if ( worker.process() != null || ++refused >= remoteWorkers + localWorkers ) {
+					discard( worker );
+					throw new BoxRuntimeException( String.format( "Unable to connect to the render worker at %s:%d", worker.host(), worker.port() ), e );
+				}
+				idle.add( worker );
+			} catch ( IOException e ) {
+				discard( worker );
+				// a worker halts itself at the timeout, which closes the connection before the read times out
+				if ( e instanceof SocketTimeoutException || ( timeoutMillis > 0 && System.currentTimeMillis() - started >= timeoutMillis ) ) {
+					throw new BoxRuntimeException( String.format( "The render worker did not finish the document within %d seconds", job.timeoutSeconds() ), e );
+				}
+				throw new BoxRuntimeException( "The render worker stopped before finishing the document: " + e.getMessage(), e );
+			}
+		}
+	}
+
+	/**
+	 * Takes the next free worker, starting a local worker when none is free and the pool has room for one
+	 *
+	 * @param timeoutMillis The time to wait for a free worker, or 0 to wait indefinitely
+	 *
+	 * @return the worker
+	 */
+	private Worker acquire( long timeoutMillis ) {
+		Worker worker = idle.poll();
+		if ( worker != null ) {
+			return worker;
+		}
+		// the place of a new worker is reserved first, so that several workers may start at once
+		boolean start;
+		synchronized ( this ) {
+			start = startedWorkers < localWorkers;
+			if ( start ) {
+				startedWorkers++;
+			}
+		}
+		if ( start ) {
+			try {
+				return startWorker();
+			} catch ( RuntimeException e ) {
+				synchronized ( this ) {
+					startedWorkers--;
+				}
+				throw e;
+			}
+		}
+		try {
+			worker = timeoutMillis > 0 ? idle.poll( timeoutMillis, TimeUnit.MILLISECONDS ) : idle.take();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new BoxRuntimeException( "Interrupted while waiting for a render worker", e );
+		}
+		if ( worker == null ) {
+			throw new BoxRuntimeException( String.format( "No render worker became free within %d seconds", timeoutMillis / 1000 ) );
+		}
+		return worker;
+	}
+
+	/**
+	 * Returns a worker to the pool once its job is answered, or discards it when it is recycling
+	 *
+	 * @param worker    The worker
+	 * @param recycling Whether the worker stops once the job is answered
+	 */
+	private void release( Worker worker, boolean recycling ) {
+		if ( recycling && worker.process() != null ) {
+			discard( worker );
+		} else {
+			idle.add( worker );
+		}
+	}
+
+	/**
+	 * Stops a local worker and frees its place in the pool. Workers on other hosts are restarted by their hosts, so
+	 * they are returned to the pool.
+	 *
+	 * @param worker The worker
+	 */
+	private void discard( Worker worker ) {
+		if ( worker.process() == null ) {
+			idle.add( worker );
+			return;
+		}
+		worker.process().destroyForcibly();
+		processes.remove( worker.process() );
+		synchronized ( this ) {
+			startedWorkers--;
+		}
+	}
+
+	/**
+	 * Starts a local worker process with the classpath of the module and the runtime, and waits for it to listen. The
+	 * secret of the local workers is passed in the environment, where other users of the host cannot read it.
+	 *
+	 * @return the worker
+	 */
+	private Worker startWorker() {
+		Path portFile = null;
+		try {
+			Path			portDirectory	= Files.createTempDirectory( "bx-pdf-worker" );
+			List<String>	command			= new ArrayList<String>();
+			portFile = portDirectory.resolve( "port" );
+			command.add( Path.of( System.getProperty( "java.home" ), "bin", "java" ).toString() );
+			command.add( "-Xmx" + workerMemory + "m" );
+			command.add( "-XX:+ExitOnOutOfMemoryError" );
+			command.add( "-Djava.awt.headless=true" );
+			command.add( "-cp" );
+			command.add( workerClasspath() );
+			command.add( RenderWorker.class.getName() );
+			command.add( "--port-file" );
+			command.add( portFile.toString() );
+			command.add( "--max-jobs" );
+			command.add( Integer.toString( maxJobs ) );
+			command.add( "--watch-parent" );
+
+			ProcessBuilder builder = new ProcessBuilder( command )
+			    .redirectOutput( ProcessBuilder.Redirect.INHERIT )
+			    .redirectError( ProcessBuilder.Redirect.INHERIT );
+			builder.environment().put( RenderProtocol.SECRET_VARIABLE, localSecret );
+			Process process = builder.start();
+			processes.add( process );
+
+			long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+			while ( !Files.exists( portFile ) ) {
+				if ( !process.isAlive() || System.currentTimeMillis() > deadline ) {
+					process.destroyForcibly();
+					processes.remove( process );
+					throw new BoxRuntimeException( "The render worker process failed to start" );
+				}
+				Thread.sleep( 50 );
+			}
+			return new Worker( "127.0.0.1", Integer.parseInt( Files.readString( portFile ).trim() ), process, localSecret );
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "Unable to start a render worker process: " + e.getMessage(), e );
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new BoxRuntimeException( "Interrupted while starting a render worker", e );
+		} finally {
+			if ( portFile != null ) {
+				try {
+					Files.deleteIfExists( portFile );
+					Files.deleteIfExists( portFile.getParent() );
+				} catch ( IOException e ) {
+					// the temporary directory is left behind
+				}
+			}
+		}
+	}
+
+	/**
+	 * Assembles the classpath of a worker process: the classpath of the runtime JVM, along with the jars of the module
+	 * class loaders, which the runtime loads modules and their libraries from
+	 *
+	 * @return the classpath
+	 */
+	private static String workerClasspath() {
+		Set<String> entries = new LinkedHashSet<String>();
+		for ( Class<?> workerClass : List.of( RenderWorker.class, BoxRuntime.class ) ) {
+			try {
+				entries.add( Path.of( workerClass.getProtectionDomain().getCodeSource().getLocation().toURI() ).toString() );
+			} catch ( URISyntaxException | SecurityException | NullPointerException e ) {
+				// the location is not known, so the class must be found through the other entries
+			}
+		}
+		for ( ClassLoader loader = RenderWorker.class.getClassLoader(); loader != null; loader = loader.getParent() ) {
+			if ( loader instanceof URLClassLoader urlLoader ) {
+				for ( URL url : urlLoader.getURLs() ) {
+					try {
+						entries.add( Path.of( url.toURI() ).toString() );
+					} catch ( URISyntaxException | IllegalArgumentException e ) {
+						// entries which are not files cannot be passed to the worker
+					}
+				}
+			}
+		}
+		for ( String entry : System.getProperty( "java.class.path" ).split( File.pathSeparator ) ) {
+			if ( !entry.isBlank() ) {
+				entries.add( entry );
+			}
+		}
+		return String.join( File.pathSeparator, entries );
+	}
+
+}
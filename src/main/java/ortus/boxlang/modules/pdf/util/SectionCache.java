@@ -0,0 +1,95 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded, least-recently-used cache of rendered document sections, keyed by a hash of the section markup
+ */
+public class SectionCache {
+
+	/**
+	 * The maximum number of bytes of rendered sections held in the cache
+	 */
+	public static final long							MAX_BYTES		= 64L * 1024L * 1024L;
+
+	/**
+	 * The rendered sections, in access order
+	 */
+	private static final LinkedHashMap<String, byte[]>	sections		= new LinkedHashMap<String, byte[]>( 16, 0.75f, true );
+
+	/**
+	 * The number of bytes currently held in the cache
+	 */
+	private static long									currentBytes	= 0;
+
+	/**
+	 * Retrieves a rendered section
+	 *
+	 * @param key The section hash
+	 *
+	 * @return The rendered section or null if it is not cached
+	 */
+	public static synchronized byte[] get( String key ) {
+		return sections.get( key );
+	}
+
+	/**
+	 * Stores a rendered section, evicting the least recently used sections when the cache is full
+	 *
+	 * @param key     The section hash
+	 * @param section The rendered section
+	 */
+	public static synchronized void put( String key, byte[] section ) {
+		if ( section.length > MAX_BYTES ) {
+			return;
+		}
+		byte[] previous = sections.put( key, section );
+		if ( previous != null ) {
+			currentBytes -= previous.length;
+		}
+		currentBytes += section.length;
+
+		Iterator<Map.Entry<String, byte[]>> entries = sections.entrySet().iterator();
+		while ( currentBytes > MAX_BYTES && entries.hasNext() ) {
+			currentBytes -= entries.next().getValue().length;
+			entries.remove();
+		}
+	}
+
+	/**
+	 * Removes all rendered sections from the cache
+	 */
+	public static synchronized void clear() {
+		sections.clear();
+		currentBytes = 0;
+	}
+
+	/**
+	 * Returns the number of sections held in the cache
+	 *
+	 * @return
+	 */
+	public static synchronized int size() {
+		return sections.size();
+	}
+
+}
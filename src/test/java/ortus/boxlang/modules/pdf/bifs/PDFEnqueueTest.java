@@ -0,0 +1,185 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+public class PDFEnqueueTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result			= new Key( "result" );
+	static String		tmpDirectory	= "src/test/resources/tmp/PDFEnqueue";
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true, Path.of( "src/test/resources/boxlang.json" ).toString() );
+		if ( !FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.createDirectory( tmpDirectory, true, null );
+		}
+	}
+
+	@AfterAll
+	public static void teardown() {
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+		variables.put( Key.of( "tmpDirectory" ), Path.of( tmpDirectory ).toAbsolutePath().toString() );
+	}
+
+	@DisplayName( "It renders spooled HTML and template jobs in the background" )
+	@Test
+	public void testEnqueue() throws IOException, InterruptedException {
+		Files.writeString( Path.of( tmpDirectory, "statement.bxm" ), "<bx:output><h1>Statement for #customer#</h1></bx:output>" );
+		instance.executeSource(
+		    """
+		    options = { spoolDirectory : tmpDirectory & "/spool", concurrency : 2 };
+		    htmlJob = pdfEnqueue( tmpDirectory & "/html.pdf", "<h1>Spooled HTML</h1>", options );
+		    templateJob = pdfEnqueue(
+		    	tmpDirectory & "/template.pdf",
+		    	javacast( "null", "" ),
+		    	options.append( { template : tmpDirectory & "/statement.bxm", data : { customer : "Jane Doe" }, attributes : { pageType : "letter" } } )
+		    );
+		    """,
+		    context );
+		assertThat( variables.getAsString( Key.of( "htmlJob" ) ) ).isNotEmpty();
+
+		Path	htmlFile		= Path.of( tmpDirectory, "html.pdf" );
+		Path	templateFile	= Path.of( tmpDirectory, "template.pdf" );
+		waitFor( () -> Files.exists( htmlFile ) && Files.exists( templateFile ) );
+
+		PdfReader reader = new PdfReader( htmlFile.toString() );
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 1 ) ).contains( "Spooled HTML" );
+		reader.close();
+		reader = new PdfReader( templateFile.toString() );
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 1 ) ).contains( "Statement for Jane Doe" );
+		assertThat( reader.getPageSize( 1 ).getWidth() ).isEqualTo( 612f );
+		reader.close();
+
+		// completed jobs leave the spool
+		instance.executeSource(
+		    """
+		    result = pdfQueue( "status", { spoolDirectory : tmpDirectory & "/spool" } );
+		    """,
+		    context );
+		IStruct status = variables.getAsStruct( result );
+		assertThat( status.getAsBoolean( ModuleKeys.running ) ).isTrue();
+		assertThat( status.get( ModuleKeys.pending ) ).isEqualTo( 0L );
+		assertThat( status.get( ModuleKeys.processed ) ).isEqualTo( 2L );
+	}
+
+	@DisplayName( "It quarantines spooled jobs which fail every attempt" )
+	@Test
+	public void testQuarantine() throws IOException, InterruptedException {
+		Path template = Path.of( tmpDirectory, "poison.bxm" );
+		Files.writeString( template, "<bx:throw message='Poison job'>" );
+		variables.put( Key.of( "template" ), template.toString() );
+		instance.executeSource(
+		    """
+		    options = { spoolDirectory : tmpDirectory & "/poison", template : template, maxAttempts : 2, retryDelay : 0 };
+		    pdfEnqueue( tmpDirectory & "/poison.pdf", javacast( "null", "" ), options );
+		    """,
+		    context );
+		waitFor( () -> {
+			instance.executeSource( "result = pdfQueue( 'status', { spoolDirectory : tmpDirectory & '/poison' } );", context );
+			return ( ( Long ) variables.getAsStruct( result ).get( ModuleKeys.failed ) ) == 1L;
+		} );
+		IStruct status = variables.getAsStruct( result );
+		assertThat( status.get( ModuleKeys.retried ) ).isEqualTo( 1L );
+		assertThat( status.get( ModuleKeys.quarantined ) ).isEqualTo( 1L );
+		assertThat( Files.exists( Path.of( tmpDirectory, "poison.pdf" ) ) ).isFalse();
+
+		// quarantined jobs may be returned to the queue
+		instance.executeSource( "result = pdfQueue( 'retry', { spoolDirectory : tmpDirectory & '/poison' } );", context );
+		assertThat( variables.getAsStruct( result ).get( ModuleKeys.failed ) ).isEqualTo( 0L );
+		instance.executeSource( "pdfQueue( 'stop', { spoolDirectory : tmpDirectory & '/poison' } );", context );
+	}
+
+	@DisplayName( "It leaves jobs waiting for the rate limit pending when processing stops" )
+	@Test
+	public void testStopDuringRateLimit() throws IOException, InterruptedException {
+		instance.executeSource(
+		    """
+		    options = { spoolDirectory : tmpDirectory & "/limited", rate : 1 };
+		    pdfEnqueue( tmpDirectory & "/limited-1.pdf", "<h1>First</h1>", options );
+		    pdfEnqueue( tmpDirectory & "/limited-2.pdf", "<h1>Second</h1>", options );
+		    """,
+		    context );
+		waitFor( () -> {
+			instance.executeSource( "result = pdfQueue( 'status', { spoolDirectory : tmpDirectory & '/limited' } );", context );
+			return ( ( Long ) variables.getAsStruct( result ).get( ModuleKeys.processed ) ) == 1L;
+		} );
+
+		// the second job waits a minute for its rate slot, and is still pending rather than claimed once processing stops
+		instance.executeSource( "pdfQueue( 'stop', { spoolDirectory : tmpDirectory & '/limited' } );", context );
+		instance.executeSource( "result = pdfQueue( 'status', { spoolDirectory : tmpDirectory & '/limited' } );", context );
+		IStruct status = variables.getAsStruct( result );
+		assertThat( status.getAsBoolean( ModuleKeys.running ) ).isFalse();
+		assertThat( status.get( ModuleKeys.pending ) ).isEqualTo( 1L );
+		try ( Stream<Path> working = Files.list( Path.of( tmpDirectory, "limited", "working" ) ) ) {
+			assertThat( working.count() ).isEqualTo( 0L );
+		}
+		assertThat( Files.exists( Path.of( tmpDirectory, "limited-2.pdf" ) ) ).isFalse();
+	}
+
+	/**
+	 * Waits up to a minute for a condition of the background processing
+	 *
+	 * @param condition The condition
+	 */
+	private void waitFor( BooleanSupplier condition ) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 60_000L;
+		while ( !condition.getAsBoolean() ) {
+			assertThat( System.currentTimeMillis() ).isLessThan( deadline );
+			Thread.sleep( 100 );
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+public class PDFExtractPagesTest extends SourcePDFTest {
+
+	public PDFExtractPagesTest() {
+		super( "PDFExtractPages" );
+	}
+
+	@DisplayName( "It can extract a range of pages in to a new PDF binary" )
+	@Test
+	public void testExtractPages() throws IOException {
+		instance.executeSource(
+		    """
+		    result = pdfExtractPages( testFile, "2-" );
+		    """,
+		    context );
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		assertThat( reader.getNumberOfPages() ).isEqualTo( 2 );
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 1 ) ).contains( "Section 2" );
+		reader.close();
+	}
+
+	@DisplayName( "It can extract pages to a destination file" )
+	@Test
+	public void testExtractPagesToFile() throws IOException {
+		instance.executeSource(
+		    """
+		    pdfExtractPages( testFile, "3,1", tmpDirectory & "/extracted.pdf", { overwrite : true } );
+		    """,
+		    context );
+		PdfReader reader = new PdfReader( tmpDirectory + "/extracted.pdf" );
+		assertThat( reader.getNumberOfPages() ).isEqualTo( 2 );
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 1 ) ).contains( "Section 3" );
+		reader.close();
+	}
+
+}
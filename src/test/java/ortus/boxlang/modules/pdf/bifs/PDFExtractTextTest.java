@@ -0,0 +1,149 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+public class PDFExtractTextTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result			= new Key( "result" );
+	static String		tmpDirectory	= "src/test/resources/tmp/PDFExtractText";
+	static String		testFile		= tmpDirectory + "/source.pdf";
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true, Path.of( "src/test/resources/boxlang.json" ).toString() );
+		if ( !FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.createDirectory( tmpDirectory, true, null );
+		}
+	}
+
+	@AfterAll
+	public static void teardown() {
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+		variables.put( Key.of( "testFile" ), testFile );
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    bx:document format="pdf" filename="#testFile#" overwrite=true{
+		    	for ( i = 1; i <= 12; i++ ) {
+		    		bx:documentsection name="Section #i#"{
+		    			writeOutput( "<h1>Section #i#</h1><p>Body of section #i#</p>" )
+		    		}
+		    	}
+		    }
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		// @formatter:on
+	}
+
+	@DisplayName( "It can extract the text of every page of a file" )
+	@Test
+	public void testExtractText() {
+		instance.executeSource(
+		    """
+		    result = pdfExtractText( testFile );
+		    """,
+		    context );
+		Array pages = variables.getAsArray( result );
+		assertThat( pages.size() ).isEqualTo( 12 );
+		for ( int i = 0; i < pages.size(); i++ ) {
+			IStruct page = ( IStruct ) pages.get( i );
+			assertThat( page.get( Key.of( "page" ) ) ).isEqualTo( i + 1 );
+			assertThat( page.getAsString( Key.of( "text" ) ) ).contains( "Body of section " + ( i + 1 ) );
+		}
+	}
+
+	@DisplayName( "It can extract the text of selected pages of a binary" )
+	@Test
+	public void testExtractSelectedPages() {
+		instance.executeSource(
+		    """
+		    result = pdfExtractText( fileReadBinary( testFile ), "10-,2", { concurrency : 2 } );
+		    """,
+		    context );
+		Array pages = variables.getAsArray( result );
+		assertThat( pages.size() ).isEqualTo( 4 );
+		assertThat( ( ( IStruct ) pages.get( 0 ) ).getAsString( Key.of( "text" ) ) ).contains( "Section 10" );
+		assertThat( ( ( IStruct ) pages.get( 3 ) ).get( Key.of( "page" ) ) ).isEqualTo( 2 );
+		assertThat( ( ( IStruct ) pages.get( 3 ) ).getAsString( Key.of( "text" ) ) ).contains( "Section 2" );
+	}
+
+	@DisplayName( "It streams the text of each page to a callback in page order" )
+	@Test
+	public void testExtractTextCallback() {
+		instance.executeSource(
+		    """
+		    received = [];
+		    result = pdfExtractText( testFile, "1-", {
+		    	concurrency : 4,
+		    	callback : ( text, page ) => received.append( page & ":" & ( text contains "Body of section #page#" ) )
+		    } );
+		    """,
+		    context );
+		assertThat( variables.get( result ) ).isEqualTo( 12 );
+		Array received = variables.getAsArray( Key.of( "received" ) );
+		assertThat( received.size() ).isEqualTo( 12 );
+		for ( int i = 0; i < received.size(); i++ ) {
+			assertThat( received.get( i ) ).isEqualTo( ( i + 1 ) + ":true" );
+		}
+	}
+
+	@DisplayName( "It rejects a callback which is not a function" )
+	@Test
+	public void testInvalidCallback() {
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource(
+		    """
+		    pdfExtractText( testFile, "1-", { callback : "notAFunction" } );
+		    """,
+		    context ) );
+	}
+
+}
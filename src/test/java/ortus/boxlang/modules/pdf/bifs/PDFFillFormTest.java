@@ -0,0 +1,188 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.RadioCheckField;
+import com.lowagie.text.pdf.TextField;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.modules.pdf.util.FormTemplate;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+public class PDFFillFormTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result			= new Key( "result" );
+	static String		tmpDirectory	= "src/test/resources/tmp/PDFFillForm";
+	static String		templateFile	= tmpDirectory + "/template.pdf";
+
+	@BeforeAll
+	public static void setUp() throws IOException {
+		instance = BoxRuntime.getInstance( true, Path.of( "src/test/resources/boxlang.json" ).toString() );
+		if ( !FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.createDirectory( tmpDirectory, true, null );
+		}
+
+		// A five page form with a text field on each page and a checkbox on the last page
+		try ( OutputStream outputStream = Files.newOutputStream( Path.of( templateFile ) ) ) {
+			Document	document	= new Document( PageSize.A4 );
+			PdfWriter	writer		= PdfWriter.getInstance( document, outputStream );
+			document.open();
+			for ( int page = 1; page <= 5; page++ ) {
+				if ( page > 1 ) {
+					document.newPage();
+				}
+				document.add( new Paragraph( "Form page " + page ) );
+				writer.addAnnotation( new TextField( writer, new Rectangle( 72, 700, 400, 720 ), "line" + page ).getTextField() );
+			}
+			RadioCheckField agree = new RadioCheckField( writer, new Rectangle( 72, 650, 86, 664 ), "agree", "Yes" );
+			agree.setCheckType( RadioCheckField.TYPE_CHECK );
+			writer.addAnnotation( agree.getFullField() );
+			document.close();
+		}
+	}
+
+	@AfterAll
+	public static void teardown() {
+		FormTemplate.clear();
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+		variables.put( Key.of( "tmpDirectory" ), tmpDirectory );
+		variables.put( Key.of( "templateFile" ), templateFile );
+	}
+
+	@DisplayName( "It can fill the text fields and checkboxes of a form" )
+	@Test
+	public void testFillForm() throws IOException {
+		instance.executeSource(
+		    """
+		    result = pdfFillForm( templateFile, { line1 : "Jane Doe", line5 : "Houston", agree : true } );
+		    """,
+		    context );
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		assertThat( reader.getNumberOfPages() ).isEqualTo( 5 );
+		assertThat( reader.getAcroFields().getField( "line1" ) ).isEqualTo( "Jane Doe" );
+		assertThat( reader.getAcroFields().getField( "line5" ) ).isEqualTo( "Houston" );
+		assertThat( reader.getAcroFields().getField( "agree" ) ).isEqualTo( "Yes" );
+		reader.close();
+	}
+
+	@DisplayName( "It can flatten the filled fields in to the page content" )
+	@Test
+	public void testFillFormFlattened() throws IOException {
+		instance.executeSource(
+		    """
+		    result = pdfFillForm( template = templateFile, data = { line2 : "Flattened value" }, options = { flatten : true } );
+		    """,
+		    context );
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		assertThat( reader.getAcroFields().getAllFields() ).isEmpty();
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 2 ) ).contains( "Flattened value" );
+		reader.close();
+	}
+
+	@DisplayName( "It can fill a batch of forms in parallel" )
+	@Test
+	public void testFillFormBatch() throws IOException {
+		instance.executeSource(
+		    """
+		    records = [];
+		    for ( i = 1; i <= 20; i++ ) {
+		        records.append( { line1 : "Applicant #i#", agree : i % 2 == 0 } );
+		    }
+		    result = pdfFillForm( templateFile, records, tmpDirectory & "/batch", { concurrency : 4, overwrite : true } );
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		Array files = variables.getAsArray( result );
+		assertThat( files.size() ).isEqualTo( 20 );
+		for ( int i = 0; i < files.size(); i++ ) {
+			PdfReader reader = new PdfReader( Files.readAllBytes( Path.of( ( String ) files.get( i ) ) ) );
+			assertThat( reader.getAcroFields().getField( "line1" ) ).isEqualTo( "Applicant " + ( i + 1 ) );
+			assertThat( reader.getAcroFields().getField( "agree" ) ).isEqualTo( ( i + 1 ) % 2 == 0 ? "Yes" : "Off" );
+			reader.close();
+		}
+	}
+
+	@DisplayName( "It rejects values for fields the template does not have unless strict is disabled" )
+	@Test
+	public void testFillFormUnknownField() {
+		assertThrows(
+		    BoxRuntimeException.class,
+		    () -> instance.executeSource(
+		        """
+		        pdfFillForm( templateFile, { nickname : "JD" } );
+		        """,
+		        context )
+		);
+		instance.executeSource(
+		    """
+		    result = pdfFillForm( template = templateFile, data = { nickname : "JD", line1 : "Jane Doe" }, options = { strict : false } );
+		    """,
+		    context );
+		assertThat( variables.get( result ) ).isInstanceOf( byte[].class );
+	}
+
+	@DisplayName( "It caches a parsed template until its file changes" )
+	@Test
+	public void testTemplateCache() throws IOException {
+		FormTemplate template = FormTemplate.of( context, templateFile );
+		assertThat( FormTemplate.of( context, templateFile ) ).isSameInstanceAs( template );
+
+		byte[] templateBytes = Files.readAllBytes( Path.of( templateFile ) );
+		assertThat( FormTemplate.of( context, templateBytes ) ).isSameInstanceAs( FormTemplate.of( context, templateBytes ) );
+	}
+
+}
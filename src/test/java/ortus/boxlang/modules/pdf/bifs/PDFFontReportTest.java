@@ -0,0 +1,121 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+
+public class PDFFontReportTest extends SourcePDFTest {
+
+	public PDFFontReportTest() {
+		super( "PDFFontReport" );
+	}
+
+	@DisplayName( "It reports the fonts of a PDF which are referenced by name" )
+	@Test
+	public void testStandardFonts() {
+		instance.executeSource(
+		    """
+		    result = pdfFontReport( testFile );
+		    """,
+		    context );
+		Array fonts = variables.getAsArray( result );
+		assertThat( fonts.size() ).isGreaterThan( 0 );
+		IStruct font = ( IStruct ) fonts.get( 0 );
+		assertThat( font.getAsString( Key._NAME ) ).isNotEmpty();
+		assertThat( font.getAsBoolean( Key.of( "embedded" ) ) ).isFalse();
+		assertThat( font.get( Key.of( "bytes" ) ) ).isEqualTo( 0L );
+	}
+
+	@DisplayName( "It reports the fonts of a stamped PDF" )
+	@Test
+	public void testStampedFonts() {
+		instance.executeSource(
+		    """
+		    stamped = pdfStamp( testFile, { text : "DRAFT" } );
+		    result = pdfFontReport( stamped ).map( ( font ) -> font.name );
+		    """,
+		    context );
+		assertThat( variables.getAsArray( result ) ).contains( "Helvetica" );
+	}
+
+	@DisplayName( "It embeds the fonts of a font directory in full, as a subset or not at all" )
+	@Test
+	public void testFontDirectoryEmbedding() throws IOException {
+		// the Liberation Sans font is shipped with OpenPDF for its own fallback
+		Path fontDirectory = Path.of( tmpDirectory, "fonts" );
+		Files.createDirectories( fontDirectory );
+		try ( InputStream font = PDFFontReportTest.class.getResourceAsStream( "/font-fallback/LiberationSans-Regular.ttf" ) ) {
+			Files.copy( font, fontDirectory.resolve( "LiberationSans.ttf" ), StandardCopyOption.REPLACE_EXISTING );
+		}
+		variables.put( Key.of( "fontDirectory" ), fontDirectory.toString() );
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    result = {};
+		    modes = [ "subset", "full", "none" ];
+		    for ( mode in modes ) {
+		    	bx:document format="pdf" variable="pdf" fontDirectory="#fontDirectory#" fontSubset="#mode#"{
+		    		writeOutput( '<p style="font-family: Liberation Sans">Fonts in a directory</p>' )
+		    	}
+		    	result[ mode ] = pdfFontReport( pdf ).filter( ( font ) -> font.name == "LiberationSans" );
+		    }
+		    bx:document format="pdf" variable="pdf" fontDirectory="#fontDirectory#" fontEmbed=false fontSubset="full"{
+		    	writeOutput( '<p style="font-family: Liberation Sans">Fonts in a directory</p>' )
+		    }
+		    result[ "noEmbed" ] = pdfFontReport( pdf ).filter( ( font ) -> font.name == "LiberationSans" );
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		// @formatter:on
+		IStruct reports = variables.getAsStruct( result );
+		for ( String mode : List.of( "subset", "full", "none", "noEmbed" ) ) {
+			assertThat( reports.getAsArray( Key.of( mode ) ).size() ).isEqualTo( 1 );
+		}
+		IStruct	subset	= ( IStruct ) reports.getAsArray( Key.of( "subset" ) ).get( 0 );
+		IStruct	full	= ( IStruct ) reports.getAsArray( Key.of( "full" ) ).get( 0 );
+		IStruct	none	= ( IStruct ) reports.getAsArray( Key.of( "none" ) ).get( 0 );
+		IStruct	noEmbed	= ( IStruct ) reports.getAsArray( Key.of( "noEmbed" ) ).get( 0 );
+
+		assertThat( subset.getAsBoolean( Key.of( "embedded" ) ) ).isTrue();
+		assertThat( subset.getAsBoolean( Key.of( "subset" ) ) ).isTrue();
+		assertThat( full.getAsBoolean( Key.of( "embedded" ) ) ).isTrue();
+		assertThat( full.getAsBoolean( Key.of( "subset" ) ) ).isFalse();
+		assertThat( ( Long ) full.get( Key.of( "bytes" ) ) ).isGreaterThan( ( Long ) subset.get( Key.of( "bytes" ) ) );
+		assertThat( ( Long ) subset.get( Key.of( "bytes" ) ) ).isGreaterThan( 0L );
+
+		assertThat( none.getAsBoolean( Key.of( "embedded" ) ) ).isFalse();
+		assertThat( none.get( Key.of( "bytes" ) ) ).isEqualTo( 0L );
+		assertThat( noEmbed.getAsBoolean( Key.of( "embedded" ) ) ).isFalse();
+		assertThat( noEmbed.get( Key.of( "bytes" ) ) ).isEqualTo( 0L );
+	}
+
+}
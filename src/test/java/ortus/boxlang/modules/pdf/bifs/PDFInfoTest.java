@@ -0,0 +1,60 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.runtime.types.IStruct;
+
+public class PDFInfoTest extends SourcePDFTest {
+
+	public PDFInfoTest() {
+		super( "PDFInfo" );
+	}
+
+	@DisplayName( "It can read the page count and metadata of a PDF file" )
+	@Test
+	public void testInfoFromFile() {
+		instance.executeSource(
+		    """
+		    result = pdfInfo( testFile );
+		    """,
+		    context );
+		IStruct info = ( IStruct ) variables.get( result );
+		assertThat( info.get( ModuleKeys.pageCount ) ).isEqualTo( 3 );
+		assertThat( info.get( ModuleKeys.encrypted ) ).isEqualTo( false );
+		assertThat( info.getAsStruct( ModuleKeys.info ).containsKey( ModuleKeys.producer ) ).isTrue();
+		assertThat( info.getAsStruct( ModuleKeys.pageSize ).containsKey( ModuleKeys.width ) ).isTrue();
+	}
+
+	@DisplayName( "It can read the page count of a PDF binary" )
+	@Test
+	public void testInfoFromBinary() {
+		instance.executeSource(
+		    """
+		    result = pdfInfo( fileReadBinary( testFile ) ).pageCount;
+		    """,
+		    context );
+		assertThat( variables.get( result ) ).isEqualTo( 3 );
+	}
+
+}
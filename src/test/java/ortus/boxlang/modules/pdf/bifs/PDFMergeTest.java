@@ -0,0 +1,129 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.SimpleBookmark;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+public class PDFMergeTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result			= new Key( "result" );
+	static String		tmpDirectory	= "src/test/resources/tmp/PDFMerge";
+	static String		testFile		= tmpDirectory + "/merged.pdf";
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true, Path.of( "src/test/resources/boxlang.json" ).toString() );
+		if ( !FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.createDirectory( tmpDirectory, true, null );
+		}
+	}
+
+	@AfterAll
+	public static void teardown() {
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    bx:document format="pdf" variable="first"{
+		    	bx:documentsection name="First Section 1"{
+		    		writeOutput("<h1>First Section 1</h1>")
+				}
+		    	bx:documentsection name="First Section 2"{
+		    		writeOutput("<h1>First Section 2</h1>")
+				}
+			}
+		    bx:document format="pdf" variable="second"{
+		    	bx:documentsection name="Second Section"{
+		    		writeOutput("<h1>Second Section</h1>")
+				}
+			}
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		// @formatter:on
+	}
+
+	@DisplayName( "It can merge binary PDF sources and keep their bookmarks" )
+	@Test
+	public void testMergeBinary() throws IOException {
+		instance.executeSource(
+		    """
+		    result = pdfMerge( [ first, second ] );
+		    """,
+		    context );
+		assertThat( variables.get( result ) ).isInstanceOf( byte[].class );
+
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		assertThat( reader.getNumberOfPages() ).isEqualTo( 3 );
+		assertThat( SimpleBookmark.getBookmarkList( reader ) ).hasSize( 3 );
+		reader.close();
+	}
+
+	@DisplayName( "It can merge file sources to a destination file and rebuild the bookmarks" )
+	@Test
+	public void testMergeFiles() throws IOException {
+		variables.put( Key.of( "tmpDirectory" ), tmpDirectory );
+		variables.put( Key.of( "testFile" ), testFile );
+		instance.executeSource(
+		    """
+		    fileWrite( tmpDirectory & "/first.pdf", first );
+		    fileWrite( tmpDirectory & "/second.pdf", second );
+		    pdfMerge( [ tmpDirectory & "/first.pdf", tmpDirectory & "/second.pdf" ], testFile, { bookmarks : "rebuild", overwrite : true } );
+		    """,
+		    context );
+		assertThat( FileSystemUtil.exists( testFile ) ).isTrue();
+
+		PdfReader reader = new PdfReader( testFile );
+		assertThat( reader.getNumberOfPages() ).isEqualTo( 3 );
+		assertThat( SimpleBookmark.getBookmarkList( reader ) ).hasSize( 2 );
+		assertThat( SimpleBookmark.getBookmarkList( reader ).get( 1 ).get( "Title" ) ).isEqualTo( "second" );
+		reader.close();
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.exceptions.BadPasswordException;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+public class PDFProtectTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result			= new Key( "result" );
+	static String		tmpDirectory	= "src/test/resources/tmp/PDFProtect";
+	static String		testFile		= tmpDirectory + "/source.pdf";
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true, Path.of( "src/test/resources/boxlang.json" ).toString() );
+		if ( !FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.createDirectory( tmpDirectory, true, null );
+		}
+	}
+
+	@AfterAll
+	public static void teardown() {
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+		variables.put( Key.of( "tmpDirectory" ), tmpDirectory );
+		variables.put( Key.of( "testFile" ), testFile );
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    bx:document format="pdf" filename="#testFile#" overwrite=true{
+		    	bx:documentsection name="Section 1"{
+		    		writeOutput("<h1>Section 1</h1>")
+				}
+		    	bx:documentsection name="Section 2"{
+		    		writeOutput("<h1>Section 2</h1>")
+				}
+			}
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		// @formatter:on
+	}
+
+	@DisplayName( "It can protect an existing PDF with AES-256 encryption and permissions" )
+	@Test
+	public void testProtectAES256() throws IOException {
+		instance.executeSource(
+		    """
+		    result = pdfProtect( testFile, { openPassword : "open", ownerPassword : "owner", permissions : "AllowPrinting,AllowCopy", algorithm : "aes-256" } );
+		    """,
+		    context );
+		byte[] protectedPDF = ( byte[] ) variables.get( result );
+		assertThrows( BadPasswordException.class, () -> new PdfReader( protectedPDF ) );
+
+		PdfReader reader = new PdfReader( protectedPDF, "open".getBytes() );
+		assertThat( reader.isEncrypted() ).isTrue();
+		assertThat( reader.getNumberOfPages() ).isEqualTo( 2 );
+		assertThat( reader.getPermissions() & PdfWriter.ALLOW_PRINTING ).isEqualTo( PdfWriter.ALLOW_PRINTING );
+		assertThat( reader.getPermissions() & PdfWriter.ALLOW_COPY ).isEqualTo( PdfWriter.ALLOW_COPY );
+		assertThat( reader.getPermissions() & PdfWriter.ALLOW_MODIFY_CONTENTS ).isEqualTo( 0 );
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 2 ) ).contains( "Section 2" );
+		reader.close();
+	}
+
+	@DisplayName( "It can write a protected copy of a rendered document to a file" )
+	@Test
+	public void testProtectDocumentToFile() throws IOException {
+		instance.executeSource(
+		    """
+		    bx:document format="pdf" variable="statement"{
+		    	writeOutput("<h1>Statement</h1>")
+		    }
+		    pdfProtect( statement, { ownerPassword : "owner", algorithm : "aes-128" }, tmpDirectory & "/protected.pdf", { overwrite : true } );
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		PdfReader reader = new PdfReader( tmpDirectory + "/protected.pdf" );
+		assertThat( reader.isEncrypted() ).isTrue();
+		assertThat( reader.isOpenedWithFullPermissions() ).isFalse();
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 1 ) ).contains( "Statement" );
+		reader.close();
+	}
+
+	@DisplayName( "It rejects unknown permissions" )
+	@Test
+	public void testProtectUnknownPermission() {
+		assertThrows(
+		    BoxRuntimeException.class,
+		    () -> instance.executeSource(
+		        """
+		        pdfProtect( testFile, { ownerPassword : "owner", permissions : "AllowEverything" } );
+		        """,
+		        context )
+		);
+	}
+
+}
@@ -0,0 +1,309 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampResponseGenerator;
+import org.bouncycastle.tsp.TimeStampTokenGenerator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.pdf.AcroFields;
+import com.lowagie.text.pdf.PdfPKCS7;
+import com.lowagie.text.pdf.PdfReader;
+import com.sun.net.httpserver.HttpServer;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.PDFSigner;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+public class PDFSignTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result			= new Key( "result" );
+	static String		tmpDirectory	= "src/test/resources/tmp/PDFSign";
+	static String		testFile		= tmpDirectory + "/source.pdf";
+	static String		keystoreFile	= tmpDirectory + "/signer.p12";
+	static HttpServer	timestampServer;
+
+	@BeforeAll
+	public static void setUp() throws Exception {
+		instance = BoxRuntime.getInstance( true, Path.of( "src/test/resources/boxlang.json" ).toString() );
+		if ( !FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.createDirectory( tmpDirectory, true, null );
+		}
+
+		// A self-signed signing key
+		KeyPair			signerKeys			= newKeyPair();
+		X509Certificate	signerCertificate	= newCertificate( "CN=bx-pdf test signer", signerKeys, false );
+		KeyStore		keyStore			= KeyStore.getInstance( "PKCS12" );
+		keyStore.load( null, null );
+		keyStore.setKeyEntry( "signer", signerKeys.getPrivate(), "changeit".toCharArray(), new Certificate[] { signerCertificate } );
+		try ( OutputStream outputStream = Files.newOutputStream( Path.of( keystoreFile ) ) ) {
+			keyStore.store( outputStream, "changeit".toCharArray() );
+		}
+
+		// A local stand-in for an RFC 3161 timestamp authority
+		KeyPair			tsaKeys			= newKeyPair();
+		X509Certificate	tsaCertificate	= newCertificate( "CN=bx-pdf test timestamp authority", tsaKeys, true );
+		AtomicLong		serialNumber	= new AtomicLong();
+		timestampServer = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		timestampServer.createContext( "/tsa", exchange -> {
+			try {
+				TimeStampRequest		request		= new TimeStampRequest( exchange.getRequestBody().readAllBytes() );
+				TimeStampTokenGenerator	generator	= new TimeStampTokenGenerator(
+				    new JcaSimpleSignerInfoGeneratorBuilder().build( "SHA256withRSA", tsaKeys.getPrivate(), tsaCertificate ),
+				    new JcaDigestCalculatorProviderBuilder().build().get( new AlgorithmIdentifier( OIWObjectIdentifiers.idSHA1 ) ),
+				    new ASN1ObjectIdentifier( "1.2.3.4.1" )
+				);
+				generator.addCertificates( new JcaCertStore( List.of( tsaCertificate ) ) );
+				byte[] response = new TimeStampResponseGenerator( generator, TSPAlgorithms.ALLOWED )
+				    .generate( request, BigInteger.valueOf( serialNumber.incrementAndGet() ), new Date() )
+				    .getEncoded();
+				exchange.getResponseHeaders().add( "Content-Type", "application/timestamp-reply" );
+				exchange.sendResponseHeaders( 200, response.length );
+				exchange.getResponseBody().write( response );
+			} catch ( Exception e ) {
+				exchange.sendResponseHeaders( 500, -1 );
+			} finally {
+				exchange.close();
+			}
+		} );
+		timestampServer.start();
+	}
+
+	@AfterAll
+	public static void teardown() {
+		timestampServer.stop( 0 );
+		PDFSigner.clear();
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+		variables.put( Key.of( "tmpDirectory" ), tmpDirectory );
+		variables.put( Key.of( "testFile" ), testFile );
+		variables.put( Key.of( "keystoreFile" ), keystoreFile );
+		variables.put( Key.of( "tsaUrl" ), "http://127.0.0.1:" + timestampServer.getAddress().getPort() + "/tsa" );
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    bx:document format="pdf" filename="#testFile#" overwrite=true{
+		    	bx:documentsection name="Invoice"{
+		    		writeOutput("<h1>Invoice</h1>")
+				}
+			}
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		// @formatter:on
+	}
+
+	@DisplayName( "It can sign a PDF with a key from a keystore" )
+	@Test
+	public void testSign() throws Exception {
+		instance.executeSource(
+		    """
+		    result = pdfSign( testFile, { keystore : keystoreFile, keystorePassword : "changeit", reason : "Invoice issued", location : "Houston", fieldName : "Issuer" } );
+		    """,
+		    context );
+		PdfPKCS7 pkcs7 = assertSigned( ( byte[] ) variables.get( result ), "Issuer" );
+		assertThat( pkcs7.getReason() ).isEqualTo( "Invoice issued" );
+		assertThat( pkcs7.getLocation() ).isEqualTo( "Houston" );
+		assertThat( pkcs7.getSigningCertificate().getSubjectX500Principal().getName() ).contains( "bx-pdf test signer" );
+	}
+
+	@DisplayName( "It can embed a timestamp from a timestamp authority" )
+	@Test
+	public void testSignWithTimestamp() throws Exception {
+		instance.executeSource(
+		    """
+		    result = pdfSign( testFile, { keystore : keystoreFile, keystorePassword : "changeit", tsaUrl : tsaUrl } );
+		    """,
+		    context );
+		PdfPKCS7 pkcs7 = assertSigned( ( byte[] ) variables.get( result ), null );
+		assertThat( pkcs7.getTimeStampDate() ).isNotNull();
+		assertThat( pkcs7.verifyTimestampImprint() ).isTrue();
+	}
+
+	@DisplayName( "It can sign a batch of PDFs in parallel" )
+	@Test
+	public void testSignBatch() throws Exception {
+		instance.executeSource(
+		    """
+		    sources = [];
+		    for ( i = 1; i <= 8; i++ ) {
+		        bx:document format="pdf" variable="invoice" {
+		            writeOutput( "<h1>Invoice #i#</h1>" );
+		        }
+		        sources.append( invoice );
+		    }
+		    result = pdfSign( sources, { keystore : keystoreFile, keystorePassword : "changeit" }, tmpDirectory & "/batch", { concurrency : 4, overwrite : true } );
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		Array files = variables.getAsArray( result );
+		assertThat( files.size() ).isEqualTo( 8 );
+		for ( Object file : files ) {
+			assertSigned( Files.readAllBytes( Path.of( ( String ) file ) ), null );
+		}
+	}
+
+	@DisplayName( "It can sign a document as it is written" )
+	@Test
+	public void testDocumentSignature() throws Exception {
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    signatureSettings = { keystore : keystoreFile, keystorePassword : "changeit", fieldName : "Approval" };
+		    bx:document format="pdf" variable="result" signature=signatureSettings{
+		    	writeOutput("<h1>Signed on render</h1>")
+		    }
+		    """,
+		    context, BoxSourceType.BOXSCRIPT );
+		// @formatter:on
+		assertSigned( ( byte[] ) variables.get( result ), "Approval" );
+	}
+
+	@DisplayName( "It caches the key material of a keystore until the keystore changes" )
+	@Test
+	public void testSignerCache() throws IOException {
+		PDFSigner.clear();
+		IStruct		signature	= Struct.of(
+		    ModuleKeys.keystore, Path.of( keystoreFile ).toAbsolutePath().toString(),
+		    ModuleKeys.keystorePassword, "changeit"
+		);
+		PDFSigner	signer		= PDFSigner.of( signature );
+		assertThat( PDFSigner.of( signature ) ).isSameInstanceAs( signer );
+
+		Files.setLastModifiedTime( Path.of( keystoreFile ), FileTime.fromMillis( System.currentTimeMillis() + 60000 ) );
+		assertThat( PDFSigner.of( signature ) ).isNotSameInstanceAs( signer );
+		// the changed keystore replaces the entry of its key, rather than adding another
+		assertThat( PDFSigner.size() ).isEqualTo( 1 );
+	}
+
+	@DisplayName( "It requires a keystore" )
+	@Test
+	public void testSignRequiresKeystore() {
+		assertThrows(
+		    BoxRuntimeException.class,
+		    () -> instance.executeSource(
+		        """
+		        pdfSign( testFile, { reason : "Missing key" } );
+		        """,
+		        context )
+		);
+	}
+
+	/**
+	 * Asserts that a PDF has a single valid signature which covers the whole document
+	 *
+	 * @param pdf       The signed PDF
+	 * @param fieldName The expected name of the signature field, or null for any name
+	 *
+	 * @return the verified signature
+	 */
+	private static PdfPKCS7 assertSigned( byte[] pdf, String fieldName ) throws Exception {
+		PdfReader		reader	= new PdfReader( pdf );
+		AcroFields		fields	= reader.getAcroFields();
+		List<String>	names	= fields.getSignedFieldNames();
+		assertThat( names ).hasSize( 1 );
+		if ( fieldName != null ) {
+			assertThat( names.get( 0 ) ).isEqualTo( fieldName );
+		}
+		assertThat( fields.signatureCoversWholeDocument( names.get( 0 ) ) ).isTrue();
+		PdfPKCS7 pkcs7 = fields.verifySignature( names.get( 0 ) );
+		assertThat( pkcs7.verify() ).isTrue();
+		reader.close();
+		return pkcs7;
+	}
+
+	private static KeyPair newKeyPair() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance( "RSA" );
+		generator.initialize( 2048 );
+		return generator.generateKeyPair();
+	}
+
+	private static X509Certificate newCertificate( String subject, KeyPair keys, boolean timestamping ) throws Exception {
+		X500Name					name	= new X500Name( subject );
+		JcaX509v3CertificateBuilder	builder	= new JcaX509v3CertificateBuilder(
+		    name,
+		    BigInteger.valueOf( System.nanoTime() ),
+		    new Date( System.currentTimeMillis() - 60000 ),
+		    new Date( System.currentTimeMillis() + 86400000 ),
+		    name,
+		    keys.getPublic()
+		);
+		if ( timestamping ) {
+			builder.addExtension( Extension.extendedKeyUsage, true, new ExtendedKeyUsage( KeyPurposeId.id_kp_timeStamping ) );
+		}
+		return new JcaX509CertificateConverter().getCertificate( builder.build( new JcaContentSignerBuilder( "SHA256withRSA" ).build( keys.getPrivate() ) ) );
+	}
+
+}
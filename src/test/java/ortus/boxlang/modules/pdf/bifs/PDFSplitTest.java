@@ -0,0 +1,68 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+
+import ortus.boxlang.runtime.types.Array;
+
+public class PDFSplitTest extends SourcePDFTest {
+
+	public PDFSplitTest() {
+		super( "PDFSplit" );
+	}
+
+	@DisplayName( "It can split a PDF in to single page files" )
+	@Test
+	public void testSplit() throws IOException {
+		instance.executeSource(
+		    """
+		    result = pdfSplit( testFile, tmpDirectory & "/split", { overwrite : true } );
+		    """,
+		    context );
+		Array files = ( Array ) variables.get( result );
+		assertThat( files.size() ).isEqualTo( 3 );
+		for ( Object file : files ) {
+			PdfReader reader = new PdfReader( ( String ) file );
+			assertThat( reader.getNumberOfPages() ).isEqualTo( 1 );
+			reader.close();
+		}
+	}
+
+	@DisplayName( "It can split a PDF in to multiple page files" )
+	@Test
+	public void testSplitPagesPerFile() throws IOException {
+		instance.executeSource(
+		    """
+		    result = pdfSplit( testFile, tmpDirectory & "/chunks", { pagesPerFile : 2, prefix : "chunk", overwrite : true } );
+		    """,
+		    context );
+		Array files = ( Array ) variables.get( result );
+		assertThat( files.size() ).isEqualTo( 2 );
+		assertThat( ( String ) files.get( 0 ) ).endsWith( "chunk_1-2.pdf" );
+		assertThat( ( String ) files.get( 1 ) ).endsWith( "chunk_3.pdf" );
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class PDFStampTest extends SourcePDFTest {
+
+	public PDFStampTest() {
+		super( "PDFStamp" );
+	}
+
+	@DisplayName( "It can stamp text on to selected pages" )
+	@Test
+	public void testStampText() throws IOException {
+		instance.executeSource(
+		    """
+		    result = pdfStamp( testFile, { text : "Page {page} of {pages}", pages : "2-", fontSize : 12, opacity : 0.5 } );
+		    """,
+		    context );
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		assertThat( reader.getNumberOfPages() ).isEqualTo( 3 );
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 1 ) ).doesNotContain( "Page 1 of 3" );
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 2 ) ).contains( "Page 2 of 3" );
+		reader.close();
+	}
+
+	@DisplayName( "It can append a stamp to the source file as an incremental update" )
+	@Test
+	public void testStampInPlace() throws IOException {
+		// the source is shared by the tests of the class, so a copy of it is updated
+		Path stampedFile = Path.of( tmpDirectory, "stamped.pdf" );
+		Files.copy( Path.of( testFile ), stampedFile, StandardCopyOption.REPLACE_EXISTING );
+		variables.put( Key.of( "stampedFile" ), stampedFile.toString() );
+		byte[] original = Files.readAllBytes( stampedFile );
+		instance.executeSource(
+		    """
+		    pdfStamp( stampedFile, { text : "DRAFT", rotation : 45 }, stampedFile, { append : true } );
+		    """,
+		    context );
+		byte[] updated = Files.readAllBytes( stampedFile );
+		assertThat( updated.length ).isGreaterThan( original.length );
+		assertThat( Arrays.copyOf( updated, original.length ) ).isEqualTo( original );
+		PdfReader reader = new PdfReader( updated );
+		assertThat( reader.getNumberOfPages() ).isEqualTo( 3 );
+		assertThat( new PdfTextExtractor( reader ).getTextFromPage( 3 ) ).contains( "DRAFT" );
+		reader.close();
+	}
+
+	@DisplayName( "It requires text, an image or a pdf to stamp" )
+	@Test
+	public void testStampRequiresContent() {
+		assertThrows(
+		    BoxRuntimeException.class,
+		    () -> instance.executeSource(
+		        """
+		        pdfStamp( testFile, { opacity : 0.5 } );
+		        """,
+		        context )
+		);
+	}
+
+}
@@ -0,0 +1,103 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.bifs;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInstance;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+/**
+ * The shared fixture of the tests of BIFs which read an existing PDF. The source.pdf of three sections is written once
+ * for each test class, in a temporary directory of its own, so tests must not modify it.
+ */
+@TestInstance( TestInstance.Lifecycle.PER_CLASS )
+public abstract class SourcePDFTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result	= new Key( "result" );
+	final String		tmpDirectory;
+	final String		testFile;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name The name of the temporary directory of the test class
+	 */
+	protected SourcePDFTest( String name ) {
+		this.tmpDirectory	= "src/test/resources/tmp/" + name;
+		this.testFile		= tmpDirectory + "/source.pdf";
+	}
+
+	@BeforeAll
+	public void setUp() {
+		instance = BoxRuntime.getInstance( true, Path.of( "src/test/resources/boxlang.json" ).toString() );
+		if ( !FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.createDirectory( tmpDirectory, true, null );
+		}
+		IBoxContext	sourceContext	= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		IScope		sourceVariables	= sourceContext.getScopeNearby( VariablesScope.name );
+		sourceVariables.put( Key.of( "testFile" ), testFile );
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    bx:document format="pdf" filename="#testFile#" overwrite=true{
+		    	bx:documentsection name="Section 1"{
+		    		writeOutput("<h1>Section 1</h1>")
+				}
+		    	bx:documentsection name="Section 2"{
+		    		writeOutput("<h1>Section 2</h1>")
+				}
+		    	bx:documentsection name="Section 3"{
+		    		writeOutput("<h1>Section 3</h1>")
+				}
+			}
+		    """,
+		    sourceContext, BoxSourceType.BOXSCRIPT );
+		// @formatter:on
+	}
+
+	@AfterAll
+	public void teardown() {
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+		variables.put( Key.of( "tmpDirectory" ), tmpDirectory );
+		variables.put( Key.of( "testFile" ), testFile );
+	}
+
+}
@@ -0,0 +1,304 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.pdf.components;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+import ortus.boxlang.compiler.parser.BoxSourceType;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.util.FileSystemUtil;
+
+/**
+ * Renders hundreds of mixed documents at once on platform and virtual threads, checking that each document only holds
+ * its own content and recording how throughput scales with the number of threads. These tests are excluded from the
+ * default test run and are run with {@code ./gradlew stressTest}. The number of documents and the minimum parallel
+ * efficiency are set with the {@code bxpdf.stress.documents} and {@code bxpdf.stress.minEfficiency} system properties.
+ */
+@Tag( "stress" )
+public class DocumentStressTest {
+
+	static BoxRuntime					instance;
+	static Key							result			= new Key( "result" );
+	static String						tmpDirectory	= "src/test/resources/tmp/DocumentStress";
+	static String						imageFile		= tmpDirectory + "/image.png";
+
+	/**
+	 * The number of documents rendered by each run
+	 */
+	static final int					DOCUMENTS		= Integer.getInteger( "bxpdf.stress.documents", 200 );
+
+	/**
+	 * The minimum throughput with n threads, as a fraction of n times the single thread throughput, for n up to the
+	 * number of processors
+	 */
+	static final double					MIN_EFFICIENCY	= Double.parseDouble( System.getProperty( "bxpdf.stress.minEfficiency", "0.5" ) );
+
+	/**
+	 * The token which identifies the content of each document
+	 */
+	static final Pattern				TOKEN			= Pattern.compile( "Document-\\d+" );
+
+	/**
+	 * The mixed documents, each rendering the token variable, with the number of pages expected or 0 when it varies
+	 */
+	static final List<StressDocument>	MIXED_DOCUMENTS	= List.of(
+	    // sections laid out together, with the document page counters in the header
+	    new StressDocument( """
+	                        <bx:document format="pdf" variable="result">
+	                        	<bx:documentitem type="header">
+	                        		<bx:output><p>#token# page #bxdocument.currentpagenumber# of #bxdocument.totalpages#</p></bx:output>
+	                        	</bx:documentitem>
+	                        	<bx:documentsection name="One"><bx:output><h1>#token# One</h1></bx:output></bx:documentsection>
+	                        	<bx:documentsection name="Two"><bx:output><h1>#token# Two</h1></bx:output></bx:documentsection>
+	                        </bx:document>
+	                        """, 2, true ),
+	    // sections rendered individually through the shared section cache
+	    new StressDocument( """
+	                        <bx:document format="pdf" variable="result" cacheSections=true>
+	                        	<bx:documentsection name="One"><bx:output><h1>#token# Cached One</h1></bx:output></bx:documentsection>
+	                        	<bx:documentsection name="Two"><bx:output><h1>#token# Cached Two</h1></bx:output></bx:documentsection>
+	                        </bx:document>
+	                        """, 2, true ),
+	    // a long table laid out in chunks
+	    new StressDocument( """
+	                        <bx:document format="pdf" variable="result" chunkSize="25">
+	                        	<table><bx:loop from="1" to="120" index="row"><bx:output><tr><td>#token# row #row#</td></tr></bx:output></bx:loop></table>
+	                        </bx:document>
+	                        """, 0, true ),
+	    // plain text streamed on to pages
+	    new StressDocument( """
+	                        <bx:document format="pdf" variable="result" textFontSize="10">
+	                        	<bx:documentsection srcfile="#textFile#"/>
+	                        </bx:document>
+	                        """, 0, true ),
+	    // an image written directly on to its page
+	    new StressDocument( """
+	                        <bx:document format="pdf" variable="result">
+	                        	<bx:documentsection srcfile="#imageFile#"/>
+	                        </bx:document>
+	                        """, 1, false ),
+	    // linearized output with maximum compression
+	    new StressDocument( """
+	                        <bx:document format="pdf" variable="result" linearize=true compression="max">
+	                        	<bx:output><h1>#token# Linearized</h1><p style="page-break-before: always;">#token# Second page</p></bx:output>
+	                        </bx:document>
+	                        """, 2, true )
+	);
+
+	/**
+	 * A document template of the mix
+	 *
+	 * @param source   The BoxLang template
+	 * @param pages    The number of pages expected, or 0 when it varies
+	 * @param hasToken Whether the token appears in the text of the document
+	 */
+	record StressDocument( String source, int pages, boolean hasToken ) {
+	}
+
+	@BeforeAll
+	public static void setUp() throws IOException {
+		instance = BoxRuntime.getInstance( true, Path.of( "src/test/resources/boxlang.json" ).toString() );
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+		FileSystemUtil.createDirectory( tmpDirectory, true, null );
+
+		BufferedImage	image		= new BufferedImage( 200, 100, BufferedImage.TYPE_INT_RGB );
+		Graphics2D		graphics	= image.createGraphics();
+		graphics.setColor( Color.BLUE );
+		graphics.fillRect( 0, 0, 200, 100 );
+		graphics.dispose();
+		ImageIO.write( image, "png", Path.of( imageFile ).toFile() );
+	}
+
+	@AfterAll
+	public static void teardown() {
+		if ( FileSystemUtil.exists( tmpDirectory ) ) {
+			FileSystemUtil.deleteDirectory( tmpDirectory, true );
+		}
+	}
+
+	@DisplayName( "It renders mixed documents concurrently on platform threads with scaling throughput" )
+	@Test
+	public void testPlatformThreadScaling() throws Exception {
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		// warm up the runtime, the template cache and the JIT before measuring
+		runAll( Executors.newSingleThreadExecutor(), Math.min( DOCUMENTS, MIXED_DOCUMENTS.size() * 5 ) );
+
+		Map<Integer, Double> throughput = new LinkedHashMap<Integer, Double>();
+		for ( int threads = 1; threads <= Math.max( 2, processors ); threads *= 2 ) {
+			throughput.put( threads, runAll( Executors.newFixedThreadPool( threads ), DOCUMENTS ) );
+		}
+		if ( !throughput.containsKey( processors ) && processors > 1 ) {
+			throughput.put( processors, runAll( Executors.newFixedThreadPool( processors ), DOCUMENTS ) );
+		}
+		report( "platform threads", throughput );
+
+		assumeTrue( processors > 1, "Throughput scaling is only checked with more than one processor" );
+		double single = throughput.get( 1 );
+		for ( Map.Entry<Integer, Double> entry : throughput.entrySet() ) {
+			int threads = Math.min( entry.getKey(), processors );
+			if ( threads > 1 ) {
+				double efficiency = entry.getValue() / ( single * threads );
+				assertTrue(
+				    efficiency >= MIN_EFFICIENCY,
+				    String.format( "Throughput with %d threads was %.2f of linear scaling, below the minimum of %.2f", entry.getKey(), efficiency,
+				        MIN_EFFICIENCY )
+				);
+			}
+		}
+	}
+
+	@DisplayName( "It renders mixed documents concurrently on virtual threads" )
+	@Test
+	public void testVirtualThreads() throws Exception {
+		int		processors	= Runtime.getRuntime().availableProcessors();
+		double	single		= runAll( Executors.newSingleThreadExecutor(), DOCUMENTS );
+		double	virtual		= runAll( Executors.newVirtualThreadPerTaskExecutor(), DOCUMENTS );
+		Map<Integer, Double> throughput = new LinkedHashMap<Integer, Double>();
+		throughput.put( 1, single );
+		throughput.put( DOCUMENTS, virtual );
+		report( "virtual threads", throughput );
+
+		assumeTrue( processors > 1, "Throughput scaling is only checked with more than one processor" );
+		double efficiency = virtual / ( single * processors );
+		assertTrue(
+		    efficiency >= MIN_EFFICIENCY,
+		    String.format( "Throughput on virtual threads was %.2f of linear scaling, below the minimum of %.2f", efficiency, MIN_EFFICIENCY )
+		);
+	}
+
+	/**
+	 * Renders and checks a run of documents on an executor, which is shut down afterwards
+	 *
+	 * @param executor  The executor
+	 * @param documents The number of documents
+	 *
+	 * @return the throughput, in documents per second
+	 */
+	private double runAll( ExecutorService executor, int documents ) throws Exception {
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for ( int i = 0; i < documents; i++ ) {
+				int index = i;
+				futures.add( executor.submit( () -> {
+					renderAndCheck( index );
+					return null;
+				} ) );
+			}
+			// failures are rethrown from the rendering thread
+			for ( Future<?> future : futures ) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return documents / ( ( System.nanoTime() - start ) / 1e9 );
+	}
+
+	/**
+	 * Renders a single document of the mix in its own request context and checks that its text is only its own
+	 *
+	 * @param index The document number, which selects the document of the mix and makes its token
+	 */
+	private void renderAndCheck( int index ) throws IOException {
+		StressDocument	document	= MIXED_DOCUMENTS.get( index % MIXED_DOCUMENTS.size() );
+		String			token		= "Document-" + index;
+		IBoxContext		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		IScope			variables	= context.getScopeNearby( VariablesScope.name );
+		variables.put( Key.of( "token" ), token );
+		variables.put( Key.of( "imageFile" ), Path.of( imageFile ).toAbsolutePath().toString() );
+		if ( document.source().contains( "#textFile#" ) ) {
+			Path textFile = Path.of( tmpDirectory, token + ".txt" );
+			Files.writeString( textFile, ( token + " line\n" ).repeat( 200 ) );
+			variables.put( Key.of( "textFile" ), textFile.toAbsolutePath().toString() );
+		}
+
+		instance.executeSource( document.source(), context, BoxSourceType.BOXTEMPLATE );
+
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		try {
+			if ( document.pages() > 0 ) {
+				assertEquals( document.pages(), reader.getNumberOfPages(), token );
+			}
+			if ( document.hasToken() ) {
+				PdfTextExtractor	extractor	= new PdfTextExtractor( reader );
+				StringBuilder		text		= new StringBuilder();
+				for ( int page = 1; page <= reader.getNumberOfPages(); page++ ) {
+					text.append( extractor.getTextFromPage( page ) ).append( '\n' );
+				}
+				assertTrue( text.indexOf( token ) >= 0, token + " is missing from its document" );
+				// no content of a document rendered on another thread may appear
+				Matcher matcher = TOKEN.matcher( text );
+				while ( matcher.find() ) {
+					assertEquals( token, matcher.group(), "The document of " + token + " contains " + matcher.group() );
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Prints the throughput of a run
+	 *
+	 * @param label      The kind of threads
+	 * @param throughput The throughput in documents per second by thread count
+	 */
+	private void report( String label, Map<Integer, Double> throughput ) {
+		System.out.println( "Document stress throughput on " + label + " (" + DOCUMENTS + " documents):" );
+		throughput.forEach( ( threads, documentsPerSecond ) -> System.out.printf( "  %5d threads: %8.1f documents/s%n", threads, documentsPerSecond ) );
+	}
+
+}
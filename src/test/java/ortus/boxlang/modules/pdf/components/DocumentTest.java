@@ -20,13 +20,44 @@ package ortus.boxlang.modules.pdf.components;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -34,15 +65,30 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import com.lowagie.text.exceptions.BadPasswordException;
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.SimpleBookmark;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
 import ortus.boxlang.compiler.parser.BoxSourceType;
 import ortus.boxlang.modules.pdf.types.PDF;
 import ortus.boxlang.modules.pdf.util.ModuleKeys;
+import ortus.boxlang.modules.pdf.util.RenderProtocol;
+import ortus.boxlang.modules.pdf.util.RenderWorker;
+import ortus.boxlang.modules.pdf.util.RenderWorkerPool;
+import ortus.boxlang.modules.pdf.util.SectionCache;
 import ortus.boxlang.runtime.BoxRuntime;
 import ortus.boxlang.runtime.context.IBoxContext;
 import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
 import ortus.boxlang.runtime.scopes.IScope;
 import ortus.boxlang.runtime.scopes.Key;
 import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
 import ortus.boxlang.runtime.util.FileSystemUtil;
 
 public class DocumentTest {
@@ -73,6 +119,7 @@ public class DocumentTest {
 
 	@AfterAll
 	public static void teardown() {
+		RenderWorkerPool.shutdownAll();
 		if ( FileSystemUtil.exists( tmpDirectory ) ) {
 			FileSystemUtil.deleteDirectory( tmpDirectory, true );
 		}
@@ -314,7 +361,66 @@ public class DocumentTest {
 		assertTrue( FileSystemUtil.exists( testFile ) );
 
 		PDF pdfObject = ( PDF ) variables.get( ModuleKeys.bxPDF );
-		assertEquals( 8, pdfObject.getRenderer().getDocument().getElementsByTagName( "h1" ).getLength() );
+		// the shared header and footer are written once and run on through the following sections
+		assertEquals( 4, pdfObject.getRenderer().getDocument().getElementsByTagName( "h1" ).getLength() );
+	}
+
+	@DisplayName( "Can share named headers and footers between document sections" )
+	@Test
+	public void testSharedHeaders() throws IOException {
+		// @formatter:off
+		instance.executeSource(
+		    """
+				<bx:document format="pdf" variable="result" isTestMode=true>
+					<bx:documentitem type="header" name="letterhead">
+						<p class="letterhead">Shared Letterhead</p>
+					</bx:documentitem>
+					<bx:documentitem type="footer" name="legal">
+						<p>Shared Footer</p>
+					</bx:documentitem>
+					<bx:loop from="1" to="20" index="i">
+						<bx:documentsection name="Letter #i#" header="letterhead" footer="legal">
+							<bx:output><h1>Letter #i#</h1></bx:output>
+						</bx:documentsection>
+					</bx:loop>
+					<bx:documentsection name="Appendix" footer="legal">
+						<bx:documentitem type="header">
+							<p>Appendix Header</p>
+						</bx:documentitem>
+						<h1>Appendix</h1>
+					</bx:documentsection>
+				</bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+
+		// the shared header and footer are written once for all of the sections, along with the header of the appendix
+		PDF pdfObject = ( PDF ) variables.get( ModuleKeys.bxPDF );
+		assertEquals( 3, pdfObject.getRenderer().getDocument().getElementsByTagName( "p" ).getLength() );
+
+		PdfReader			reader		= new PdfReader( ( byte[] ) variables.get( result ) );
+		PdfTextExtractor	extractor	= new PdfTextExtractor( reader );
+		assertEquals( 21, reader.getNumberOfPages() );
+		for ( int page = 1; page <= 20; page++ ) {
+			String text = extractor.getTextFromPage( page );
+			assertTrue( text.contains( "Shared Letterhead" ) );
+			assertTrue( text.contains( "Shared Footer" ) );
+			assertTrue( text.contains( "Letter " + page ) );
+		}
+		assertTrue( extractor.getTextFromPage( 21 ).contains( "Appendix Header" ) );
+		assertFalse( extractor.getTextFromPage( 21 ).contains( "Shared Letterhead" ) );
+		assertTrue( extractor.getTextFromPage( 21 ).contains( "Shared Footer" ) );
+		reader.close();
+
+		// unknown names are an error
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource(
+		    """
+				<bx:document format="pdf" variable="result">
+					<bx:documentsection header="missing"><h1>Missing</h1></bx:documentsection>
+				</bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE ) );
 	}
 
 	@DisplayName( "Will correctly create bookmarks for document sections" )
@@ -345,4 +451,720 @@ public class DocumentTest {
 		assertEquals( 2, pdfObject.getRenderer().getDocument().getElementsByTagName( "bookmark" ).getLength() );
 	}
 
+	@DisplayName( "Will render cached sections individually and stitch them together" )
+	@Test
+	public void testCachedSections() throws IOException {
+		SectionCache.clear();
+		// @formatter:off
+		String source = """
+				bx:document format="pdf" variable="result" cacheSections=true isTestMode=true{
+					bx:documentsection name="Terms" {
+						writeoutput('<h1>Terms and Conditions</h1>');
+					}
+					bx:documentsection name="Statement" {
+						writeoutput('<h1>Statement for #customer#</h1>');
+					}
+				}
+		      """;
+		// @formatter:on
+		variables.put( Key.of( "customer" ), "Customer A" );
+		instance.executeSource( source, context, BoxSourceType.BOXSCRIPT );
+		assertTrue( variables.get( result ) instanceof byte[] );
+		assertEquals( 2, SectionCache.size() );
+
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		assertEquals( 2, reader.getNumberOfPages() );
+		assertEquals( 2, SimpleBookmark.getBookmarkList( reader ).size() );
+		reader.close();
+
+		// Only the changed section is rendered and added to the cache
+		variables.put( Key.of( "customer" ), "Customer B" );
+		instance.executeSource( source, context, BoxSourceType.BOXSCRIPT );
+		assertEquals( 3, SectionCache.size() );
+	}
+
+	@DisplayName( "Will render a cached section again when an image file it uses changes" )
+	@Test
+	public void testCachedSectionsImageChange() throws IOException {
+		SectionCache.clear();
+		Path image = Path.of( tmpDirectory, "cached-section.png" ).toAbsolutePath();
+		ImageIO.write( new BufferedImage( 100, 50, BufferedImage.TYPE_INT_RGB ), "png", image.toFile() );
+		variables.put( Key.of( "image" ), image.toString() );
+		// @formatter:off
+		String source = """
+				bx:document format="pdf" variable="result" cacheSections=true localUrl=true isTestMode=true{
+					bx:documentsection name="Logo" {
+						writeoutput('<img src="#image#"/>');
+					}
+				}
+		      """;
+		// @formatter:on
+		instance.executeSource( source, context, BoxSourceType.BOXSCRIPT );
+		assertEquals( 1, SectionCache.size() );
+		assertEquals( 100, imageWidths( ( byte[] ) variables.get( result ) ).get( 0 ).intValue() );
+
+		// the same path and markup with a different image is not taken from the cache
+		ImageIO.write( new BufferedImage( 200, 80, BufferedImage.TYPE_INT_RGB ), "png", image.toFile() );
+		instance.executeSource( source, context, BoxSourceType.BOXSCRIPT );
+		assertEquals( 2, SectionCache.size() );
+		assertEquals( 200, imageWidths( ( byte[] ) variables.get( result ) ).get( 0 ).intValue() );
+	}
+
+	@DisplayName( "Will encrypt only the stitched document of cached sections" )
+	@Test
+	public void testCachedSectionsEncryption() throws IOException {
+		SectionCache.clear();
+		// @formatter:off
+		String source = """
+				bx:document format="pdf" variable="result" cacheSections=true openpassword="#openPassword#" ownerpassword="owner" isTestMode=true{
+					bx:documentsection name="Terms" {
+						writeoutput('<h1>Terms and Conditions</h1>');
+					}
+					bx:documentsection name="Statement" {
+						writeoutput('<h1>Statement</h1>');
+					}
+				}
+		      """;
+		// @formatter:on
+		variables.put( Key.of( "openPassword" ), "first" );
+		instance.executeSource( source, context, BoxSourceType.BOXSCRIPT );
+		assertThrows( BadPasswordException.class, () -> new PdfReader( ( byte[] ) variables.get( result ) ) );
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ), "first".getBytes( StandardCharsets.UTF_8 ) );
+		assertTrue( reader.isEncrypted() );
+		assertEquals( 2, reader.getNumberOfPages() );
+		assertTrue( new PdfTextExtractor( reader ).getTextFromPage( 2 ).contains( "Statement" ) );
+		reader.close();
+
+		// The cached sections are reused under another password
+		variables.put( Key.of( "openPassword" ), "second" );
+		instance.executeSource( source, context, BoxSourceType.BOXSCRIPT );
+		assertEquals( 2, SectionCache.size() );
+		assertThrows( BadPasswordException.class,
+		    () -> new PdfReader( ( byte[] ) variables.get( result ), "first".getBytes( StandardCharsets.UTF_8 ) ) );
+		reader = new PdfReader( ( byte[] ) variables.get( result ), "second".getBytes( StandardCharsets.UTF_8 ) );
+		assertEquals( 2, reader.getNumberOfPages() );
+		reader.close();
+
+		// With only an owner password the document opens without a password and its text is readable
+		// @formatter:off
+		instance.executeSource( """
+				bx:document format="pdf" variable="result" cacheSections=true ownerpassword="owner" isTestMode=true{
+					bx:documentsection name="Terms" {
+						writeoutput('<h1>Terms and Conditions</h1>');
+					}
+				}
+		      """, context, BoxSourceType.BOXSCRIPT );
+		// @formatter:on
+		reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		assertTrue( reader.isEncrypted() );
+		assertTrue( new PdfTextExtractor( reader ).getTextFromPage( 1 ).contains( "Terms and Conditions" ) );
+		reader.close();
+	}
+
+	@DisplayName( "Will downscale images to the resolution of their laid-out size" )
+	@Test
+	public void testImageMaxDpi() throws IOException {
+		BufferedImage	photo		= new BufferedImage( 3000, 2000, BufferedImage.TYPE_INT_RGB );
+		Graphics2D		graphics	= photo.createGraphics();
+		graphics.setPaint( new GradientPaint( 0, 0, Color.RED, 3000, 2000, Color.BLUE ) );
+		graphics.fillRect( 0, 0, 3000, 2000 );
+		graphics.dispose();
+		ByteArrayOutputStream photoBytes = new ByteArrayOutputStream();
+		ImageIO.write( photo, "jpg", photoBytes );
+		variables.put( Key.of( "photo" ), "data:image/jpg;base64," + Base64.getEncoder().encodeToString( photoBytes.toByteArray() ) );
+
+		// @formatter:off
+		instance.executeSource(
+			"""
+				bx:document format="pdf" variable="result" imageMaxDpi=150 jpegQuality=0.7{
+					writeoutput('<img style="width:2in" src="#photo#"/>');
+				}
+			""",
+			context,
+			BoxSourceType.BOXSCRIPT
+		);
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+
+		PdfReader	reader	= new PdfReader( ( byte[] ) variables.get( result ) );
+		int			images	= 0;
+		for ( int i = 1; i < reader.getXrefSize(); i++ ) {
+			if ( reader.getPdfObject( i ) instanceof PRStream stream && PdfName.IMAGE.equals( stream.get( PdfName.SUBTYPE ) ) ) {
+				// two inches at 150 dpi
+				assertTrue( stream.getAsNumber( PdfName.WIDTH ).intValue() <= 301 );
+				images++;
+			}
+		}
+		reader.close();
+		assertEquals( 1, images );
+		assertTrue( ( ( byte[] ) variables.get( result ) ).length < photoBytes.size() );
+	}
+
+	@DisplayName( "Will write compressed object streams when full compression is enabled" )
+	@Test
+	public void testFullCompression() throws IOException {
+		// @formatter:off
+		instance.executeSource(
+			"""
+				bx:document format="pdf" variable="result" compression="max" fullCompression=true{
+					writeoutput('<h1>Compressed</h1>');
+				}
+			""",
+			context,
+			BoxSourceType.BOXSCRIPT
+		);
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+
+		PdfReader reader = new PdfReader( ( byte[] ) variables.get( result ) );
+		assertEquals( '5', reader.getPdfVersion() );
+		assertEquals( 1, reader.getNumberOfPages() );
+		reader.close();
+	}
+
+	@DisplayName( "Will write identical images to the document once" )
+	@Test
+	public void testImageDeduplication() throws IOException {
+		BufferedImage	logo		= new BufferedImage( 400, 100, BufferedImage.TYPE_INT_RGB );
+		Graphics2D		graphics	= logo.createGraphics();
+		graphics.setPaint( new GradientPaint( 0, 0, Color.ORANGE, 400, 100, Color.BLACK ) );
+		graphics.fillRect( 0, 0, 400, 100 );
+		graphics.dispose();
+		ByteArrayOutputStream logoBytes = new ByteArrayOutputStream();
+		ImageIO.write( logo, "png", logoBytes );
+		String encoded = Base64.getEncoder().encodeToString( logoBytes.toByteArray() );
+		variables.put( Key.of( "logo" ), "data:image/png;base64," + encoded );
+		variables.put( Key.of( "sameLogo" ), "data:image/x-png;base64," + encoded );
+
+		// @formatter:off
+		instance.executeSource(
+			"""
+				bx:document format="pdf" variable="result"{
+					bx:documentitem type="header"{
+						writeoutput('<img style="width:1in" src="#logo#"/>');
+					}
+					bx:documentsection name="Section 1"{
+						writeoutput('<h1>Section 1</h1><img src="#sameLogo#"/>');
+					}
+					bx:documentsection name="Section 2"{
+						writeoutput('<h1>Section 2</h1><img style="width:2in" src="#logo#"/>');
+					}
+				}
+			""",
+			context,
+			BoxSourceType.BOXSCRIPT
+		);
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+
+		PdfReader	reader	= new PdfReader( ( byte[] ) variables.get( result ) );
+		int			images	= 0;
+		for ( int i = 1; i < reader.getXrefSize(); i++ ) {
+			if ( reader.getPdfObject( i ) instanceof PRStream stream && PdfName.IMAGE.equals( stream.get( PdfName.SUBTYPE ) ) ) {
+				images++;
+			}
+		}
+		reader.close();
+		assertEquals( 1, images );
+	}
+
+	@DisplayName( "Will lay out and write large documents in chunks" )
+	@Test
+	public void testChunkedLayout() throws IOException {
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" chunkSize="100">
+				<bx:documentitem type="footer">
+					<bx:output><p>Page #bxdocument.currentpagenumber# of #bxdocument.totalpages#</p></bx:output>
+				</bx:documentitem>
+		    	<bx:documentsection name="Rows">
+		    		<table>
+		    			<thead><tr><th>Row Header</th></tr></thead>
+		    			<tbody>
+		    				<bx:loop from="1" to="500" index="i"><bx:output><tr><td>Row #i#</td></tr></bx:output></bx:loop>
+		    			</tbody>
+		    		</table>
+		    	</bx:documentsection>
+		    	<bx:documentsection name="Summary">
+		    		<p>Summary</p>
+		    	</bx:documentsection>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+
+		PdfReader			reader		= new PdfReader( ( byte[] ) variables.get( result ) );
+		PdfTextExtractor	extractor	= new PdfTextExtractor( reader );
+		int					pageCount	= reader.getNumberOfPages();
+		assertTrue( pageCount > 5 );
+		// the header row is repeated in every chunk of the table
+		assertTrue( extractor.getTextFromPage( pageCount - 1 ).contains( "Row Header" ) );
+		assertTrue( extractor.getTextFromPage( pageCount - 1 ).contains( "Row 500" ) );
+		// the page counters run across all of the chunks
+		assertTrue( extractor.getTextFromPage( pageCount ).contains( String.valueOf( pageCount ) ) );
+		assertEquals( 2, SimpleBookmark.getBookmarkList( reader ).size() );
+		reader.close();
+	}
+
+	@DisplayName( "Will number the pages of each section of a mail merge on their own" )
+	@Test
+	public void testMailMerge() throws IOException {
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" mailMerge=true>
+				<bx:documentitem type="footer" name="letterFooter">
+					<bx:output><p>Letter page #bxdocument.currentsectionpagenumber# of #bxdocument.totalsectionpagecount#</p></bx:output>
+				</bx:documentitem>
+		    	<bx:loop from="1" to="30" index="i">
+		    		<bx:documentsection name="Letter #i#" footer="letterFooter">
+		    			<bx:output><h1>Dear Customer #i#</h1><div style="page-break-after: always;"></div><p>Regards</p></bx:output>
+		    		</bx:documentsection>
+		    	</bx:loop>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+
+		PdfReader			reader		= new PdfReader( ( byte[] ) variables.get( result ) );
+		PdfTextExtractor	extractor	= new PdfTextExtractor( reader );
+		assertEquals( 60, reader.getNumberOfPages() );
+		for ( int letter = 1; letter <= 30; letter++ ) {
+			String	firstPage	= extractor.getTextFromPage( letter * 2 - 1 );
+			String	secondPage	= extractor.getTextFromPage( letter * 2 );
+			assertTrue( firstPage.contains( "Dear Customer " + letter ) );
+			assertTrue( firstPage.contains( "Letter page 1 of 2" ) );
+			assertTrue( secondPage.contains( "Letter page 2 of 2" ) );
+		}
+		// each bookmark targets the first page of its letter
+		List<Map<String, Object>> bookmarks = SimpleBookmark.getBookmarkList( reader );
+		assertEquals( 30, bookmarks.size() );
+		assertTrue( bookmarks.get( 29 ).get( "Page" ).toString().startsWith( "59 " ) );
+		reader.close();
+
+		// the document-wide page counters are not available
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" mailMerge=true>
+				<bx:documentitem type="footer">
+					<bx:output><p>Page #bxdocument.currentpagenumber#</p></bx:output>
+				</bx:documentitem>
+		    	<bx:documentsection><h1>One</h1></bx:documentsection>
+		    	<bx:documentsection><h1>Two</h1></bx:documentsection>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE ) );
+	}
+
+	@DisplayName( "Will write image sources directly on to their own pages" )
+	@Test
+	public void testImageSourcePages() throws IOException {
+		String			scanFile	= tmpDirectory + "/scan.tif";
+		String			photoFile	= tmpDirectory + "/photo.png";
+		BufferedImage	scan		= new BufferedImage( 1700, 2200, BufferedImage.TYPE_BYTE_BINARY );
+		Graphics2D		graphics	= scan.createGraphics();
+		graphics.setColor( Color.WHITE );
+		graphics.fillRect( 0, 0, 1700, 2200 );
+		graphics.dispose();
+		ImageWriter tiffWriter = ImageIO.getImageWritersByFormatName( "tiff" ).next();
+		try ( ImageOutputStream output = ImageIO.createImageOutputStream( Path.of( scanFile ).toFile() ) ) {
+			tiffWriter.setOutput( output );
+			tiffWriter.prepareWriteSequence( null );
+			tiffWriter.writeToSequence( new IIOImage( scan, null, null ), null );
+			tiffWriter.writeToSequence( new IIOImage( scan, null, null ), null );
+			tiffWriter.endWriteSequence();
+		} finally {
+			tiffWriter.dispose();
+		}
+		ImageIO.write( new BufferedImage( 400, 300, BufferedImage.TYPE_INT_RGB ), "png", Path.of( photoFile ).toFile() );
+		variables.put( Key.of( "scanFile" ), Path.of( scanFile ).toAbsolutePath().toString() );
+		variables.put( Key.of( "photoFile" ), Path.of( photoFile ).toAbsolutePath().toString() );
+
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" isTestMode=true>
+		    	<bx:documentsection name="Scan" srcfile="#scanFile#"/>
+		    	<bx:documentsection name="Photo" srcfile="#photoFile#"/>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+		// the images are not laid out as HTML
+		assertNull( ( ( PDF ) variables.get( Key.of( "bxPDF" ) ) ).getRenderer().getDocument() );
+
+		PdfReader			reader		= new PdfReader( ( byte[] ) variables.get( result ) );
+		PdfTextExtractor	extractor	= new PdfTextExtractor( reader );
+		// every page of the TIFF is written on its own page
+		assertEquals( 3, reader.getNumberOfPages() );
+		assertTrue( extractor.getTextFromPage( 3 ).contains( "Page 3" ) );
+		assertEquals( 2, SimpleBookmark.getBookmarkList( reader ).size() );
+		reader.close();
+	}
+
+	@DisplayName( "Will stream plain text sources on to pages" )
+	@Test
+	public void testPlainTextSourcePages() throws IOException {
+		String			logFile	= tmpDirectory + "/export.txt";
+		StringBuilder	log		= new StringBuilder();
+		for ( int i = 1; i <= 300; i++ ) {
+			log.append( "Audit entry " ).append( i ).append( "\tuser <admin> changed a setting\n" );
+		}
+		Files.writeString( Path.of( logFile ), log.toString() );
+		variables.put( Key.of( "logFile" ), Path.of( logFile ).toAbsolutePath().toString() );
+
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" isTestMode=true textFontSize="10">
+				<bx:documentitem type="footer">
+					<bx:output><p>Page #bxdocument.currentpagenumber# of #bxdocument.totalpages#</p></bx:output>
+				</bx:documentitem>
+		    	<bx:documentsection name="Export" srcfile="#logFile#"/>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+		// the text is not laid out as HTML
+		assertNull( ( ( PDF ) variables.get( Key.of( "bxPDF" ) ) ).getRenderer().getDocument() );
+
+		PdfReader			reader		= new PdfReader( ( byte[] ) variables.get( result ) );
+		PdfTextExtractor	extractor	= new PdfTextExtractor( reader );
+		int					pageCount	= reader.getNumberOfPages();
+		assertTrue( pageCount > 1 );
+		assertTrue( extractor.getTextFromPage( 1 ).contains( "user <admin> changed a setting" ) );
+		assertTrue( extractor.getTextFromPage( pageCount ).contains( "Audit entry 300" ) );
+		assertTrue( extractor.getTextFromPage( pageCount ).contains( "Page " + pageCount + " of " + pageCount ) );
+		reader.close();
+	}
+
+	@DisplayName( "Will render the same document repeatedly and concurrently without leftover state" )
+	@Test
+	public void testRepeatedRenders() throws Exception {
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" isTestMode=true bookmark=true>
+		    	<bx:documentsection name="First">
+					<h1>First Section</h1>
+				</bx:documentsection>
+		    	<bx:documentsection name="Second">
+					<h1>Second Section</h1>
+				</bx:documentsection>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		PDF pdfObject = ( PDF ) variables.get( ModuleKeys.bxPDF );
+		assertEquals( 2, pdfObject.getDocumentParts().size() );
+
+		// generating again starts from the document parts, so the bookmarks are not repeated
+		pdfObject.generate();
+		List<byte[]> renders = new ArrayList<byte[]>();
+		renders.add( pdfObject.toBinary() );
+		ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try {
+			List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+			for ( int i = 0; i < 4; i++ ) {
+				futures.add( executor.submit( pdfObject::toBinary ) );
+			}
+			for ( Future<byte[]> future : futures ) {
+				renders.add( future.get() );
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for ( byte[] render : renders ) {
+			PdfReader reader = new PdfReader( render );
+			assertEquals( 2, reader.getNumberOfPages() );
+			assertEquals( 2, SimpleBookmark.getBookmarkList( reader ).size() );
+			assertTrue( new PdfTextExtractor( reader ).getTextFromPage( 2 ).contains( "Second Section" ) );
+			reader.close();
+		}
+	}
+
+	@DisplayName( "Will create page previews from the same layout as the PDF" )
+	@Test
+	public void testPagePreviews() throws IOException {
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" previewVariable="previews" previewPages="1,2,9" previewDpi="72" pageType="letter">
+		    	<h1>Page One</h1>
+				<div style="page-break-before: always;"><h1>Page Two</h1></div>
+		    </bx:document>
+		    <bx:document format="pdf" variable="previewOnly" previewVariable="thumbnails" previewOnly=true previewFormat="jpg" chunkSize="1">
+		    	<p>First</p>
+				<p style="page-break-before: always;">Second</p>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		assertTrue( variables.get( result ) instanceof byte[] );
+		Array previews = variables.getAsArray( Key.of( "previews" ) );
+		// page 9 does not exist, so it is ignored
+		assertEquals( 2, previews.size() );
+		BufferedImage firstPage = ImageIO.read( new ByteArrayInputStream( ( byte[] ) previews.get( 0 ) ) );
+		assertEquals( 612, firstPage.getWidth() );
+		assertEquals( 792, firstPage.getHeight() );
+
+		// only the previews are created, and only the first chunk is laid out
+		assertNull( variables.get( Key.of( "previewOnly" ) ) );
+		Array thumbnails = variables.getAsArray( Key.of( "thumbnails" ) );
+		assertEquals( 1, thumbnails.size() );
+		byte[] thumbnail = ( byte[] ) thumbnails.get( 0 );
+		assertEquals( ( byte ) 0xFF, thumbnail[ 0 ] );
+		assertEquals( ( byte ) 0xD8, thumbnail[ 1 ] );
+	}
+
+	@DisplayName( "It tests a layout-only preflight of the document" )
+	@Test
+	public void testPreflight() {
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" preflightVariable="preflight" pageType="letter">
+		    	<bx:documentsection name="Section 1">
+		    		<h1>Section 1</h1>
+		    	</bx:documentsection>
+		    	<bx:documentsection name="Section 2">
+		    		<table id="wide" style="width: 2000px;"><tr><td>Wide</td></tr></table>
+		    		<h1 style="page-break-before: always;">Section 2</h1>
+		    	</bx:documentsection>
+		    </bx:document>
+		    <bx:document format="pdf" variable="chunked" preflightVariable="chunkedPreflight" chunkSize="1">
+		    	<bx:documentsection name="Section 1">
+		    		<p>First</p>
+		    		<p style="page-break-before: always;">Second</p>
+		    	</bx:documentsection>
+		    	<bx:documentsection name="Section 2">
+		    		<p>Third</p>
+		    	</bx:documentsection>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		// the document is only laid out
+		assertNull( variables.get( result ) );
+		IStruct preflight = variables.getAsStruct( Key.of( "preflight" ) );
+		assertEquals( 3, preflight.getAsInteger( ModuleKeys.pageCount ) );
+		assertEquals( 612d, preflight.getAsDouble( ModuleKeys.pageWidth ) );
+
+		Array sections = preflight.getAsArray( ModuleKeys.sections );
+		assertEquals( 2, sections.size() );
+		IStruct secondSection = ( IStruct ) sections.get( 1 );
+		assertEquals( "Section 2", secondSection.getAsString( Key._NAME ) );
+		assertEquals( 2, secondSection.getAsInteger( ModuleKeys.startPage ) );
+		assertEquals( 3, secondSection.getAsInteger( ModuleKeys.endPage ) );
+
+		Array overflows = preflight.getAsArray( ModuleKeys.overflows );
+		assertEquals( 1, overflows.size() );
+		IStruct overflow = ( IStruct ) overflows.get( 0 );
+		assertEquals( "table#wide", overflow.getAsString( ModuleKeys.element ) );
+		assertEquals( 2, overflow.getAsInteger( ModuleKeys.page ) );
+		assertEquals( "horizontal", overflow.getAsString( ModuleKeys.direction ) );
+
+		// chunks are laid out one at a time and the page numbering continues across them
+		assertNull( variables.get( Key.of( "chunked" ) ) );
+		IStruct chunkedPreflight = variables.getAsStruct( Key.of( "chunkedPreflight" ) );
+		assertEquals( 3, chunkedPreflight.getAsInteger( ModuleKeys.pageCount ) );
+		IStruct lastSection = ( IStruct ) chunkedPreflight.getAsArray( ModuleKeys.sections ).get( 1 );
+		assertEquals( 3, lastSection.getAsInteger( ModuleKeys.startPage ) );
+		assertEquals( 3, lastSection.getAsInteger( ModuleKeys.endPage ) );
+		assertTrue( chunkedPreflight.getAsArray( ModuleKeys.overflows ).isEmpty() );
+	}
+
+	@DisplayName( "It tests linearized output to a variable and a file" )
+	@Test
+	public void testLinearize() throws IOException {
+		String linearizedFile = tmpDirectory + "/linearized.pdf";
+		variables.put( Key.of( "outputFile" ), linearizedFile );
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" linearize=true>
+		    	<bx:documentsection name="Section 1">
+		    		<h1>Section 1</h1>
+		    	</bx:documentsection>
+		    	<bx:documentsection name="Section 2">
+		    		<h1>Section 2</h1>
+		    		<p style="page-break-before: always;">Last Page</p>
+		    	</bx:documentsection>
+		    </bx:document>
+		    <bx:document format="pdf" filename="#outputFile#" linearize=true>
+		    	<p>First</p>
+		    	<p style="page-break-before: always;">Second</p>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		byte[] linearized = ( byte[] ) variables.get( result );
+		// the linearization dictionary is the first object in the file
+		String start = new String( linearized, 0, 1024, StandardCharsets.ISO_8859_1 );
+		assertTrue( start.contains( "/Linearized 1 /L " + linearized.length + " " ) );
+		assertTrue( start.contains( "/N 3 " ) );
+		PdfReader reader = new PdfReader( linearized );
+		assertEquals( 3, reader.getNumberOfPages() );
+		assertTrue( new PdfTextExtractor( reader ).getTextFromPage( 3 ).contains( "Last Page" ) );
+		assertEquals( 2, SimpleBookmark.getBookmarkList( reader ).size() );
+		reader.close();
+
+		// files are linearized from a temporary file, which is removed
+		byte[] linearizedFromFile = Files.readAllBytes( Path.of( linearizedFile ) );
+		assertTrue( new String( linearizedFromFile, 0, 1024, StandardCharsets.ISO_8859_1 ).contains( "/Linearized 1" ) );
+		try ( Stream<Path> files = Files.list( Path.of( tmpDirectory ) ) ) {
+			assertTrue( files.noneMatch( file -> file.getFileName().toString().endsWith( ".tmp" ) ) );
+		}
+	}
+
+	@DisplayName( "A render worker only writes the fonts of a job in to its font directory" )
+	@Test
+	public void testRenderWorkerFontNames() throws IOException {
+		String			escapedName		= UUID.randomUUID() + ".ttf";
+		Path			escapedFile		= Path.of( System.getProperty( "java.io.tmpdir" ), escapedName );
+		ServerSocket	serverSocket	= new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+		Thread			worker			= new Thread( () -> {
+											try {
+												new RenderWorker( 2, 1.0, "test-secret" ).serve( serverSocket );
+											} catch ( IOException e ) {
+												// the worker stops when the socket is closed
+											}
+										} );
+		worker.setDaemon( true );
+		worker.start();
+		try {
+			for ( String fontName : List.of( "..", "../" + escapedName ) ) {
+				try ( Socket socket = new Socket( InetAddress.getLoopbackAddress(), serverSocket.getLocalPort() ) ) {
+					DataOutputStream	out	= new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+					DataInputStream		in	= new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+					RenderProtocol.answerChallenge( in, out, "test-secret" );
+					RenderProtocol.writeJob( out, new RenderProtocol.Job(
+					    RenderProtocol.OPERATION_WRITE,
+					    Struct.of( Key.format, "pdf" ),
+					    "<html><body><p>Fonts</p></body></html>",
+					    Map.of(),
+					    List.of(),
+					    Map.of( fontName, "not a font".getBytes( StandardCharsets.UTF_8 ) ),
+					    60
+					) );
+					if ( fontName.equals( ".." ) ) {
+						RenderProtocol.RenderFailedException error = assertThrows( RenderProtocol.RenderFailedException.class,
+						    () -> RenderProtocol.readResult( in ) );
+						assertTrue( error.getMessage().contains( "The font file name [..] is not valid" ) );
+					} else {
+						try {
+							RenderProtocol.readResult( in );
+						} catch ( RenderProtocol.RenderFailedException e ) {
+							// the font is not valid, but it is only written inside the font directory of the job
+						}
+					}
+				}
+			}
+			assertFalse( Files.exists( escapedFile ) );
+		} finally {
+			serverSocket.close();
+			Files.deleteIfExists( escapedFile );
+		}
+	}
+
+	@DisplayName( "It refuses jobs from clients which do not know the render secret" )
+	@Test
+	public void testRenderWorkerSecret() throws IOException {
+		ServerSocket	serverSocket	= new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+		Thread			worker			= new Thread( () -> {
+											try {
+												new RenderWorker( 2, 1.0, "test-secret" ).serve( serverSocket );
+											} catch ( IOException e ) {
+												// the worker stops when the socket is closed
+											}
+										} );
+		worker.setDaemon( true );
+		worker.start();
+		try {
+			for ( String secret : Arrays.asList( "wrong-secret", null ) ) {
+				try ( Socket socket = new Socket( InetAddress.getLoopbackAddress(), serverSocket.getLocalPort() ) ) {
+					DataOutputStream	out	= new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+					DataInputStream		in	= new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+					RenderProtocol.answerChallenge( in, out, secret );
+					out.flush();
+					RenderProtocol.RenderFailedException error = assertThrows( RenderProtocol.RenderFailedException.class,
+					    () -> RenderProtocol.readResult( in ) );
+					assertEquals( "The render secret is not valid", error.getMessage() );
+				}
+			}
+		} finally {
+			serverSocket.close();
+		}
+	}
+
+	@DisplayName( "It renders documents and preflights in a render worker process" )
+	@Test
+	public void testRemoteRender() {
+		// @formatter:off
+		instance.executeSource(
+		    """
+		    <bx:document format="pdf" variable="result" renderWorkers="1" renderTimeout="60" linearize=true>
+		    	<bx:documentitem type="footer">
+		    		<bx:output><p>Page #bxdocument.currentpagenumber# of #bxdocument.totalpages#</p></bx:output>
+		    	</bx:documentitem>
+		    	<bx:documentsection name="Section 1">
+		    		<h1>Section 1</h1>
+		    	</bx:documentsection>
+		    	<bx:documentsection name="Section 2">
+		    		<h1>Section 2</h1>
+		    	</bx:documentsection>
+		    </bx:document>
+		    <bx:document format="pdf" variable="unused" renderWorkers="1" renderTimeout="60" preflightVariable="preflight">
+		    	<bx:documentsection name="Section 1">
+		    		<h1>Section 1</h1>
+		    	</bx:documentsection>
+		    	<bx:documentsection name="Section 2">
+		    		<h1>Section 2</h1>
+		    	</bx:documentsection>
+		    </bx:document>
+		      """,
+		    context, BoxSourceType.BOXTEMPLATE );
+		// @formatter:on
+		byte[] remote = ( byte[] ) variables.get( result );
+		// the worker renders the PDF and it is linearized locally
+		assertTrue( new String( remote, 0, 1024, StandardCharsets.ISO_8859_1 ).contains( "/Linearized 1" ) );
+		PdfReader reader = new PdfReader( remote );
+		assertEquals( 2, reader.getNumberOfPages() );
+		assertTrue( new PdfTextExtractor( reader ).getTextFromPage( 2 ).contains( "Page 2 of 2" ) );
+		assertEquals( 2, SimpleBookmark.getBookmarkList( reader ).size() );
+		reader.close();
+
+		// the section names of a remote preflight are filled in from the document
+		IStruct	preflight	= variables.getAsStruct( Key.of( "preflight" ) );
+		Array	sections	= preflight.getAsArray( ModuleKeys.sections );
+		assertEquals( 2, preflight.getAsInteger( ModuleKeys.pageCount ) );
+		assertEquals( "Section 2", ( ( IStruct ) sections.get( 1 ) ).getAsString( Key._NAME ) );
+		assertEquals( 2, ( ( IStruct ) sections.get( 1 ) ).getAsInteger( ModuleKeys.startPage ) );
+	}
+
+	/**
+	 * Reads the pixel widths of the images written to a PDF
+	 *
+	 * @param pdf The PDF
+	 *
+	 * @return the image widths
+	 */
+	private static List<Integer> imageWidths( byte[] pdf ) throws IOException {
+		List<Integer>	widths	= new ArrayList<Integer>();
+		PdfReader		reader	= new PdfReader( pdf );
+		for ( int i = 1; i < reader.getXrefSize(); i++ ) {
+			if ( reader.getPdfObject( i ) instanceof PRStream stream && PdfName.IMAGE.equals( stream.get( PdfName.SUBTYPE ) ) ) {
+				widths.add( stream.getAsNumber( PdfName.WIDTH ).intValue() );
+			}
+		}
+		reader.close();
+		return widths;
+	}
+
 }